@@ -40,8 +40,12 @@ public abstract class AbstractLogCompactor {
     protected final LogRemovalListener logRemovalListener;
 
     public AbstractLogCompactor(ServerConfiguration conf, LogRemovalListener logRemovalListener) {
+        this(conf, new Throttler(conf), logRemovalListener);
+    }
+
+    AbstractLogCompactor(ServerConfiguration conf, Throttler throttler, LogRemovalListener logRemovalListener) {
         this.conf = conf;
-        this.throttler = new Throttler(conf);
+        this.throttler = throttler;
         this.logRemovalListener = logRemovalListener;
     }
 
@@ -60,17 +64,31 @@ public abstract class AbstractLogCompactor {
     static class Throttler {
         private final RateLimiter rateLimiter;
         private final boolean isThrottleByBytes;
+        private final double configuredRate;
 
         Throttler(ServerConfiguration conf) {
             this.isThrottleByBytes  = conf.getIsThrottleByBytes();
-            this.rateLimiter = RateLimiter.create(this.isThrottleByBytes
-                ? conf.getCompactionRateByBytes() : conf.getCompactionRateByEntries());
+            this.configuredRate = this.isThrottleByBytes
+                ? conf.getCompactionRateByBytes() : conf.getCompactionRateByEntries();
+            this.rateLimiter = RateLimiter.create(configuredRate);
         }
 
         // acquire. if bybytes: bytes of this entry; if byentries: 1.
         void acquire(int permits) {
             rateLimiter.acquire(this.isThrottleByBytes ? permits : 1);
         }
+
+        double getConfiguredRate() {
+            return configuredRate;
+        }
+
+        double getRate() {
+            return rateLimiter.getRate();
+        }
+
+        void setRate(double rate) {
+            rateLimiter.setRate(rate);
+        }
     }
 
 }
@@ -38,6 +38,7 @@ public interface BookKeeperServerStats {
 
     // Stats
     String CHANNEL_WRITE = "CHANNEL_WRITE";
+    String CHANNEL_RESPONSES_PER_FLUSH = "CHANNEL_RESPONSES_PER_FLUSH";
 
     //
     // Server Operations
@@ -58,6 +59,10 @@ public interface BookKeeperServerStats {
     String READ_ENTRY_LONG_POLL_PRE_WAIT = "READ_ENTRY_LONG_POLL_PRE_WAIT";
     String READ_ENTRY_LONG_POLL_WAIT = "READ_ENTRY_LONG_POLL_WAIT";
     String READ_ENTRY_LONG_POLL_READ = "READ_ENTRY_LONG_POLL_READ";
+    String BATCH_READ_ENTRY_REQUEST = "BATCH_READ_ENTRY_REQUEST";
+    String BATCH_READ_ENTRY = "BATCH_READ_ENTRY";
+    String BATCH_ADD_ENTRY_REQUEST = "BATCH_ADD_ENTRY_REQUEST";
+    String BATCH_ADD_ENTRY = "BATCH_ADD_ENTRY";
     String WRITE_LAC_REQUEST = "WRITE_LAC_REQUEST";
     String WRITE_LAC = "WRITE_LAC";
     String READ_LAC_REQUEST = "READ_LAC_REQUEST";
@@ -91,6 +96,8 @@ public interface BookKeeperServerStats {
     String ADD_ENTRY_IN_PROGRESS = "ADD_ENTRY_IN_PROGRESS";
     String ADD_ENTRY_BLOCKED = "ADD_ENTRY_BLOCKED";
     String ADD_ENTRY_BLOCKED_WAIT = "ADD_ENTRY_BLOCKED_WAIT";
+    String ADD_ENTRY_STORAGE_THROTTLED = "ADD_ENTRY_STORAGE_THROTTLED";
+    String ADD_ENTRY_STORAGE_THROTTLED_CHANNELS = "ADD_ENTRY_STORAGE_THROTTLED_CHANNELS";
     String READ_ENTRY_IN_PROGRESS = "READ_ENTRY_IN_PROGRESS";
     String READ_ENTRY_BLOCKED = "READ_ENTRY_BLOCKED";
     String READ_ENTRY_BLOCKED_WAIT = "READ_ENTRY_BLOCKED_WAIT";
@@ -109,6 +116,8 @@ public interface BookKeeperServerStats {
     String JOURNAL_FORCE_WRITE_LATENCY = "JOURNAL_FORCE_WRITE_LATENCY";
     String JOURNAL_FORCE_WRITE_BATCH_ENTRIES = "JOURNAL_FORCE_WRITE_BATCH_ENTRIES";
     String JOURNAL_FORCE_WRITE_BATCH_BYTES = "JOURNAL_FORCE_WRITE_BATCH_BYTES";
+    String JOURNAL_GROUP_COMMIT_WINDOW = "JOURNAL_GROUP_COMMIT_WINDOW_MICROS";
+    String JOURNAL_GROUP_COMMIT_SYNC_LATENCY = "JOURNAL_GROUP_COMMIT_SYNC_LATENCY_MICROS";
     String JOURNAL_FLUSH_LATENCY = "JOURNAL_FLUSH_LATENCY";
     String JOURNAL_QUEUE_LATENCY = "JOURNAL_QUEUE_LATENCY";
     String JOURNAL_PROCESS_TIME_LATENCY = "JOURNAL_PROCESS_TIME_LATENCY";
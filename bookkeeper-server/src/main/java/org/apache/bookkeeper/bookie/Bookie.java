@@ -85,6 +85,7 @@ import org.apache.bookkeeper.net.BookieSocketAddress;
 import org.apache.bookkeeper.net.DNS;
 import org.apache.bookkeeper.proto.BookkeeperInternalCallbacks.WriteCallback;
 import org.apache.bookkeeper.stats.NullStatsLogger;
+import org.apache.bookkeeper.stats.OpStatsLogger;
 import org.apache.bookkeeper.stats.StatsLogger;
 import org.apache.bookkeeper.util.BookKeeperConstants;
 import org.apache.bookkeeper.util.DiskChecker;
@@ -733,11 +734,29 @@ public class Bookie extends BookieCriticalThread {
             }
         }
 
-        // instantiate the journals
+        // instantiate the journals, ordered by journal index. Entries are sharded across
+        // the writers of all the journal directories by ledger id in getJournal.
+        // the writers left with journal files by a previous run with more writers per directory
+        // are kept, so that their journals are replayed and the entries they log are not lost.
+        int numJournalWriters = conf.getNumJournalWritersPerDirectory();
+        for (File journalDirectory : journalDirectories) {
+            numJournalWriters = Journal.getNumJournalWriters(journalDirectory, numJournalWriters);
+        }
+        if (numJournalWriters > conf.getNumJournalWritersPerDirectory()) {
+            LOG.warn("Found journal files of {} writers per journal directory while numJournalWritersPerDirectory"
+                    + " is {}, starting {} writers per journal directory", numJournalWriters,
+                    conf.getNumJournalWritersPerDirectory(), numJournalWriters);
+        }
         journals = Lists.newArrayList();
-        for (int i = 0; i < journalDirectories.size(); i++) {
-            journals.add(new Journal(i, journalDirectories.get(i),
-                    conf, ledgerDirsManager, statsLogger.scope(JOURNAL_SCOPE), allocator));
+        for (int w = 0; w < numJournalWriters; w++) {
+            for (int i = 0; i < journalDirectories.size(); i++) {
+                File writerDirectory = Journal.getJournalWriterDirectory(journalDirectories.get(i), w);
+                if (!writerDirectory.exists() && !writerDirectory.mkdirs()) {
+                    throw new IOException("Unable to create journal writer directory " + writerDirectory);
+                }
+                journals.add(new Journal(Journal.getJournalIndex(journalDirectories.size(), i, w), writerDirectory,
+                        conf, ledgerDirsManager, statsLogger.scope(JOURNAL_SCOPE), allocator));
+            }
         }
 
         this.entryLogPerLedgerEnabled = conf.isEntryLogPerLedgerEnabled();
@@ -794,6 +813,10 @@ public class Bookie extends BookieCriticalThread {
             statsLogger,
             allocator);
 
+        // Let the compaction back off when the journal adds slow down
+        for (Journal journal : journals) {
+            ledgerStorage.registerForegroundLatencySource(journal.getJournalStats().getJournalAddEntryLatency());
+        }
 
         handles = new HandleFactoryImpl(ledgerStorage);
 
@@ -1262,6 +1285,15 @@ public class Bookie extends BookieCriticalThread {
 
         // journal `addEntry` should happen after the entry is added to ledger storage.
         // otherwise the journal entry can potentially be rolled before the ledger is created in ledger storage.
+        journalMasterKeyIfNeeded(ledgerId, masterKey);
+
+        if (LOG.isTraceEnabled()) {
+            LOG.trace("Adding {}@{}", entryId, ledgerId);
+        }
+        getJournal(ledgerId).logAddEntry(entry, ackBeforeSync, cb, ctx);
+    }
+
+    private void journalMasterKeyIfNeeded(long ledgerId, byte[] masterKey) throws InterruptedException {
         if (masterKeyCache.get(ledgerId) == null) {
             // Force the load into masterKey cache
             byte[] oldValue = masterKeyCache.putIfAbsent(ledgerId, masterKey);
@@ -1277,11 +1309,39 @@ public class Bookie extends BookieCriticalThread {
                 getJournal(ledgerId).logAddEntry(bb, false /* ackBeforeSync */, new NopWriteCallback(), null);
             }
         }
+    }
+
+    /**
+     * Add a batch of consecutive entries to a ledger as specified by handle.
+     */
+    private void addEntriesInternal(LedgerDescriptor handle, List<ByteBuf> entries,
+                                    boolean ackBeforeSync, WriteCallback cb, Object ctx, byte[] masterKey)
+            throws IOException, BookieException, InterruptedException {
+        long ledgerId = handle.getLedgerId();
+        long expectedEntryId = -1;
+        for (ByteBuf entry : entries) {
+            long entryLedgerId = entry.getLong(entry.readerIndex());
+            long entryId = entry.getLong(entry.readerIndex() + 8);
+            if (entryLedgerId != ledgerId || (expectedEntryId >= 0 && entryId != expectedEntryId)) {
+                throw new IllegalArgumentException("Entry " + entryLedgerId + "@" + entryId
+                        + " doesn't follow the previous entries of the batch in ledger " + ledgerId);
+            }
+            expectedEntryId = entryId + 1;
+        }
+
+        // Each entry is added to the ledger storage, so that it can be read individually,
+        // while the batch is journaled and acknowledged as a whole.
+        for (ByteBuf entry : entries) {
+            handle.addEntry(entry);
+            bookieStats.getWriteBytes().add(entry.readableBytes());
+        }
+
+        journalMasterKeyIfNeeded(ledgerId, masterKey);
 
         if (LOG.isTraceEnabled()) {
-            LOG.trace("Adding {}@{}", entryId, ledgerId);
+            LOG.trace("Adding {} entries up to {}@{}", entries.size(), expectedEntryId - 1, ledgerId);
         }
-        getJournal(ledgerId).logAddEntry(entry, ackBeforeSync, cb, ctx);
+        getJournal(ledgerId).logAddEntries(ledgerId, entries, ackBeforeSync, cb, ctx);
     }
 
     /**
@@ -1319,6 +1379,17 @@ public class Bookie extends BookieCriticalThread {
         }
     }
 
+    /**
+     * Add a batch of consecutive entries to a ledger, even if the ledger has previous been fenced.
+     *
+     * @see #recoveryAddEntry(ByteBuf, WriteCallback, Object, byte[])
+     * @see #addEntries(List, boolean, WriteCallback, Object, byte[])
+     */
+    public void recoveryAddEntries(List<ByteBuf> entries, WriteCallback cb, Object ctx, byte[] masterKey)
+            throws IOException, BookieException, InterruptedException {
+        addEntries(entries, true /* recoveryAdd */, false /* ackBeforeSync */, cb, ctx, masterKey);
+    }
+
     private ByteBuf createExplicitLACEntry(long ledgerId, ByteBuf explicitLac) {
         ByteBuf bb = allocator.directBuffer(8 + 8 + 4 + explicitLac.capacity());
         bb.writeLong(ledgerId);
@@ -1406,6 +1477,60 @@ public class Bookie extends BookieCriticalThread {
         }
     }
 
+    /**
+     * Add a batch of consecutive entries to a ledger.
+     *
+     * <p>The entries are added to the ledger storage one by one, so that each of them can be read
+     * individually, and journaled together. The callback is invoked once, with the id of the last
+     * entry, when the whole batch is persisted.
+     */
+    public void addEntries(List<ByteBuf> entries, boolean ackBeforeSync, WriteCallback cb, Object ctx,
+                           byte[] masterKey)
+            throws IOException, BookieException, InterruptedException {
+        addEntries(entries, false /* recoveryAdd */, ackBeforeSync, cb, ctx, masterKey);
+    }
+
+    private void addEntries(List<ByteBuf> entries, boolean recoveryAdd, boolean ackBeforeSync,
+                            WriteCallback cb, Object ctx, byte[] masterKey)
+            throws IOException, BookieException, InterruptedException {
+        long requestNanos = MathUtils.nowInNano();
+        boolean success = false;
+        try {
+            if (entries.isEmpty()) {
+                throw new IllegalArgumentException("Empty batch of entries");
+            }
+            LedgerDescriptor handle = getLedgerForEntry(entries.get(0), masterKey);
+            synchronized (handle) {
+                if (!recoveryAdd && handle.isFenced()) {
+                    throw BookieException
+                            .create(BookieException.Code.LedgerFencedException);
+                }
+                addEntriesInternal(handle, entries, ackBeforeSync, cb, ctx, masterKey);
+            }
+            success = true;
+        } catch (NoWritableLedgerDirException e) {
+            stateManager.transitionToReadOnlyMode();
+            throw new IOException(e);
+        } finally {
+            long elapsedNanos = MathUtils.elapsedNanos(requestNanos);
+            OpStatsLogger addStats = recoveryAdd
+                    ? bookieStats.getRecoveryAddEntryStats() : bookieStats.getAddEntryStats();
+            if (success) {
+                addStats.registerSuccessfulEvent(elapsedNanos, TimeUnit.NANOSECONDS);
+            } else {
+                addStats.registerFailedEvent(elapsedNanos, TimeUnit.NANOSECONDS);
+            }
+            for (ByteBuf entry : entries) {
+                if (success) {
+                    bookieStats.getAddBytesStats().registerSuccessfulValue(entry.readableBytes());
+                } else {
+                    bookieStats.getAddBytesStats().registerFailedValue(entry.readableBytes());
+                }
+                entry.release();
+            }
+        }
+    }
+
     /**
      * Fences a ledger. From this point on, clients will be unable to
      * write to this ledger. Only recoveryAddEntry will be
@@ -1445,6 +1570,40 @@ public class Bookie extends BookieCriticalThread {
         }
     }
 
+    /**
+     * Read a range of consecutive entries of a ledger.
+     *
+     * @see LedgerStorage#getEntries(long, long, int, long)
+     */
+    public List<ByteBuf> readEntries(long ledgerId, long firstEntryId, int maxCount, long maxSize)
+            throws IOException, NoLedgerException {
+        long requestNanos = MathUtils.nowInNano();
+        boolean success = false;
+        long size = 0;
+        try {
+            LedgerDescriptor handle = handles.getReadOnlyHandle(ledgerId);
+            if (LOG.isTraceEnabled()) {
+                LOG.trace("Reading up to {} entries from {}@{}", maxCount, firstEntryId, ledgerId);
+            }
+            List<ByteBuf> entries = handle.readEntries(firstEntryId, maxCount, maxSize);
+            for (ByteBuf entry : entries) {
+                size += entry.readableBytes();
+            }
+            bookieStats.getReadBytes().add(size);
+            success = true;
+            return entries;
+        } finally {
+            long elapsedNanos = MathUtils.elapsedNanos(requestNanos);
+            if (success) {
+                bookieStats.getReadEntryStats().registerSuccessfulEvent(elapsedNanos, TimeUnit.NANOSECONDS);
+                bookieStats.getReadBytesStats().registerSuccessfulValue(size);
+            } else {
+                bookieStats.getReadEntryStats().registerFailedEvent(elapsedNanos, TimeUnit.NANOSECONDS);
+                bookieStats.getReadBytesStats().registerFailedValue(size);
+            }
+        }
+    }
+
     public long readLastAddConfirmed(long ledgerId) throws IOException {
         LedgerDescriptor handle = handles.getReadOnlyHandle(ledgerId);
         return handle.getLastAddConfirmed();
@@ -1967,6 +1967,8 @@ public class BookieShell implements Tool {
 
         public RebuildDbLedgerLocationsIndexCmd() {
             super(CMD_REBUILD_DB_LEDGER_LOCATIONS_INDEX);
+            opts.addOption("t", "threads", true, "Number of entry logs scanned in parallel");
+            opts.addOption("r", "resume", false, "Resume a previously interrupted rebuild");
         }
 
         @Override
@@ -1981,13 +1983,19 @@ public class BookieShell implements Tool {
 
         @Override
         String getUsage() {
-            return CMD_REBUILD_DB_LEDGER_LOCATIONS_INDEX;
+            return CMD_REBUILD_DB_LEDGER_LOCATIONS_INDEX + " [-threads <threads>] [-resume]";
         }
 
         @Override
         int runCmd(CommandLine cmdLine) throws Exception {
             RebuildDBLedgerLocationsIndexCommand cmd = new RebuildDBLedgerLocationsIndexCommand();
-            cmd.apply(bkConf, new CliFlags());
+            RebuildDBLedgerLocationsIndexCommand.RebuildFlags flags =
+                    new RebuildDBLedgerLocationsIndexCommand.RebuildFlags();
+            if (cmdLine.hasOption("t")) {
+                flags.threads(getOptionIntValue(cmdLine, "threads", Runtime.getRuntime().availableProcessors()));
+            }
+            flags.resume(cmdLine.hasOption("r"));
+            cmd.apply(bkConf, flags);
             return 0;
         }
     }
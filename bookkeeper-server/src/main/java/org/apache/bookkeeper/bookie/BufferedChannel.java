@@ -79,11 +79,20 @@ public class BufferedChannel extends BufferedReadChannel implements Closeable {
 
     public BufferedChannel(ByteBufAllocator allocator, FileChannel fc, int writeCapacity, int readCapacity,
             long unpersistedBytesBound) throws IOException {
+        this(fc, allocator.directBuffer(writeCapacity), readCapacity, unpersistedBytesBound);
+    }
+
+    /**
+     * Create a buffered channel that uses the provided buffer as write buffer. The capacity of
+     * the write buffer is the capacity of the provided buffer, and the channel takes ownership of it.
+     */
+    protected BufferedChannel(FileChannel fc, ByteBuf writeBuffer, int readCapacity,
+            long unpersistedBytesBound) throws IOException {
         super(fc, readCapacity);
-        this.writeCapacity = writeCapacity;
+        this.writeCapacity = writeBuffer.capacity();
         this.position = fc.position();
         this.writeBufferStartPosition.set(position);
-        this.writeBuffer = allocator.directBuffer(writeCapacity);
+        this.writeBuffer = writeBuffer;
         this.unpersistedBytes = new AtomicLong(0);
         this.unpersistedBytesBound = unpersistedBytesBound;
         this.doRegularFlushes = unpersistedBytesBound > 0;
@@ -137,6 +146,34 @@ public class BufferedChannel extends BufferedReadChannel implements Closeable {
         }
     }
 
+    /**
+     * Append <i>count</i> bytes of another file, starting at <i>srcPosition</i>, without copying
+     * them through the write buffer. The write buffer is flushed first, then the bytes are moved
+     * with {@link FileChannel#transferTo}, which lets the file system copy them within the kernel.
+     *
+     * @param src the channel of the file to copy from
+     * @param srcPosition the position of the first byte to copy in the source file
+     * @param count the number of bytes to copy
+     * @throws IOException if the source file is shorter than expected or the write fails.
+     */
+    public synchronized void transferFrom(FileChannel src, long srcPosition, long count) throws IOException {
+        flush();
+        long transferred = 0;
+        while (transferred < count) {
+            long bytes = src.transferTo(srcPosition + transferred, count - transferred, fileChannel);
+            if (bytes <= 0) {
+                throw new IOException("Short transfer at position " + (srcPosition + transferred)
+                        + " : " + transferred + " of " + count + " bytes transferred");
+            }
+            transferred += bytes;
+        }
+        position += count;
+        writeBufferStartPosition.set(fileChannel.position());
+        if (doRegularFlushes) {
+            unpersistedBytes.addAndGet(count);
+        }
+    }
+
     /**
      * Get the position where the next write operation will begin writing from.
      * @return
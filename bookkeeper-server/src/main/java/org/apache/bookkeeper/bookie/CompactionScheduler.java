@@ -0,0 +1,162 @@
+/**
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *
+ */
+
+package org.apache.bookkeeper.bookie;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongSupplier;
+
+import org.apache.bookkeeper.bookie.AbstractLogCompactor.Throttler;
+import org.apache.bookkeeper.conf.ServerConfiguration;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Scheduler of the entry log compactions of a ledger storage.
+ *
+ * <p>The garbage collector threads of all the ledger directories of the storage share the
+ * scheduler, so that:
+ * <ul>
+ * <li>the configured compaction rate is a budget for the whole storage rather than per directory;</li>
+ * <li>at most <i>compactionMaxConcurrency</i> directories compact an entry log at the same time;</li>
+ * <li>the rate backs off when the foreground operations slow down. Once per second the recent
+ * latency of the registered sources (journal adds, ledger storage adds and reads) is compared
+ * with the target: above it the rate is halved, down to 5% of the configured rate, below it
+ * the rate is restored by 10% of the configured rate.</li>
+ * </ul>
+ */
+public class CompactionScheduler {
+
+    private static final Logger LOG = LoggerFactory.getLogger(CompactionScheduler.class);
+
+    private static final long ADJUST_INTERVAL_NANOS = TimeUnit.SECONDS.toNanos(1);
+    private static final double MIN_RATE_FACTOR = 0.05;
+    private static final double RATE_FACTOR_RECOVERY_STEP = 0.1;
+
+    private final Throttler throttler;
+    private final long targetLatencyNanos;
+    // Null when the number of concurrent compactions is not bounded
+    private final Semaphore compactionSlots;
+    private final List<LongSupplier> latencySources = new CopyOnWriteArrayList<>();
+
+    private final AtomicLong lastAdjustTimeNanos = new AtomicLong(System.nanoTime());
+    private volatile double rateFactor = 1.0;
+    private volatile long foregroundLatencyNanos = 0;
+
+    public CompactionScheduler(ServerConfiguration conf) {
+        this.throttler = new Throttler(conf) {
+            @Override
+            void acquire(int permits) {
+                maybeAdjustRate();
+                super.acquire(permits);
+            }
+        };
+        this.targetLatencyNanos = TimeUnit.MILLISECONDS.toNanos(conf.getCompactionTargetForegroundLatencyMs());
+        int maxConcurrency = conf.getCompactionMaxConcurrency();
+        this.compactionSlots = maxConcurrency > 0 ? new Semaphore(maxConcurrency, true) : null;
+    }
+
+    /**
+     * Add a source of the recent latency of a foreground operation, in nanoseconds.
+     */
+    public void addLatencySource(LongSupplier latencyNanos) {
+        latencySources.add(latencyNanos);
+    }
+
+    Throttler getThrottler() {
+        return throttler;
+    }
+
+    /**
+     * Wait until an entry log can be compacted.
+     */
+    void acquireCompactionSlot() throws InterruptedException {
+        if (compactionSlots != null) {
+            compactionSlots.acquire();
+        }
+    }
+
+    void releaseCompactionSlot() {
+        if (compactionSlots != null) {
+            compactionSlots.release();
+        }
+    }
+
+    private void maybeAdjustRate() {
+        if (targetLatencyNanos <= 0) {
+            return;
+        }
+        long now = System.nanoTime();
+        long lastAdjustTime = lastAdjustTimeNanos.get();
+        if (now - lastAdjustTime < ADJUST_INTERVAL_NANOS
+                || !lastAdjustTimeNanos.compareAndSet(lastAdjustTime, now)) {
+            return;
+        }
+
+        long latency = 0;
+        for (LongSupplier source : latencySources) {
+            latency = Math.max(latency, source.getAsLong());
+        }
+        foregroundLatencyNanos = latency;
+
+        double currentFactor = rateFactor;
+        double newFactor = latency > targetLatencyNanos
+                ? Math.max(MIN_RATE_FACTOR, currentFactor / 2)
+                : Math.min(1.0, currentFactor + RATE_FACTOR_RECOVERY_STEP);
+        if (newFactor != currentFactor) {
+            rateFactor = newFactor;
+            throttler.setRate(throttler.getConfiguredRate() * newFactor);
+            if (LOG.isDebugEnabled()) {
+                LOG.debug("Foreground latency {} us, compaction rate set to {}",
+                        TimeUnit.NANOSECONDS.toMicros(latency), throttler.getRate());
+            }
+        }
+    }
+
+    /**
+     * Get the fraction of the configured compaction rate currently allowed.
+     */
+    public double getRateFactor() {
+        return rateFactor;
+    }
+
+    /**
+     * Get the current compaction rate, in bytes or entries per second.
+     */
+    public double getRate() {
+        return throttler.getRate();
+    }
+
+    public boolean isThrottled() {
+        return rateFactor < 1.0;
+    }
+
+    /**
+     * Get the foreground latency observed at the last rate adjustment, in microseconds.
+     */
+    public long getForegroundLatencyMicros() {
+        return TimeUnit.NANOSECONDS.toMicros(foregroundLatencyNanos);
+    }
+}
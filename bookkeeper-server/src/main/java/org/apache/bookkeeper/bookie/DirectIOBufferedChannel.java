@@ -0,0 +1,258 @@
+/*
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *
+ */
+
+package org.apache.bookkeeper.bookie;
+
+import static org.apache.bookkeeper.util.NativeIO.DIRECT_IO_ALIGNMENT;
+
+import com.google.common.annotations.VisibleForTesting;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufAllocator;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+
+import org.apache.bookkeeper.util.NativeIO;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * A {@link BufferedChannel} that writes its buffer to the file with direct I/O (O_DIRECT),
+ * bypassing the file system page cache.
+ *
+ * <p>The write buffer is aligned to {@link NativeIO#DIRECT_IO_ALIGNMENT} in memory and always
+ * starts at an aligned position in the file. A flush writes the buffer rounded up to the alignment,
+ * zero-filling the tail, and keeps the last partial block in the buffer so that it is rewritten
+ * together with the following data on the next flush. The journal pads its writes to the
+ * journal alignment before flushing, so with a 4K journal alignment the partial block is empty.
+ *
+ * <p>Reads and the journal header still go through the {@link FileChannel}. The file is preallocated with
+ * fallocate, or else by writing zeros with direct I/O, so that none of its pages is written through the page cache.
+ */
+public class DirectIOBufferedChannel extends BufferedChannel {
+
+    private static final Logger LOG = LoggerFactory.getLogger(DirectIOBufferedChannel.class);
+
+    private final ByteBufAllocator allocator;
+    private final int fd;
+    // The position up to which the data has been written to the file.
+    private volatile long flushedPosition;
+    private boolean fdClosed = false;
+    // Aligned block of zeros, to preallocate the file when fallocate is not supported
+    private ByteBuf zeroBlock;
+
+    /**
+     * Open a direct I/O buffered channel on the file, positioned at the current position of
+     * the file channel.
+     *
+     * @param allocator allocator of the write buffer
+     * @param file the file backing the file channel
+     * @param fc the file channel, used for reads
+     * @param capacity the capacity of the write buffer, rounded up to the direct I/O alignment
+     * @throws IOException if the file can't be opened for direct I/O
+     */
+    public static DirectIOBufferedChannel open(ByteBufAllocator allocator, File file, FileChannel fc,
+                                               int capacity) throws IOException {
+        int alignedCapacity = alignUp(Math.max(capacity, DIRECT_IO_ALIGNMENT));
+        ByteBuf writeBuffer = allocateAlignedBuffer(allocator, alignedCapacity);
+        int fd;
+        try {
+            fd = NativeIO.openDirect(file.getAbsolutePath());
+        } catch (IOException ioe) {
+            writeBuffer.release();
+            throw ioe;
+        }
+        try {
+            return new DirectIOBufferedChannel(allocator, fc, writeBuffer, capacity, fd);
+        } catch (IOException ioe) {
+            writeBuffer.release();
+            NativeIO.closeFd(fd);
+            throw ioe;
+        }
+    }
+
+    private static ByteBuf allocateAlignedBuffer(ByteBufAllocator allocator, int capacity) throws IOException {
+        ByteBuf buffer = allocator.directBuffer(capacity + DIRECT_IO_ALIGNMENT, capacity + DIRECT_IO_ALIGNMENT);
+        if (!buffer.hasMemoryAddress()) {
+            buffer.release();
+            throw new IOException("Direct I/O requires buffers with a memory address");
+        }
+        int offset = (int) ((DIRECT_IO_ALIGNMENT - (buffer.memoryAddress() % DIRECT_IO_ALIGNMENT))
+                % DIRECT_IO_ALIGNMENT);
+        // The slice shares the reference count of the underlying buffer
+        return buffer.slice(offset, capacity).clear();
+    }
+
+    private static int alignUp(int length) {
+        return (length + DIRECT_IO_ALIGNMENT - 1) / DIRECT_IO_ALIGNMENT * DIRECT_IO_ALIGNMENT;
+    }
+
+    private DirectIOBufferedChannel(ByteBufAllocator allocator, FileChannel fc, ByteBuf writeBuffer,
+                                    int readCapacity, int fd) throws IOException {
+        super(fc, writeBuffer, readCapacity, 0L);
+        this.allocator = allocator;
+        this.fd = fd;
+        this.flushedPosition = position;
+
+        // Load the partial block before the current position, so the first flush rewrites it as it is
+        long startPosition = position - position % DIRECT_IO_ALIGNMENT;
+        int tailLength = (int) (position - startPosition);
+        while (writeBuffer.writerIndex() < tailLength) {
+            int read = writeBuffer.writeBytes(fc, startPosition + writeBuffer.writerIndex(),
+                    tailLength - writeBuffer.writerIndex());
+            if (read <= 0) {
+                throw new IOException("Short read while loading the last block of the file at " + startPosition);
+            }
+        }
+        writeBufferStartPosition.set(startPosition);
+    }
+
+    @Override
+    public synchronized void flush() throws IOException {
+        int length = writeBuffer.writerIndex();
+        long startPosition = writeBufferStartPosition.get();
+        if (startPosition + length == flushedPosition) {
+            return;
+        }
+
+        int alignedLength = alignUp(length);
+        writeBuffer.setZero(length, alignedLength - length);
+        NativeIO.pwriteFully(fd, writeBuffer.memoryAddress(), alignedLength, startPosition);
+        flushedPosition = startPosition + length;
+
+        // Keep the last partial block at the beginning of the buffer
+        int fullBlocksLength = length - length % DIRECT_IO_ALIGNMENT;
+        if (fullBlocksLength > 0) {
+            int tailLength = length - fullBlocksLength;
+            writeBuffer.setBytes(0, writeBuffer, fullBlocksLength, tailLength);
+            writeBuffer.setIndex(0, tailLength);
+            writeBufferStartPosition.addAndGet(fullBlocksLength);
+        }
+    }
+
+    /**
+     * Append <i>count</i> bytes of another file. The bytes can't be moved within the kernel into a file
+     * opened for direct I/O, so they are read into the aligned write buffer, which is written with direct
+     * I/O every time it fills up.
+     */
+    @Override
+    public synchronized void transferFrom(FileChannel src, long srcPosition, long count) throws IOException {
+        long copied = 0;
+        while (copied < count) {
+            int bytesToCopy = (int) Math.min(count - copied, writeBuffer.writableBytes());
+            int read = writeBuffer.writeBytes(src, srcPosition + copied, bytesToCopy);
+            if (read <= 0) {
+                throw new IOException("Short transfer at position " + (srcPosition + copied)
+                        + " : " + copied + " of " + count + " bytes transferred");
+            }
+            copied += read;
+            position += read;
+
+            if (!writeBuffer.isWritable()) {
+                flush();
+            }
+        }
+    }
+
+    @Override
+    public long forceWrite(boolean forceMetadata) throws IOException {
+        long positionForceWrite = flushedPosition;
+        NativeIO.forceFd(fd, forceMetadata);
+        return positionForceWrite;
+    }
+
+    /**
+     * Allocate disk space for a range of the file, without writing to it when fallocate is supported.
+     * Otherwise the file is extended up to the end of the range by writing zeros with direct I/O.
+     */
+    public void preallocate(long offset, long length) throws IOException {
+        if (!NativeIO.fallocateIfPossible(fd, offset, length)) {
+            extendWithZeros(offset + length);
+        }
+    }
+
+    /**
+     * Extend the file up to <i>end</i>, rounded up to the direct I/O alignment, by writing a block of zeros
+     * with direct I/O at the end. Nothing is written if the buffered data already reaches the last block.
+     */
+    @VisibleForTesting
+    synchronized void extendWithZeros(long end) throws IOException {
+        long lastBlockPosition = (end - 1) / DIRECT_IO_ALIGNMENT * DIRECT_IO_ALIGNMENT;
+        if (lastBlockPosition < writeBufferStartPosition.get() + alignUp(writeBuffer.writerIndex())) {
+            // The block is already written, or it will be on the next flush
+            return;
+        }
+
+        if (zeroBlock == null) {
+            zeroBlock = allocateAlignedBuffer(allocator, DIRECT_IO_ALIGNMENT);
+            zeroBlock.setZero(0, DIRECT_IO_ALIGNMENT);
+        }
+        NativeIO.pwriteFully(fd, zeroBlock.memoryAddress(), DIRECT_IO_ALIGNMENT, lastBlockPosition);
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        if (fdClosed) {
+            return;
+        }
+        try {
+            super.close();
+        } finally {
+            fdClosed = true;
+            if (zeroBlock != null) {
+                zeroBlock.release();
+                zeroBlock = null;
+            }
+            NativeIO.closeFd(fd);
+        }
+    }
+
+    /**
+     * Builder of the journal channels that writes with direct I/O, falling back to a
+     * regular {@link BufferedChannel} when direct I/O can't be used on the file.
+     */
+    public static class Builder implements Journal.BufferedChannelBuilder {
+
+        private final ByteBufAllocator allocator;
+
+        public Builder(ByteBufAllocator allocator) {
+            this.allocator = allocator;
+        }
+
+        @Override
+        public BufferedChannel create(FileChannel fc, int capacity) throws IOException {
+            return new BufferedChannel(allocator, fc, capacity);
+        }
+
+        @Override
+        public BufferedChannel create(File file, FileChannel fc, int capacity) throws IOException {
+            try {
+                return DirectIOBufferedChannel.open(allocator, file, fc, capacity);
+            } catch (IOException ioe) {
+                LOG.warn("Failed to open {} with direct I/O, falling back to buffered writes : {}",
+                        file, ioe.getMessage());
+                return create(fc, capacity);
+            }
+        }
+    }
+}
@@ -49,7 +49,16 @@ public class EntryLogCompactor extends AbstractLogCompactor {
             EntryLogger entryLogger,
             CompactableLedgerStorage ledgerStorage,
             LogRemovalListener logRemover) {
-        super(conf, logRemover);
+        this(conf, entryLogger, ledgerStorage, new Throttler(conf), logRemover);
+    }
+
+    EntryLogCompactor(
+            ServerConfiguration conf,
+            EntryLogger entryLogger,
+            CompactableLedgerStorage ledgerStorage,
+            Throttler throttler,
+            LogRemovalListener logRemover) {
+        super(conf, throttler, logRemover);
         this.maxOutstandingRequests = conf.getCompactionMaxOutstandingRequests();
         this.entryLogger = entryLogger;
         this.ledgerStorage = ledgerStorage;
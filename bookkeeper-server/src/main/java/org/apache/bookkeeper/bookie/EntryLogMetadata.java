@@ -21,6 +21,9 @@
 
 package org.apache.bookkeeper.bookie;
 
+import io.netty.buffer.ByteBuf;
+
+import java.io.IOException;
 import java.util.function.LongPredicate;
 
 import org.apache.bookkeeper.util.collections.ConcurrentLongLongHashMap;
@@ -29,6 +32,8 @@ import org.apache.bookkeeper.util.collections.ConcurrentLongLongHashMap;
  * Records the total size, remaining size and the set of ledgers that comprise a entry log.
  */
 public class EntryLogMetadata {
+    private static final short SERIALIZATION_VERSION = 1;
+
     private final long entryLogId;
     private long totalSize;
     private long remainingSize;
@@ -41,6 +46,13 @@ public class EntryLogMetadata {
         ledgersMap = new ConcurrentLongLongHashMap(256, 1);
     }
 
+    private EntryLogMetadata(long logId, long totalSize, long remainingSize, int numLedgers) {
+        this.entryLogId = logId;
+        this.totalSize = totalSize;
+        this.remainingSize = remainingSize;
+        this.ledgersMap = new ConcurrentLongLongHashMap(Math.max(256, numLedgers), 1);
+    }
+
     public void addLedgerSize(long ledgerId, long size) {
         totalSize += size;
         remainingSize += size;
@@ -88,6 +100,52 @@ public class EntryLogMetadata {
         });
     }
 
+    /**
+     * @return the size of the serialized metadata, in bytes
+     */
+    public int getSerializedSize() {
+        return 2 + 3 * Long.BYTES + Integer.BYTES + (int) ledgersMap.size() * 2 * Long.BYTES;
+    }
+
+    /**
+     * Serialize the metadata, with the size of each ledger, in the buffer.
+     */
+    public void serialize(ByteBuf buf) {
+        buf.writeShort(SERIALIZATION_VERSION);
+        buf.writeLong(entryLogId);
+        buf.writeLong(totalSize);
+        buf.writeLong(remainingSize);
+        buf.writeInt((int) ledgersMap.size());
+        ledgersMap.forEach((ledgerId, size) -> {
+            buf.writeLong(ledgerId);
+            buf.writeLong(size);
+        });
+    }
+
+    /**
+     * Read metadata serialized with {@link #serialize(ByteBuf)}.
+     */
+    public static EntryLogMetadata deserialize(ByteBuf buf) throws IOException {
+        short version = buf.readShort();
+        if (version != SERIALIZATION_VERSION) {
+            throw new IOException("Unsupported entry log metadata version " + version);
+        }
+
+        long entryLogId = buf.readLong();
+        long totalSize = buf.readLong();
+        long remainingSize = buf.readLong();
+        int numLedgers = buf.readInt();
+        if (numLedgers < 0 || buf.readableBytes() < numLedgers * 2 * Long.BYTES) {
+            throw new IOException("Invalid metadata of entry log " + entryLogId + " with " + numLedgers + " ledgers");
+        }
+
+        EntryLogMetadata meta = new EntryLogMetadata(entryLogId, totalSize, remainingSize, numLedgers);
+        for (int i = 0; i < numLedgers; i++) {
+            meta.ledgersMap.put(buf.readLong(), buf.readLong());
+        }
+        return meta;
+    }
+
     @Override
     public String toString() {
         StringBuilder sb = new StringBuilder();
@@ -0,0 +1,62 @@
+/*
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *
+ */
+
+package org.apache.bookkeeper.bookie;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.function.BiConsumer;
+
+/**
+ * Map of the {@link EntryLogMetadata} of the entry logs, used by the garbage collector.
+ */
+public interface EntryLogMetadataMap extends Closeable {
+
+    /**
+     * Check whether the metadata of the entry log is in the map.
+     */
+    boolean containsKey(long entryLogId) throws IOException;
+
+    /**
+     * Add or replace the metadata of the entry log.
+     *
+     * <p>The metadata is copied by the implementations that don't keep it on heap, so it must be put again after
+     * being modified.
+     */
+    void put(long entryLogId, EntryLogMetadata entryLogMeta) throws IOException;
+
+    /**
+     * Process all the entry logs of the map.
+     *
+     * <p>Entries can be put or removed by the action.
+     */
+    void forEach(BiConsumer<Long, EntryLogMetadata> action) throws IOException;
+
+    /**
+     * Remove the metadata of the entry log.
+     */
+    void remove(long entryLogId) throws IOException;
+
+    /**
+     * @return the number of entry logs in the map
+     */
+    int size() throws IOException;
+}
@@ -25,8 +25,13 @@ import static java.nio.charset.StandardCharsets.UTF_8;
 
 import com.google.common.annotations.VisibleForTesting;
 import com.google.common.base.MoreObjects;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.RemovalListener;
+import com.google.common.cache.RemovalNotification;
 import com.google.common.collect.MapMaker;
 import com.google.common.collect.Sets;
+import com.google.common.util.concurrent.UncheckedExecutionException;
 
 import io.netty.buffer.ByteBuf;
 import io.netty.buffer.ByteBufAllocator;
@@ -43,6 +48,7 @@ import java.io.InputStreamReader;
 import java.io.RandomAccessFile;
 import java.nio.ByteBuffer;
 import java.nio.channels.AsynchronousCloseException;
+import java.nio.channels.ClosedChannelException;
 import java.nio.channels.FileChannel;
 import java.util.ArrayList;
 import java.util.Collections;
@@ -54,6 +60,7 @@ import java.util.TreeMap;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutionException;
 
 import org.apache.bookkeeper.conf.ServerConfiguration;
 import org.apache.bookkeeper.stats.NullStatsLogger;
@@ -250,6 +257,9 @@ public class EntryLogger {
      * </pre>
      */
     static final int LOGFILE_HEADER_SIZE = 1024;
+
+    // Max number of bytes moved with a single transfer during compaction
+    private static final long MAX_COMPACTION_TRANSFER_SIZE = 8 * 1024 * 1024;
     final ByteBuf logfileHeader = Unpooled.buffer(LOGFILE_HEADER_SIZE);
 
     static final int HEADER_VERSION_POSITION = 4;
@@ -284,6 +294,12 @@ public class EntryLogger {
 
     private final ByteBufAllocator allocator;
 
+    static final String ENTRY_LOG_READ_MODE_BUFFERED = "buffered";
+    static final String ENTRY_LOG_READ_MODE_PREAD = "pread";
+    static final String ENTRY_LOG_READ_MODE_MMAP = "mmap";
+
+    private final String readMode;
+
     final ServerConfiguration conf;
     /**
      * Scan entries in a entry log file.
@@ -313,6 +329,60 @@ public class EntryLogger {
         void process(long ledgerId, long offset, ByteBuf entry) throws IOException;
     }
 
+    /**
+     * Consumer of the entries read sequentially from an entry log.
+     */
+    public interface SequentialEntryConsumer {
+        /**
+         * Process an entry.
+         *
+         * @param ledgerId
+         *          Ledger ID.
+         * @param entryId
+         *          Entry ID.
+         * @param location
+         *          Location of the entry, as returned by {@link #addEntry(long, ByteBuf, boolean)}
+         * @param entry
+         *          Entry ByteBuf, only valid for the duration of the call
+         * @return true to continue reading the following entry, false to stop
+         * @throws IOException
+         */
+        boolean accept(long ledgerId, long entryId, long location, ByteBuf entry) throws IOException;
+    }
+
+    /**
+     * Scanner of the entries transferred from an entry log to the compaction log.
+     */
+    interface CompactionTransferScanner {
+        /**
+         * Tests whether the entries of the ledger should be transferred.
+         */
+        boolean accept(long ledgerId);
+
+        /**
+         * Process the header of an entry, before it is transferred.
+         *
+         * @param ledgerId
+         *          Ledger ID.
+         * @param entryId
+         *          Entry ID.
+         * @param offset
+         *          File offset of this entry in the entry log.
+         * @param entrySize
+         *          Size of the entry.
+         * @throws IOException to abort the transfer
+         */
+        void process(long ledgerId, long entryId, long offset, int entrySize) throws IOException;
+
+        /**
+         * Notify that an entry has been transferred to the compaction log.
+         *
+         * @param location
+         *          Location of the entry in the compaction log.
+         */
+        void transferred(long ledgerId, long entryId, long location);
+    }
+
     /**
      * Entry Log Listener.
      */
@@ -371,6 +441,31 @@ public class EntryLogger {
                 logId = lastLogId;
             }
         }
+        this.readMode = conf.getEntryLogReadMode();
+        if (ENTRY_LOG_READ_MODE_BUFFERED.equals(readMode)) {
+            this.sharedReadChannels = null;
+        } else if (ENTRY_LOG_READ_MODE_PREAD.equals(readMode) || ENTRY_LOG_READ_MODE_MMAP.equals(readMode)) {
+            this.sharedReadChannels = CacheBuilder.newBuilder()
+                    .maximumSize(conf.getEntryLogMaxOpenReadFiles())
+                    .removalListener(new RemovalListener<Long, BufferedReadChannel>() {
+                        @Override
+                        public void onRemoval(RemovalNotification<Long, BufferedReadChannel> removedChannel) {
+                            BufferedReadChannel channel = removedChannel.getValue();
+                            if (channel != null) {
+                                if (channel instanceof MappedReadChannel) {
+                                    // Don't wait for a garbage collection to unmap the file, which keeps the disk
+                                    // space of a removed entry log allocated
+                                    ((MappedReadChannel) channel).close();
+                                }
+                                IOUtils.close(LOG, channel.fileChannel);
+                            }
+                        }
+                    })
+                    .build();
+        } else {
+            throw new IllegalArgumentException("Invalid entry log read mode: " + readMode);
+        }
+
         this.recentlyCreatedEntryLogsStatus = new RecentEntryLogsStatus(logId + 1);
         this.entryLoggerAllocator = new EntryLoggerAllocator(conf, ledgerDirsManager, recentlyCreatedEntryLogsStatus,
                 logId, allocator);
@@ -415,7 +510,20 @@ public class EntryLogger {
                 }
             }
         }
-        return channel.read(buff, pos);
+
+        int writerIndex = buff.writerIndex();
+        try {
+            return channel.read(buff, pos);
+        } catch (BufferedChannelBase.BufferedChannelClosedException | ClosedChannelException e) {
+            if (sharedReadChannels == null || Thread.currentThread().isInterrupted()) {
+                throw e;
+            }
+
+            // The shared channel was closed while reading because it was evicted from the open files cache. Retry
+            // with a newly opened channel
+            buff.writerIndex(writerIndex);
+            return getChannelForLogId(entryLogId).read(buff, pos);
+        }
     }
 
     /**
@@ -443,6 +551,13 @@ public class EntryLogger {
      */
     private final ConcurrentMap<Long, FileChannel> logid2FileChannel = new ConcurrentHashMap<Long, FileChannel>();
 
+    /**
+     * Read channels shared by all the threads, used instead of the thread-local buffered channels when the entry
+     * logs are read with positional reads or memory mappings. The number of open entry logs is bounded, the least
+     * recently used ones are closed when the limit is reached.
+     */
+    private final Cache<Long, BufferedReadChannel> sharedReadChannels;
+
     /**
      * Put the logId, bc pair in the map responsible for the current thread.
      * @param logId
@@ -458,6 +573,10 @@ public class EntryLogger {
      * @param logId
      */
     public void removeFromChannelsAndClose(long logId) {
+        if (sharedReadChannels != null) {
+            sharedReadChannels.invalidate(logId);
+        }
+
         FileChannel fileChannel = logid2FileChannel.remove(logId);
         if (null != fileChannel) {
             try {
@@ -680,6 +799,111 @@ public class EntryLogger {
         }
     }
 
+    /**
+     * Move the entries of the ledgers accepted by the scanner from an entry log to the current
+     * compaction log, without reading them into memory. Only the entry headers are read; runs of
+     * consecutive accepted entries are then copied between the files with
+     * {@link FileChannel#transferTo}.
+     *
+     * @param entryLogId the id of the entry log to compact
+     * @param scanner the scanner selecting the entries and receiving their new locations
+     * @throws IOException
+     */
+    void transferToCompactionLog(long entryLogId, CompactionTransferScanner scanner) throws IOException {
+        // Buffer where to read the entrySize (4 bytes), the ledgerId (8 bytes) and the entryId (8 bytes)
+        ByteBuffer header = ByteBuffer.allocate(4 + 8 + 8);
+        // Entries of the current run, located by their offset in the entry log
+        List<EntryLocation> run = new ArrayList<>();
+        long runStart = -1;
+        long runEnd = -1;
+
+        // Use a dedicated channel, since the shared read channels can be closed when evicted
+        try (FileChannel src = new RandomAccessFile(findFile(entryLogId), "r").getChannel()) {
+            long size = src.size();
+            long pos = LOGFILE_HEADER_SIZE;
+            while (pos < size) {
+                header.clear();
+                int read = readHeader(src, header, pos);
+                if (read < 4 + 8) {
+                    LOG.warn("Short read for entry header from entrylog {}@{}", entryLogId, pos);
+                    break;
+                }
+                int entrySize = header.getInt(0);
+                long ledgerId = header.getLong(4);
+                if (entrySize < 0) {
+                    LOG.warn("bad read for ledger entry from entryLog {}@{} (entry size {})",
+                            entryLogId, pos, entrySize);
+                    break;
+                }
+
+                long entryEnd = pos + 4 + entrySize;
+                if (ledgerId == INVALID_LID || !scanner.accept(ledgerId)) {
+                    // skip this entry
+                    pos = entryEnd;
+                    continue;
+                }
+                if (read < header.capacity() || entrySize < 8 + 8 || entryEnd > size) {
+                    LOG.warn("Short read for ledger entry from entryLog {}@{} (entry size {})",
+                            entryLogId, pos, entrySize);
+                    break;
+                }
+                long entryId = header.getLong(4 + 8);
+                scanner.process(ledgerId, entryId, pos, entrySize);
+
+                // Start a new run when the entry doesn't follow the previous one
+                if (runStart >= 0 && (pos != runEnd || entryEnd - runStart > MAX_COMPACTION_TRANSFER_SIZE)) {
+                    transferRun(src, run, runStart, runEnd, scanner);
+                    runStart = -1;
+                }
+                if (runStart < 0) {
+                    runStart = pos;
+                }
+                run.add(new EntryLocation(ledgerId, entryId, pos));
+                runEnd = entryEnd;
+                pos = entryEnd;
+            }
+
+            if (!run.isEmpty()) {
+                transferRun(src, run, runStart, runEnd, scanner);
+            }
+        }
+    }
+
+    private static int readHeader(FileChannel fc, ByteBuffer header, long pos) throws IOException {
+        while (header.hasRemaining()) {
+            if (fc.read(header, pos + header.position()) < 0) {
+                break;
+            }
+        }
+        return header.position();
+    }
+
+    private void transferRun(FileChannel src, List<EntryLocation> run, long runStart, long runEnd,
+                             CompactionTransferScanner scanner) throws IOException {
+        long logId;
+        long newRunStart;
+        synchronized (compactionLogLock) {
+            if (compactionLogChannel == null) {
+                createNewCompactionLog();
+            }
+            logId = compactionLogChannel.getLogId();
+            newRunStart = compactionLogChannel.position();
+            compactionLogChannel.transferFrom(src, runStart, runEnd - runStart);
+            for (int i = 0; i < run.size(); i++) {
+                long entryOffset = run.get(i).location;
+                long nextEntryOffset = i + 1 < run.size() ? run.get(i + 1).location : runEnd;
+                compactionLogChannel.registerWrittenEntry(run.get(i).ledger, nextEntryOffset - entryOffset);
+            }
+        }
+
+        for (EntryLocation entry : run) {
+            // The location points to the entry data, after its size
+            long newPos = newRunStart + (entry.location - runStart) + 4;
+            scanner.transferred(entry.ledger, entry.entry, (logId << 32L) | newPos);
+        }
+        run.clear();
+    }
+
     static long logIdForOffset(long offset) {
         return offset >> 32L;
     }
@@ -860,6 +1084,109 @@ public class EntryLogger {
         return internalReadEntry(ledgerId, entryId, location, true /* validateEntry */);
     }
 
+    /**
+     * Read the entries that are stored contiguously in an entry log, starting from the given location.
+     *
+     * <p>When the entry log is no longer written, the whole range is fetched with a single large read instead of
+     * reading each entry individually. The reading stops at the end of the range, at the end of the entry log or
+     * when the consumer returns false.
+     *
+     * @param location
+     *          location of the first entry to read
+     * @param maxBytes
+     *          maximum number of bytes to read from the entry log
+     * @param consumer
+     *          consumer of the entries
+     * @return the number of entries that were read
+     */
+    public int readEntriesSequentially(long location, int maxBytes, SequentialEntryConsumer consumer)
+            throws IOException {
+        long entryLogId = logIdForOffset(location);
+
+        if (entryLogManager.getCurrentLogIfPresent(entryLogId) != null) {
+            // The entry log is still being written, read one entry at a time to never go past the written data
+            return readEntriesOneByOne(location, maxBytes, consumer);
+        }
+
+        // Position of the size header of the first entry
+        long startPos = posForOffset(location) - 4;
+        BufferedReadChannel channel = getChannelForLogId(entryLogId);
+        if (sharedReadChannels == null) {
+            // Bypass the small read buffer of the per-thread channel, since the whole range is read at once
+            FileChannel fc = logid2FileChannel.get(entryLogId);
+            if (fc == null) {
+                throw new IOException("Entry log " + entryLogId + " has been closed");
+            }
+            channel = new PositionalReadChannel(fc);
+        }
+
+        ByteBuf buffer = allocator.directBuffer(maxBytes, maxBytes);
+        try {
+            if (readFromLogChannel(entryLogId, channel, buffer, startPos) <= 0) {
+                // Reached the end of the entry log
+                return 0;
+            }
+
+            int count = 0;
+            while (buffer.readableBytes() >= 4) {
+                int entrySize = buffer.getInt(buffer.readerIndex());
+                if (entrySize < MIN_SANE_ENTRY_SIZE || buffer.readableBytes() - 4 < entrySize) {
+                    // Partial entry at the end of the range
+                    break;
+                }
+
+                buffer.skipBytes(4);
+                long entryLocation = (entryLogId << 32L) | (startPos + buffer.readerIndex());
+                ByteBuf entry = buffer.slice(buffer.readerIndex(), entrySize);
+                if (!consumer.accept(entry.getLong(0), entry.getLong(8), entryLocation, entry)) {
+                    break;
+                }
+
+                buffer.skipBytes(entrySize);
+                count++;
+            }
+
+            return count;
+        } finally {
+            buffer.release();
+        }
+    }
+
+    private int readEntriesOneByOne(long location, int maxBytes, SequentialEntryConsumer consumer)
+            throws IOException {
+        long entryLogId = logIdForOffset(location);
+        long currentLocation = location;
+        int count = 0;
+        long size = 0;
+
+        while (size < maxBytes && logIdForOffset(currentLocation) == entryLogId) {
+            ByteBuf entry;
+            try {
+                entry = internalReadEntry(INVALID_LID, INVALID_LID, currentLocation, false /* validateEntry */);
+            } catch (IOException e) {
+                // Reached the end of the written data
+                if (LOG.isDebugEnabled()) {
+                    LOG.debug("Stopped sequential read of entry log {} at {}", entryLogId, currentLocation, e);
+                }
+                break;
+            }
+
+            try {
+                if (!consumer.accept(entry.getLong(0), entry.getLong(8), currentLocation, entry)) {
+                    break;
+                }
+
+                count++;
+                size += 4 + entry.readableBytes();
+                currentLocation += 4 + entry.readableBytes();
+            } finally {
+                entry.release();
+            }
+        }
+
+        return count;
+    }
+
     /**
      * Read the header of an entry log.
      */
@@ -888,6 +1215,10 @@ public class EntryLogger {
     }
 
     private BufferedReadChannel getChannelForLogId(long entryLogId) throws IOException {
+        if (sharedReadChannels != null) {
+            return getSharedChannelForLogId(entryLogId);
+        }
+
         BufferedReadChannel fc = getFromChannels(entryLogId);
         if (fc != null) {
             return fc;
@@ -908,6 +1239,40 @@ public class EntryLogger {
         return fc;
     }
 
+    private BufferedReadChannel getSharedChannelForLogId(long entryLogId) throws IOException {
+        BufferedReadChannel channel = sharedReadChannels.getIfPresent(entryLogId);
+        if (channel != null) {
+            return channel;
+        }
+
+        try {
+            return sharedReadChannels.get(entryLogId, () -> openSharedChannel(entryLogId));
+        } catch (ExecutionException | UncheckedExecutionException e) {
+            if (e.getCause() instanceof IOException) {
+                throw (IOException) e.getCause();
+            }
+            throw new IOException("Failed to open entry log " + entryLogId, e.getCause());
+        }
+    }
+
+    private BufferedReadChannel openSharedChannel(long entryLogId) throws IOException {
+        File file = findFile(entryLogId);
+        FileChannel fc = new RandomAccessFile(file, "r").getChannel();
+        try {
+            if (ENTRY_LOG_READ_MODE_MMAP.equals(readMode)
+                    && entryLogManager.getCurrentLogIfPresent(entryLogId) == null
+                    && fc.size() <= Integer.MAX_VALUE) {
+                // The entry log is not being written anymore, so its content is immutable and it can be mapped
+                return new MappedReadChannel(fc);
+            } else {
+                return new PositionalReadChannel(fc);
+            }
+        } catch (IOException e) {
+            IOUtils.close(LOG, fc);
+            throw e;
+        }
+    }
+
     /**
      * Whether the log file exists or not.
      */
@@ -1166,6 +1531,9 @@ public class EntryLogger {
             }
             // clear the mapping, so we don't need to go through the channels again in finally block in normal case.
             logid2FileChannel.clear();
+            if (sharedReadChannels != null) {
+                sharedReadChannels.invalidateAll();
+            }
             entryLogManager.close();
             synchronized (compactionLogLock) {
                 if (compactionLogChannel != null) {
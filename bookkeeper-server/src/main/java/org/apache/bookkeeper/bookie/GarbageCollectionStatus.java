@@ -44,4 +44,21 @@ public class GarbageCollectionStatus {
     private long lastMinorCompactionTime;
     private long majorCompactionCounter;
     private long minorCompactionCounter;
+
+    // the entry log being compacted, -1 if none.
+    private long compactingEntryLogId;
+    // the number of entry logs selected by the current compaction, and those already compacted.
+    private int entryLogsToCompact;
+    private int entryLogsCompacted;
+    // the space reclaimed so far by the current or last compaction.
+    private long compactionReclaimedBytes;
+
+    // whether the compaction rate is lowered because of the foreground latency.
+    private boolean compactionThrottled;
+    // the fraction of the configured compaction rate currently allowed.
+    private double compactionRateFactor;
+    // the current compaction rate, in bytes or entries per second.
+    private double compactionRate;
+    // the foreground latency observed at the last compaction rate adjustment.
+    private long foregroundLatencyMicros;
 }
@@ -24,21 +24,22 @@ package org.apache.bookkeeper.bookie;
 import com.google.common.annotations.VisibleForTesting;
 import io.netty.util.concurrent.DefaultThreadFactory;
 
+import java.io.File;
 import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Comparator;
 import java.util.List;
-import java.util.Map;
-import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.Executors;
 import java.util.concurrent.Future;
 import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import java.util.concurrent.atomic.AtomicLong;
 import org.apache.bookkeeper.bookie.GarbageCollector.GarbageCleaner;
 import org.apache.bookkeeper.bookie.stats.GarbageCollectorStats;
+import org.apache.bookkeeper.bookie.storage.ldb.PersistentEntryLogMetadataMap;
 import org.apache.bookkeeper.conf.ServerConfiguration;
 import org.apache.bookkeeper.meta.LedgerManager;
 import org.apache.bookkeeper.stats.StatsLogger;
@@ -56,7 +57,9 @@ public class GarbageCollectorThread extends SafeRunnable {
     private static final int SECOND = 1000;
 
     // Maps entry log files to the set of ledgers that comprise the file and the size usage per ledger
-    private Map<Long, EntryLogMetadata> entryLogMetaMap = new ConcurrentHashMap<Long, EntryLogMetadata>();
+    private final EntryLogMetadataMap entryLogMetaMap;
+    // Whether the entry logs of the map have been checked to still exist, since a persisted map can outlive them
+    private boolean entryLogMetaMapVerified;
 
     private final ScheduledExecutorService gcExecutor;
     Future<?> scheduledFuture = null;
@@ -80,6 +83,7 @@ public class GarbageCollectorThread extends SafeRunnable {
     // Entry Logger Handle
     final EntryLogger entryLogger;
     final AbstractLogCompactor compactor;
+    final CompactionScheduler compactionScheduler;
 
     // Stats loggers for garbage collection operations
     private final GarbageCollectorStats gcStats;
@@ -97,6 +101,12 @@ public class GarbageCollectorThread extends SafeRunnable {
     final AtomicBoolean minorCompacting = new AtomicBoolean(false);
     final AtomicBoolean majorCompacting = new AtomicBoolean(false);
 
+    // progress of the current compaction run
+    private volatile long compactingEntryLogId = -1;
+    private volatile int entryLogsToCompact;
+    private volatile int entryLogsCompacted;
+    private volatile long compactionReclaimedBytes;
+
     volatile boolean running = true;
 
     // track the last scanned successfully log id
@@ -140,12 +150,46 @@ public class GarbageCollectorThread extends SafeRunnable {
                                   StatsLogger statsLogger,
                                   ScheduledExecutorService gcExecutor)
         throws IOException {
+        this(conf, ledgerManager, ledgerStorage, statsLogger, gcExecutor, new CompactionScheduler(conf));
+    }
+
+    /**
+     * Create a garbage collector thread that shares the compaction scheduler with the
+     * garbage collector threads of the other directories of the ledger storage.
+     *
+     * @param conf
+     *          Server Configuration Object.
+     * @param compactionScheduler
+     *          Scheduler of the compactions of the ledger storage.
+     * @throws IOException
+     */
+    public GarbageCollectorThread(ServerConfiguration conf,
+                                  LedgerManager ledgerManager,
+                                  final CompactableLedgerStorage ledgerStorage,
+                                  StatsLogger statsLogger,
+                                  CompactionScheduler compactionScheduler)
+        throws IOException {
+        this(conf, ledgerManager, ledgerStorage, statsLogger,
+                Executors.newSingleThreadScheduledExecutor(new DefaultThreadFactory("GarbageCollectorThread")),
+                compactionScheduler);
+    }
+
+    private GarbageCollectorThread(ServerConfiguration conf,
+                                   LedgerManager ledgerManager,
+                                   final CompactableLedgerStorage ledgerStorage,
+                                   StatsLogger statsLogger,
+                                   ScheduledExecutorService gcExecutor,
+                                   CompactionScheduler compactionScheduler)
+        throws IOException {
         this.gcExecutor = gcExecutor;
         this.conf = conf;
+        this.compactionScheduler = compactionScheduler;
 
         this.entryLogger = ledgerStorage.getEntryLogger();
         this.ledgerStorage = ledgerStorage;
         this.gcWaitTime = conf.getGcWaitTime();
+        this.entryLogMetaMap = createEntryLogMetadataMap();
+        this.entryLogMetaMapVerified = !conf.isGcEntryLogMetadataCacheEnabled();
 
         this.numActiveEntryLogs = 0;
         this.totalEntryLogSize = 0L;
@@ -183,9 +227,11 @@ public class GarbageCollectorThread extends SafeRunnable {
             }
         };
         if (conf.getUseTransactionalCompaction()) {
-            this.compactor = new TransactionalEntryLogCompactor(conf, entryLogger, ledgerStorage, remover);
+            this.compactor = new TransactionalEntryLogCompactor(conf, entryLogger, ledgerStorage,
+                    compactionScheduler.getThrottler(), remover);
         } else {
-            this.compactor = new EntryLogCompactor(conf, entryLogger, ledgerStorage, remover);
+            this.compactor = new EntryLogCompactor(conf, entryLogger, ledgerStorage,
+                    compactionScheduler.getThrottler(), remover);
         }
 
         if (minorCompactionInterval > 0 && minorCompactionThreshold > 0) {
@@ -230,6 +276,15 @@ public class GarbageCollectorThread extends SafeRunnable {
         lastMinorCompactionTime = lastMajorCompactionTime = System.currentTimeMillis();
     }
 
+    private EntryLogMetadataMap createEntryLogMetadataMap() throws IOException {
+        if (conf.isGcEntryLogMetadataCacheEnabled()) {
+            File baseDir = entryLogger.getLedgerDirsManager().getAllLedgerDirs().get(0);
+            return new PersistentEntryLogMetadataMap(new File(baseDir, "entrylogs").getPath(), conf);
+        } else {
+            return new InMemoryEntryLogMetadataMap();
+        }
+    }
+
     public void enableForceGC() {
         if (forceGarbageCollection.compareAndSet(false, true)) {
             LOG.info("Forced garbage collection triggered by thread: {}", Thread.currentThread().getName());
@@ -325,7 +380,7 @@ public class GarbageCollectorThread extends SafeRunnable {
 
         // Extract all of the ledger ID's that comprise all of the entry logs
         // (except for the current new one which is still being written to).
-        entryLogMetaMap = extractMetaFromEntryLogs(entryLogMetaMap);
+        extractMetaFromEntryLogs();
 
         // gc inactive/deleted ledgers
         doGcLedgers();
@@ -386,23 +441,60 @@ public class GarbageCollectorThread extends SafeRunnable {
     private void doGcEntryLogs() {
         // Get a cumulative count, don't update until complete
         AtomicLong totalEntryLogSizeAcc = new AtomicLong(0L);
+        AtomicInteger numActiveEntryLogsAcc = new AtomicInteger(0);
 
         // Loop through all of the entry logs and remove the non-active ledgers.
-        entryLogMetaMap.forEach((entryLogId, meta) -> {
-           removeIfLedgerNotExists(meta);
-           if (meta.isEmpty()) {
-               // This means the entry log is not associated with any active ledgers anymore.
-               // We can remove this entry log file now.
-               LOG.info("Deleting entryLogId " + entryLogId + " as it has no active ledgers!");
-               removeEntryLog(entryLogId);
-               gcStats.getReclaimedSpaceViaDeletes().add(meta.getTotalSize());
-           }
-
-           totalEntryLogSizeAcc.getAndAdd(meta.getRemainingSize());
-        });
+        try {
+            entryLogMetaMap.forEach((entryLogId, meta) -> {
+               if (!entryLogMetaMapVerified && !entryLogger.logExists(entryLogId)) {
+                   // The entry log was removed before its persisted metadata
+                   LOG.info("Removing metadata of entry log {} which doesn't exist anymore", entryLogId);
+                   removeEntryLogMetadata(entryLogId);
+                   return;
+               }
+
+               long priorRemainingSize = meta.getRemainingSize();
+               removeIfLedgerNotExists(meta);
+               if (meta.isEmpty()) {
+                   // This means the entry log is not associated with any active ledgers anymore.
+                   // We can remove this entry log file now.
+                   LOG.info("Deleting entryLogId " + entryLogId + " as it has no active ledgers!");
+                   removeEntryLog(entryLogId);
+                   gcStats.getReclaimedSpaceViaDeletes().add(meta.getTotalSize());
+               } else {
+                   if (meta.getRemainingSize() != priorRemainingSize) {
+                       // Update the usage of the entry log, without having to extract it again
+                       updateEntryLogMetadata(entryLogId, meta);
+                   }
+                   numActiveEntryLogsAcc.incrementAndGet();
+               }
+
+               totalEntryLogSizeAcc.getAndAdd(meta.getRemainingSize());
+            });
+            entryLogMetaMapVerified = true;
+        } catch (IOException e) {
+            LOG.error("Failed to read the entry logs metadata", e);
+            return;
+        }
 
         this.totalEntryLogSize = totalEntryLogSizeAcc.get();
-        this.numActiveEntryLogs = entryLogMetaMap.keySet().size();
+        this.numActiveEntryLogs = numActiveEntryLogsAcc.get();
+    }
+
+    private void updateEntryLogMetadata(long entryLogId, EntryLogMetadata meta) {
+        try {
+            entryLogMetaMap.put(entryLogId, meta);
+        } catch (IOException e) {
+            LOG.error("Failed to update the metadata of entry log {}", entryLogId, e);
+        }
+    }
+
+    private void removeEntryLogMetadata(long entryLogId) {
+        try {
+            entryLogMetaMap.remove(entryLogId);
+        } catch (IOException e) {
+            LOG.error("Failed to remove the metadata of entry log {}", entryLogId, e);
+        }
     }
 
     private void removeIfLedgerNotExists(EntryLogMetadata meta) {
@@ -421,8 +513,8 @@ public class GarbageCollectorThread extends SafeRunnable {
      * Compact entry logs if necessary.
      *
      * <p>
-     * Compaction will be executed from low unused space to high unused space.
-     * Those entry log files whose remaining size percentage is higher than threshold
+     * Compaction will be executed from the best to the worst ratio of reclaimed space per byte
+     * of I/O. Those entry log files whose remaining size percentage is higher than threshold
      * would not be compacted.
      * </p>
      */
@@ -430,40 +522,84 @@ public class GarbageCollectorThread extends SafeRunnable {
     void doCompactEntryLogs(double threshold) {
         LOG.info("Do compaction to compact those files lower than {}", threshold);
 
-        // sort the ledger meta by usage in ascending order.
-        List<EntryLogMetadata> logsToCompact = new ArrayList<EntryLogMetadata>();
-        logsToCompact.addAll(entryLogMetaMap.values());
-        logsToCompact.sort(Comparator.comparing(EntryLogMetadata::getUsage));
-
         final int numBuckets = 10;
         int[] entryLogUsageBuckets = new int[numBuckets];
 
-        for (EntryLogMetadata meta : logsToCompact) {
-            int bucketIndex = Math.min(
-                    numBuckets - 1,
-                    (int) Math.ceil(meta.getUsage() * numBuckets));
-            entryLogUsageBuckets[bucketIndex]++;
+        // Only keep the metadata of the entry logs to compact, since the map might not be on heap
+        List<EntryLogMetadata> logsToCompact = new ArrayList<EntryLogMetadata>();
+        try {
+            entryLogMetaMap.forEach((entryLogId, meta) -> {
+                int bucketIndex = Math.min(
+                        numBuckets - 1,
+                        (int) Math.ceil(meta.getUsage() * numBuckets));
+                entryLogUsageBuckets[bucketIndex]++;
+
+                if (meta.getUsage() < threshold) {
+                    logsToCompact.add(meta);
+                }
+            });
+        } catch (IOException e) {
+            LOG.error("Failed to read the entry logs metadata", e);
+            return;
+        }
 
-            if (meta.getUsage() >= threshold) {
-                continue;
-            }
-            if (LOG.isDebugEnabled()) {
-                LOG.debug("Compacting entry log {} below threshold {}", meta.getEntryLogId(), threshold);
-            }
+        // sort the ledger meta by reclaim ratio in descending order, then by reclaimed space.
+        logsToCompact.sort(Comparator.comparingDouble(GarbageCollectorThread::getReclaimRatio)
+                .thenComparingLong(meta -> meta.getTotalSize() - meta.getRemainingSize())
+                .reversed());
 
-            long priorRemainingSize = meta.getRemainingSize();
-            compactEntryLog(meta);
-            gcStats.getReclaimedSpaceViaCompaction().add(meta.getTotalSize() - priorRemainingSize);
+        entryLogsToCompact = logsToCompact.size();
+        entryLogsCompacted = 0;
+        compactionReclaimedBytes = 0;
+        try {
+            for (EntryLogMetadata meta : logsToCompact) {
+                if (LOG.isDebugEnabled()) {
+                    LOG.debug("Compacting entry log {} below threshold {}", meta.getEntryLogId(), threshold);
+                }
 
-            if (!running) { // if gc thread is not running, stop compaction
-                return;
+                try {
+                    compactionScheduler.acquireCompactionSlot();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+                long priorRemainingSize = meta.getRemainingSize();
+                try {
+                    if (!running) { // if gc thread is not running, stop compaction
+                        return;
+                    }
+                    compactingEntryLogId = meta.getEntryLogId();
+                    compactEntryLog(meta);
+                } finally {
+                    compactingEntryLogId = -1;
+                    compactionScheduler.releaseCompactionSlot();
+                }
+                gcStats.getReclaimedSpaceViaCompaction().add(meta.getTotalSize() - priorRemainingSize);
+                entryLogsCompacted++;
+                compactionReclaimedBytes += meta.getTotalSize() - priorRemainingSize;
+
+                if (!running) { // if gc thread is not running, stop compaction
+                    return;
+                }
             }
+        } finally {
+            entryLogsToCompact = 0;
         }
         LOG.info(
                 "Compaction: entry log usage buckets[10% 20% 30% 40% 50% 60% 70% 80% 90% 100%] = {}",
                 entryLogUsageBuckets);
     }
 
+    /**
+     * Get the space reclaimed by compacting an entry log per byte of I/O, given that the whole
+     * entry log is read and its remaining entries are written again.
+     */
+    private static double getReclaimRatio(EntryLogMetadata meta) {
+        long totalSize = meta.getTotalSize();
+        long remainingSize = meta.getRemainingSize();
+        return totalSize > 0 ? (double) (totalSize - remainingSize) / (totalSize + remainingSize) : 0;
+    }
+
     /**
      * Shutdown the garbage collector thread.
      *
@@ -480,6 +616,16 @@ public class GarbageCollectorThread extends SafeRunnable {
 
         // Interrupt GC executor thread
         gcExecutor.shutdownNow();
+
+        if (gcExecutor.awaitTermination(gcWaitTime, TimeUnit.MILLISECONDS)) {
+            try {
+                entryLogMetaMap.close();
+            } catch (IOException e) {
+                LOG.warn("Failed to close the entry logs metadata", e);
+            }
+        } else {
+            LOG.warn("GC executor didn't terminate, leaving the entry logs metadata open");
+        }
     }
 
     /**
@@ -492,7 +638,7 @@ public class GarbageCollectorThread extends SafeRunnable {
         // remove entry log file successfully
         if (entryLogger.removeEntryLog(entryLogId)) {
             LOG.info("Removing entry log metadata for {}", entryLogId);
-            entryLogMetaMap.remove(entryLogId);
+            removeEntryLogMetadata(entryLogId);
         }
     }
 
@@ -527,32 +673,28 @@ public class GarbageCollectorThread extends SafeRunnable {
     /**
      * Method to read in all of the entry logs (those that we haven't done so yet),
      * and find the set of ledger ID's that make up each entry log file.
-     *
-     * @param entryLogMetaMap
-     *          Existing EntryLogs to Meta
-     * @throws IOException
      */
-    protected Map<Long, EntryLogMetadata> extractMetaFromEntryLogs(Map<Long, EntryLogMetadata> entryLogMetaMap) {
+    protected void extractMetaFromEntryLogs() {
         // Extract it for every entry log except for the current one.
         // Entry Log ID's are just a long value that starts at 0 and increments
         // by 1 when the log fills up and we roll to a new one.
         long curLogId = entryLogger.getLeastUnflushedLogId();
         boolean hasExceptionWhenScan = false;
         for (long entryLogId = scannedLogId; entryLogId < curLogId; entryLogId++) {
-            // Comb the current entry log file if it has not already been extracted.
-            if (entryLogMetaMap.containsKey(entryLogId)) {
-                continue;
-            }
+            try {
+                // Comb the current entry log file if it has not already been extracted.
+                if (entryLogMetaMap.containsKey(entryLogId)) {
+                    continue;
+                }
 
-            // check whether log file exists or not
-            // if it doesn't exist, this log file might have been garbage collected.
-            if (!entryLogger.logExists(entryLogId)) {
-                continue;
-            }
+                // check whether log file exists or not
+                // if it doesn't exist, this log file might have been garbage collected.
+                if (!entryLogger.logExists(entryLogId)) {
+                    continue;
+                }
 
-            LOG.info("Extracting entry log meta from entryLogId: {}", entryLogId);
+                LOG.info("Extracting entry log meta from entryLogId: {}", entryLogId);
 
-            try {
                 // Read through the entry log file and extract the entry log meta
                 EntryLogMetadata entryLogMeta = entryLogger.getEntryLogMetadata(entryLogId);
                 removeIfLedgerNotExists(entryLogMeta);
@@ -574,7 +716,10 @@ public class GarbageCollectorThread extends SafeRunnable {
                 ++scannedLogId;
             }
         }
-        return entryLogMetaMap;
+    }
+
+    CompactionScheduler getCompactionScheduler() {
+        return compactionScheduler;
     }
 
     CompactableLedgerStorage getLedgerStorage() {
@@ -590,6 +735,14 @@ public class GarbageCollectorThread extends SafeRunnable {
             .lastMinorCompactionTime(lastMinorCompactionTime)
             .majorCompactionCounter(gcStats.getMajorCompactionCounter().get())
             .minorCompactionCounter(gcStats.getMinorCompactionCounter().get())
+            .compactingEntryLogId(compactingEntryLogId)
+            .entryLogsToCompact(entryLogsToCompact)
+            .entryLogsCompacted(entryLogsCompacted)
+            .compactionReclaimedBytes(compactionReclaimedBytes)
+            .compactionThrottled(compactionScheduler.isThrottled())
+            .compactionRateFactor(compactionScheduler.getRateFactor())
+            .compactionRate(compactionScheduler.getRate())
+            .foregroundLatencyMicros(compactionScheduler.getForegroundLatencyMicros())
             .build();
     }
 }
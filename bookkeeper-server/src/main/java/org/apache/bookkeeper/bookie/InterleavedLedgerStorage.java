@@ -50,6 +50,7 @@ import java.util.PrimitiveIterator.OfLong;
 import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.LongSupplier;
 
 import lombok.Cleanup;
 import lombok.Getter;
@@ -517,6 +518,11 @@ public class InterleavedLedgerStorage implements CompactableLedgerStorage, Entry
         ledgerDeletionListeners.add(listener);
     }
 
+    @Override
+    public void registerForegroundLatencySource(LongSupplier latencyNanos) {
+        gcThread.getCompactionScheduler().addLatencySource(latencyNanos);
+    }
+
     protected void processEntry(long ledgerId, long entryId, ByteBuf entry) throws IOException {
         processEntry(ledgerId, entryId, entry, true);
     }
@@ -61,6 +61,7 @@ import org.apache.bookkeeper.stats.OpStatsLogger;
 import org.apache.bookkeeper.stats.StatsLogger;
 import org.apache.bookkeeper.util.IOUtils;
 import org.apache.bookkeeper.util.MathUtils;
+import org.apache.bookkeeper.util.NativeIO;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -91,10 +92,79 @@ public class Journal extends BookieCriticalThread implements CheckpointSource {
                 int capacity) -> new BufferedChannel(UnpooledByteBufAllocator.DEFAULT, fc, capacity);
 
         BufferedChannel create(FileChannel fc, int capacity) throws IOException;
+
+        default BufferedChannel create(File file, FileChannel fc, int capacity) throws IOException {
+            return create(fc, capacity);
+        }
     }
 
 
 
+    private static final String JOURNAL_WRITER_DIR_PREFIX = "writer-";
+
+    /**
+     * Get the directory of the journal files of a journal writer of a journal directory.
+     *
+     * <p>The first writer uses the journal directory itself, so a bookie with a single writer
+     * per directory keeps the existing layout.
+     *
+     * @param journalDirectory journal directory
+     * @param writerIndex index of the writer within the journal directory
+     * @return the directory of the journal files of the writer
+     */
+    public static File getJournalWriterDirectory(File journalDirectory, int writerIndex) {
+        if (writerIndex == 0) {
+            return journalDirectory;
+        }
+        return new File(journalDirectory, JOURNAL_WRITER_DIR_PREFIX + writerIndex);
+    }
+
+    /**
+     * Get the journal index of a journal writer of a journal directory.
+     *
+     * <p>The journals of the first writers keep the indexes of their journal directories,
+     * so the last log marks of a bookie with a single writer per directory stay valid.
+     *
+     * @param numJournalDirs number of journal directories
+     * @param dirIndex index of the journal directory
+     * @param writerIndex index of the writer within the journal directory
+     * @return the journal index
+     */
+    public static int getJournalIndex(int numJournalDirs, int dirIndex, int writerIndex) {
+        return writerIndex * numJournalDirs + dirIndex;
+    }
+
+    /**
+     * Get the number of journal writers of a journal directory.
+     *
+     * <p>The writer directories left with journal files by a previous run with more writers
+     * per directory are counted as well, so their journals are not skipped on replay.
+     *
+     * @param journalDirectory journal directory
+     * @param numConfiguredWriters configured number of writers per journal directory
+     * @return the number of journal writers of the journal directory
+     */
+    public static int getNumJournalWriters(File journalDirectory, int numConfiguredWriters) {
+        int numWriters = numConfiguredWriters;
+        File[] writerDirs = journalDirectory.listFiles(
+                f -> f.isDirectory() && f.getName().startsWith(JOURNAL_WRITER_DIR_PREFIX));
+        if (writerDirs == null) {
+            return numWriters;
+        }
+        for (File writerDir : writerDirs) {
+            int writerIndex;
+            try {
+                writerIndex = Integer.parseInt(writerDir.getName().substring(JOURNAL_WRITER_DIR_PREFIX.length()));
+            } catch (NumberFormatException nfe) {
+                continue;
+            }
+            if (writerIndex >= numWriters && !listJournalIds(writerDir, null).isEmpty()) {
+                numWriters = writerIndex + 1;
+            }
+        }
+        return numWriters;
+    }
+
     /**
      * List all journal ids by a specified journal id filer.
      *
@@ -297,6 +367,8 @@ public class Journal extends BookieCriticalThread implements CheckpointSource {
      */
     private static class QueueEntry implements Runnable {
         ByteBuf entry;
+        // Consecutive entries journaled and acknowledged together, entryId being the id of the last one
+        List<ByteBuf> batch;
         long ledgerId;
         long entryId;
         WriteCallback cb;
@@ -313,6 +385,7 @@ public class Journal extends BookieCriticalThread implements CheckpointSource {
                 Counter journalCbQueueSize) {
             QueueEntry qe = RECYCLER.get();
             qe.entry = entry;
+            qe.batch = null;
             qe.ackBeforeSync = ackBeforeSync;
             qe.cb = cb;
             qe.ctx = ctx;
@@ -349,6 +422,11 @@ public class Journal extends BookieCriticalThread implements CheckpointSource {
         };
 
         private void recycle() {
+            // Don't retain the entries and the callback while in the recycler
+            entry = null;
+            batch = null;
+            cb = null;
+            ctx = null;
             recyclerHandle.recycle(this);
         }
     }
@@ -379,8 +457,12 @@ public class Journal extends BookieCriticalThread implements CheckpointSource {
                 if (shouldForceWrite) {
                     long startTime = MathUtils.nowInNano();
                     this.logFile.forceWrite(false);
+                    long syncLatencyNanos = MathUtils.elapsedNanos(startTime);
                     journalStats.getJournalSyncStats()
-                        .registerSuccessfulEvent(MathUtils.elapsedNanos(startTime), TimeUnit.NANOSECONDS);
+                        .registerSuccessfulEvent(syncLatencyNanos, TimeUnit.NANOSECONDS);
+                    if (groupCommitController != null) {
+                        groupCommitController.recordSyncLatency(syncLatencyNanos);
+                    }
                 }
                 lastLogMark.setCurLogMark(this.logId, this.lastFlushedPosition);
 
@@ -598,6 +680,8 @@ public class Journal extends BookieCriticalThread implements CheckpointSource {
     final ForceWriteThread forceWriteThread;
     // Time after which we will stop grouping and issue the flush
     private final long maxGroupWaitInNanos;
+    // Adapts the group wait within maxGroupWaitInNanos, null if the group wait is static
+    private final JournalGroupCommitController groupCommitController;
     // Threshold after which we flush any buffered journal entries
     private final long bufferedEntriesThreshold;
     // Threshold after which we flush any buffered journal writes
@@ -608,6 +692,8 @@ public class Journal extends BookieCriticalThread implements CheckpointSource {
     private final boolean removePagesFromCache;
     private final int journalFormatVersionToWrite;
     private final int journalAlignmentSize;
+    // should the journal files be written with direct I/O
+    private final boolean journalDirectIOEnabled;
     // control PageCache flush interval when syncData disabled to reduce disk io util
     private final long journalPageCacheFlushIntervalMSec;
 
@@ -666,10 +752,23 @@ public class Journal extends BookieCriticalThread implements CheckpointSource {
         this.maxBackupJournals = conf.getMaxBackupJournals();
         this.forceWriteThread = new ForceWriteThread(this, conf.getJournalAdaptiveGroupWrites());
         this.maxGroupWaitInNanos = TimeUnit.MILLISECONDS.toNanos(conf.getJournalMaxGroupWaitMSec());
+        if (conf.isJournalAdaptiveGroupCommitEnabled() && maxGroupWaitInNanos > 0) {
+            this.groupCommitController = new JournalGroupCommitController(maxGroupWaitInNanos,
+                    TimeUnit.MILLISECONDS.toNanos(conf.getJournalGroupCommitTargetLatencyMSec()));
+        } else {
+            this.groupCommitController = null;
+        }
         this.bufferedWritesThreshold = conf.getJournalBufferedWritesThreshold();
         this.bufferedEntriesThreshold = conf.getJournalBufferedEntriesThreshold();
         this.journalFormatVersionToWrite = conf.getJournalFormatVersionToWrite();
-        this.journalAlignmentSize = conf.getJournalAlignmentSize();
+        this.journalDirectIOEnabled = conf.isJournalDirectIOEnabled();
+        if (journalDirectIOEnabled && conf.getJournalAlignmentSize() % NativeIO.DIRECT_IO_ALIGNMENT != 0) {
+            LOG.warn("Journal alignment size {} is not a multiple of {} required by direct I/O, using {}",
+                    conf.getJournalAlignmentSize(), NativeIO.DIRECT_IO_ALIGNMENT, NativeIO.DIRECT_IO_ALIGNMENT);
+            this.journalAlignmentSize = NativeIO.DIRECT_IO_ALIGNMENT;
+        } else {
+            this.journalAlignmentSize = conf.getJournalAlignmentSize();
+        }
         this.journalPageCacheFlushIntervalMSec = conf.getJournalPageCacheFlushIntervalMSec();
         if (conf.getNumJournalCallbackThreads() > 0) {
             this.cbThreadPool = Executors.newFixedThreadPool(conf.getNumJournalCallbackThreads(),
@@ -684,7 +783,7 @@ public class Journal extends BookieCriticalThread implements CheckpointSource {
 
         this.removePagesFromCache = conf.getJournalRemovePagesFromCache();
         // read last log mark
-        if (conf.getJournalDirs().length == 1) {
+        if (conf.getJournalDirs().length == 1 && journalIndex == 0) {
             lastMarkFileName = LAST_MARK_DEFAULT_NAME;
         } else {
             lastMarkFileName = LAST_MARK_DEFAULT_NAME + "." + journalIndex;
@@ -696,6 +795,11 @@ public class Journal extends BookieCriticalThread implements CheckpointSource {
 
         // Expose Stats
         this.journalStats = new JournalStats(statsLogger);
+        if (groupCommitController != null) {
+            journalStats.registerGroupCommitGauges(
+                    () -> TimeUnit.NANOSECONDS.toMicros(groupCommitController.getGroupWaitNanos()),
+                    () -> TimeUnit.NANOSECONDS.toMicros(groupCommitController.getSyncLatencyNanos()));
+        }
     }
 
     JournalStats getJournalStats() {
@@ -871,6 +975,30 @@ public class Journal extends BookieCriticalThread implements CheckpointSource {
                 journalStats.getJournalQueueSize()));
     }
 
+    /**
+     * Record the add operations of a batch of consecutive entries of a ledger in the journal.
+     *
+     * <p>The entries are written together in the journal and the callback is invoked once, with the
+     * id of the last entry, when all of them are persisted.
+     */
+    public void logAddEntries(long ledgerId, List<ByteBuf> entries, boolean ackBeforeSync,
+                              WriteCallback cb, Object ctx)
+            throws InterruptedException {
+        ByteBuf lastEntry = entries.get(entries.size() - 1);
+        long lastEntryId = lastEntry.getLong(lastEntry.readerIndex() + 8);
+
+        //Retain entries until they get written to journal
+        entries.forEach(ByteBuf::retain);
+
+        journalStats.getJournalQueueSize().inc();
+        QueueEntry qe = QueueEntry.create(
+                null, ackBeforeSync, ledgerId, lastEntryId, cb, ctx, MathUtils.nowInNano(),
+                journalStats.getJournalAddEntryStats(),
+                journalStats.getJournalQueueSize());
+        qe.batch = entries;
+        queue.put(qe);
+    }
+
     void forceLedger(long ledgerId, WriteCallback cb, Object ctx) {
         journalStats.getJournalQueueSize().inc();
         queue.add(QueueEntry.create(
@@ -919,7 +1047,7 @@ public class Journal extends BookieCriticalThread implements CheckpointSource {
         RecyclableArrayList<QueueEntry> toFlush = entryListRecycler.newInstance();
         int numEntriesToFlush = 0;
         ByteBuf lenBuff = Unpooled.buffer(4);
-        ByteBuf paddingBuff = Unpooled.buffer(2 * conf.getJournalAlignmentSize());
+        ByteBuf paddingBuff = Unpooled.buffer(2 * journalAlignmentSize);
         paddingBuff.writeZero(paddingBuff.capacity());
 
         BufferedChannel bc = null;
@@ -936,6 +1064,8 @@ public class Journal extends BookieCriticalThread implements CheckpointSource {
             long logId = journalIds.isEmpty() ? System.currentTimeMillis() : journalIds.get(journalIds.size() - 1);
             long lastFlushPosition = 0;
             boolean groupWhenTimeout = false;
+            // The current group wait, adapted by the group commit controller if any
+            long groupWaitInNanos = maxGroupWaitInNanos;
 
             long dequeueStartTime = 0L;
             long lastFlushTimeMs = System.currentTimeMillis();
@@ -972,9 +1102,10 @@ public class Journal extends BookieCriticalThread implements CheckpointSource {
                         journalStats.getJournalQueueStats()
                             .registerSuccessfulEvent(MathUtils.elapsedNanos(qe.enqueueTime), TimeUnit.NANOSECONDS);
                     } else {
-                        long pollWaitTimeNanos = maxGroupWaitInNanos
+                        boolean flushWhenEmpty = flushWhenQueueEmpty || groupWaitInNanos <= 0;
+                        long pollWaitTimeNanos = groupWaitInNanos
                                 - MathUtils.elapsedNanos(toFlush.get(0).enqueueTime);
-                        if (flushWhenQueueEmpty || pollWaitTimeNanos < 0) {
+                        if (flushWhenEmpty || pollWaitTimeNanos < 0) {
                             pollWaitTimeNanos = 0;
                         }
                         qe = queue.poll(pollWaitTimeNanos, TimeUnit.NANOSECONDS);
@@ -988,12 +1119,12 @@ public class Journal extends BookieCriticalThread implements CheckpointSource {
                         boolean shouldFlush = false;
                         // We should issue a forceWrite if any of the three conditions below holds good
                         // 1. If the oldest pending entry has been pending for longer than the max wait time
-                        if (maxGroupWaitInNanos > 0 && !groupWhenTimeout && (MathUtils
-                                .elapsedNanos(toFlush.get(0).enqueueTime) > maxGroupWaitInNanos)) {
+                        if (groupWaitInNanos > 0 && !groupWhenTimeout && (MathUtils
+                                .elapsedNanos(toFlush.get(0).enqueueTime) > groupWaitInNanos)) {
                             groupWhenTimeout = true;
-                        } else if (maxGroupWaitInNanos > 0 && groupWhenTimeout
+                        } else if (groupWaitInNanos > 0 && groupWhenTimeout
                             && (qe == null // no entry to group
-                                || MathUtils.elapsedNanos(qe.enqueueTime) < maxGroupWaitInNanos)) {
+                                || MathUtils.elapsedNanos(qe.enqueueTime) < groupWaitInNanos)) {
                             // when group timeout, it would be better to look forward, as there might be lots of
                             // entries already timeout
                             // due to a previous slow write (writing to filesystem which impacted by force write).
@@ -1010,7 +1141,7 @@ public class Journal extends BookieCriticalThread implements CheckpointSource {
                             groupWhenTimeout = false;
                             shouldFlush = true;
                             journalStats.getFlushMaxOutstandingBytesCounter().inc();
-                        } else if (qe == null && flushWhenQueueEmpty) {
+                        } else if (qe == null && flushWhenEmpty) {
                             // We should get here only if we flushWhenQueueEmpty is true else we would wait
                             // for timeout that would put is past the maxWait threshold
                             // 3. If the queue is empty i.e. no benefit of grouping. This happens when we have one
@@ -1055,6 +1186,10 @@ public class Journal extends BookieCriticalThread implements CheckpointSource {
                                 .registerSuccessfulValue(numEntriesToFlush);
                             journalStats.getForceWriteBatchBytesStats()
                                 .registerSuccessfulValue(batchSize);
+                            if (groupCommitController != null) {
+                                groupWaitInNanos = groupCommitController.onFlush(toFlush.size(),
+                                        MathUtils.nowInNano());
+                            }
 
                             boolean shouldRolloverJournal = (lastFlushPosition > maxJournalSize);
                             // Trigger data sync to disk in the "Force-Write" thread.
@@ -1107,21 +1242,13 @@ public class Journal extends BookieCriticalThread implements CheckpointSource {
                      * (METAENTRY_ID_LEDGER_EXPLICITLAC) to Journal.
                      */
                     qe.entry.release();
+                } else if (qe.batch != null) {
+                    // The entries of a batch are written back to back, so that they are part of the same flush
+                    for (int i = 0; i < qe.batch.size(); i++) {
+                        batchSize += writeJournalEntry(logFile, bc, lenBuff, qe.batch.get(i));
+                    }
                 } else if (qe.entryId != Bookie.METAENTRY_ID_FORCE_LEDGER) {
-                    int entrySize = qe.entry.readableBytes();
-                    journalStats.getJournalWriteBytes().add(entrySize);
-
-                    batchSize += (4 + entrySize);
-
-                    lenBuff.clear();
-                    lenBuff.writeInt(entrySize);
-
-                    // preAlloc based on size
-                    logFile.preAllocIfNeeded(4 + entrySize);
-
-                    bc.write(lenBuff);
-                    bc.write(qe.entry);
-                    qe.entry.release();
+                    batchSize += writeJournalEntry(logFile, bc, lenBuff, qe.entry);
                 }
 
                 toFlush.add(qe);
@@ -1144,7 +1271,32 @@ public class Journal extends BookieCriticalThread implements CheckpointSource {
         LOG.info("Journal exited loop!");
     }
 
+    /**
+     * Write an entry to the journal file, prefixed by its length, and release it.
+     *
+     * @return the number of bytes written
+     */
+    private int writeJournalEntry(JournalChannel logFile, BufferedChannel bc, ByteBuf lenBuff, ByteBuf entry)
+            throws IOException {
+        int entrySize = entry.readableBytes();
+        journalStats.getJournalWriteBytes().add(entrySize);
+
+        lenBuff.clear();
+        lenBuff.writeInt(entrySize);
+
+        // preAlloc based on size
+        logFile.preAllocIfNeeded(4 + entrySize);
+
+        bc.write(lenBuff);
+        bc.write(entry);
+        entry.release();
+        return 4 + entrySize;
+    }
+
     public BufferedChannelBuilder getBufferedChannelBuilder() {
+        if (journalDirectIOEnabled) {
+            return new DirectIOBufferedChannel.Builder(allocator);
+        }
         return (FileChannel fc, int capacity) -> new BufferedChannel(allocator, fc, capacity);
     }
 
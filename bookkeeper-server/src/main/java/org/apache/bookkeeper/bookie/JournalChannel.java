@@ -175,10 +175,10 @@ class JournalChannel implements Closeable {
             bb.clear();
             fc.write(bb);
 
-            bc = bcBuilder.create(fc, writeBufferSize);
+            bc = bcBuilder.create(fn, fc, writeBufferSize);
             forceWrite(true);
             nextPrealloc = this.preAllocSize;
-            fc.write(zeros, nextPrealloc - journalAlignSize);
+            preAllocate(nextPrealloc);
         } else {  // open an existing file
             randomAccessFile = new RandomAccessFile(fn, "r");
             fc = openFileChannel(randomAccessFile);
@@ -251,11 +251,21 @@ class JournalChannel implements Closeable {
     void preAllocIfNeeded(long size) throws IOException {
         if (bc.position() + size > nextPrealloc) {
             nextPrealloc += preAllocSize;
-            zeros.clear();
-            fc.write(zeros, nextPrealloc - journalAlignSize);
+            preAllocate(nextPrealloc);
         }
     }
 
+    private void preAllocate(long size) throws IOException {
+        // Direct I/O channels allocate the space without writing it through the page cache, which would mix
+        // buffered and direct writes in the same file
+        if (bc instanceof DirectIOBufferedChannel) {
+            ((DirectIOBufferedChannel) bc).preallocate(size - preAllocSize, preAllocSize);
+            return;
+        }
+        zeros.clear();
+        fc.write(zeros, size - journalAlignSize);
+    }
+
     int read(ByteBuffer dst)
             throws IOException {
         return fc.read(dst);
@@ -0,0 +1,111 @@
+/**
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *
+ */
+
+package org.apache.bookkeeper.bookie;
+
+/**
+ * Adaptive controller of the group commit window of the {@link Journal}.
+ *
+ * <p>The controller keeps moving averages of the force write latency, reported by the force
+ * write thread, and of the arrival rate of entries, observed by the journal thread at each flush.
+ * From those it picks how long the journal thread waits to group entries before a flush:
+ * <ul>
+ * <li>with a target latency, the window is what is left of the target after the force write,
+ * so an entry is acknowledged within the target on average;</li>
+ * <li>without a target, the window is the force write latency, so the next group is accumulated
+ * while the previous one is being synced, maximizing throughput.</li>
+ * </ul>
+ * The window is bounded by the max group wait, and is dropped to zero when less than one more
+ * entry is expected to arrive during it, since waiting would only add latency.
+ *
+ * <p>The window is only updated by the journal thread.
+ */
+class JournalGroupCommitController {
+
+    // Weight of the last sample in the moving averages
+    private static final double ALPHA = 0.2;
+
+    private final long maxGroupWaitNanos;
+    private final long targetLatencyNanos;
+
+    // Moving average of the force write latency, updated by the force write thread
+    private volatile long syncLatencyNanos = -1;
+    // Moving average of the entries arrival rate, in entries per nanosecond
+    private double arrivalRate = -1;
+    private boolean hasPreviousFlush = false;
+    private long lastFlushTimeNanos;
+
+    private volatile long groupWaitNanos;
+
+    JournalGroupCommitController(long maxGroupWaitNanos, long targetLatencyNanos) {
+        this.maxGroupWaitNanos = maxGroupWaitNanos;
+        this.targetLatencyNanos = targetLatencyNanos;
+        this.groupWaitNanos = maxGroupWaitNanos;
+    }
+
+    /**
+     * Record the latency of a force write of the journal.
+     */
+    void recordSyncLatency(long latencyNanos) {
+        long current = syncLatencyNanos;
+        syncLatencyNanos = current < 0 ? latencyNanos : (long) (ALPHA * latencyNanos + (1 - ALPHA) * current);
+    }
+
+    /**
+     * Record a flush of a group of entries and update the group commit window.
+     *
+     * @param numEntries number of entries in the group
+     * @param nowNanos time of the flush
+     * @return the new group commit window, in nanoseconds
+     */
+    long onFlush(int numEntries, long nowNanos) {
+        // System.nanoTime() can be negative, so only the difference of two times is meaningful
+        long elapsedNanos = nowNanos - lastFlushTimeNanos;
+        if (hasPreviousFlush && elapsedNanos > 0) {
+            double rate = (double) numEntries / elapsedNanos;
+            arrivalRate = arrivalRate < 0 ? rate : ALPHA * rate + (1 - ALPHA) * arrivalRate;
+        }
+        hasPreviousFlush = true;
+        lastFlushTimeNanos = nowNanos;
+
+        long syncLatency = syncLatencyNanos;
+        if (syncLatency < 0 || arrivalRate < 0) {
+            // Not enough samples yet, keep the current window
+            return groupWaitNanos;
+        }
+
+        long window = targetLatencyNanos > 0 ? targetLatencyNanos - syncLatency : syncLatency;
+        window = Math.max(0, Math.min(window, maxGroupWaitNanos));
+        if (arrivalRate * window < 1.0) {
+            window = 0;
+        }
+        groupWaitNanos = window;
+        return window;
+    }
+
+    long getGroupWaitNanos() {
+        return groupWaitNanos;
+    }
+
+    long getSyncLatencyNanos() {
+        return Math.max(0, syncLatencyNanos);
+    }
+}
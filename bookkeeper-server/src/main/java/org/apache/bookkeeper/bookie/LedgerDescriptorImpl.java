@@ -25,6 +25,7 @@ import com.google.common.util.concurrent.SettableFuture;
 import io.netty.buffer.ByteBuf;
 import java.io.IOException;
 import java.util.Arrays;
+import java.util.List;
 import java.util.PrimitiveIterator.OfLong;
 import java.util.concurrent.atomic.AtomicBoolean;
 import org.apache.bookkeeper.client.api.BKException;
@@ -160,6 +161,11 @@ public class LedgerDescriptorImpl extends LedgerDescriptor {
         return ledgerStorage.getEntry(ledgerId, entryId);
     }
 
+    @Override
+    List<ByteBuf> readEntries(long firstEntryId, int maxCount, long maxSize) throws IOException {
+        return ledgerStorage.getEntries(ledgerId, firstEntryId, maxCount, maxSize);
+    }
+
     @Override
     long getLastAddConfirmed() throws IOException {
         return ledgerStorage.getLastAddConfirmed(ledgerId);
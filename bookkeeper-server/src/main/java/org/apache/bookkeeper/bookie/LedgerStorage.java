@@ -31,6 +31,7 @@ import java.util.Collections;
 import java.util.List;
 import java.util.Optional;
 import java.util.PrimitiveIterator;
+import java.util.function.LongSupplier;
 
 import org.apache.bookkeeper.bookie.CheckpointSource.Checkpoint;
 import org.apache.bookkeeper.common.util.Watcher;
@@ -117,6 +118,51 @@ public interface LedgerStorage {
      */
     ByteBuf getEntry(long ledgerId, long entryId) throws IOException;
 
+    /**
+     * Read a range of consecutive entries from storage.
+     *
+     * <p>The entries are returned in order, starting from <i>firstEntryId</i>. The read stops at the first entry
+     * that is not found, after <i>maxCount</i> entries or before the total size of the entries would exceed
+     * <i>maxSize</i>. The first entry is always returned, regardless of its size.
+     *
+     * @param ledgerId ledger id
+     * @param firstEntryId id of the first entry to read
+     * @param maxCount maximum number of entries to return
+     * @param maxSize maximum total size of the returned entries, in bytes
+     * @return the entries that were read. The caller is responsible for releasing them.
+     * @throws Bookie.NoEntryException if the first entry is not found
+     */
+    default List<ByteBuf> getEntries(long ledgerId, long firstEntryId, int maxCount, long maxSize)
+            throws IOException {
+        List<ByteBuf> entries = new ArrayList<>(Math.min(maxCount, 64));
+        long size = 0;
+        try {
+            for (long entryId = firstEntryId; entries.size() < maxCount; entryId++) {
+                ByteBuf entry;
+                try {
+                    entry = getEntry(ledgerId, entryId);
+                } catch (Bookie.NoEntryException e) {
+                    if (entries.isEmpty()) {
+                        throw e;
+                    }
+                    break;
+                }
+
+                if (!entries.isEmpty() && size + entry.readableBytes() > maxSize) {
+                    entry.release();
+                    break;
+                }
+
+                entries.add(entry);
+                size += entry.readableBytes();
+            }
+        } catch (IOException | RuntimeException e) {
+            entries.forEach(ByteBuf::release);
+            throw e;
+        }
+        return entries;
+    }
+
     /**
      * Get last add confirmed.
      *
@@ -186,6 +232,33 @@ public interface LedgerStorage {
      */
     void registerLedgerDeletionListener(LedgerDeletionListener listener);
 
+    /**
+     * Signals that the storage is temporarily unable to accept writes without waiting, and when it is
+     * able to again.
+     */
+    interface WriteBackpressureListener {
+        void onWriteBackpressure(boolean throttled);
+    }
+
+    /**
+     * Register a listener for write back-pressure notifications. Storages that never throttle writes
+     * don't need to notify the listener.
+     *
+     * @param listener object that will be notified every time the storage starts or stops throttling writes
+     */
+    default void registerWriteBackpressureListener(WriteBackpressureListener listener) {
+    }
+
+    /**
+     * Register the recent latency of a foreground operation of the bookie, such as the journal adds.
+     * Storages that compact their data in the background can slow the compaction down when the
+     * latency goes above the configured target.
+     *
+     * @param latencyNanos supplier of the recent average latency of the operation, in nanoseconds
+     */
+    default void registerForegroundLatencySource(LongSupplier latencyNanos) {
+    }
+
     void setExplicitlac(long ledgerId, ByteBuf lac) throws IOException;
 
     ByteBuf getExplicitLac(long ledgerId);
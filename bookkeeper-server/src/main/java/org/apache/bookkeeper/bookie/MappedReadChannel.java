@@ -0,0 +1,120 @@
+/*
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *
+ */
+
+
+package org.apache.bookkeeper.bookie;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+//CHECKSTYLE.OFF: IllegalImport
+import io.netty.util.internal.PlatformDependent;
+//CHECKSTYLE.ON: IllegalImport
+
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * A read channel over a read-only memory mapping of a file.
+ *
+ * <p>The file is mapped once, when the channel is created, so this must only be used for files that are no longer
+ * written, such as rotated entry logs. The channel can be shared by multiple threads. The mapping stays valid after
+ * the file channel is closed, until the channel itself is closed: the file is then unmapped as soon as the reads in
+ * progress complete, so that the disk space of a deleted file is released without waiting for a garbage collection.
+ */
+public class MappedReadChannel extends BufferedReadChannel {
+
+    private final MappedByteBuffer mapping;
+    private final ByteBuf mappedBuffer;
+    private final long size;
+
+    // Number of reads in progress, the file can't be unmapped before they complete
+    private final AtomicInteger pendingReads = new AtomicInteger();
+    private volatile boolean closed = false;
+    private final AtomicBoolean unmapped = new AtomicBoolean(false);
+
+    public MappedReadChannel(FileChannel fileChannel) throws IOException {
+        super(fileChannel, 0);
+        this.size = fileChannel.size();
+        if (size > Integer.MAX_VALUE) {
+            throw new IOException("File of " + size + " bytes is too big to be memory mapped");
+        }
+        this.mapping = fileChannel.map(MapMode.READ_ONLY, 0, size);
+        this.mappedBuffer = Unpooled.wrappedBuffer(mapping);
+    }
+
+    @Override
+    public int read(ByteBuf dest, long pos, int length) throws IOException {
+        pendingReads.incrementAndGet();
+        try {
+            if (closed) {
+                throw new BufferedChannelClosedException();
+            }
+
+            // return -1 if the given position is greater than or equal to the file's size.
+            if (pos >= size) {
+                return -1;
+            }
+
+            int bytesToCopy = (int) Math.min(length, size - pos);
+            dest.writeBytes(mappedBuffer, (int) pos, bytesToCopy);
+            return bytesToCopy;
+        } finally {
+            if (pendingReads.decrementAndGet() == 0 && closed) {
+                unmap();
+            }
+        }
+    }
+
+    @Override
+    public long size() {
+        return size;
+    }
+
+    @Override
+    public void clear() {
+        // Nothing is buffered
+    }
+
+    /**
+     * Close the channel, and unmap the file once the reads in progress complete. The following reads fail with a
+     * {@link BufferedChannelClosedException}. The file channel is not closed.
+     */
+    public void close() {
+        closed = true;
+        if (pendingReads.get() == 0) {
+            unmap();
+        }
+    }
+
+    boolean isMapped() {
+        return !unmapped.get();
+    }
+
+    private void unmap() {
+        if (unmapped.compareAndSet(false, true)) {
+            PlatformDependent.freeDirectBuffer(mapping);
+        }
+    }
+}
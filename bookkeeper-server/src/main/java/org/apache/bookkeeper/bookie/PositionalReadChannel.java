@@ -0,0 +1,68 @@
+/*
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *
+ */
+
+
+package org.apache.bookkeeper.bookie;
+
+import io.netty.buffer.ByteBuf;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+
+/**
+ * A read channel that can be shared by multiple threads.
+ *
+ * <p>Reads are not buffered: each read is a positional read done directly into the destination buffer, which
+ * doesn't change the position of the underlying file channel.
+ */
+public class PositionalReadChannel extends BufferedReadChannel {
+
+    public PositionalReadChannel(FileChannel fileChannel) {
+        super(fileChannel, 0);
+    }
+
+    @Override
+    public int read(ByteBuf dest, long pos, int length) throws IOException {
+        FileChannel fc = validateAndGetFileChannel();
+        long eof = fc.size();
+        // return -1 if the given position is greater than or equal to the file's current size.
+        if (pos >= eof) {
+            return -1;
+        }
+
+        long currentPosition = pos;
+        int remaining = (int) Math.min(length, eof - pos);
+        while (remaining > 0) {
+            int readBytes = dest.writeBytes(fc, currentPosition, remaining);
+            if (readBytes <= 0) {
+                throw new IOException("Reading from filechannel returned a non-positive value. Short read.");
+            }
+            currentPosition += readBytes;
+            remaining -= readBytes;
+        }
+        return (int) (currentPosition - pos);
+    }
+
+    @Override
+    public void clear() {
+        // Nothing is buffered
+    }
+}
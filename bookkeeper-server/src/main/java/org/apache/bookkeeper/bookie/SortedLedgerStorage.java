@@ -34,6 +34,7 @@ import java.util.PrimitiveIterator;
 import java.util.concurrent.Executors;
 import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.TimeUnit;
+import java.util.function.LongSupplier;
 
 import org.apache.bookkeeper.bookie.CheckpointSource.Checkpoint;
 import org.apache.bookkeeper.common.util.Watcher;
@@ -255,6 +256,11 @@ public class SortedLedgerStorage
         interleavedLedgerStorage.registerLedgerDeletionListener(listener);
     }
 
+    @Override
+    public void registerForegroundLatencySource(LongSupplier latencyNanos) {
+        interleavedLedgerStorage.registerForegroundLatencySource(latencyNanos);
+    }
+
     @Override
     public void setExplicitlac(long ledgerId, ByteBuf lac) throws IOException {
         interleavedLedgerStorage.setExplicitlac(ledgerId, lac);
@@ -48,6 +48,7 @@ public class TransactionalEntryLogCompactor extends AbstractLogCompactor {
     final EntryLogger entryLogger;
     final CompactableLedgerStorage ledgerStorage;
     final List<EntryLocation> offsets = new ArrayList<>();
+    final boolean useTransfer;
 
     // compaction log file suffix
     static final String COMPACTING_SUFFIX = ".log.compacting";
@@ -59,9 +60,19 @@ public class TransactionalEntryLogCompactor extends AbstractLogCompactor {
             EntryLogger entryLogger,
             CompactableLedgerStorage ledgerStorage,
             LogRemovalListener logRemover) {
-        super(conf, logRemover);
+        this(conf, entryLogger, ledgerStorage, new Throttler(conf), logRemover);
+    }
+
+    TransactionalEntryLogCompactor(
+            ServerConfiguration conf,
+            EntryLogger entryLogger,
+            CompactableLedgerStorage ledgerStorage,
+            Throttler throttler,
+            LogRemovalListener logRemover) {
+        super(conf, throttler, logRemover);
         this.entryLogger = entryLogger;
         this.ledgerStorage = ledgerStorage;
+        this.useTransfer = conf.getUseTransferForCompaction();
     }
 
     /**
@@ -152,6 +163,8 @@ public class TransactionalEntryLogCompactor extends AbstractLogCompactor {
     /**
      * Assume we're compacting entry log 1 to entry log 3.
      * The first phase is to scan entries in 1.log and copy them to compaction log file "3.log.compacting".
+     * With file transfers, only the entry headers are scanned and the runs of consecutive entries to keep
+     * are copied at once, while their new locations are derived from the offsets of the runs.
      * We'll try to allocate a new compaction log before scanning to make sure we have a log file to write.
      * If after scanning, there's no data written, it means there's no valid entries to be compacted,
      * so we can remove 1.log directly, clear the offsets and end the compaction.
@@ -171,6 +184,10 @@ public class TransactionalEntryLogCompactor extends AbstractLogCompactor {
         void start() throws IOException {
             // scan entry log into compaction log and offset list
             entryLogger.createNewCompactionLog();
+            if (useTransfer) {
+                transferEntryLog();
+                return;
+            }
             entryLogger.scanEntryLog(metadata.getEntryLogId(), new EntryLogScanner() {
                 @Override
                 public boolean accept(long ledgerId) {
@@ -201,6 +218,38 @@ public class TransactionalEntryLogCompactor extends AbstractLogCompactor {
             });
         }
 
+        private void transferEntryLog() throws IOException {
+            entryLogger.transferToCompactionLog(metadata.getEntryLogId(),
+                    new EntryLogger.CompactionTransferScanner() {
+                @Override
+                public boolean accept(long ledgerId) {
+                    return metadata.containsLedger(ledgerId);
+                }
+
+                @Override
+                public void process(long ledgerId, long entryId, long offset, int entrySize) throws IOException {
+                    throttler.acquire(entrySize);
+                    if (entryId < -1) {
+                        LOG.warn("Scanning expected ledgerId {}, but found invalid entry "
+                                + "with entryId {} at offset {}",
+                                ledgerId, entryId, offset);
+                        throw new IOException("Invalid entry found @ offset " + offset);
+                    }
+                }
+
+                @Override
+                public void transferred(long ledgerId, long entryId, long location) {
+                    synchronized (TransactionalEntryLogCompactor.this) {
+                        offsets.add(new EntryLocation(ledgerId, entryId, location));
+                    }
+                    if (LOG.isDebugEnabled()) {
+                        LOG.debug("Compact transfer entry : lid = {}, eid = {}, offset = {}",
+                                ledgerId, entryId, location);
+                    }
+                }
+            });
+        }
+
         @Override
         boolean complete() {
             if (offsets.isEmpty()) {
@@ -32,6 +32,8 @@ import static org.apache.bookkeeper.bookie.BookKeeperServerStats.JOURNAL_FORCE_W
 import static org.apache.bookkeeper.bookie.BookKeeperServerStats.JOURNAL_FORCE_WRITE_ENQUEUE;
 import static org.apache.bookkeeper.bookie.BookKeeperServerStats.JOURNAL_FORCE_WRITE_GROUPING_COUNT;
 import static org.apache.bookkeeper.bookie.BookKeeperServerStats.JOURNAL_FORCE_WRITE_QUEUE_SIZE;
+import static org.apache.bookkeeper.bookie.BookKeeperServerStats.JOURNAL_GROUP_COMMIT_SYNC_LATENCY;
+import static org.apache.bookkeeper.bookie.BookKeeperServerStats.JOURNAL_GROUP_COMMIT_WINDOW;
 import static org.apache.bookkeeper.bookie.BookKeeperServerStats.JOURNAL_NUM_FLUSH_EMPTY_QUEUE;
 import static org.apache.bookkeeper.bookie.BookKeeperServerStats.JOURNAL_NUM_FLUSH_MAX_OUTSTANDING_BYTES;
 import static org.apache.bookkeeper.bookie.BookKeeperServerStats.JOURNAL_NUM_FLUSH_MAX_WAIT;
@@ -42,9 +44,12 @@ import static org.apache.bookkeeper.bookie.BookKeeperServerStats.JOURNAL_SCOPE;
 import static org.apache.bookkeeper.bookie.BookKeeperServerStats.JOURNAL_SYNC;
 import static org.apache.bookkeeper.bookie.BookKeeperServerStats.JOURNAL_WRITE_BYTES;
 
+import java.util.function.Supplier;
+
 import lombok.Getter;
 import org.apache.bookkeeper.bookie.BookKeeperServerStats;
 import org.apache.bookkeeper.stats.Counter;
+import org.apache.bookkeeper.stats.Gauge;
 import org.apache.bookkeeper.stats.OpStatsLogger;
 import org.apache.bookkeeper.stats.StatsLogger;
 import org.apache.bookkeeper.stats.annotations.StatsDoc;
@@ -119,7 +124,8 @@ public class JournalStats {
     private final OpStatsLogger forceWriteGroupingCountStats;
     @StatsDoc(
         name = JOURNAL_FORCE_WRITE_BATCH_ENTRIES,
-        help = "The distribution of number of entries grouped together into a force write request"
+        help = "The distribution of number of entries grouped together into a force write request,"
+            + " i.e. the batch size of the group commit"
     )
     private final OpStatsLogger forceWriteBatchEntriesStats;
     @StatsDoc(
@@ -162,9 +168,26 @@ public class JournalStats {
         help = "The number of bytes appended to the journal"
     )
     private final Counter journalWriteBytes;
+    @StatsDoc(
+        name = JOURNAL_GROUP_COMMIT_WINDOW,
+        help = "The current group commit window of the adaptive group commit, in microseconds"
+    )
+    private Gauge<Long> groupCommitWindowGauge;
+    @StatsDoc(
+        name = JOURNAL_GROUP_COMMIT_SYNC_LATENCY,
+        help = "The moving average of the force write latency seen by the adaptive group commit, in microseconds"
+    )
+    private Gauge<Long> groupCommitSyncLatencyGauge;
+
+    private final StatsLogger statsLogger;
+
+    // Recent latency of the journal adds, used by compaction to back off
+    private final RecentLatencyTracker journalAddEntryLatency = new RecentLatencyTracker();
 
     public JournalStats(StatsLogger statsLogger) {
-        journalAddEntryStats = statsLogger.getOpStatsLogger(BookKeeperServerStats.JOURNAL_ADD_ENTRY);
+        this.statsLogger = statsLogger;
+        journalAddEntryStats = journalAddEntryLatency.track(
+                statsLogger.getOpStatsLogger(BookKeeperServerStats.JOURNAL_ADD_ENTRY));
         journalForceLedgerStats = statsLogger.getOpStatsLogger(BookKeeperServerStats.JOURNAL_FORCE_LEDGER);
         journalSyncStats = statsLogger.getOpStatsLogger(BookKeeperServerStats.JOURNAL_SYNC);
         fwEnqueueTimeStats = statsLogger.getOpStatsLogger(BookKeeperServerStats.JOURNAL_FORCE_WRITE_ENQUEUE);
@@ -187,4 +210,32 @@ public class JournalStats {
         journalWriteBytes = statsLogger.getCounter(BookKeeperServerStats.JOURNAL_WRITE_BYTES);
     }
 
+    /**
+     * Register the gauges of the adaptive group commit.
+     *
+     * @param windowMicrosSupplier supplier of the current group commit window, in microseconds
+     * @param syncLatencyMicrosSupplier supplier of the average force write latency, in microseconds
+     */
+    public void registerGroupCommitGauges(Supplier<Long> windowMicrosSupplier,
+                                          Supplier<Long> syncLatencyMicrosSupplier) {
+        groupCommitWindowGauge = newGauge(windowMicrosSupplier);
+        statsLogger.registerGauge(JOURNAL_GROUP_COMMIT_WINDOW, groupCommitWindowGauge);
+        groupCommitSyncLatencyGauge = newGauge(syncLatencyMicrosSupplier);
+        statsLogger.registerGauge(JOURNAL_GROUP_COMMIT_SYNC_LATENCY, groupCommitSyncLatencyGauge);
+    }
+
+    private static Gauge<Long> newGauge(Supplier<Long> supplier) {
+        return new Gauge<Long>() {
+            @Override
+            public Long getDefaultValue() {
+                return 0L;
+            }
+
+            @Override
+            public Long getSample() {
+                return supplier.get();
+            }
+        };
+    }
+
 }
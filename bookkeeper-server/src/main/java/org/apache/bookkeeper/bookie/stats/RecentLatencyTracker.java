@@ -0,0 +1,107 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.bookkeeper.bookie.stats;
+
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongSupplier;
+
+import org.apache.bookkeeper.stats.OpStatsData;
+import org.apache.bookkeeper.stats.OpStatsLogger;
+
+/**
+ * Moving average of the latency of the recent successful events of an {@link OpStatsLogger}.
+ *
+ * <p>Unlike the op stats, which are cumulative, it only reflects the last events, so it can be used
+ * by background tasks to detect that the foreground operations are slowing down. The average
+ * drops to zero when no event has been recorded for a second.
+ *
+ * <p>The average is updated without synchronization, so concurrent events can occasionally
+ * overwrite each other, which is fine for a moving average.
+ */
+public class RecentLatencyTracker implements LongSupplier {
+
+    // Weight of the last sample in the moving average
+    private static final double ALPHA = 0.1;
+    private static final long IDLE_NANOS = TimeUnit.SECONDS.toNanos(1);
+
+    private volatile long averageNanos = -1;
+    private volatile long lastEventNanos;
+
+    /**
+     * Record the latency of an event.
+     */
+    public void record(long latencyNanos) {
+        long current = averageNanos;
+        averageNanos = current < 0 ? latencyNanos : (long) (ALPHA * latencyNanos + (1 - ALPHA) * current);
+        lastEventNanos = System.nanoTime();
+    }
+
+    /**
+     * Get the average latency of the recent events.
+     *
+     * @return the average latency in nanoseconds, or 0 if there was no recent event
+     */
+    @Override
+    public long getAsLong() {
+        long average = averageNanos;
+        if (average < 0 || System.nanoTime() - lastEventNanos > IDLE_NANOS) {
+            return 0;
+        }
+        return average;
+    }
+
+    /**
+     * Wrap an {@link OpStatsLogger} so that its successful events are also recorded by the tracker.
+     */
+    public OpStatsLogger track(OpStatsLogger opStatsLogger) {
+        return new OpStatsLogger() {
+            @Override
+            public void registerFailedEvent(long eventLatency, TimeUnit unit) {
+                opStatsLogger.registerFailedEvent(eventLatency, unit);
+            }
+
+            @Override
+            public void registerSuccessfulEvent(long eventLatency, TimeUnit unit) {
+                opStatsLogger.registerSuccessfulEvent(eventLatency, unit);
+                record(unit.toNanos(eventLatency));
+            }
+
+            @Override
+            public void registerSuccessfulValue(long value) {
+                opStatsLogger.registerSuccessfulValue(value);
+            }
+
+            @Override
+            public void registerFailedValue(long value) {
+                opStatsLogger.registerFailedValue(value);
+            }
+
+            @Override
+            public OpStatsData toOpStatsData() {
+                return opStatsLogger.toOpStatsData();
+            }
+
+            @Override
+            public void clear() {
+                opStatsLogger.clear();
+            }
+        };
+    }
+}
@@ -0,0 +1,391 @@
+/**
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *
+ */
+package org.apache.bookkeeper.bookie.storage.ldb;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufAllocator;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.bookkeeper.bookie.storage.ldb.KeyValueStorage.Batch;
+import org.apache.bookkeeper.conf.ServerConfiguration;
+import org.apache.bookkeeper.stats.StatsLogger;
+import org.apache.bookkeeper.util.collections.ConcurrentLongHashMap;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * An {@link EntryLocationIndex} that also keeps in memory the locations of the entries written since the bookie
+ * started, encoded as runs of consecutive entries, with RocksDB kept as the durable store.
+ *
+ * <p>Entries are flushed sorted by ledger and entry id, so the entries of a ledger flushed together are consecutive
+ * and stored in the same entry log. Each run keeps the location of its first entry, and for each entry the offset
+ * from it, on 4 bytes, in a direct buffer. An entry takes 4 bytes instead of a 16 bytes key and a 8 bytes value,
+ * plus the memtable and block cache overhead, in RocksDB, and the lookups of the recent entries are answered
+ * without going through JNI.
+ *
+ * <p>The runs only cache what was committed to RocksDB: the lookups of the entries not found in the runs fall back
+ * to RocksDB. When the location of an entry already in the runs changes, eg. after a compaction, the runs of its
+ * ledger are dropped. When the runs exceed their max size, the ledgers with the lowest ids are dropped first.
+ */
+public class CompactEntryLocationIndex extends EntryLocationIndex {
+
+    static final String COMPACT_LOCATION_INDEX_ENABLED = "dbStorage_compactLocationIndexEnabled";
+    static final String COMPACT_LOCATION_INDEX_MAX_SIZE_MB = "dbStorage_compactLocationIndexMaxSizeMb";
+    private static final long DEFAULT_COMPACT_LOCATION_INDEX_MAX_SIZE_MB = 256;
+
+    private static final int INITIAL_RUN_ENTRIES = 64;
+    // Max number of entries in a run, to bound the size of a single buffer
+    private static final int MAX_RUN_ENTRIES = 64 * 1024;
+
+    private final ByteBufAllocator allocator;
+    private final long maxMemorySize;
+    private final AtomicLong memorySize = new AtomicLong();
+    private final ConcurrentLongHashMap<LedgerRuns> ledgers = new ConcurrentLongHashMap<>();
+    // Ids of the ledgers that have runs, in eviction order. Older ledgers are less likely to be read and more likely
+    // to be deleted soon, so the ledgers with the lowest ids are evicted first
+    private final ConcurrentSkipListSet<Long> evictionOrder = new ConcurrentSkipListSet<>();
+
+    public CompactEntryLocationIndex(ServerConfiguration conf, KeyValueStorageFactory storageFactory, String basePath,
+            StatsLogger stats, ByteBufAllocator allocator) throws IOException {
+        super(conf, storageFactory, basePath, stats);
+        this.allocator = allocator;
+        this.maxMemorySize = conf.getLong(COMPACT_LOCATION_INDEX_MAX_SIZE_MB,
+                DEFAULT_COMPACT_LOCATION_INDEX_MAX_SIZE_MB) * 1024 * 1024;
+        this.stats.registerLocationRunsMemoryGauge(memorySize::get);
+    }
+
+    @Override
+    public void close() throws IOException {
+        ledgers.forEach((ledgerId, runs) -> runs.release());
+        ledgers.clear();
+        evictionOrder.clear();
+        super.close();
+    }
+
+    @Override
+    public long getLocation(long ledgerId, long entryId) throws IOException {
+        LedgerRuns runs = ledgers.get(ledgerId);
+        long location = runs != null ? runs.getLocation(entryId) : 0;
+        if (location != 0) {
+            stats.getLocationRunsHits().inc();
+            return location;
+        }
+
+        stats.getLocationRunsMisses().inc();
+        return super.getLocation(ledgerId, entryId);
+    }
+
+    @Override
+    public int getLocations(long ledgerId, long firstEntryId, long[] locations) throws IOException {
+        LedgerRuns runs = ledgers.get(ledgerId);
+        if (runs != null && runs.getLocations(firstEntryId, locations)) {
+            stats.getLocationRunsHits().add(locations.length);
+            return locations.length;
+        }
+
+        stats.getLocationRunsMisses().add(locations.length);
+        return super.getLocations(ledgerId, firstEntryId, locations);
+    }
+
+    @Override
+    public void addLocation(long ledgerId, long entryId, long location) throws IOException {
+        Batch batch = newBatch();
+        try {
+            addLocation(batch, ledgerId, entryId, location);
+            batch.flush();
+        } finally {
+            batch.close();
+        }
+    }
+
+    @Override
+    public Batch newBatch() {
+        return new LocationsBatch(super.newBatch());
+    }
+
+    @Override
+    public void addLocation(Batch batch, long ledgerId, long entryId, long location) throws IOException {
+        super.addLocation(batch, ledgerId, entryId, location);
+        if (batch instanceof LocationsBatch) {
+            ((LocationsBatch) batch).addLocation(ledgerId, entryId, location);
+        } else {
+            // The location is not tracked, the runs of the ledger might be stale
+            dropLedger(ledgerId);
+        }
+    }
+
+    @Override
+    public void delete(long ledgerId) throws IOException {
+        super.delete(ledgerId);
+        dropLedger(ledgerId);
+    }
+
+    long getMemorySize() {
+        return memorySize.get();
+    }
+
+    private void applyLocations(long[] locations, int size) {
+        for (int i = 0; i < size; i += 3) {
+            long ledgerId = locations[i];
+            long entryId = locations[i + 1];
+            long location = locations[i + 2];
+            if (isDeleted(ledgerId)) {
+                continue;
+            }
+
+            LedgerRuns runs = ledgers.computeIfAbsent(ledgerId, id -> {
+                evictionOrder.add(id);
+                return new LedgerRuns();
+            });
+            if (!runs.append(entryId, location)) {
+                // The entry was already in the runs, with a location that might be not the last one committed
+                if (log.isDebugEnabled()) {
+                    log.debug("Location of {}@{} updated, dropping the location runs of the ledger", ledgerId, entryId);
+                }
+                dropLedger(ledgerId);
+            }
+        }
+
+        evictIfNeeded();
+    }
+
+    private void dropLedger(long ledgerId) {
+        // Removed before the runs, so that runs created again concurrently keep their id in the eviction order
+        evictionOrder.remove(ledgerId);
+        LedgerRuns runs = ledgers.remove(ledgerId);
+        if (runs != null) {
+            runs.release();
+        }
+    }
+
+    private void evictIfNeeded() {
+        while (memorySize.get() > maxMemorySize) {
+            Long oldestLedgerId = evictionOrder.pollFirst();
+            if (oldestLedgerId == null) {
+                return;
+            }
+            dropLedger(oldestLedgerId);
+        }
+    }
+
+    /**
+     * The location runs of a ledger, ordered by entry id.
+     */
+    private final class LedgerRuns {
+        private long[] firstEntryIds = new long[1];
+        private long[] baseLocations = new long[1];
+        // Offsets of the entries of each run from the location of its first entry, as unsigned ints
+        private ByteBuf[] offsets = new ByteBuf[1];
+        private int numRuns = 0;
+        private boolean released = false;
+
+        synchronized long getLocation(long entryId) {
+            if (released) {
+                return 0;
+            }
+
+            int run = findRun(entryId);
+            if (run < 0) {
+                return 0;
+            }
+            long idx = entryId - firstEntryIds[run];
+            if (idx >= runSize(run)) {
+                return 0;
+            }
+            return baseLocations[run] + (offsets[run].getInt((int) idx * 4) & 0xFFFFFFFFL);
+        }
+
+        /**
+         * Fill the locations of a range of entries.
+         *
+         * @return true if all the entries of the range were found
+         */
+        synchronized boolean getLocations(long firstEntryId, long[] locations) {
+            if (released) {
+                return false;
+            }
+
+            int run = findRun(firstEntryId);
+            if (run < 0) {
+                return false;
+            }
+            for (int i = 0; i < locations.length; i++) {
+                long entryId = firstEntryId + i;
+                long idx = entryId - firstEntryIds[run];
+                if (idx >= runSize(run)) {
+                    // Move to the next run, which must start with this entry
+                    run++;
+                    if (run == numRuns || firstEntryIds[run] != entryId) {
+                        Arrays.fill(locations, 0L);
+                        return false;
+                    }
+                    idx = 0;
+                }
+                locations[i] = baseLocations[run] + (offsets[run].getInt((int) idx * 4) & 0xFFFFFFFFL);
+            }
+            return true;
+        }
+
+        /**
+         * Append the location of an entry following the entries already in the runs.
+         *
+         * @return false if the entry is not after the last entry of the runs
+         */
+        synchronized boolean append(long entryId, long location) {
+            if (released) {
+                // Dropped concurrently
+                return true;
+            }
+
+            int last = numRuns - 1;
+            if (last >= 0) {
+                long lastEntryId = firstEntryIds[last] + runSize(last) - 1;
+                if (entryId <= lastEntryId) {
+                    return false;
+                }
+
+                long offset = location - baseLocations[last];
+                if (entryId == lastEntryId + 1
+                        && runSize(last) < MAX_RUN_ENTRIES
+                        && (location >>> 32) == (baseLocations[last] >>> 32)
+                        && offset >= 0) {
+                    ByteBuf buf = offsets[last];
+                    int capacity = buf.capacity();
+                    buf.writeInt((int) offset);
+                    memorySize.addAndGet(buf.capacity() - capacity);
+                    return true;
+                }
+            }
+
+            // Start a new run
+            if (numRuns == firstEntryIds.length) {
+                int newLength = numRuns * 2;
+                firstEntryIds = Arrays.copyOf(firstEntryIds, newLength);
+                baseLocations = Arrays.copyOf(baseLocations, newLength);
+                offsets = Arrays.copyOf(offsets, newLength);
+            }
+            ByteBuf buf = allocator.directBuffer(INITIAL_RUN_ENTRIES * 4, MAX_RUN_ENTRIES * 4);
+            buf.writeInt(0);
+            firstEntryIds[numRuns] = entryId;
+            baseLocations[numRuns] = location;
+            offsets[numRuns] = buf;
+            numRuns++;
+            memorySize.addAndGet(buf.capacity());
+            return true;
+        }
+
+        synchronized void release() {
+            if (released) {
+                return;
+            }
+            released = true;
+            for (int i = 0; i < numRuns; i++) {
+                memorySize.addAndGet(-offsets[i].capacity());
+                offsets[i].release();
+                offsets[i] = null;
+            }
+            numRuns = 0;
+        }
+
+        private int runSize(int run) {
+            return offsets[run].writerIndex() / 4;
+        }
+
+        // Find the last run starting at or before the entry
+        private int findRun(long entryId) {
+            int low = 0;
+            int high = numRuns - 1;
+            int result = -1;
+            while (low <= high) {
+                int mid = (low + high) >>> 1;
+                if (firstEntryIds[mid] <= entryId) {
+                    result = mid;
+                    low = mid + 1;
+                } else {
+                    high = mid - 1;
+                }
+            }
+            return result;
+        }
+    }
+
+    /**
+     * A batch that records the locations added to it, to add them to the runs once they are committed to RocksDB.
+     */
+    private final class LocationsBatch implements Batch {
+        private final Batch batch;
+        private long[] locations = new long[3 * 1024];
+        private int size = 0;
+
+        LocationsBatch(Batch batch) {
+            this.batch = batch;
+        }
+
+        void addLocation(long ledgerId, long entryId, long location) {
+            if (size == locations.length) {
+                locations = Arrays.copyOf(locations, locations.length * 2);
+            }
+            locations[size] = ledgerId;
+            locations[size + 1] = entryId;
+            locations[size + 2] = location;
+            size += 3;
+        }
+
+        @Override
+        public void put(byte[] key, byte[] value) throws IOException {
+            batch.put(key, value);
+        }
+
+        @Override
+        public void remove(byte[] key) throws IOException {
+            batch.remove(key);
+        }
+
+        @Override
+        public void deleteRange(byte[] beginKey, byte[] endKey) throws IOException {
+            batch.deleteRange(beginKey, endKey);
+        }
+
+        @Override
+        public void clear() {
+            batch.clear();
+            size = 0;
+        }
+
+        @Override
+        public void flush() throws IOException {
+            batch.flush();
+            applyLocations(locations, size);
+            size = 0;
+        }
+
+        @Override
+        public void close() throws IOException {
+            batch.close();
+        }
+    }
+
+    private static final Logger log = LoggerFactory.getLogger(CompactEntryLocationIndex.class);
+}
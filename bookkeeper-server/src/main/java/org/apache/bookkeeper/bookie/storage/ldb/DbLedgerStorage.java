@@ -38,9 +38,13 @@ import java.io.IOException;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.PrimitiveIterator.OfLong;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import java.util.concurrent.ScheduledExecutorService;
 
+import java.util.function.LongSupplier;
 import java.util.stream.Collectors;
 import lombok.extern.slf4j.Slf4j;
 
@@ -48,6 +52,7 @@ import org.apache.bookkeeper.bookie.BookieException;
 import org.apache.bookkeeper.bookie.CheckpointSource;
 import org.apache.bookkeeper.bookie.CheckpointSource.Checkpoint;
 import org.apache.bookkeeper.bookie.Checkpointer;
+import org.apache.bookkeeper.bookie.CompactionScheduler;
 import org.apache.bookkeeper.bookie.GarbageCollectionStatus;
 import org.apache.bookkeeper.bookie.LastAddConfirmedUpdateNotification;
 import org.apache.bookkeeper.bookie.LedgerCache;
@@ -78,6 +83,8 @@ public class DbLedgerStorage implements LedgerStorage {
 
     static final String MAX_THROTTLE_TIME_MILLIS = "dbStorage_maxThrottleTimeMs";
 
+    static final String PARALLEL_DIRECTORIES_FLUSH_ENABLED = "dbStorage_parallelDirectoriesFlushEnabled";
+
     private static final int MB = 1024 * 1024;
 
     private static final long DEFAULT_WRITE_CACHE_MAX_SIZE_MB = (long) (0.25 * PlatformDependent.maxDirectMemory())
@@ -87,8 +94,12 @@ public class DbLedgerStorage implements LedgerStorage {
     private int numberOfDirs;
     private List<SingleDirectoryDbLedgerStorage> ledgerStorageList;
 
-    // Keep 1 single Bookie GC thread so the the compactions from multiple individual directories are serialized
     private ScheduledExecutorService gcExecutor;
+    // Shared by the GC threads of the directories, which compact in parallel within a single rate budget
+    private CompactionScheduler compactionScheduler;
+    // Flushes the directories in parallel during checkpoints, so that the bookie flush time is the one of the slowest
+    // directory rather than the sum of all of them
+    private ExecutorService flushExecutor;
     private DbLedgerStorageStats stats;
 
     protected ByteBufAllocator allocator;
@@ -118,6 +129,10 @@ public class DbLedgerStorage implements LedgerStorage {
         long perDirectoryReadCacheSize = readCacheMaxSize / numberOfDirs;
 
         gcExecutor = Executors.newSingleThreadScheduledExecutor(new DefaultThreadFactory("GarbageCollector"));
+        compactionScheduler = new CompactionScheduler(conf);
+        if (numberOfDirs > 1 && conf.getBoolean(PARALLEL_DIRECTORIES_FLUSH_ENABLED, true)) {
+            flushExecutor = Executors.newFixedThreadPool(numberOfDirs, new DefaultThreadFactory("db-storage-flush"));
+        }
 
         ledgerStorageList = Lists.newArrayList();
         for (File ledgerDir : ledgerDirsManager.getAllLedgerDirs()) {
@@ -133,6 +148,8 @@ public class DbLedgerStorage implements LedgerStorage {
 
         this.stats = new DbLedgerStorageStats(
             statsLogger,
+            conf.getString(SingleDirectoryDbLedgerStorage.READ_CACHE_POLICY,
+                    SingleDirectoryDbLedgerStorage.DEFAULT_READ_CACHE_POLICY),
             () -> ledgerStorageList.stream().mapToLong(SingleDirectoryDbLedgerStorage::getWriteCacheSize).sum(),
             () -> ledgerStorageList.stream().mapToLong(SingleDirectoryDbLedgerStorage::getWriteCacheCount).sum(),
             () -> ledgerStorageList.stream().mapToLong(SingleDirectoryDbLedgerStorage::getReadCacheSize).sum(),
@@ -148,7 +165,7 @@ public class DbLedgerStorage implements LedgerStorage {
             throws IOException {
         return new SingleDirectoryDbLedgerStorage(conf, ledgerManager, ledgerDirsManager, indexDirsManager,
                 stateManager, checkpointSource, checkpointer, statsLogger, allocator, gcExecutor, writeCacheSize,
-                readCacheSize);
+                readCacheSize, compactionScheduler);
     }
 
     @Override
@@ -161,6 +178,9 @@ public class DbLedgerStorage implements LedgerStorage {
         for (LedgerStorage ls : ledgerStorageList) {
             ls.shutdown();
         }
+        if (flushExecutor != null) {
+            flushExecutor.shutdown();
+        }
     }
 
     @Override
@@ -199,6 +219,12 @@ public class DbLedgerStorage implements LedgerStorage {
         return getLedgerSorage(ledgerId).getEntry(ledgerId, entryId);
     }
 
+    @Override
+    public List<ByteBuf> getEntries(long ledgerId, long firstEntryId, int maxCount, long maxSize)
+            throws IOException {
+        return getLedgerSorage(ledgerId).getEntries(ledgerId, firstEntryId, maxCount, maxSize);
+    }
+
     @Override
     public long getLastAddConfirmed(long ledgerId) throws IOException {
         return getLedgerSorage(ledgerId).getLastAddConfirmed(ledgerId);
@@ -219,15 +245,51 @@ public class DbLedgerStorage implements LedgerStorage {
 
     @Override
     public void flush() throws IOException {
-        for (LedgerStorage ls : ledgerStorageList) {
-            ls.flush();
-        }
+        flushAllStorages(LedgerStorage::flush);
     }
 
     @Override
     public void checkpoint(Checkpoint checkpoint) throws IOException {
+        flushAllStorages(ls -> ls.checkpoint(checkpoint));
+    }
+
+    private interface FlushOp {
+        void flush(LedgerStorage ls) throws IOException;
+    }
+
+    private void flushAllStorages(FlushOp op) throws IOException {
+        if (flushExecutor == null) {
+            for (LedgerStorage ls : ledgerStorageList) {
+                op.flush(ls);
+            }
+            return;
+        }
+
+        List<Future<?>> futures = new ArrayList<>(ledgerStorageList.size());
         for (LedgerStorage ls : ledgerStorageList) {
-            ls.checkpoint(checkpoint);
+            futures.add(flushExecutor.submit(() -> {
+                op.flush(ls);
+                return null;
+            }));
+        }
+
+        // Wait for all the directories, even if one of them fails, before reporting the first failure
+        IOException exception = null;
+        for (Future<?> future : futures) {
+            try {
+                future.get();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IOException("Interrupted while flushing the ledger storage", e);
+            } catch (ExecutionException e) {
+                if (exception == null) {
+                    exception = e.getCause() instanceof IOException ? (IOException) e.getCause()
+                            : new IOException(e.getCause());
+                }
+            }
+        }
+        if (exception != null) {
+            throw exception;
         }
     }
 
@@ -241,6 +303,16 @@ public class DbLedgerStorage implements LedgerStorage {
         ledgerStorageList.forEach(ls -> ls.registerLedgerDeletionListener(listener));
     }
 
+    @Override
+    public void registerWriteBackpressureListener(WriteBackpressureListener listener) {
+        ledgerStorageList.forEach(ls -> ls.registerWriteBackpressureListener(listener));
+    }
+
+    @Override
+    public void registerForegroundLatencySource(LongSupplier latencyNanos) {
+        compactionScheduler.addLatencySource(latencyNanos);
+    }
+
     @Override
     public void setExplicitlac(long ledgerId, ByteBuf lac) throws IOException {
         getLedgerSorage(ledgerId).setExplicitlac(ledgerId, lac);
@@ -25,6 +25,7 @@ import static org.apache.bookkeeper.bookie.BookKeeperServerStats.CATEGORY_SERVER
 
 import java.util.function.Supplier;
 import lombok.Getter;
+import org.apache.bookkeeper.bookie.stats.RecentLatencyTracker;
 import org.apache.bookkeeper.stats.Counter;
 import org.apache.bookkeeper.stats.Gauge;
 import org.apache.bookkeeper.stats.OpStatsLogger;
@@ -44,6 +45,8 @@ class DbLedgerStorageStats {
 
     private static final String ADD_ENTRY = "add-entry";
     private static final String READ_ENTRY = "read-entry";
+    private static final String READ_ENTRIES = "read-entries";
+    private static final String READ_ENTRIES_BATCH_COUNT = "read-entries-batch-count";
     private static final String READ_CACHE_HITS = "read-cache-hits";
     private static final String READ_CACHE_MISSES = "read-cache-misses";
     private static final String READAHEAD_BATCH_COUNT = "readahead-batch-count";
@@ -52,10 +55,16 @@ class DbLedgerStorageStats {
     private static final String FLUSH_SIZE = "flush-size";
     private static final String THROTTLED_WRITE_REQUESTS = "throttled-write-requests";
     private static final String REJECTED_WRITE_REQUESTS = "rejected-write-requests";
+    private static final String WRITE_CACHE_ROTATIONS = "write-cache-rotations";
+    private static final String WRITE_CACHE_THROTTLE_TIME = "write-cache-throttle-time";
     private static final String WRITE_CACHE_SIZE = "write-cache-size";
     private static final String WRITE_CACHE_COUNT = "write-cache-count";
     private static final String READ_CACHE_SIZE = "read-cache-size";
     private static final String READ_CACHE_COUNT = "read-cache-count";
+    private static final String READ_CACHE_POLICY_SCOPE_PREFIX = "read-cache-";
+    private static final String READ_CACHE_POLICY_HITS = "hits";
+    private static final String READ_CACHE_POLICY_MISSES = "misses";
+    private static final String READ_CACHE_POLICY_HIT_RATIO = "hit-ratio";
 
     @StatsDoc(
         name = ADD_ENTRY,
@@ -69,6 +78,16 @@ class DbLedgerStorageStats {
         parent = BOOKIE_ADD_ENTRY
     )
     private final OpStatsLogger readEntryStats;
+    @StatsDoc(
+        name = READ_ENTRIES,
+        help = "operation stats of reading ranges of entries from db ledger storage"
+    )
+    private final OpStatsLogger readEntriesStats;
+    @StatsDoc(
+        name = READ_ENTRIES_BATCH_COUNT,
+        help = "the distribution of num of entries returned by one range read"
+    )
+    private final OpStatsLogger readEntriesBatchCountStats;
     @StatsDoc(
         name = READ_CACHE_HITS,
         help = "operation stats of read cache hits",
@@ -111,6 +130,16 @@ class DbLedgerStorageStats {
         help = "The number of requests rejected due to write cache is full"
     )
     private final Counter rejectedWriteRequests;
+    @StatsDoc(
+        name = WRITE_CACHE_ROTATIONS,
+        help = "The number of times the active write cache was full and was replaced by a free one of the ring"
+    )
+    private final Counter writeCacheRotations;
+    @StatsDoc(
+        name = WRITE_CACHE_THROTTLE_TIME,
+        help = "operation stats of the time writes waited for a free write cache, when all of them were full"
+    )
+    private final OpStatsLogger writeCacheThrottleTimeStats;
 
     @StatsDoc(
         name = WRITE_CACHE_SIZE,
@@ -133,13 +162,36 @@ class DbLedgerStorageStats {
     )
     private final Gauge<Long> readCacheCountGauge;
 
+    @StatsDoc(
+        name = READ_CACHE_POLICY_HITS,
+        help = "The number of entries found in the read cache, scoped by the read cache policy name"
+    )
+    private final Counter readCachePolicyHits;
+    @StatsDoc(
+        name = READ_CACHE_POLICY_MISSES,
+        help = "The number of entries not found in the read cache, scoped by the read cache policy name"
+    )
+    private final Counter readCachePolicyMisses;
+    @StatsDoc(
+        name = READ_CACHE_POLICY_HIT_RATIO,
+        help = "The percentage of read cache lookups that were hits, scoped by the read cache policy name"
+    )
+    private final Gauge<Double> readCachePolicyHitRatioGauge;
+
+    // Recent latency of the adds and reads, used by compaction to back off
+    private final RecentLatencyTracker addEntryLatency = new RecentLatencyTracker();
+    private final RecentLatencyTracker readEntryLatency = new RecentLatencyTracker();
+
     DbLedgerStorageStats(StatsLogger stats,
+                         String readCachePolicyName,
                          Supplier<Long> writeCacheSizeSupplier,
                          Supplier<Long> writeCacheCountSupplier,
                          Supplier<Long> readCacheSizeSupplier,
                          Supplier<Long> readCacheCountSupplier) {
-        addEntryStats = stats.getOpStatsLogger(ADD_ENTRY);
-        readEntryStats = stats.getOpStatsLogger(READ_ENTRY);
+        addEntryStats = addEntryLatency.track(stats.getOpStatsLogger(ADD_ENTRY));
+        readEntryStats = readEntryLatency.track(stats.getOpStatsLogger(READ_ENTRY));
+        readEntriesStats = stats.getOpStatsLogger(READ_ENTRIES);
+        readEntriesBatchCountStats = stats.getOpStatsLogger(READ_ENTRIES_BATCH_COUNT);
         readCacheHitStats = stats.getOpStatsLogger(READ_CACHE_HITS);
         readCacheMissStats = stats.getOpStatsLogger(READ_CACHE_MISSES);
         readAheadBatchCountStats = stats.getOpStatsLogger(READAHEAD_BATCH_COUNT);
@@ -149,6 +201,8 @@ class DbLedgerStorageStats {
 
         throttledWriteRequests = stats.getCounter(THROTTLED_WRITE_REQUESTS);
         rejectedWriteRequests = stats.getCounter(REJECTED_WRITE_REQUESTS);
+        writeCacheRotations = stats.getCounter(WRITE_CACHE_ROTATIONS);
+        writeCacheThrottleTimeStats = stats.getOpStatsLogger(WRITE_CACHE_THROTTLE_TIME);
 
         writeCacheSizeGauge = new Gauge<Long>() {
             @Override
@@ -199,6 +253,24 @@ class DbLedgerStorageStats {
             }
         };
         stats.registerGauge(READ_CACHE_COUNT, readCacheCountGauge);
+
+        StatsLogger readCachePolicyStats = stats.scope(READ_CACHE_POLICY_SCOPE_PREFIX + readCachePolicyName);
+        readCachePolicyHits = readCachePolicyStats.getCounter(READ_CACHE_POLICY_HITS);
+        readCachePolicyMisses = readCachePolicyStats.getCounter(READ_CACHE_POLICY_MISSES);
+        readCachePolicyHitRatioGauge = new Gauge<Double>() {
+            @Override
+            public Double getDefaultValue() {
+                return 0.0;
+            }
+
+            @Override
+            public Double getSample() {
+                long hits = readCachePolicyHits.get();
+                long lookups = hits + readCachePolicyMisses.get();
+                return lookups > 0 ? 100.0 * hits / lookups : 0.0;
+            }
+        };
+        readCachePolicyStats.registerGauge(READ_CACHE_POLICY_HIT_RATIO, readCachePolicyHitRatioGauge);
     }
 
 }
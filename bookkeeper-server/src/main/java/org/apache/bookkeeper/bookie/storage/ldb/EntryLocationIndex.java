@@ -25,6 +25,7 @@ import com.google.common.collect.Iterables;
 import java.io.Closeable;
 import java.io.IOException;
 import java.nio.file.FileSystems;
+import java.util.Arrays;
 import java.util.Map.Entry;
 import java.util.Set;
 import java.util.concurrent.TimeUnit;
@@ -32,6 +33,7 @@ import java.util.concurrent.TimeUnit;
 import org.apache.bookkeeper.bookie.Bookie;
 import org.apache.bookkeeper.bookie.EntryLocation;
 import org.apache.bookkeeper.bookie.storage.ldb.KeyValueStorage.Batch;
+import org.apache.bookkeeper.bookie.storage.ldb.KeyValueStorage.CloseableIterator;
 import org.apache.bookkeeper.bookie.storage.ldb.KeyValueStorageFactory.DbConfigType;
 import org.apache.bookkeeper.conf.ServerConfiguration;
 import org.apache.bookkeeper.stats.StatsLogger;
@@ -50,7 +52,7 @@ public class EntryLocationIndex implements Closeable {
     private final KeyValueStorage locationsDb;
     private final ConcurrentLongHashSet deletedLedgers = new ConcurrentLongHashSet();
 
-    private final EntryLocationIndexStats stats;
+    protected final EntryLocationIndexStats stats;
 
     public EntryLocationIndex(ServerConfiguration conf, KeyValueStorageFactory storageFactory, String basePath,
             StatsLogger stats) throws IOException {
@@ -92,6 +94,48 @@ public class EntryLocationIndex implements Closeable {
         }
     }
 
+    /**
+     * Lookup the locations of a range of consecutive entries, with a single scan of the index.
+     *
+     * @param ledgerId
+     *            ledger id
+     * @param firstEntryId
+     *            id of the first entry of the range
+     * @param locations
+     *            array that will be filled with the location of entry <i>firstEntryId + i</i> at index <i>i</i>, or
+     *            0 if the entry is not found. The length of the array defines the size of the range.
+     * @return the number of entries found in the range
+     */
+    public int getLocations(long ledgerId, long firstEntryId, long[] locations) throws IOException {
+        Arrays.fill(locations, 0L);
+        if (locations.length == 0) {
+            return 0;
+        }
+
+        LongPairWrapper firstKey = LongPairWrapper.get(ledgerId, firstEntryId);
+        LongPairWrapper lastKey = LongPairWrapper.get(ledgerId, firstEntryId + locations.length);
+        int found = 0;
+
+        try (CloseableIterator<Entry<byte[], byte[]>> iterator = locationsDb.iterator(firstKey.array,
+                lastKey.array)) {
+            while (iterator.hasNext()) {
+                Entry<byte[], byte[]> entry = iterator.next();
+                long entryId = ArrayUtil.getLong(entry.getKey(), 8);
+                locations[(int) (entryId - firstEntryId)] = ArrayUtil.getLong(entry.getValue(), 0);
+                found++;
+            }
+        } finally {
+            firstKey.recycle();
+            lastKey.recycle();
+        }
+
+        if (log.isDebugEnabled()) {
+            log.debug("Found {} entries in db index for {}@{} - {}", found, ledgerId, firstEntryId,
+                    firstEntryId + locations.length - 1);
+        }
+        return found;
+    }
+
     public long getLastEntryInLedger(long ledgerId) throws IOException {
         if (deletedLedgers.contains(ledgerId)) {
             // Ledger already deleted
@@ -171,18 +215,19 @@ public class EntryLocationIndex implements Closeable {
         batch.close();
     }
 
+    protected boolean isDeleted(long ledgerId) {
+        return deletedLedgers.contains(ledgerId);
+    }
+
     public void delete(long ledgerId) throws IOException {
         // We need to find all the LedgerIndexPage records belonging to one specific
         // ledgers
         deletedLedgers.add(ledgerId);
     }
 
-    private static final int DELETE_ENTRIES_BATCH_SIZE = 100000;
-
     public void removeOffsetFromDeletedLedgers() throws IOException {
         LongPairWrapper firstKeyWrapper = LongPairWrapper.get(-1, -1);
         LongPairWrapper lastKeyWrapper = LongPairWrapper.get(-1, -1);
-        LongPairWrapper keyToDelete = LongPairWrapper.get(-1, -1);
 
         Set<Long> ledgersToDelete = deletedLedgers.items();
 
@@ -193,7 +238,8 @@ public class EntryLocationIndex implements Closeable {
         log.info("Deleting indexes for ledgers: {}", ledgersToDelete);
         long startTime = System.nanoTime();
         long deletedEntries = 0;
-        long deletedEntriesInBatch = 0;
+        long tombstones = 0;
+        boolean success = false;
 
         Batch batch = locationsDb.newBatch();
 
@@ -204,7 +250,6 @@ public class EntryLocationIndex implements Closeable {
                 }
 
                 firstKeyWrapper.set(ledgerId, 0);
-                lastKeyWrapper.set(ledgerId, Long.MAX_VALUE);
 
                 Entry<byte[], byte[]> firstKeyRes = locationsDb.getCeil(firstKeyWrapper.array);
                 if (firstKeyRes == null || ArrayUtil.getLong(firstKeyRes.getKey(), 0) != ledgerId) {
@@ -230,33 +275,29 @@ public class EntryLocationIndex implements Closeable {
                             ledgerId, firstEntryId, lastEntryId);
                 }
 
-                // Iterate over all the keys and remove each of them
-                for (long entryId = firstEntryId; entryId <= lastEntryId; entryId++) {
-                    keyToDelete.set(ledgerId, entryId);
-                    if (log.isDebugEnabled()) {
-                        log.debug("Deleting index for ({}, {})", keyToDelete.getFirst(), keyToDelete.getSecond());
-                    }
-                    batch.remove(keyToDelete.array);
-                    ++deletedEntriesInBatch;
-                    ++deletedEntries;
-                }
-
-                if (deletedEntriesInBatch > DELETE_ENTRIES_BATCH_SIZE) {
-                    batch.flush();
-                    batch.clear();
-                    deletedEntriesInBatch = 0;
-                }
+                // Remove all the keys of the ledger with a single range tombstone, instead of one tombstone per entry
+                firstKeyWrapper.set(ledgerId, firstEntryId);
+                lastKeyWrapper.set(ledgerId, lastEntryId + 1);
+                batch.deleteRange(firstKeyWrapper.array, lastKeyWrapper.array);
+                ++tombstones;
+                deletedEntries += lastEntryId - firstEntryId + 1;
             }
+
+            batch.flush();
+            success = true;
         } finally {
-            try {
-                batch.flush();
-                batch.clear();
-            } finally {
-
-                firstKeyWrapper.recycle();
-                lastKeyWrapper.recycle();
-                keyToDelete.recycle();
-                batch.close();
+            firstKeyWrapper.recycle();
+            lastKeyWrapper.recycle();
+            batch.close();
+
+            if (success) {
+                stats.getDeleteLedgersIndexesStats().registerSuccessfulEvent(System.nanoTime() - startTime,
+                        TimeUnit.NANOSECONDS);
+                stats.getDeletedEntries().add(deletedEntries);
+                stats.getIndexTombstones().add(tombstones);
+            } else {
+                stats.getDeleteLedgersIndexesStats().registerFailedEvent(System.nanoTime() - startTime,
+                        TimeUnit.NANOSECONDS);
             }
         }
 
@@ -24,7 +24,9 @@ import static org.apache.bookkeeper.bookie.BookKeeperServerStats.CATEGORY_SERVER
 
 import java.util.function.Supplier;
 import lombok.Getter;
+import org.apache.bookkeeper.stats.Counter;
 import org.apache.bookkeeper.stats.Gauge;
+import org.apache.bookkeeper.stats.OpStatsLogger;
 import org.apache.bookkeeper.stats.StatsLogger;
 import org.apache.bookkeeper.stats.annotations.StatsDoc;
 
@@ -40,6 +42,12 @@ import org.apache.bookkeeper.stats.annotations.StatsDoc;
 class EntryLocationIndexStats {
 
     private static final String ENTRIES_COUNT = "entries-count";
+    private static final String DELETE_LEDGERS_INDEXES = "delete-ledgers-indexes";
+    private static final String DELETED_ENTRIES = "deleted-entries";
+    private static final String INDEX_TOMBSTONES = "index-tombstones";
+    private static final String LOCATION_RUNS_HITS = "location-runs-hits";
+    private static final String LOCATION_RUNS_MISSES = "location-runs-misses";
+    private static final String LOCATION_RUNS_MEMORY = "location-runs-memory";
 
     @StatsDoc(
         name = ENTRIES_COUNT,
@@ -47,8 +55,47 @@ class EntryLocationIndexStats {
     )
     private final Gauge<Long> entriesCountGauge;
 
+    @StatsDoc(
+        name = DELETE_LEDGERS_INDEXES,
+        help = "operation stats of removing the indexes of the deleted ledgers"
+    )
+    private final OpStatsLogger deleteLedgersIndexesStats;
+
+    @StatsDoc(
+        name = DELETED_ENTRIES,
+        help = "Number of entries removed from the index of the deleted ledgers"
+    )
+    private final Counter deletedEntries;
+
+    @StatsDoc(
+        name = INDEX_TOMBSTONES,
+        help = "Number of tombstones written to the index when removing entries, range tombstones included"
+    )
+    private final Counter indexTombstones;
+
+    @StatsDoc(
+        name = LOCATION_RUNS_HITS,
+        help = "Number of entry location lookups answered by the in-memory location runs"
+    )
+    private final Counter locationRunsHits;
+
+    @StatsDoc(
+        name = LOCATION_RUNS_MISSES,
+        help = "Number of entry location lookups not found in the in-memory location runs"
+    )
+    private final Counter locationRunsMisses;
+
+    @StatsDoc(
+        name = LOCATION_RUNS_MEMORY,
+        help = "Direct memory used by the in-memory location runs"
+    )
+    private Gauge<Long> locationRunsMemoryGauge;
+
+    private final StatsLogger statsLogger;
+
     EntryLocationIndexStats(StatsLogger statsLogger,
                             Supplier<Long> entriesCountSupplier) {
+        this.statsLogger = statsLogger;
         entriesCountGauge = new Gauge<Long>() {
             @Override
             public Long getDefaultValue() {
@@ -61,6 +108,27 @@ class EntryLocationIndexStats {
             }
         };
         statsLogger.registerGauge(ENTRIES_COUNT, entriesCountGauge);
+
+        deleteLedgersIndexesStats = statsLogger.getOpStatsLogger(DELETE_LEDGERS_INDEXES);
+        deletedEntries = statsLogger.getCounter(DELETED_ENTRIES);
+        indexTombstones = statsLogger.getCounter(INDEX_TOMBSTONES);
+        locationRunsHits = statsLogger.getCounter(LOCATION_RUNS_HITS);
+        locationRunsMisses = statsLogger.getCounter(LOCATION_RUNS_MISSES);
+    }
+
+    void registerLocationRunsMemoryGauge(Supplier<Long> locationRunsMemorySupplier) {
+        locationRunsMemoryGauge = new Gauge<Long>() {
+            @Override
+            public Long getDefaultValue() {
+                return 0L;
+            }
+
+            @Override
+            public Long getSample() {
+                return locationRunsMemorySupplier.get();
+            }
+        };
+        statsLogger.registerGauge(LOCATION_RUNS_MEMORY, locationRunsMemoryGauge);
     }
 
 }
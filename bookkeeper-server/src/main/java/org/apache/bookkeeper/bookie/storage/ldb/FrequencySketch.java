@@ -0,0 +1,151 @@
+/**
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *
+ */
+package org.apache.bookkeeper.bookie.storage.ldb;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Probabilistic estimation of the access frequency of (ledgerId, entryId) pairs.
+ *
+ * <p>This is a count-min sketch with 4 rows of 4-bit counters, packed 16 per long. To keep the estimation biased
+ * toward recent accesses, all the counters are halved once the number of recorded accesses reaches the sample size
+ * (the "reset" operation of TinyLFU).
+ *
+ * <p>Updates are lock-free. Concurrent halving and increments can race and lose an increment, which is acceptable
+ * for a frequency estimation.
+ */
+class FrequencySketch {
+
+    private static final int MAX_COUNTER_VALUE = 15;
+    private static final long RESET_MASK = 0x7777777777777777L;
+
+    private static final long[] SEEDS = {
+        0xc3a5c85c97cb3127L, 0xb492b66fbe98f273L, 0x9ae16a3b2f90404fL, 0xcbf29ce484222325L
+    };
+
+    private static final int MIN_TABLE_SIZE = 64;
+    private static final int MAX_TABLE_SIZE = 1 << 22;
+
+    private final AtomicLongArray table;
+    private final int tableMask;
+
+    private final int sampleSize;
+    private final AtomicInteger additions = new AtomicInteger();
+
+    /**
+     * @param expectedItems
+     *            the number of distinct items that are expected to be tracked at a given time
+     */
+    FrequencySketch(long expectedItems) {
+        int tableSize = (int) Math.min(MAX_TABLE_SIZE, Math.max(MIN_TABLE_SIZE, expectedItems));
+        tableSize = Integer.highestOneBit(tableSize - 1) << 1;
+
+        this.table = new AtomicLongArray(tableSize);
+        this.tableMask = tableSize - 1;
+        this.sampleSize = 10 * tableSize;
+    }
+
+    /**
+     * @return the estimated number of accesses to the entry, capped at 15
+     */
+    int frequency(long ledgerId, long entryId) {
+        long hash = hash(ledgerId, entryId);
+        int frequency = MAX_COUNTER_VALUE;
+        for (int i = 0; i < SEEDS.length; i++) {
+            long h = rehash(hash, i);
+            int offset = counterOffset(h);
+            int count = (int) ((table.get(slot(h)) >>> offset) & MAX_COUNTER_VALUE);
+            frequency = Math.min(frequency, count);
+        }
+        return frequency;
+    }
+
+    /**
+     * Record an access to the entry.
+     */
+    void increment(long ledgerId, long entryId) {
+        long hash = hash(ledgerId, entryId);
+        boolean added = false;
+        for (int i = 0; i < SEEDS.length; i++) {
+            long h = rehash(hash, i);
+            added |= incrementAt(slot(h), counterOffset(h));
+        }
+
+        if (added && additions.incrementAndGet() == sampleSize) {
+            reset();
+        }
+    }
+
+    private boolean incrementAt(int slot, int offset) {
+        long mask = ((long) MAX_COUNTER_VALUE) << offset;
+        while (true) {
+            long current = table.get(slot);
+            if ((current & mask) == mask) {
+                // Counter is already saturated
+                return false;
+            }
+
+            if (table.compareAndSet(slot, current, current + (1L << offset))) {
+                return true;
+            }
+        }
+    }
+
+    /**
+     * Halve all the counters, so that old accesses will weight less than recent ones.
+     */
+    private void reset() {
+        for (int i = 0; i < table.length(); i++) {
+            while (true) {
+                long current = table.get(i);
+                if (table.compareAndSet(i, current, (current >>> 1) & RESET_MASK)) {
+                    break;
+                }
+            }
+        }
+
+        additions.addAndGet(-(sampleSize / 2));
+    }
+
+    private int slot(long h) {
+        return (int) (h >>> 32) & tableMask;
+    }
+
+    private static int counterOffset(long h) {
+        // Select one of the 16 counters in the slot
+        return ((int) h & 15) << 2;
+    }
+
+    private static long rehash(long hash, int i) {
+        long h = (hash + SEEDS[i]) * SEEDS[i];
+        return h ^ (h >>> 29);
+    }
+
+    private static long hash(long key1, long key2) {
+        long hash = key1 * 0xc6a4a7935bd1e995L;
+        hash ^= hash >>> 47;
+        hash *= 0xc6a4a7935bd1e995L;
+        hash += 31 + (key2 * 0xc6a4a7935bd1e995L);
+        hash ^= hash >>> 47;
+        return hash;
+    }
+}
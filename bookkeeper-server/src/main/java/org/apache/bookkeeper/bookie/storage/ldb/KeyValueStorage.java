@@ -96,6 +96,26 @@ public interface KeyValueStorage extends Closeable {
      */
     void delete(byte[] key) throws IOException;
 
+    /**
+     * Delete all the keys within a specified range.
+     *
+     * <p>The default implementation deletes each key of the range. Implementations should override it when the
+     * underlying database can delete a range with a single operation.
+     *
+     * @param beginKey
+     *            the first key in the range (included)
+     * @param endKey
+     *            the last key in the range (not included)
+     * @throws IOException
+     */
+    default void deleteRange(byte[] beginKey, byte[] endKey) throws IOException {
+        try (CloseableIterator<byte[]> iterator = keys(beginKey, endKey)) {
+            while (iterator.hasNext()) {
+                delete(iterator.next());
+            }
+        }
+    }
+
     /**
      * Get an iterator over to scan sequentially through all the keys in the
      * database.
@@ -122,6 +142,17 @@ public interface KeyValueStorage extends Closeable {
      */
     CloseableIterator<Entry<byte[], byte[]>> iterator();
 
+    /**
+     * Return an iterator object that can be used to sequentially scan through all
+     * the entries within a specified range.
+     *
+     * @param firstKey
+     *            the first key in the range (included)
+     * @param lastKey
+     *            the lastKey in the range (not included)
+     */
+    CloseableIterator<Entry<byte[], byte[]>> iterator(byte[] firstKey, byte[] lastKey);
+
     /**
      * Commit all pending write to durable storage.
      */
@@ -159,4 +190,44 @@ public interface KeyValueStorage extends Closeable {
 
         void flush() throws IOException;
     }
+
+    /**
+     * Create a bulk load, to write a large number of keys in the storage.
+     *
+     * <p>The default implementation writes the keys through a {@link Batch}. Implementations should override it when
+     * the underlying database can load sorted files directly.
+     *
+     * @param tmpPath
+     *            path of a file that the bulk load can use to stage the keys before loading them
+     */
+    default BulkLoad newBulkLoad(String tmpPath) throws IOException {
+        Batch batch = newBatch();
+        return new BulkLoad() {
+            @Override
+            public void put(byte[] key, byte[] value) throws IOException {
+                batch.put(key, value);
+            }
+
+            @Override
+            public void load() throws IOException {
+                batch.flush();
+            }
+
+            @Override
+            public void close() throws IOException {
+                batch.close();
+            }
+        };
+    }
+
+    /**
+     * Interface for a bulk load of keys in the storage.
+     *
+     * <p>The keys must be added in strictly ascending order and are only visible after {@link #load()}.
+     */
+    public interface BulkLoad extends Closeable {
+        void put(byte[] key, byte[] value) throws IOException;
+
+        void load() throws IOException;
+    }
 }
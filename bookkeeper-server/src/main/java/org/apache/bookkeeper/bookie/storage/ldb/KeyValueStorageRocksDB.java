@@ -28,7 +28,9 @@ import com.google.common.primitives.UnsignedBytes;
 import io.netty.util.internal.PlatformDependent;
 //CHECKSTYLE.ON: IllegalImport
 
+import java.io.File;
 import java.io.IOException;
+import java.util.Collections;
 import java.util.Comparator;
 import java.util.Map.Entry;
 import java.util.concurrent.TimeUnit;
@@ -39,12 +41,16 @@ import org.rocksdb.BlockBasedTableConfig;
 import org.rocksdb.BloomFilter;
 import org.rocksdb.ChecksumType;
 import org.rocksdb.CompressionType;
+import org.rocksdb.EnvOptions;
 import org.rocksdb.InfoLogLevel;
+import org.rocksdb.IngestExternalFileOptions;
 import org.rocksdb.Options;
 import org.rocksdb.ReadOptions;
 import org.rocksdb.RocksDB;
 import org.rocksdb.RocksDBException;
 import org.rocksdb.RocksIterator;
+import org.rocksdb.Slice;
+import org.rocksdb.SstFileWriter;
 import org.rocksdb.WriteBatch;
 import org.rocksdb.WriteOptions;
 import org.slf4j.Logger;
@@ -59,6 +65,8 @@ public class KeyValueStorageRocksDB implements KeyValueStorage {
             conf);
 
     private final RocksDB db;
+    // Options the database was opened with, also used to write the SST files of the bulk loads
+    private final Options options;
 
     private final WriteOptions optionSync;
     private final WriteOptions optionDontSync;
@@ -97,7 +105,8 @@ public class KeyValueStorageRocksDB implements KeyValueStorage {
         this.optionDontCache = new ReadOptions();
         this.emptyBatch = new WriteBatch();
 
-        try (Options options = new Options()) {
+        this.options = new Options();
+        try {
             options.setCreateIfMissing(true);
 
             if (dbConfigType == DbConfigType.Huge) {
@@ -172,15 +181,17 @@ public class KeyValueStorageRocksDB implements KeyValueStorage {
             options.setKeepLogFileNum(30);
             options.setLogFileTimeToRoll(TimeUnit.DAYS.toSeconds(1));
 
-            try {
-                if (readOnly) {
-                    db = RocksDB.openReadOnly(options, path);
-                } else {
-                    db = RocksDB.open(options, path);
-                }
-            } catch (RocksDBException e) {
-                throw new IOException("Error open RocksDB database", e);
+            if (readOnly) {
+                db = RocksDB.openReadOnly(options, path);
+            } else {
+                db = RocksDB.open(options, path);
             }
+        } catch (RocksDBException e) {
+            options.close();
+            throw new IOException("Error open RocksDB database", e);
+        } catch (RuntimeException e) {
+            options.close();
+            throw e;
         }
 
         optionSync.setSync(true);
@@ -193,6 +204,7 @@ public class KeyValueStorageRocksDB implements KeyValueStorage {
     @Override
     public void close() throws IOException {
         db.close();
+        options.close();
         optionSync.close();
         optionDontSync.close();
         optionCache.close();
@@ -286,6 +298,15 @@ public class KeyValueStorageRocksDB implements KeyValueStorage {
         }
     }
 
+    @Override
+    public void deleteRange(byte[] beginKey, byte[] endKey) throws IOException {
+        try {
+            db.deleteRange(optionDontSync, beginKey, endKey);
+        } catch (RocksDBException e) {
+            throw new IOException("Error in RocksDB deleteRange", e);
+        }
+    }
+
     @Override
     public void sync() throws IOException {
         try {
@@ -375,6 +396,34 @@ public class KeyValueStorageRocksDB implements KeyValueStorage {
         };
     }
 
+    @Override
+    public CloseableIterator<Entry<byte[], byte[]>> iterator(byte[] firstKey, byte[] lastKey) {
+        final RocksIterator iterator = db.newIterator(optionCache);
+        iterator.seek(firstKey);
+        final EntryWrapper entryWrapper = new EntryWrapper();
+
+        return new CloseableIterator<Entry<byte[], byte[]>>() {
+            @Override
+            public boolean hasNext() {
+                return iterator.isValid() && ByteComparator.compare(iterator.key(), lastKey) < 0;
+            }
+
+            @Override
+            public Entry<byte[], byte[]> next() {
+                checkState(iterator.isValid());
+                entryWrapper.key = iterator.key();
+                entryWrapper.value = iterator.value();
+                iterator.next();
+                return entryWrapper;
+            }
+
+            @Override
+            public void close() {
+                iterator.close();
+            }
+        };
+    }
+
     @Override
     public long count() throws IOException {
         try {
@@ -389,6 +438,70 @@ public class KeyValueStorageRocksDB implements KeyValueStorage {
         return new RocksDBBatch();
     }
 
+    @Override
+    public BulkLoad newBulkLoad(String tmpPath) throws IOException {
+        return new RocksDBBulkLoad(tmpPath);
+    }
+
+    /**
+     * Bulk load that writes the keys in a SST file, which is then ingested in the database without going through the
+     * memtables and the WAL.
+     */
+    private class RocksDBBulkLoad implements BulkLoad {
+        private final String path;
+        private final EnvOptions envOptions = new EnvOptions();
+        private final SstFileWriter writer;
+        private long count = 0;
+
+        RocksDBBulkLoad(String path) throws IOException {
+            this.path = path;
+            // Write the file with the compression, the bloom filters and the block format of the database, which
+            // are kept by the ingested files until they get compacted
+            this.writer = new SstFileWriter(envOptions, options);
+            try {
+                writer.open(path);
+            } catch (RocksDBException e) {
+                close();
+                throw new IOException("Failed to open SST file " + path, e);
+            }
+        }
+
+        @Override
+        public void put(byte[] key, byte[] value) throws IOException {
+            try (Slice keySlice = new Slice(key); Slice valueSlice = new Slice(value)) {
+                writer.put(keySlice, valueSlice);
+                ++count;
+            } catch (RocksDBException e) {
+                throw new IOException("Failed to write SST file " + path, e);
+            }
+        }
+
+        @Override
+        public void load() throws IOException {
+            if (count == 0) {
+                // An empty SST file can't be finished
+                return;
+            }
+
+            try (IngestExternalFileOptions ingestOptions = new IngestExternalFileOptions()) {
+                writer.finish();
+                ingestOptions.setMoveFiles(true);
+                db.ingestExternalFile(Collections.singletonList(path), ingestOptions);
+            } catch (RocksDBException e) {
+                throw new IOException("Failed to ingest SST file " + path, e);
+            }
+        }
+
+        @Override
+        public void close() {
+            writer.close();
+            envOptions.close();
+
+            // The file is linked into the database when ingested, so it can always be removed
+            new File(path).delete();
+        }
+    }
+
     private class RocksDBBatch implements Batch {
         private final WriteBatch writeBatch = new WriteBatch();
 
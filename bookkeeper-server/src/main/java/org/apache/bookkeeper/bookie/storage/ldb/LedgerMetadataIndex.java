@@ -20,27 +20,38 @@
  */
 package org.apache.bookkeeper.bookie.storage.ldb;
 
+import com.google.common.annotations.VisibleForTesting;
 import com.google.common.base.Predicate;
 import com.google.common.collect.Iterables;
 import com.google.protobuf.ByteString;
 
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.PooledByteBufAllocator;
+import io.netty.buffer.Unpooled;
+import io.netty.util.concurrent.FastThreadLocal;
+
 import java.io.Closeable;
 import java.io.IOException;
 import java.nio.file.FileSystems;
 import java.util.AbstractMap.SimpleEntry;
+import java.util.ArrayDeque;
 import java.util.Arrays;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.Map;
 import java.util.Map.Entry;
 import java.util.concurrent.ConcurrentLinkedQueue;
-import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.TimeUnit;
 
 import org.apache.bookkeeper.bookie.Bookie;
 import org.apache.bookkeeper.bookie.BookieException;
 import org.apache.bookkeeper.bookie.storage.ldb.DbLedgerStorageDataFormats.LedgerData;
+import org.apache.bookkeeper.bookie.storage.ldb.KeyValueStorage.Batch;
 import org.apache.bookkeeper.bookie.storage.ldb.KeyValueStorage.CloseableIterator;
 import org.apache.bookkeeper.bookie.storage.ldb.KeyValueStorageFactory.DbConfigType;
 import org.apache.bookkeeper.conf.ServerConfiguration;
 import org.apache.bookkeeper.stats.StatsLogger;
-import org.apache.bookkeeper.util.collections.ConcurrentLongHashMap;
+import org.apache.bookkeeper.util.collections.ConcurrentLongStructHashMap;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -48,11 +59,33 @@ import org.slf4j.LoggerFactory;
  * Maintains an index for the ledgers metadata.
  *
  * <p>The key is the ledgerId and the value is the {@link LedgerData} content.
+ *
+ * <p>All the ledgers are kept in memory, in an off-heap map holding for each ledger its flags and a reference to its
+ * master key. Ledgers commonly share the same master key, so the distinct master keys are kept once, with a reference
+ * count. The {@link LedgerData} objects are only built when requested.
  */
 public class LedgerMetadataIndex implements Closeable {
+    // Layout of the struct stored for each ledger
+    private static final int FLAGS_OFFSET = 0;
+    private static final int MASTER_KEY_REF_OFFSET = 4;
+    private static final int LEDGER_STRUCT_SIZE = 8;
+
+    private static final int FLAG_EXISTS = 0x1;
+    private static final int FLAG_FENCED = 0x2;
+
+    private static final FastThreadLocal<ByteBuf> readStruct = new FastThreadLocal<ByteBuf>() {
+        @Override
+        protected ByteBuf initialValue() throws Exception {
+            return Unpooled.buffer(LEDGER_STRUCT_SIZE, LEDGER_STRUCT_SIZE);
+        }
+    };
+
     // Contains all ledgers stored in the bookie
-    private final ConcurrentLongHashMap<LedgerData> ledgers;
-    private final AtomicInteger ledgersCount;
+    private final ConcurrentLongStructHashMap ledgers;
+    private final MasterKeys masterKeys;
+
+    // Struct used by the mutators, which are serialized on the index
+    private final ByteBuf writeStruct = Unpooled.buffer(LEDGER_STRUCT_SIZE, LEDGER_STRUCT_SIZE);
 
     private final KeyValueStorage ledgersDb;
     private final LedgerMetadataIndexStats stats;
@@ -68,8 +101,8 @@ public class LedgerMetadataIndex implements Closeable {
         String ledgersPath = FileSystems.getDefault().getPath(basePath, "ledgers").toFile().toString();
         ledgersDb = storageFactory.newKeyValueStorage(ledgersPath, DbConfigType.Small, conf);
 
-        ledgers = new ConcurrentLongHashMap<>();
-        ledgersCount = new AtomicInteger();
+        ledgers = new ConcurrentLongStructHashMap(LEDGER_STRUCT_SIZE, 1024, 16, PooledByteBufAllocator.DEFAULT);
+        masterKeys = new MasterKeys();
 
         // Read all ledgers from db
         CloseableIterator<Entry<byte[], byte[]>> iterator = ledgersDb.iterator();
@@ -78,58 +111,131 @@ public class LedgerMetadataIndex implements Closeable {
                 Entry<byte[], byte[]> entry = iterator.next();
                 long ledgerId = ArrayUtil.getLong(entry.getKey(), 0);
                 LedgerData ledgerData = LedgerData.parseFrom(entry.getValue());
-                ledgers.put(ledgerId, ledgerData);
-                ledgersCount.incrementAndGet();
+                putLedger(ledgerId, ledgerData.getExists(), ledgerData.getFenced(),
+                        masterKeys.acquire(ledgerData.getMasterKey()));
             }
+        } catch (IOException | RuntimeException e) {
+            ledgers.close();
+            throw e;
         } finally {
             iterator.close();
         }
 
+        if (log.isDebugEnabled()) {
+            log.debug("Loaded {} ledgers with {} distinct master keys, using {} bytes", ledgers.size(),
+                    masterKeys.size(), ledgers.getMemorySize());
+        }
+
         this.pendingLedgersUpdates = new ConcurrentLinkedQueue<Entry<Long, LedgerData>>();
         this.pendingDeletedLedgers = new ConcurrentLinkedQueue<Long>();
 
         this.stats = new LedgerMetadataIndexStats(
             stats,
-            () -> (long) ledgersCount.get());
+            () -> ledgers.size(),
+            () -> ledgers.getMemorySize());
     }
 
     @Override
     public void close() throws IOException {
         ledgersDb.close();
+        ledgers.close();
     }
 
     public LedgerData get(long ledgerId) throws IOException {
-        LedgerData ledgerData = ledgers.get(ledgerId);
-        if (ledgerData == null) {
+        // Read the struct under the lock, so that its master key reference can't be released meanwhile
+        synchronized (this) {
+            ByteBuf struct = readLedger(ledgerId);
+            return toLedgerData(struct.getInt(FLAGS_OFFSET), masterKeys.get(struct.getInt(MASTER_KEY_REF_OFFSET)));
+        }
+    }
+
+    /**
+     * @return the number of distinct master keys referenced by the ledgers
+     */
+    @VisibleForTesting
+    synchronized int getMasterKeysCount() {
+        return masterKeys.size();
+    }
+
+    private static LedgerData toLedgerData(int flags, ByteString masterKey) {
+        return LedgerData.newBuilder()
+                .setExists((flags & FLAG_EXISTS) != 0)
+                .setFenced((flags & FLAG_FENCED) != 0)
+                .setMasterKey(masterKey)
+                .build();
+    }
+
+    /**
+     * Check whether the ledger exists, without building its {@link LedgerData}.
+     */
+    public boolean exists(long ledgerId) {
+        ByteBuf struct = readStruct.get().clear();
+        return ledgers.get(ledgerId, struct) && (struct.getInt(FLAGS_OFFSET) & FLAG_EXISTS) != 0;
+    }
+
+    /**
+     * Check whether the ledger is fenced, without building its {@link LedgerData}.
+     */
+    public boolean isFenced(long ledgerId) throws IOException {
+        return (readLedger(ledgerId).getInt(FLAGS_OFFSET) & FLAG_FENCED) != 0;
+    }
+
+    private ByteBuf readLedger(long ledgerId) throws IOException {
+        ByteBuf struct = readStruct.get().clear();
+        if (!ledgers.get(ledgerId, struct)) {
             if (log.isDebugEnabled()) {
                 log.debug("Ledger not found {}", ledgerId);
             }
             throw new Bookie.NoLedgerException(ledgerId);
         }
 
-        return ledgerData;
+        return struct;
+    }
+
+    private boolean putLedger(long ledgerId, boolean exists, boolean fenced, int masterKeyRef) {
+        int flags = (exists ? FLAG_EXISTS : 0) | (fenced ? FLAG_FENCED : 0);
+        writeStruct.clear().writeInt(flags).writeInt(masterKeyRef);
+        return ledgers.put(ledgerId, writeStruct);
+    }
+
+    /**
+     * Store the ledger data in the map, replacing the master key reference of the previous value.
+     *
+     * @return true if the ledger was not in the map
+     */
+    private boolean putLedgerData(long ledgerId, LedgerData ledgerData) {
+        int masterKeyRef = masterKeys.acquire(ledgerData.getMasterKey());
+        ByteBuf struct = writeStruct.clear();
+        boolean existing = ledgers.get(ledgerId, struct);
+        if (existing) {
+            masterKeys.release(struct.getInt(MASTER_KEY_REF_OFFSET));
+        }
+
+        putLedger(ledgerId, ledgerData.getExists(), ledgerData.getFenced(), masterKeyRef);
+        return !existing;
     }
 
-    public void set(long ledgerId, LedgerData ledgerData) throws IOException {
+    public synchronized void set(long ledgerId, LedgerData ledgerData) throws IOException {
         ledgerData = LedgerData.newBuilder(ledgerData).setExists(true).build();
 
-        if (ledgers.put(ledgerId, ledgerData) == null) {
+        if (putLedgerData(ledgerId, ledgerData)) {
             if (log.isDebugEnabled()) {
                 log.debug("Added new ledger {}", ledgerId);
             }
-            ledgersCount.incrementAndGet();
         }
 
         pendingLedgersUpdates.add(new SimpleEntry<Long, LedgerData>(ledgerId, ledgerData));
         pendingDeletedLedgers.remove(ledgerId);
     }
 
-    public void delete(long ledgerId) throws IOException {
-        if (ledgers.remove(ledgerId) != null) {
+    public synchronized void delete(long ledgerId) throws IOException {
+        ByteBuf struct = writeStruct.clear();
+        if (ledgers.get(ledgerId, struct)) {
+            masterKeys.release(struct.getInt(MASTER_KEY_REF_OFFSET));
+            ledgers.remove(ledgerId);
             if (log.isDebugEnabled()) {
                 log.debug("Removed ledger {}", ledgerId);
             }
-            ledgersCount.decrementAndGet();
         }
 
         pendingDeletedLedgers.add(ledgerId);
@@ -146,7 +252,7 @@ public class LedgerMetadataIndex implements Closeable {
         });
     }
 
-    public boolean setFenced(long ledgerId) throws IOException {
+    public synchronized boolean setFenced(long ledgerId) throws IOException {
         LedgerData ledgerData = get(ledgerId);
         if (ledgerData.getFenced()) {
             return false;
@@ -154,12 +260,11 @@ public class LedgerMetadataIndex implements Closeable {
 
         LedgerData newLedgerData = LedgerData.newBuilder(ledgerData).setFenced(true).build();
 
-        if (ledgers.put(ledgerId, newLedgerData) == null) {
+        if (putLedgerData(ledgerId, newLedgerData)) {
             // Ledger had been deleted
             if (log.isDebugEnabled()) {
                 log.debug("Re-inserted fenced ledger {}", ledgerId);
             }
-            ledgersCount.incrementAndGet();
         } else {
             if (log.isDebugEnabled()) {
                 log.debug("Set fenced ledger {}", ledgerId);
@@ -171,9 +276,10 @@ public class LedgerMetadataIndex implements Closeable {
         return true;
     }
 
-    public void setMasterKey(long ledgerId, byte[] masterKey) throws IOException {
-        LedgerData ledgerData = ledgers.get(ledgerId);
-        if (ledgerData == null) {
+    public synchronized void setMasterKey(long ledgerId, byte[] masterKey) throws IOException {
+        LedgerData ledgerData;
+        ByteBuf struct = writeStruct.clear();
+        if (!ledgers.get(ledgerId, struct)) {
             // New ledger inserted
             ledgerData = LedgerData.newBuilder().setExists(true).setFenced(false)
                     .setMasterKey(ByteString.copyFrom(masterKey)).build();
@@ -181,6 +287,8 @@ public class LedgerMetadataIndex implements Closeable {
                 log.debug("Inserting new ledger {}", ledgerId);
             }
         } else {
+            ledgerData = toLedgerData(struct.getInt(FLAGS_OFFSET),
+                    masterKeys.get(struct.getInt(MASTER_KEY_REF_OFFSET)));
             byte[] storedMasterKey = ledgerData.getMasterKey().toByteArray();
             if (ArrayUtil.isArrayAllZeros(storedMasterKey)) {
                 // update master key of the ledger
@@ -194,9 +302,7 @@ public class LedgerMetadataIndex implements Closeable {
             }
         }
 
-        if (ledgers.put(ledgerId, ledgerData) == null) {
-            ledgersCount.incrementAndGet();
-        }
+        putLedgerData(ledgerId, ledgerData);
 
         pendingLedgersUpdates.add(new SimpleEntry<Long, LedgerData>(ledgerId, ledgerData));
         pendingDeletedLedgers.remove(ledgerId);
@@ -226,22 +332,113 @@ public class LedgerMetadataIndex implements Closeable {
     }
 
     public void removeDeletedLedgers() throws IOException {
-        LongWrapper key = LongWrapper.get();
+        int deletedLedgers = pendingDeletedLedgers.size();
+        long[] ledgerIds = new long[deletedLedgers];
+        int idx = 0;
+        Long ledgerId;
+        while (idx < ledgerIds.length && (ledgerId = pendingDeletedLedgers.poll()) != null) {
+            ledgerIds[idx++] = ledgerId;
+        }
+        if (idx == 0) {
+            return;
+        }
+        deletedLedgers = idx;
+
+        long startTime = System.nanoTime();
+        long tombstones = 0;
+        boolean success = false;
+
+        // Ledger ids are mostly allocated sequentially, so the deleted ledgers are often consecutive: delete each run
+        // of consecutive ids with a single range tombstone. Negative ids and Long.MAX_VALUE are never merged into a
+        // run, since the keys are compared as unsigned bytes and the end of their range would sort before its start
+        Arrays.sort(ledgerIds, 0, deletedLedgers);
+        LongWrapper firstKey = LongWrapper.get();
+        LongWrapper lastKey = LongWrapper.get();
+        Batch batch = ledgersDb.newBatch();
+        try {
+            int runStart = 0;
+            for (int i = 1; i <= deletedLedgers; i++) {
+                if (i < deletedLedgers && ledgerIds[i - 1] >= 0 && ledgerIds[i] < Long.MAX_VALUE
+                        && ledgerIds[i] <= ledgerIds[i - 1] + 1) {
+                    continue;
+                }
 
-        int deletedLedgers = 0;
-        while (!pendingDeletedLedgers.isEmpty()) {
-            long ledgerId = pendingDeletedLedgers.poll();
-            key.set(ledgerId);
-            ledgersDb.delete(key.array);
-            deletedLedgers++;
+                firstKey.set(ledgerIds[runStart]);
+                if (ledgerIds[i - 1] == ledgerIds[runStart]) {
+                    batch.remove(firstKey.array);
+                } else {
+                    lastKey.set(ledgerIds[i - 1] + 1);
+                    batch.deleteRange(firstKey.array, lastKey.array);
+                }
+                tombstones++;
+                runStart = i;
+            }
+
+            if (log.isDebugEnabled()) {
+                log.debug("Persisting deletes of ledgers {} with {} tombstones", deletedLedgers, tombstones);
+            }
+
+            batch.flush();
+            success = true;
+        } finally {
+            firstKey.recycle();
+            lastKey.recycle();
+            batch.close();
+
+            if (success) {
+                stats.getDeleteLedgersStats().registerSuccessfulEvent(System.nanoTime() - startTime,
+                        TimeUnit.NANOSECONDS);
+                stats.getLedgersTombstones().add(tombstones);
+            } else {
+                stats.getDeleteLedgersStats().registerFailedEvent(System.nanoTime() - startTime,
+                        TimeUnit.NANOSECONDS);
+            }
         }
+    }
 
-        if (log.isDebugEnabled()) {
-            log.debug("Persisting deletes of ledgers {}", deletedLedgers);
+    /**
+     * Registry of the distinct master keys of the ledgers, referenced by an int id.
+     *
+     * <p>Access must be synchronized on the index.
+     */
+    private static class MasterKeys {
+        private final Map<ByteString, Integer> ids = new HashMap<>();
+        private final Deque<Integer> freeIds = new ArrayDeque<>();
+        private ByteString[] keys = new ByteString[16];
+        private int[] refCounts = new int[16];
+        private int nextId = 0;
+
+        int acquire(ByteString masterKey) {
+            Integer id = ids.get(masterKey);
+            if (id == null) {
+                id = freeIds.isEmpty() ? nextId++ : freeIds.poll();
+                if (id >= keys.length) {
+                    keys = Arrays.copyOf(keys, keys.length * 2);
+                    refCounts = Arrays.copyOf(refCounts, refCounts.length * 2);
+                }
+                keys[id] = masterKey;
+                ids.put(masterKey, id);
+            }
+
+            refCounts[id]++;
+            return id;
         }
 
-        ledgersDb.sync();
-        key.recycle();
+        void release(int id) {
+            if (--refCounts[id] == 0) {
+                ids.remove(keys[id]);
+                keys[id] = null;
+                freeIds.add(id);
+            }
+        }
+
+        ByteString get(int id) {
+            return keys[id];
+        }
+
+        int size() {
+            return ids.size();
+        }
     }
 
     private static final Logger log = LoggerFactory.getLogger(LedgerMetadataIndex.class);
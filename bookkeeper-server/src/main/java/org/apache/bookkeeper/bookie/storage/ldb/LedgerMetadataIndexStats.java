@@ -24,7 +24,9 @@ import static org.apache.bookkeeper.bookie.BookKeeperServerStats.CATEGORY_SERVER
 
 import java.util.function.Supplier;
 import lombok.Getter;
+import org.apache.bookkeeper.stats.Counter;
 import org.apache.bookkeeper.stats.Gauge;
+import org.apache.bookkeeper.stats.OpStatsLogger;
 import org.apache.bookkeeper.stats.StatsLogger;
 import org.apache.bookkeeper.stats.annotations.StatsDoc;
 
@@ -40,6 +42,9 @@ import org.apache.bookkeeper.stats.annotations.StatsDoc;
 class LedgerMetadataIndexStats {
 
     private static final String LEDGERS_COUNT = "ledgers-count";
+    private static final String LEDGERS_MEMORY = "ledgers-memory";
+    private static final String DELETE_LEDGERS = "delete-ledgers";
+    private static final String LEDGERS_TOMBSTONES = "ledgers-tombstones";
 
     @StatsDoc(
         name = LEDGERS_COUNT,
@@ -47,8 +52,27 @@ class LedgerMetadataIndexStats {
     )
     private final Gauge<Long> ledgersCountGauge;
 
+    @StatsDoc(
+        name = LEDGERS_MEMORY,
+        help = "Direct memory used to keep the ledgers in memory, in bytes"
+    )
+    private final Gauge<Long> ledgersMemoryGauge;
+
+    @StatsDoc(
+        name = DELETE_LEDGERS,
+        help = "operation stats of persisting the deletes of ledgers"
+    )
+    private final OpStatsLogger deleteLedgersStats;
+
+    @StatsDoc(
+        name = LEDGERS_TOMBSTONES,
+        help = "Number of tombstones written to the ledgers index, range tombstones included"
+    )
+    private final Counter ledgersTombstones;
+
     LedgerMetadataIndexStats(StatsLogger statsLogger,
-                             Supplier<Long> ledgersCountSupplier) {
+                             Supplier<Long> ledgersCountSupplier,
+                             Supplier<Long> ledgersMemorySupplier) {
         ledgersCountGauge = new Gauge<Long>() {
             @Override
             public Long getDefaultValue() {
@@ -61,6 +85,22 @@ class LedgerMetadataIndexStats {
             }
         };
         statsLogger.registerGauge(LEDGERS_COUNT, ledgersCountGauge);
+
+        ledgersMemoryGauge = new Gauge<Long>() {
+            @Override
+            public Long getDefaultValue() {
+                return 0L;
+            }
+
+            @Override
+            public Long getSample() {
+                return ledgersMemorySupplier.get();
+            }
+        };
+        statsLogger.registerGauge(LEDGERS_MEMORY, ledgersMemoryGauge);
+
+        deleteLedgersStats = statsLogger.getOpStatsLogger(DELETE_LEDGERS);
+        ledgersTombstones = statsLogger.getCounter(LEDGERS_TOMBSTONES);
     }
 
 }
@@ -20,107 +20,335 @@
  */
 package org.apache.bookkeeper.bookie.storage.ldb;
 
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.collect.Lists;
 import com.google.common.collect.Sets;
 
 import io.netty.buffer.ByteBuf;
+import io.netty.util.concurrent.DefaultThreadFactory;
 
 import java.io.IOException;
 import java.nio.file.FileSystems;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
 import java.text.SimpleDateFormat;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.Date;
+import java.util.List;
 import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
 
 import org.apache.bookkeeper.bookie.Bookie;
 import org.apache.bookkeeper.bookie.EntryLogger;
 import org.apache.bookkeeper.bookie.EntryLogger.EntryLogScanner;
 import org.apache.bookkeeper.bookie.LedgerDirsManager;
+import org.apache.bookkeeper.bookie.storage.ldb.KeyValueStorage.BulkLoad;
 import org.apache.bookkeeper.bookie.storage.ldb.KeyValueStorageFactory.DbConfigType;
 import org.apache.bookkeeper.conf.ServerConfiguration;
 import org.apache.bookkeeper.stats.NullStatsLogger;
 import org.apache.bookkeeper.util.DiskChecker;
+import org.apache.commons.io.FileUtils;
 import org.apache.commons.lang.time.DurationFormatUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 /**
  * Scan all entries in the entry log and rebuild the ledgerStorageIndex.
+ *
+ * <p>The entry logs are scanned in parallel. The locations found in each entry log are sorted and written in bulk in
+ * the new index, which is built next to the current one and only replaces it when all the entry logs are indexed.
+ * The locations buffered before being written are bounded across all the scanning threads, so the memory used doesn't
+ * depend on the number of threads.
+ *
+ * <p>The entry logs already indexed are recorded in a progress file, so that an interrupted rebuild can be resumed
+ * instead of scanning all the entry logs again.
  */
 public class LocationsIndexRebuildOp {
+    // Each location takes 3 longs, (ledgerId, entryId, location), in the buffers of the scanning threads
+    private static final int LOCATION_SIZE = 3 * Long.BYTES;
+    // Max number of locations buffered by all the scanning threads, at most a quarter of the heap
+    private static final long MAX_LOCATIONS_IN_MEMORY = Math.min(16 * 1024 * 1024,
+            Runtime.getRuntime().maxMemory() / 4 / LOCATION_SIZE);
+    static final int MIN_LOCATIONS_PER_LOAD = 64 * 1024;
+
     private final ServerConfiguration conf;
+    private final int numThreads;
+    private final boolean resume;
+    // Max number of locations sorted and loaded at once by each scanning thread
+    private final int maxLocationsPerLoad;
 
     public LocationsIndexRebuildOp(ServerConfiguration conf) {
+        this(conf, 1, false);
+    }
+
+    /**
+     * @param numThreads
+     *            number of entry logs scanned in parallel
+     * @param resume
+     *            whether to resume a previously interrupted rebuild, instead of starting from scratch
+     */
+    public LocationsIndexRebuildOp(ServerConfiguration conf, int numThreads, boolean resume) {
+        this(conf, numThreads, resume, getMaxLocationsPerLoad(MAX_LOCATIONS_IN_MEMORY, Math.max(1, numThreads)));
+    }
+
+    @VisibleForTesting
+    LocationsIndexRebuildOp(ServerConfiguration conf, int numThreads, boolean resume, int maxLocationsPerLoad) {
         this.conf = conf;
+        this.numThreads = Math.max(1, numThreads);
+        this.resume = resume;
+        this.maxLocationsPerLoad = maxLocationsPerLoad;
+    }
+
+    /**
+     * Share the locations buffered in memory between the scanning threads, so that more threads don't use more
+     * memory.
+     */
+    @VisibleForTesting
+    static int getMaxLocationsPerLoad(long maxLocationsInMemory, int numThreads) {
+        return (int) Math.min(Integer.MAX_VALUE / 3,
+                Math.max(MIN_LOCATIONS_PER_LOAD, maxLocationsInMemory / numThreads));
     }
 
     public void initiate() throws IOException {
         LOG.info("Starting index rebuilding");
 
-        // Move locations index to a backup directory
         String basePath = Bookie.getCurrentDirectory(conf.getLedgerDirs()[0]).toString();
         Path currentPath = FileSystems.getDefault().getPath(basePath, "locations");
-        String timestamp = new SimpleDateFormat("yyyy-MM-dd'T'HH:mm:ss.SSSZ").format(new Date());
-        Path backupPath = FileSystems.getDefault().getPath(basePath, "locations.BACKUP-" + timestamp);
-        Files.move(currentPath, backupPath);
+        Path rebuildPath = FileSystems.getDefault().getPath(basePath, "locations.REBUILD");
+        Path progressPath = FileSystems.getDefault().getPath(basePath, "locations.REBUILD.progress");
+        Path tmpPath = FileSystems.getDefault().getPath(basePath, "locations.REBUILD.tmp");
 
-        LOG.info("Created locations index backup at {}", backupPath);
+        Set<Long> indexedEntryLogs = Sets.newHashSet();
+        if (resume && Files.exists(rebuildPath) && Files.exists(progressPath)) {
+            for (String line : Files.readAllLines(progressPath, UTF_8)) {
+                if (!line.trim().isEmpty()) {
+                    indexedEntryLogs.add(Long.parseLong(line.trim(), 16));
+                }
+            }
+            LOG.info("Resuming index rebuilding, {} entry logs were already indexed", indexedEntryLogs.size());
+        } else if (Files.exists(rebuildPath) || Files.exists(progressPath)) {
+            LOG.info("Discarding the previous incomplete index rebuilding at {}", rebuildPath);
+            FileUtils.deleteDirectory(rebuildPath.toFile());
+            Files.deleteIfExists(progressPath);
+        }
+        FileUtils.deleteDirectory(tmpPath.toFile());
+        Files.createDirectories(tmpPath);
 
         long startTime = System.nanoTime();
 
         EntryLogger entryLogger = new EntryLogger(conf, new LedgerDirsManager(conf, conf.getLedgerDirs(),
                 new DiskChecker(conf.getDiskUsageThreshold(), conf.getDiskUsageWarnThreshold())));
-        Set<Long> entryLogs = entryLogger.getEntryLogsSet();
-
-        String locationsDbPath = FileSystems.getDefault().getPath(basePath, "locations").toFile().toString();
+        List<Long> entryLogs = Lists.newArrayList(entryLogger.getEntryLogsSet());
+        entryLogs.removeAll(indexedEntryLogs);
+        Collections.sort(entryLogs);
 
         Set<Long> activeLedgers = getActiveLedgers(conf, KeyValueStorageRocksDB.factory, basePath);
         LOG.info("Found {} active ledgers in ledger manager", activeLedgers.size());
 
-        KeyValueStorage newIndex = KeyValueStorageRocksDB.factory.newKeyValueStorage(locationsDbPath, DbConfigType.Huge,
-                conf);
+        KeyValueStorage newIndex = KeyValueStorageRocksDB.factory.newKeyValueStorage(rebuildPath.toString(),
+                DbConfigType.Huge, conf);
 
         int totalEntryLogs = entryLogs.size();
-        int completedEntryLogs = 0;
-        LOG.info("Scanning {} entry logs", totalEntryLogs);
+        LOG.info("Scanning {} entry logs with {} threads", totalEntryLogs, numThreads);
 
-        for (long entryLogId : entryLogs) {
-            entryLogger.scanEntryLog(entryLogId, new EntryLogScanner() {
-                @Override
-                public void process(long ledgerId, long offset, ByteBuf entry) throws IOException {
-                    long entryId = entry.getLong(8);
+        Progress progress = new Progress(progressPath, totalEntryLogs, startTime);
+        ExecutorService executor = Executors.newFixedThreadPool(numThreads,
+                new DefaultThreadFactory("locations-index-rebuild"));
+        try {
+            List<Future<?>> futures = Lists.newArrayListWithCapacity(totalEntryLogs);
+            for (long entryLogId : entryLogs) {
+                futures.add(executor.submit(() -> {
+                    indexEntryLog(entryLogger, entryLogId, activeLedgers, newIndex, tmpPath, progress);
+                    return null;
+                }));
+            }
 
-                    // Actual location indexed is pointing past the entry size
-                    long location = (entryLogId << 32L) | (offset + 4);
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while rebuilding the index", e);
+        } catch (ExecutionException e) {
+            throw new IOException("Failed to rebuild the index, it can be resumed after fixing the cause",
+                    e.getCause());
+        } finally {
+            executor.shutdownNow();
+            try {
+                executor.awaitTermination(1, TimeUnit.MINUTES);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            newIndex.sync();
+            newIndex.close();
+        }
 
-                    if (LOG.isDebugEnabled()) {
-                        LOG.debug("Rebuilding {}:{} at location {} / {}", ledgerId, entryId, location >> 32,
-                                location & (Integer.MAX_VALUE - 1));
-                    }
+        // Move the current locations index to a backup directory and replace it with the new one
+        if (Files.exists(currentPath)) {
+            String timestamp = new SimpleDateFormat("yyyy-MM-dd'T'HH:mm:ss.SSSZ").format(new Date());
+            Path backupPath = FileSystems.getDefault().getPath(basePath, "locations.BACKUP-" + timestamp);
+            Files.move(currentPath, backupPath);
+            LOG.info("Created locations index backup at {}", backupPath);
+        }
+        Files.move(rebuildPath, currentPath);
+        Files.deleteIfExists(progressPath);
+        FileUtils.deleteDirectory(tmpPath.toFile());
+
+        LOG.info("Rebuilding index is done. Indexed {} entries ({} MB) in {} entry logs. Total time: {}",
+                progress.entries.get(), progress.bytes.get() / 1024 / 1024, totalEntryLogs,
+                DurationFormatUtils.formatDurationHMS(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startTime)));
+    }
 
-                    // Update the ledger index page
-                    LongPairWrapper key = LongPairWrapper.get(ledgerId, entryId);
-                    LongWrapper value = LongWrapper.get(location);
-                    newIndex.put(key.array, value.array);
+    private void indexEntryLog(EntryLogger entryLogger, long entryLogId, Set<Long> activeLedgers,
+            KeyValueStorage newIndex, Path tmpPath, Progress progress) throws IOException {
+        Locations locations = new Locations(maxLocationsPerLoad);
+        long[] bytes = new long[1];
+        int[] loads = new int[1];
+
+        entryLogger.scanEntryLog(entryLogId, new EntryLogScanner() {
+            @Override
+            public void process(long ledgerId, long offset, ByteBuf entry) throws IOException {
+                long entryId = entry.getLong(8);
+
+                // Actual location indexed is pointing past the entry size
+                long location = (entryLogId << 32L) | (offset + 4);
+
+                if (LOG.isDebugEnabled()) {
+                    LOG.debug("Rebuilding {}:{} at location {} / {}", ledgerId, entryId, location >> 32,
+                            location & (Integer.MAX_VALUE - 1));
                 }
 
-                @Override
-                public boolean accept(long ledgerId) {
-                    return activeLedgers.contains(ledgerId);
+                locations.add(ledgerId, entryId, location);
+                bytes[0] += entry.readableBytes();
+                if (locations.size() >= maxLocationsPerLoad) {
+                    locations.load(newIndex, tmpPath.resolve(Long.toHexString(entryLogId) + "-" + loads[0]++ + ".sst"));
                 }
-            });
+            }
 
-            ++completedEntryLogs;
-            LOG.info("Completed scanning of log {}.log -- {} / {}", Long.toHexString(entryLogId), completedEntryLogs,
-                    totalEntryLogs);
+            @Override
+            public boolean accept(long ledgerId) {
+                return activeLedgers.contains(ledgerId);
+            }
+        });
+
+        locations.load(newIndex, tmpPath.resolve(Long.toHexString(entryLogId) + "-" + loads[0] + ".sst"));
+        entryLogger.removeFromChannelsAndClose(entryLogId);
+
+        progress.completed(entryLogId, locations.total, bytes[0]);
+    }
+
+    /**
+     * Locations of the entries found in an entry log, pending to be written in the index.
+     *
+     * <p>Each location is a tuple of (ledgerId, entryId, location) in a flat array.
+     */
+    private static class Locations {
+        private static final ArrayGroupSort SORTER = new ArrayGroupSort(3, 3);
+
+        private final int maxSize;
+        private long[] array;
+        private int size = 0;
+        private long total = 0;
+
+        Locations(int maxSize) {
+            this.maxSize = maxSize;
+            this.array = new long[3 * Math.min(1024, maxSize)];
         }
 
-        newIndex.sync();
-        newIndex.close();
+        void add(long ledgerId, long entryId, long location) {
+            if (3 * size == array.length) {
+                // Don't grow past the max size, which would double the memory used when the buffer is almost full
+                array = Arrays.copyOf(array, 3 * Math.min(2 * size, maxSize));
+            }
+            array[3 * size] = ledgerId;
+            array[3 * size + 1] = entryId;
+            array[3 * size + 2] = location;
+            ++size;
+        }
 
-        LOG.info("Rebuilding index is done. Total time: {}",
-                DurationFormatUtils.formatDurationHMS(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startTime)));
+        int size() {
+            return size;
+        }
+
+        /**
+         * Sort the locations and load them in the index.
+         */
+        void load(KeyValueStorage index, Path sstPath) throws IOException {
+            if (size == 0) {
+                return;
+            }
+
+            // Sorting on the location as well keeps the last copy of an entry written more than once in the entry log
+            // after the others
+            SORTER.sort(array, 0, 3 * size);
+
+            LongPairWrapper key = LongPairWrapper.get(0, 0);
+            LongWrapper value = LongWrapper.get();
+            try (BulkLoad bulkLoad = index.newBulkLoad(sstPath.toString())) {
+                for (int i = 0; i < size; i++) {
+                    long ledgerId = array[3 * i];
+                    long entryId = array[3 * i + 1];
+                    if (i + 1 < size && array[3 * (i + 1)] == ledgerId && array[3 * (i + 1) + 1] == entryId) {
+                        // Keys must be unique in the bulk load
+                        continue;
+                    }
+
+                    key.set(ledgerId, entryId);
+                    value.set(array[3 * i + 2]);
+                    bulkLoad.put(key.array, value.array);
+                }
+                bulkLoad.load();
+            } finally {
+                key.recycle();
+                value.recycle();
+            }
+
+            total += size;
+            size = 0;
+        }
+    }
+
+    /**
+     * Tracks the entry logs indexed, reporting the throughput and recording them in the progress file.
+     */
+    private static class Progress {
+        private final Path path;
+        private final int totalEntryLogs;
+        private final long startTime;
+
+        private final AtomicLong entries = new AtomicLong();
+        private final AtomicLong bytes = new AtomicLong();
+        private int completedEntryLogs = 0;
+
+        Progress(Path path, int totalEntryLogs, long startTime) {
+            this.path = path;
+            this.totalEntryLogs = totalEntryLogs;
+            this.startTime = startTime;
+        }
+
+        synchronized void completed(long entryLogId, long logEntries, long logBytes) throws IOException {
+            // The locations are durable in the index once loaded, so the entry log doesn't need to be scanned again
+            Files.write(path, (Long.toHexString(entryLogId) + "\n").getBytes(UTF_8), StandardOpenOption.CREATE,
+                    StandardOpenOption.APPEND, StandardOpenOption.DSYNC);
+
+            ++completedEntryLogs;
+            long totalEntries = entries.addAndGet(logEntries);
+            long totalBytes = bytes.addAndGet(logBytes);
+            double elapsedSeconds = Math.max(1, TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startTime)) / 1000.0;
+            LOG.info("Completed scanning of log {}.log -- {} / {} -- {} entries/s, {} MB/s",
+                    Long.toHexString(entryLogId), completedEntryLogs, totalEntryLogs,
+                    String.format("%.1f", totalEntries / elapsedSeconds),
+                    String.format("%.1f", totalBytes / 1024.0 / 1024.0 / elapsedSeconds));
+        }
     }
 
     private Set<Long> getActiveLedgers(ServerConfiguration conf, KeyValueStorageFactory storageFactory, String basePath)
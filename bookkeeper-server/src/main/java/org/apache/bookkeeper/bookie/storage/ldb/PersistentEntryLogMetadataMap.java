@@ -0,0 +1,126 @@
+/**
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *
+ */
+package org.apache.bookkeeper.bookie.storage.ldb;
+
+import io.netty.buffer.Unpooled;
+
+import java.io.IOException;
+import java.util.Map.Entry;
+import java.util.function.BiConsumer;
+
+import org.apache.bookkeeper.bookie.EntryLogMetadata;
+import org.apache.bookkeeper.bookie.EntryLogMetadataMap;
+import org.apache.bookkeeper.bookie.storage.ldb.KeyValueStorage.CloseableIterator;
+import org.apache.bookkeeper.bookie.storage.ldb.KeyValueStorageFactory.DbConfigType;
+import org.apache.bookkeeper.conf.ServerConfiguration;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * {@link EntryLogMetadataMap} persisted in a {@link KeyValueStorage}.
+ *
+ * <p>The key is the entry log id and the value is the serialized {@link EntryLogMetadata}. The metadata survives the
+ * restarts of the bookie, so the garbage collector doesn't need to read again the ledgers map of all the entry logs,
+ * and is only deserialized while it's being processed, instead of being kept on heap.
+ *
+ * <p>The writes are not synced: the metadata lost in a crash is extracted again from the entry logs.
+ */
+public class PersistentEntryLogMetadataMap implements EntryLogMetadataMap {
+
+    private final KeyValueStorage metadataMapDB;
+
+    public PersistentEntryLogMetadataMap(String metadataPath, ServerConfiguration conf) throws IOException {
+        log.info("Loading persistent entry log metadata map from {}", metadataPath);
+        this.metadataMapDB = KeyValueStorageRocksDB.factory.newKeyValueStorage(metadataPath, DbConfigType.Small,
+                conf);
+    }
+
+    @Override
+    public boolean containsKey(long entryLogId) throws IOException {
+        LongWrapper key = LongWrapper.get(entryLogId);
+        try {
+            return metadataMapDB.get(key.array) != null;
+        } finally {
+            key.recycle();
+        }
+    }
+
+    @Override
+    public void put(long entryLogId, EntryLogMetadata entryLogMeta) throws IOException {
+        byte[] value = new byte[entryLogMeta.getSerializedSize()];
+        entryLogMeta.serialize(Unpooled.wrappedBuffer(value).clear());
+
+        LongWrapper key = LongWrapper.get(entryLogId);
+        try {
+            metadataMapDB.put(key.array, value);
+        } finally {
+            key.recycle();
+        }
+    }
+
+    @Override
+    public void forEach(BiConsumer<Long, EntryLogMetadata> action) throws IOException {
+        CloseableIterator<Entry<byte[], byte[]>> iterator = metadataMapDB.iterator();
+        try {
+            while (iterator.hasNext()) {
+                Entry<byte[], byte[]> entry = iterator.next();
+                long entryLogId = ArrayUtil.getLong(entry.getKey(), 0);
+                EntryLogMetadata entryLogMeta;
+                try {
+                    entryLogMeta = EntryLogMetadata.deserialize(Unpooled.wrappedBuffer(entry.getValue()));
+                } catch (IOException | IndexOutOfBoundsException e) {
+                    // The metadata will be extracted again from the entry log
+                    log.warn("Discarding invalid metadata of entry log {}", entryLogId, e);
+                    remove(entryLogId);
+                    continue;
+                }
+                action.accept(entryLogId, entryLogMeta);
+            }
+        } finally {
+            iterator.close();
+        }
+    }
+
+    @Override
+    public void remove(long entryLogId) throws IOException {
+        LongWrapper key = LongWrapper.get(entryLogId);
+        try {
+            metadataMapDB.delete(key.array);
+        } finally {
+            key.recycle();
+        }
+    }
+
+    /**
+     * @return the estimated number of entry logs in the map
+     */
+    @Override
+    public int size() throws IOException {
+        return (int) metadataMapDB.count();
+    }
+
+    @Override
+    public void close() throws IOException {
+        metadataMapDB.close();
+    }
+
+    private static final Logger log = LoggerFactory.getLogger(PersistentEntryLogMetadataMap.class);
+}
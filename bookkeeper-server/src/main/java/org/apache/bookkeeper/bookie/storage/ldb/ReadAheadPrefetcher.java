@@ -0,0 +1,320 @@
+/**
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *
+ */
+package org.apache.bookkeeper.bookie.storage.ldb;
+
+import io.netty.util.concurrent.DefaultThreadFactory;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.bookkeeper.bookie.EntryLogger;
+import org.apache.bookkeeper.util.collections.ConcurrentLongHashMap;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Fills the read cache in background after a read cache miss.
+ *
+ * <p>The read that missed the cache is not delayed by the read-ahead: it only schedules the prefetch of the entries
+ * that follow, which are fetched from the entry log with large contiguous reads on a dedicated thread.
+ *
+ * <p>The access pattern is tracked for each ledger to size the prefetch window:
+ * <ul>
+ * <li>when a reader misses right after the last prefetched entry, it consumed the whole window and the window is
+ * doubled</li>
+ * <li>when a reader misses an entry that was already prefetched, the entry was evicted before being used and the
+ * window is halved</li>
+ * <li>when a reader jumps to a non-contiguous entry, the access is considered random and the window goes back to its
+ * minimum</li>
+ * </ul>
+ *
+ * <p>A ledger has at most one prefetch queued: a new miss moves the queued prefetch to the new range instead of
+ * queueing another one. The queue of prefetches is bounded, and the oldest prefetches are dropped when it's full.
+ */
+class ReadAheadPrefetcher {
+
+    private static final Logger log = LoggerFactory.getLogger(ReadAheadPrefetcher.class);
+
+    // Assumed overhead of the size header for each entry in the entry log
+    private static final int ENTRY_HEADER_SIZE = 4;
+
+    private static final int MIN_READ_SIZE = 64 * 1024;
+    private static final int MAX_READ_SIZE = 16 * 1024 * 1024;
+
+    private static final int MAX_QUEUED_PREFETCHES = 256;
+
+    private static final long STALE_LEDGER_STATE_MILLIS = TimeUnit.MINUTES.toMillis(
+            TransientLedgerInfo.LEDGER_INFO_CACHING_TIME_MINUTES);
+
+    private final EntryLogger entryLogger;
+    private final ReadCachePolicy readCache;
+    private final DbLedgerStorageStats stats;
+
+    private final int initialWindow;
+    private final int minWindow;
+    private final int maxWindow;
+
+    private final ConcurrentLongHashMap<LedgerReadAheadState> ledgers;
+
+    private final ThreadPoolExecutor executor = new ThreadPoolExecutor(1, 1, 0L, TimeUnit.MILLISECONDS,
+            new ArrayBlockingQueue<>(MAX_QUEUED_PREFETCHES), new DefaultThreadFactory("db-storage-readahead"),
+            this::dropOldestPrefetch);
+
+    ReadAheadPrefetcher(EntryLogger entryLogger, ReadCachePolicy readCache, DbLedgerStorageStats stats,
+            int initialWindow, int minWindow, int maxWindow) {
+        this.entryLogger = entryLogger;
+        this.readCache = readCache;
+        this.stats = stats;
+        this.initialWindow = initialWindow;
+        this.minWindow = minWindow;
+        this.maxWindow = maxWindow;
+        this.ledgers = new ConcurrentLongHashMap<>(16 * 1024, Runtime.getRuntime().availableProcessors() * 2);
+    }
+
+    /**
+     * Notify that an entry was not found in the cache and was read from the entry log.
+     *
+     * @param ledgerId
+     *            the ledger id
+     * @param entryId
+     *            the entry id that was read
+     * @param entryLocation
+     *            the location of the entry in the entry log
+     * @param entrySize
+     *            the size of the entry
+     */
+    void entryRead(long ledgerId, long entryId, long entryLocation, int entrySize) {
+        LedgerReadAheadState state = ledgers.computeIfAbsent(ledgerId, k -> new LedgerReadAheadState(ledgerId));
+
+        PrefetchTask task = state.schedulePrefetch(entryId, entryLocation, entrySize);
+        if (task != null) {
+            executor.execute(task);
+        }
+    }
+
+    private void dropOldestPrefetch(Runnable task, ThreadPoolExecutor executor) {
+        if (executor.isShutdown()) {
+            ((PrefetchTask) task).drop();
+            return;
+        }
+
+        // The oldest prefetches are the least likely to be still useful
+        Runnable oldest = executor.getQueue().poll();
+        if (oldest != null) {
+            ((PrefetchTask) oldest).drop();
+        }
+        executor.execute(task);
+    }
+
+    private void prefetch(LedgerReadAheadState state, long ledgerId, long firstEntryId, long firstEntryLocation,
+            int window, int maxBytes) {
+        long lastEntryId = firstEntryId - 1;
+        try {
+            long[] size = new long[1];
+            int count = entryLogger.readEntriesSequentially(firstEntryLocation, maxBytes,
+                    (entryLedgerId, entryId, location, entry) -> {
+                        if (entryLedgerId != ledgerId || entryId - firstEntryId >= window) {
+                            // Found an entry belonging to a different ledger or filled the window, stopping
+                            return false;
+                        }
+
+                        readCache.put(ledgerId, entryId, entry);
+                        size[0] += entry.readableBytes();
+                        return true;
+                    });
+
+            lastEntryId += count;
+            stats.getReadAheadBatchCountStats().registerSuccessfulValue(count);
+            stats.getReadAheadBatchSizeStats().registerSuccessfulValue(size[0]);
+        } catch (Throwable t) {
+            if (log.isDebugEnabled()) {
+                log.debug("Exception during read ahead for ledger: {}", ledgerId, t);
+            }
+        } finally {
+            state.prefetchCompleted(lastEntryId);
+        }
+    }
+
+    void ledgerDeleted(long ledgerId) {
+        ledgers.remove(ledgerId);
+    }
+
+    /**
+     * Discard the access pattern of the ledgers that were not read recently.
+     */
+    void cleanupStaleLedgers() {
+        long now = System.currentTimeMillis();
+        ledgers.removeIf((ledgerId, state) -> state.isStale(now));
+    }
+
+    void shutdown() throws InterruptedException {
+        executor.shutdown();
+        executor.awaitTermination(1, TimeUnit.SECONDS);
+    }
+
+    /**
+     * A prefetch of a range of entries of a ledger. The range can be updated until the prefetch starts.
+     */
+    private class PrefetchTask implements Runnable {
+        private final LedgerReadAheadState state;
+        // Guarded by the state of the ledger
+        private long firstEntryId;
+        private long firstEntryLocation;
+        private int window;
+        private int maxBytes;
+
+        PrefetchTask(LedgerReadAheadState state) {
+            this.state = state;
+        }
+
+        void setRange(long firstEntryId, long firstEntryLocation, int window, int maxBytes) {
+            this.firstEntryId = firstEntryId;
+            this.firstEntryLocation = firstEntryLocation;
+            this.window = window;
+            this.maxBytes = maxBytes;
+        }
+
+        @Override
+        public void run() {
+            if (state.prefetchStarted(this)) {
+                prefetch(state, state.ledgerId, firstEntryId, firstEntryLocation, window, maxBytes);
+            }
+        }
+
+        void drop() {
+            state.prefetchDropped(this);
+        }
+    }
+
+    /**
+     * Read-ahead state of a single ledger.
+     */
+    private class LedgerReadAheadState {
+        private final long ledgerId;
+        private long lastReadEntryId = -1;
+
+        // Range of the last prefetch
+        private long prefetchFirstEntryId = -1;
+        private long prefetchLastEntryId = -1;
+        private boolean prefetchInProgress = false;
+
+        // Prefetch waiting in the queue of the executor
+        private PrefetchTask queuedTask = null;
+
+        private int window = initialWindow;
+        private long lastAccessed = System.currentTimeMillis();
+
+        LedgerReadAheadState(long ledgerId) {
+            this.ledgerId = ledgerId;
+        }
+
+        /**
+         * Update the access pattern after a cache miss and schedule the prefetch of the entries that follow.
+         *
+         * @return the prefetch to submit to the executor, or null if there is nothing to submit
+         */
+        synchronized PrefetchTask schedulePrefetch(long entryId, long entryLocation, int entrySize) {
+            int prefetchWindow = updateWindow(entryId);
+            if (prefetchWindow == 0) {
+                // A prefetch covering this part of the ledger is already in progress
+                return null;
+            }
+
+            long nextEntryLocation = entryLocation + ENTRY_HEADER_SIZE + entrySize;
+            long readSize = 2L * prefetchWindow * (entrySize + ENTRY_HEADER_SIZE);
+            int maxBytes = (int) Math.max(MIN_READ_SIZE, Math.min(MAX_READ_SIZE, readSize));
+
+            if (queuedTask != null) {
+                // Move the queued prefetch to the new range, rather than queueing another one
+                queuedTask.setRange(entryId + 1, nextEntryLocation, prefetchWindow, maxBytes);
+                return null;
+            }
+
+            queuedTask = new PrefetchTask(this);
+            queuedTask.setRange(entryId + 1, nextEntryLocation, prefetchWindow, maxBytes);
+            return queuedTask;
+        }
+
+        /**
+         * Update the access pattern after a cache miss and decide the prefetch window.
+         *
+         * @return the number of entries to prefetch, or 0 if no prefetch is needed
+         */
+        private int updateWindow(long entryId) {
+            lastAccessed = System.currentTimeMillis();
+            boolean isSequential = entryId == lastReadEntryId + 1;
+            lastReadEntryId = entryId;
+
+            if (prefetchInProgress) {
+                if (entryId >= prefetchFirstEntryId && entryId < prefetchFirstEntryId + window) {
+                    // The reader is faster than the prefetch, the entries will be in the cache soon
+                    return 0;
+                }
+            } else if (prefetchLastEntryId >= 0 && entryId >= prefetchFirstEntryId
+                    && entryId <= prefetchLastEntryId) {
+                // The entry was already prefetched, though it was evicted from the cache before being read
+                window = Math.max(minWindow, window / 2);
+            } else if (prefetchLastEntryId >= 0 && entryId == prefetchLastEntryId + 1) {
+                // All the prefetched entries were consumed
+                window = Math.min(maxWindow, window * 2);
+            } else if (!isSequential && prefetchFirstEntryId >= 0) {
+                // Random access within a ledger that was already read
+                window = minWindow;
+            }
+
+            prefetchFirstEntryId = entryId + 1;
+            prefetchLastEntryId = -1;
+            prefetchInProgress = true;
+            return window;
+        }
+
+        synchronized boolean prefetchStarted(PrefetchTask task) {
+            if (queuedTask != task) {
+                // Dropped from the queue
+                return false;
+            }
+            queuedTask = null;
+            return true;
+        }
+
+        synchronized void prefetchCompleted(long lastEntryId) {
+            if (queuedTask != null) {
+                // Another prefetch of the ledger was queued meanwhile, its range replaced the completed one
+                return;
+            }
+            prefetchLastEntryId = lastEntryId;
+            prefetchInProgress = false;
+        }
+
+        synchronized void prefetchDropped(PrefetchTask task) {
+            if (queuedTask == task) {
+                queuedTask = null;
+                prefetchLastEntryId = -1;
+                prefetchInProgress = false;
+            }
+        }
+
+        synchronized boolean isStale(long now) {
+            return !prefetchInProgress && lastAccessed + STALE_LEDGER_STATE_MILLIS < now;
+        }
+    }
+}
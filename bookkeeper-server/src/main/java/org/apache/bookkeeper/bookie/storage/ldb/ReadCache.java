@@ -25,15 +25,17 @@ import static org.apache.bookkeeper.bookie.storage.ldb.WriteCache.align64;
 import io.netty.buffer.ByteBuf;
 import io.netty.buffer.ByteBufAllocator;
 import io.netty.buffer.Unpooled;
+import io.netty.util.concurrent.FastThreadLocal;
 
-import java.io.Closeable;
-import java.util.ArrayList;
-import java.util.List;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.concurrent.locks.StampedLock;
 
 import org.apache.bookkeeper.util.collections.ConcurrentLongLongPairHashMap;
-import org.apache.bookkeeper.util.collections.ConcurrentLongLongPairHashMap.LongPair;
+import org.apache.bookkeeper.util.collections.ConcurrentLongLongPairHashMap.LongPairHolder;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
 /**
  * Read cache implementation.
@@ -44,129 +46,254 @@ import org.apache.bookkeeper.util.collections.ConcurrentLongLongPairHashMap.Long
  * ring-buffer fashion. When the read cache is full, the oldest segment
  * is cleared and rotated to make space for new entries to be added to
  * the read cache.
+ *
+ * <p>Each time a segment is rotated it gets assigned a new generation. There
+ * is a single index that maps (ledgerId, entryId) to (generation, offset, length),
+ * so that a lookup is a single probe. An index entry is only valid as long as
+ * the segment still carries the same generation. Readers never take a lock:
+ * they validate the segment generation with an optimistic stamp and treat any
+ * concurrent rotation as a cache miss.
+ *
+ * <p>When zero-copy reads are enabled, cache hits return a retained read-only
+ * slice of the segment instead of a copy of the entry. Each slice holds a
+ * reference on its segment, and a segment is not rotated while it's still
+ * referenced. Entries that cannot be inserted because the rollover is deferred
+ * are simply not cached, and the deferred rollovers are counted.
  */
-public class ReadCache implements Closeable {
+public class ReadCache implements ReadCachePolicy {
+
+    private static final Logger log = LoggerFactory.getLogger(ReadCache.class);
+
+    public static final String POLICY_NAME = "fifo";
 
     private static final int DEFAULT_MAX_SEGMENT_SIZE = 1 * 1024 * 1024 * 1024;
 
-    private final List<ByteBuf> cacheSegments;
-    private final List<ConcurrentLongLongPairHashMap> cacheIndexes;
+    private static final long InvalidGeneration = -1L;
+
+    private final Segment[] segments;
+    private final ConcurrentLongLongPairHashMap index;
 
+    // Reused by each thread for the index lookups, to avoid allocating the result
+    private static final FastThreadLocal<LongPairHolder> lookupHolder = new FastThreadLocal<LongPairHolder>() {
+        @Override
+        protected LongPairHolder initialValue() {
+            return new LongPairHolder();
+        }
+    };
+
+    // Current segment and generation are only modified while holding the write lock
     private int currentSegmentIdx;
+    private long currentGeneration;
     private final AtomicInteger currentSegmentOffset = new AtomicInteger(0);
 
+    // Number of puts that could not roll over to the next segment, because it was still referenced
+    private final AtomicLong deferredRotations = new AtomicLong();
+    // Only accessed while holding the write lock
+    private boolean rotationDeferred = false;
+
     private final int segmentSize;
+    private final boolean zeroCopyReads;
 
     private ByteBufAllocator allocator;
-    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+
+    // Lock used only by writers to coordinate the segment rollover. Readers are never blocked by it
+    private final ReentrantReadWriteLock rolloverLock = new ReentrantReadWriteLock();
 
     public ReadCache(ByteBufAllocator allocator, long maxCacheSize) {
         this(allocator, maxCacheSize, DEFAULT_MAX_SEGMENT_SIZE);
     }
 
+    public ReadCache(ByteBufAllocator allocator, long maxCacheSize, boolean zeroCopyReads) {
+        this(allocator, maxCacheSize, DEFAULT_MAX_SEGMENT_SIZE, zeroCopyReads);
+    }
+
     public ReadCache(ByteBufAllocator allocator, long maxCacheSize, int maxSegmentSize) {
+        this(allocator, maxCacheSize, maxSegmentSize, false);
+    }
+
+    public ReadCache(ByteBufAllocator allocator, long maxCacheSize, int maxSegmentSize, boolean zeroCopyReads) {
         this.allocator = allocator;
+        this.zeroCopyReads = zeroCopyReads;
         int segmentsCount = Math.max(2, (int) (maxCacheSize / maxSegmentSize));
         segmentSize = (int) (maxCacheSize / segmentsCount);
 
-        cacheSegments = new ArrayList<>();
-        cacheIndexes = new ArrayList<>();
-
+        segments = new Segment[segmentsCount];
         for (int i = 0; i < segmentsCount; i++) {
-            cacheSegments.add(Unpooled.directBuffer(segmentSize, segmentSize));
-            cacheIndexes.add(new ConcurrentLongLongPairHashMap(4096, 2 * Runtime.getRuntime().availableProcessors()));
+            segments[i] = new Segment(Unpooled.directBuffer(segmentSize, segmentSize));
         }
+
+        index = new ConcurrentLongLongPairHashMap(4096 * segmentsCount, 2 * Runtime.getRuntime().availableProcessors());
+
+        currentSegmentIdx = 0;
+        currentGeneration = 0;
+        segments[0].generation = 0;
+    }
+
+    @Override
+    public String getPolicyName() {
+        return POLICY_NAME;
     }
 
     @Override
     public void close() {
-        cacheSegments.forEach(ByteBuf::release);
+        for (Segment segment : segments) {
+            segment.buffer.release();
+        }
     }
 
+    @Override
     public void put(long ledgerId, long entryId, ByteBuf entry) {
         int entrySize = entry.readableBytes();
         int alignedSize = align64(entrySize);
 
-        lock.readLock().lock();
+        rolloverLock.readLock().lock();
 
         try {
-            int offset = currentSegmentOffset.getAndAdd(alignedSize);
+            int offset = reserve(alignedSize);
             if (offset + entrySize > segmentSize) {
                 // Roll-over the segment (outside the read-lock)
             } else {
-                // Copy entry into read cache segment
-                cacheSegments.get(currentSegmentIdx).setBytes(offset, entry, entry.readerIndex(),
-                        entry.readableBytes());
-                cacheIndexes.get(currentSegmentIdx).put(ledgerId, entryId, offset, entrySize);
+                insert(ledgerId, entryId, entry, offset);
                 return;
             }
         } finally {
-            lock.readLock().unlock();
+            rolloverLock.readLock().unlock();
         }
 
         // We could not insert in segment, we to get the write lock and roll-over to
         // next segment
-        lock.writeLock().lock();
+        long retiredGeneration = InvalidGeneration;
+        rolloverLock.writeLock().lock();
 
         try {
-            int offset = currentSegmentOffset.getAndAdd(entrySize);
+            int offset = reserve(alignedSize);
             if (offset + entrySize > segmentSize) {
+                int nextSegmentIdx = (currentSegmentIdx + 1) % segments.length;
+                Segment nextSegment = segments[nextSegmentIdx];
+                long nextGeneration = currentGeneration + 1;
+                long nextSegmentGeneration = nextSegment.generation;
+
+                if (!nextSegment.rotate(nextGeneration, zeroCopyReads)) {
+                    // Readers are still holding slices of the next segment. We cannot overwrite it yet, so the
+                    // rollover is deferred and this entry is not cached
+                    deferredRotations.incrementAndGet();
+                    if (!rotationDeferred) {
+                        rotationDeferred = true;
+                        log.warn("Read cache rollover deferred, segment {} is still referenced by zero-copy reads."
+                                + " New entries are not cached until it is released", nextSegmentIdx);
+                    }
+                    return;
+                }
+
+                if (rotationDeferred) {
+                    rotationDeferred = false;
+                    log.info("Read cache rollover resumed after {} deferred rollovers", deferredRotations.get());
+                }
+
                 // Rollover to next segment
-                currentSegmentIdx = (currentSegmentIdx + 1) % cacheSegments.size();
+                retiredGeneration = nextSegmentGeneration;
+                currentSegmentIdx = nextSegmentIdx;
+                currentGeneration = nextGeneration;
                 currentSegmentOffset.set(alignedSize);
-                cacheIndexes.get(currentSegmentIdx).clear();
                 offset = 0;
             }
 
-            // Copy entry into read cache segment
-            cacheSegments.get(currentSegmentIdx).setBytes(offset, entry, entry.readerIndex(), entry.readableBytes());
-            cacheIndexes.get(currentSegmentIdx).put(ledgerId, entryId, offset, entrySize);
+            insert(ledgerId, entryId, entry, offset);
         } finally {
-            lock.writeLock().unlock();
+            rolloverLock.writeLock().unlock();
+        }
+
+        if (retiredGeneration != InvalidGeneration) {
+            // Drop the index entries pointing to the recycled segment. This is done outside of the lock, since these
+            // entries are already invisible to readers after the segment generation has changed
+            final long generation = retiredGeneration;
+            index.removeIf((key1, key2, value1, value2) -> value1 == generation);
         }
     }
 
-    public ByteBuf get(long ledgerId, long entryId) {
-        lock.readLock().lock();
+    /**
+     * Invalidate an entry. Its space in the segment is only reclaimed when the segment is rotated.
+     */
+    public void remove(long ledgerId, long entryId) {
+        index.remove(ledgerId, entryId);
+    }
 
-        try {
-            // We need to check all the segments, starting from the current one and looking
-            // backward to minimize the
-            // checks for recently inserted entries
-            int size = cacheSegments.size();
-            for (int i = 0; i < size; i++) {
-                int segmentIdx = (currentSegmentIdx + (size - i)) % size;
-
-                LongPair res = cacheIndexes.get(segmentIdx).get(ledgerId, entryId);
-                if (res != null) {
-                    int entryOffset = (int) res.first;
-                    int entryLen = (int) res.second;
-
-                    ByteBuf entry = allocator.directBuffer(entryLen, entryLen);
-                    entry.writeBytes(cacheSegments.get(segmentIdx), entryOffset, entryLen);
-                    return entry;
-                }
+    /**
+     * Reserve space for an entry in the current segment.
+     *
+     * <p>Once the segment is full, the offset is no longer moved, so that it cannot overflow while the rollover
+     * is deferred.
+     *
+     * @return the offset of the reserved space, past the end of the segment if it is full
+     */
+    private int reserve(int alignedSize) {
+        while (true) {
+            int offset = currentSegmentOffset.get();
+            if (offset >= segmentSize || currentSegmentOffset.compareAndSet(offset, offset + alignedSize)) {
+                return offset;
             }
-        } finally {
-            lock.readLock().unlock();
         }
-
-        // Entry not found in any segment
-        return null;
     }
 
     /**
-     * @return the total size of cached entries
+     * Copy the entry in the current segment and publish its location in the index.
+     *
+     * <p>Must be called while holding the rollover lock.
      */
+    private void insert(long ledgerId, long entryId, ByteBuf entry, int offset) {
+        int entrySize = entry.readableBytes();
+        segments[currentSegmentIdx].buffer.setBytes(offset, entry, entry.readerIndex(), entrySize);
+        index.put(ledgerId, entryId, currentGeneration, position(offset, entrySize));
+    }
+
+    @Override
+    public ByteBuf get(long ledgerId, long entryId) {
+        LongPairHolder res = lookupHolder.get();
+        if (!index.get(ledgerId, entryId, res)) {
+            // Entry not found in any segment
+            return null;
+        }
+
+        long generation = res.first;
+        int entryOffset = positionOffset(res.second);
+        int entryLen = positionLength(res.second);
+        Segment segment = segments[(int) (generation % segments.length)];
+
+        long stamp = segment.tryOptimisticRead();
+        if (segment.generation != generation) {
+            // The segment was already recycled
+            return null;
+        }
+
+        ByteBuf entry;
+        if (zeroCopyReads) {
+            // The slice keeps a reference on the segment until released by the caller. If the segment gets
+            // rotated before the reference is taken, the stamp validation will fail
+            entry = segment.buffer.retainedSlice(entryOffset, entryLen);
+        } else {
+            entry = allocator.directBuffer(entryLen, entryLen);
+            entry.writeBytes(segment.buffer, entryOffset, entryLen);
+        }
+
+        if (!segment.validate(stamp)) {
+            // The segment was rotated while we were reading, the content might have been overwritten
+            entry.release();
+            return null;
+        }
+
+        return zeroCopyReads ? entry.asReadOnly() : entry;
+    }
+
+    @Override
     public long size() {
-        lock.readLock().lock();
+        rolloverLock.readLock().lock();
 
         try {
             long size = 0;
-            for (int i = 0; i < cacheIndexes.size(); i++) {
+            for (int i = 0; i < segments.length; i++) {
                 if (i == currentSegmentIdx) {
-                    size += currentSegmentOffset.get();
-                } else if (!cacheIndexes.get(i).isEmpty()) {
+                    size += Math.min(currentSegmentOffset.get(), segmentSize);
+                } else if (segments[i].generation != InvalidGeneration) {
                     size += segmentSize;
                 } else {
                     // the segment is empty
@@ -175,25 +302,70 @@ public class ReadCache implements Closeable {
 
             return size;
         } finally {
-            lock.readLock().unlock();
+            rolloverLock.readLock().unlock();
         }
     }
 
+    @Override
+    public long count() {
+        return index.size();
+    }
+
     /**
-     * @return the total number of cached entries
+     * @return the number of puts for which the rollover was deferred, because the next segment was still referenced
+     *         by zero-copy reads
      */
-    public long count() {
-        lock.readLock().lock();
+    public long getDeferredRotations() {
+        return deferredRotations.get();
+    }
 
-        try {
-            long count = 0;
-            for (int i = 0; i < cacheIndexes.size(); i++) {
-                count += cacheIndexes.get(i).size();
-            }
+    private static long position(int offset, int length) {
+        return ((long) offset << 32) | (length & 0xFFFFFFFFL);
+    }
 
-            return count;
-        } finally {
-            lock.readLock().unlock();
+    private static int positionOffset(long position) {
+        return (int) (position >>> 32);
+    }
+
+    private static int positionLength(long position) {
+        return (int) position;
+    }
+
+    /**
+     * A segment of the read cache memory, tagged with the generation it's currently holding.
+     *
+     * <p>The generation is only modified while holding the segment write lock, so that readers can validate it with an
+     * optimistic read stamp.
+     */
+    @SuppressWarnings("serial")
+    private static final class Segment extends StampedLock {
+        private final ByteBuf buffer;
+        private long generation = InvalidGeneration;
+
+        Segment(ByteBuf buffer) {
+            this.buffer = buffer;
+        }
+
+        /**
+         * Assign a new generation to the segment, invalidating all the entries of the previous one.
+         *
+         * @return false if the rotation had to be deferred because there are still readers holding slices of this
+         *         segment
+         */
+        boolean rotate(long newGeneration, boolean checkReferences) {
+            long stamp = writeLock();
+            try {
+                // Once the write lock is taken, a reader can no longer successfully validate a slice, so any slice
+                // handed out is already accounted in the reference count
+                if (checkReferences && buffer.refCnt() > 1) {
+                    return false;
+                }
+
+                generation = newGeneration;
+                return true;
+            } finally {
+                unlockWrite(stamp);
+            }
         }
     }
 }
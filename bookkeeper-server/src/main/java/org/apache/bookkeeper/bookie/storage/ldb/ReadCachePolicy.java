@@ -0,0 +1,73 @@
+/**
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *
+ */
+package org.apache.bookkeeper.bookie.storage.ldb;
+
+import io.netty.buffer.ByteBuf;
+
+import java.io.Closeable;
+
+/**
+ * A read cache with a specific admission and eviction policy.
+ *
+ * <p>The policy decides which of the entries that are put in the cache are retained, and for how long.
+ * The available policies are:
+ * <ul>
+ * <li>{@value ReadCache#POLICY_NAME}: {@link ReadCache}, all the entries are admitted and evicted in
+ * insertion order</li>
+ * <li>{@value TinyLfuReadCache#POLICY_NAME}: {@link TinyLfuReadCache}, new entries are kept in a probation area and
+ * only entries accessed frequently are retained in the main area</li>
+ * </ul>
+ */
+public interface ReadCachePolicy extends Closeable {
+
+    /**
+     * @return the name of the policy, used to identify it in the configuration and in the stats
+     */
+    String getPolicyName();
+
+    void put(long ledgerId, long entryId, ByteBuf entry);
+
+    /**
+     * Insert an entry that was just read from the storage after a cache miss. Unlike the entries inserted by
+     * read-ahead, the entry was requested, so the policies tracking the access frequencies count the miss.
+     */
+    default void putAfterMiss(long ledgerId, long entryId, ByteBuf entry) {
+        put(ledgerId, entryId, entry);
+    }
+
+    /**
+     * @return the cached entry or null if the entry is not in the cache
+     */
+    ByteBuf get(long ledgerId, long entryId);
+
+    /**
+     * @return the total size of cached entries
+     */
+    long size();
+
+    /**
+     * @return the total number of cached entries
+     */
+    long count();
+
+    @Override
+    void close();
+}
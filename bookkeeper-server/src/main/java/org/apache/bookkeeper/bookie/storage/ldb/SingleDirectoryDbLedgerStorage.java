@@ -31,19 +31,25 @@ import io.netty.buffer.ByteBufAllocator;
 import io.netty.util.concurrent.DefaultThreadFactory;
 
 import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
+import java.util.Deque;
 import java.util.List;
 import java.util.PrimitiveIterator.OfLong;
 import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutionException;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.Condition;
 import java.util.concurrent.locks.ReentrantLock;
 import java.util.concurrent.locks.StampedLock;
 
-import org.apache.bookkeeper.bookie.Bookie;
 import org.apache.bookkeeper.bookie.Bookie.NoEntryException;
 import org.apache.bookkeeper.bookie.BookieException;
 import org.apache.bookkeeper.bookie.BookieException.OperationRejectedException;
@@ -51,6 +57,7 @@ import org.apache.bookkeeper.bookie.CheckpointSource;
 import org.apache.bookkeeper.bookie.CheckpointSource.Checkpoint;
 import org.apache.bookkeeper.bookie.Checkpointer;
 import org.apache.bookkeeper.bookie.CompactableLedgerStorage;
+import org.apache.bookkeeper.bookie.CompactionScheduler;
 import org.apache.bookkeeper.bookie.EntryLocation;
 import org.apache.bookkeeper.bookie.EntryLogger;
 import org.apache.bookkeeper.bookie.GarbageCollectionStatus;
@@ -93,21 +100,36 @@ public class SingleDirectoryDbLedgerStorage implements CompactableLedgerStorage
     // Write cache where all new entries are inserted into
     protected volatile WriteCache writeCache;
 
-    // Write cache that is used to swap with writeCache during flushes
-    protected volatile WriteCache writeCacheBeingFlushed;
+    // Full write caches waiting to be flushed, from the most recent to the oldest. The array is never modified, it's
+    // replaced when a write cache is rotated or flushed
+    protected volatile WriteCache[] writeCachesBeingFlushed = new WriteCache[0];
+
+    // Empty write caches of the ring, ready to replace the current write cache when it gets full
+    private final Deque<WriteCache> freeWriteCaches = new ArrayDeque<>();
+    private final ReentrantLock freeWriteCachesLock = new ReentrantLock();
+    private final Condition writeCacheFreed = freeWriteCachesLock.newCondition();
+    // Whether writes are waiting for a free write cache, guarded by freeWriteCachesLock
+    private boolean writesThrottled = false;
 
     // Cache where we insert entries for speculative reading
-    private final ReadCache readCache;
+    private final ReadCachePolicy readCache;
+
+    // Background read-ahead, null when read-ahead is done synchronously
+    private final ReadAheadPrefetcher readAheadPrefetcher;
 
     private final StampedLock writeCacheRotationLock = new StampedLock();
 
     protected final ReentrantLock flushMutex = new ReentrantLock();
 
     protected final AtomicBoolean hasFlushBeenTriggered = new AtomicBoolean(false);
-    private final AtomicBoolean isFlushOngoing = new AtomicBoolean(false);
 
     private final ExecutorService executor = Executors.newSingleThreadExecutor(new DefaultThreadFactory("db-storage"));
 
+    // Executors of the flush pipeline, used to sort the next write cache to flush and to build the entry location
+    // index batch while the entries are written to the entry log
+    private final ExecutorService flushSortExecutor;
+    private final ExecutorService flushIndexExecutor;
+
     // Executor used to for db index cleanup
     private final ScheduledExecutorService cleanupExecutor = Executors
             .newSingleThreadScheduledExecutor(new DefaultThreadFactory("db-storage-cleanup"));
@@ -115,6 +137,9 @@ public class SingleDirectoryDbLedgerStorage implements CompactableLedgerStorage
     private final CopyOnWriteArrayList<LedgerDeletionListener> ledgerDeletionListeners = Lists
             .newCopyOnWriteArrayList();
 
+    private final CopyOnWriteArrayList<WriteBackpressureListener> writeBackpressureListeners = Lists
+            .newCopyOnWriteArrayList();
+
     private final CheckpointSource checkpointSource;
     private Checkpoint lastCheckpoint = Checkpoint.MIN;
 
@@ -126,16 +151,52 @@ public class SingleDirectoryDbLedgerStorage implements CompactableLedgerStorage
 
     private final DbLedgerStorageStats dbLedgerStorageStats;
 
+    private final ByteBufAllocator allocator;
+
     static final String READ_AHEAD_CACHE_BATCH_SIZE = "dbStorage_readAheadCacheBatchSize";
     private static final int DEFAULT_READ_AHEAD_CACHE_BATCH_SIZE = 100;
 
+    static final String READ_AHEAD_ASYNC_ENABLED = "dbStorage_readAheadAsyncEnabled";
+    private static final boolean DEFAULT_READ_AHEAD_ASYNC_ENABLED = false;
+
+    static final String READ_CACHE_ZERO_COPY = "dbStorage_readCacheZeroCopy";
+    private static final boolean DEFAULT_READ_CACHE_ZERO_COPY = false;
+
+    static final String READ_CACHE_POLICY = "dbStorage_readCachePolicy";
+    static final String DEFAULT_READ_CACHE_POLICY = ReadCache.POLICY_NAME;
+
     private static final long DEFAULT_MAX_THROTTLE_TIME_MILLIS = TimeUnit.SECONDS.toMillis(10);
 
+    static final String WRITE_CACHE_RING_SIZE = "dbStorage_writeCacheRingSize";
+    private static final int DEFAULT_WRITE_CACHE_RING_SIZE = 2;
+
+    static final String PIPELINED_FLUSH_ENABLED = "dbStorage_pipelinedFlushEnabled";
+    private static final boolean DEFAULT_PIPELINED_FLUSH_ENABLED = true;
+
+    // Number of entry locations handed at once to the index thread of the flush pipeline
+    private static final int FLUSH_LOCATIONS_CHUNK_SIZE = 4096;
+
+    // Max number of entry locations looked up with a single index scan during range reads
+    private static final int MAX_RANGE_READ_INDEX_LOOKUP = 1024;
+    // Bounds of the size of each contiguous read from the entry logs during range reads
+    private static final int MIN_RANGE_READ_SIZE = 8 * 1024;
+    private static final int MAX_RANGE_READ_SIZE = 16 * 1024 * 1024;
+    private static final int DEFAULT_ESTIMATED_ENTRY_SIZE = 4 * 1024;
+
     public SingleDirectoryDbLedgerStorage(ServerConfiguration conf, LedgerManager ledgerManager,
             LedgerDirsManager ledgerDirsManager, LedgerDirsManager indexDirsManager, StateManager stateManager,
             CheckpointSource checkpointSource, Checkpointer checkpointer, StatsLogger statsLogger,
             ByteBufAllocator allocator, ScheduledExecutorService gcExecutor, long writeCacheSize, long readCacheSize)
             throws IOException {
+        this(conf, ledgerManager, ledgerDirsManager, indexDirsManager, stateManager, checkpointSource, checkpointer,
+                statsLogger, allocator, gcExecutor, writeCacheSize, readCacheSize, new CompactionScheduler(conf));
+    }
+
+    public SingleDirectoryDbLedgerStorage(ServerConfiguration conf, LedgerManager ledgerManager,
+            LedgerDirsManager ledgerDirsManager, LedgerDirsManager indexDirsManager, StateManager stateManager,
+            CheckpointSource checkpointSource, Checkpointer checkpointer, StatsLogger statsLogger,
+            ByteBufAllocator allocator, ScheduledExecutorService gcExecutor, long writeCacheSize, long readCacheSize,
+            CompactionScheduler compactionScheduler) throws IOException {
 
         checkArgument(ledgerDirsManager.getAllLedgerDirs().size() == 1,
                 "Db implementation only allows for one storage dir");
@@ -143,9 +204,13 @@ public class SingleDirectoryDbLedgerStorage implements CompactableLedgerStorage
         String baseDir = ledgerDirsManager.getAllLedgerDirs().get(0).toString();
         log.info("Creating single directory db ledger storage on {}", baseDir);
 
+        this.allocator = allocator;
         this.writeCacheMaxSize = writeCacheSize;
-        this.writeCache = new WriteCache(allocator, writeCacheMaxSize / 2);
-        this.writeCacheBeingFlushed = new WriteCache(allocator, writeCacheMaxSize / 2);
+        int writeCacheRingSize = Math.max(2, conf.getInt(WRITE_CACHE_RING_SIZE, DEFAULT_WRITE_CACHE_RING_SIZE));
+        this.writeCache = new WriteCache(allocator, writeCacheMaxSize / writeCacheRingSize);
+        for (int i = 1; i < writeCacheRingSize; i++) {
+            freeWriteCaches.add(new WriteCache(allocator, writeCacheMaxSize / writeCacheRingSize));
+        }
 
         this.checkpointSource = checkpointSource;
 
@@ -156,10 +221,23 @@ public class SingleDirectoryDbLedgerStorage implements CompactableLedgerStorage
                 DEFAULT_MAX_THROTTLE_TIME_MILLIS);
         maxThrottleTimeNanos = TimeUnit.MILLISECONDS.toNanos(maxThrottleTimeMillis);
 
-        readCache = new ReadCache(allocator, readCacheMaxSize);
+        if (conf.getBoolean(PIPELINED_FLUSH_ENABLED, DEFAULT_PIPELINED_FLUSH_ENABLED)) {
+            flushSortExecutor = Executors.newSingleThreadExecutor(new DefaultThreadFactory("db-storage-flush-sort"));
+            flushIndexExecutor = Executors.newSingleThreadExecutor(new DefaultThreadFactory("db-storage-flush-index"));
+        } else {
+            flushSortExecutor = null;
+            flushIndexExecutor = null;
+        }
+
+        readCache = newReadCache(conf, allocator, readCacheMaxSize);
 
         ledgerIndex = new LedgerMetadataIndex(conf, KeyValueStorageRocksDB.factory, baseDir, statsLogger);
-        entryLocationIndex = new EntryLocationIndex(conf, KeyValueStorageRocksDB.factory, baseDir, statsLogger);
+        if (conf.getBoolean(CompactEntryLocationIndex.COMPACT_LOCATION_INDEX_ENABLED, false)) {
+            entryLocationIndex = new CompactEntryLocationIndex(conf, KeyValueStorageRocksDB.factory, baseDir,
+                    statsLogger, allocator);
+        } else {
+            entryLocationIndex = new EntryLocationIndex(conf, KeyValueStorageRocksDB.factory, baseDir, statsLogger);
+        }
 
         transientLedgerInfoCache = new ConcurrentLongHashMap<>(16 * 1024,
                 Runtime.getRuntime().availableProcessors() * 2);
@@ -168,15 +246,42 @@ public class SingleDirectoryDbLedgerStorage implements CompactableLedgerStorage
                 TransientLedgerInfo.LEDGER_INFO_CACHING_TIME_MINUTES, TimeUnit.MINUTES);
 
         entryLogger = new EntryLogger(conf, ledgerDirsManager, null, statsLogger, allocator);
-        gcThread = new GarbageCollectorThread(conf, ledgerManager, this, statsLogger);
+        gcThread = new GarbageCollectorThread(conf, ledgerManager, this, statsLogger, compactionScheduler);
 
         dbLedgerStorageStats = new DbLedgerStorageStats(
             statsLogger,
-            () -> writeCache.size() + writeCacheBeingFlushed.size(),
-            () -> writeCache.count() + writeCacheBeingFlushed.count(),
+            readCache.getPolicyName(),
+            this::getWriteCacheSize,
+            this::getWriteCacheCount,
             () -> readCache.size(),
             () -> readCache.count()
         );
+        compactionScheduler.addLatencySource(dbLedgerStorageStats.getAddEntryLatency());
+        compactionScheduler.addLatencySource(dbLedgerStorageStats.getReadEntryLatency());
+
+        if (conf.getBoolean(READ_AHEAD_ASYNC_ENABLED, DEFAULT_READ_AHEAD_ASYNC_ENABLED)) {
+            readAheadPrefetcher = new ReadAheadPrefetcher(entryLogger, readCache, dbLedgerStorageStats,
+                    readAheadCacheBatchSize, Math.max(1, readAheadCacheBatchSize / 8), readAheadCacheBatchSize * 8);
+            cleanupExecutor.scheduleAtFixedRate(readAheadPrefetcher::cleanupStaleLedgers,
+                    TransientLedgerInfo.LEDGER_INFO_CACHING_TIME_MINUTES,
+                    TransientLedgerInfo.LEDGER_INFO_CACHING_TIME_MINUTES, TimeUnit.MINUTES);
+        } else {
+            readAheadPrefetcher = null;
+        }
+    }
+
+    private static ReadCachePolicy newReadCache(ServerConfiguration conf, ByteBufAllocator allocator,
+            long readCacheMaxSize) throws IOException {
+        boolean zeroCopyReads = conf.getBoolean(READ_CACHE_ZERO_COPY, DEFAULT_READ_CACHE_ZERO_COPY);
+        String policy = conf.getString(READ_CACHE_POLICY, DEFAULT_READ_CACHE_POLICY);
+        switch (policy) {
+        case ReadCache.POLICY_NAME:
+            return new ReadCache(allocator, readCacheMaxSize, zeroCopyReads);
+        case TinyLfuReadCache.POLICY_NAME:
+            return new TinyLfuReadCache(allocator, readCacheMaxSize, zeroCopyReads);
+        default:
+            throw new IOException("Unknown read cache policy: " + policy);
+        }
     }
 
     @Override
@@ -222,6 +327,9 @@ public class SingleDirectoryDbLedgerStorage implements CompactableLedgerStorage
             flush();
 
             gcThread.shutdown();
+            if (readAheadPrefetcher != null) {
+                readAheadPrefetcher.shutdown();
+            }
             entryLogger.shutdown();
 
             cleanupExecutor.shutdown();
@@ -231,9 +339,16 @@ public class SingleDirectoryDbLedgerStorage implements CompactableLedgerStorage
             entryLocationIndex.close();
 
             writeCache.close();
-            writeCacheBeingFlushed.close();
+            for (WriteCache cache : writeCachesBeingFlushed) {
+                cache.close();
+            }
+            freeWriteCaches.forEach(WriteCache::close);
             readCache.close();
             executor.shutdown();
+            if (flushSortExecutor != null) {
+                flushSortExecutor.shutdown();
+                flushIndexExecutor.shutdown();
+            }
 
         } catch (IOException e) {
             log.error("Error closing db storage", e);
@@ -242,16 +357,11 @@ public class SingleDirectoryDbLedgerStorage implements CompactableLedgerStorage
 
     @Override
     public boolean ledgerExists(long ledgerId) throws IOException {
-        try {
-            LedgerData ledgerData = ledgerIndex.get(ledgerId);
-            if (log.isDebugEnabled()) {
-                log.debug("Ledger exists. ledger: {} : {}", ledgerId, ledgerData.getExists());
-            }
-            return ledgerData.getExists();
-        } catch (Bookie.NoLedgerException nle) {
-            // ledger does not exist
-            return false;
+        boolean exists = ledgerIndex.exists(ledgerId);
+        if (log.isDebugEnabled()) {
+            log.debug("Ledger exists. ledger: {} : {}", ledgerId, exists);
         }
+        return exists;
     }
 
     @Override
@@ -259,7 +369,7 @@ public class SingleDirectoryDbLedgerStorage implements CompactableLedgerStorage
         if (log.isDebugEnabled()) {
             log.debug("isFenced. ledger: {}", ledgerId);
         }
-        return ledgerIndex.get(ledgerId).getFenced();
+        return ledgerIndex.isFenced(ledgerId);
     }
 
     @Override
@@ -338,47 +448,90 @@ public class SingleDirectoryDbLedgerStorage implements CompactableLedgerStorage
 
     private void triggerFlushAndAddEntry(long ledgerId, long entryId, ByteBuf entry)
             throws IOException, BookieException {
-        // Write cache is full, we need to trigger a flush so that it gets rotated
-        // If the flush has already been triggered or flush has already switched the
-        // cache, we don't need to trigger another flush
-        if (!isFlushOngoing.get() && hasFlushBeenTriggered.compareAndSet(false, true)) {
-            // Trigger an early flush in background
-            log.info("Write cache is full, triggering flush");
+        // Write cache is full, we need to rotate it with a free write cache of the ring and flush it in background.
+        // When there is no free write cache, wait until the flush releases one instead of rejecting the write
+        long absoluteTimeoutNanos = System.nanoTime() + maxThrottleTimeNanos;
+        long throttleStartTime = 0;
+
+        freeWriteCachesLock.lock();
+        try {
+            while (true) {
+                // The write cache might have been rotated by another thread in the meantime
+                long stamp = writeCacheRotationLock.readLock();
+                try {
+                    if (writeCache.put(ledgerId, entryId, entry)) {
+                        return;
+                    } else if (writeCache.isEmpty()) {
+                        // The entry doesn't fit in an empty write cache
+                        dbLedgerStorageStats.getRejectedWriteRequests().inc();
+                        throw new OperationRejectedException();
+                    }
+                } finally {
+                    writeCacheRotationLock.unlockRead(stamp);
+                }
+
+                WriteCache freeWriteCache = freeWriteCaches.poll();
+                if (freeWriteCache != null) {
+                    rotateWriteCache(freeWriteCache);
+                    dbLedgerStorageStats.getWriteCacheRotations().inc();
+                    triggerFlush();
+                    continue;
+                }
+
+                // All the write caches of the ring are full
+                triggerFlush();
+                if (throttleStartTime == 0) {
+                    throttleStartTime = MathUtils.nowInNano();
+                    dbLedgerStorageStats.getThrottledWriteRequests().inc();
+                    if (!writesThrottled) {
+                        log.info("All write caches are full, throttling writes until a flush completes");
+                        writesThrottled = true;
+                        notifyWriteBackpressure(true);
+                    }
+                }
+
+                long waitTimeNanos = absoluteTimeoutNanos - System.nanoTime();
+                if (waitTimeNanos <= 0) {
+                    // Timeout expired and we weren't able to insert in write cache
+                    dbLedgerStorageStats.getRejectedWriteRequests().inc();
+                    throw new OperationRejectedException();
+                }
+
+                try {
+                    writeCacheFreed.awaitNanos(waitTimeNanos);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new IOException("Interrupted when adding entry " + ledgerId + "@" + entryId);
+                }
+            }
+        } finally {
+            freeWriteCachesLock.unlock();
+            if (throttleStartTime != 0) {
+                recordSuccessfulEvent(dbLedgerStorageStats.getWriteCacheThrottleTimeStats(), throttleStartTime);
+            }
+        }
+    }
+
+    private void triggerFlush() {
+        // If the flush has already been triggered and has not picked the full write caches yet, we don't need to
+        // trigger another flush
+        if (hasFlushBeenTriggered.compareAndSet(false, true)) {
             executor.execute(() -> {
                 try {
+                    // Flush all the write caches, including the current one, so that the checkpoint is complete and
+                    // the journal can be trimmed up to it
                     flush();
                 } catch (IOException e) {
                     log.error("Error during flush", e);
                 }
             });
         }
+    }
 
-        dbLedgerStorageStats.getThrottledWriteRequests().inc();
-        long absoluteTimeoutNanos = System.nanoTime() + maxThrottleTimeNanos;
-
-        while (System.nanoTime() < absoluteTimeoutNanos) {
-            long stamp = writeCacheRotationLock.readLock();
-            try {
-                if (writeCache.put(ledgerId, entryId, entry)) {
-                    // We succeeded in putting the entry in write cache in the
-                    return;
-                }
-            } finally {
-                writeCacheRotationLock.unlockRead(stamp);
-            }
-
-            // Wait some time and try again
-            try {
-                Thread.sleep(1);
-            } catch (InterruptedException e) {
-                Thread.currentThread().interrupt();
-                throw new IOException("Interrupted when adding entry " + ledgerId + "@" + entryId);
-            }
+    private void notifyWriteBackpressure(boolean throttled) {
+        for (int i = 0, size = writeBackpressureListeners.size(); i < size; i++) {
+            writeBackpressureListeners.get(i).onWriteBackpressure(throttled);
         }
-
-        // Timeout expired and we weren't able to insert in write cache
-        dbLedgerStorageStats.getRejectedWriteRequests().inc();
-        throw new OperationRejectedException();
     }
 
     @Override
@@ -392,33 +545,13 @@ public class SingleDirectoryDbLedgerStorage implements CompactableLedgerStorage
             return getLastEntry(ledgerId);
         }
 
-        // We need to try to read from both write caches, since recent entries could be found in either of the two. The
-        // write caches are already thread safe on their own, here we just need to make sure we get references to both
-        // of them. Using an optimistic lock since the read lock is always free, unless we're swapping the caches.
-        long stamp = writeCacheRotationLock.tryOptimisticRead();
-        WriteCache localWriteCache = writeCache;
-        WriteCache localWriteCacheBeingFlushed = writeCacheBeingFlushed;
-        if (!writeCacheRotationLock.validate(stamp)) {
-            // Fallback to regular read lock approach
-            stamp = writeCacheRotationLock.readLock();
-            try {
-                localWriteCache = writeCache;
-                localWriteCacheBeingFlushed = writeCacheBeingFlushed;
-            } finally {
-                writeCacheRotationLock.unlockRead(stamp);
-            }
-        }
+        // We need to try to read from all the write caches, since recent entries could be found in any of them. The
+        // write caches are already thread safe on their own, here we just need to make sure we get references to all
+        // of them. Using an optimistic lock since the read lock is always free, unless we're rotating the caches.
+        WriteCache[] localWriteCaches = getWriteCaches();
 
-        // First try to read from the write cache of recent entries
-        ByteBuf entry = localWriteCache.get(ledgerId, entryId);
-        if (entry != null) {
-            recordSuccessfulEvent(dbLedgerStorageStats.getReadCacheHitStats(), startTime);
-            recordSuccessfulEvent(dbLedgerStorageStats.getReadEntryStats(), startTime);
-            return entry;
-        }
-
-        // If there's a flush going on, the entry might be in the flush buffer
-        entry = localWriteCacheBeingFlushed.get(ledgerId, entryId);
+        // First try to read from the write caches of recent entries, or from the ones being flushed
+        ByteBuf entry = getFromWriteCaches(localWriteCaches, ledgerId, entryId);
         if (entry != null) {
             recordSuccessfulEvent(dbLedgerStorageStats.getReadCacheHitStats(), startTime);
             recordSuccessfulEvent(dbLedgerStorageStats.getReadEntryStats(), startTime);
@@ -428,11 +561,14 @@ public class SingleDirectoryDbLedgerStorage implements CompactableLedgerStorage
         // Try reading from read-ahead cache
         entry = readCache.get(ledgerId, entryId);
         if (entry != null) {
+            dbLedgerStorageStats.getReadCachePolicyHits().inc();
             recordSuccessfulEvent(dbLedgerStorageStats.getReadCacheHitStats(), startTime);
             recordSuccessfulEvent(dbLedgerStorageStats.getReadEntryStats(), startTime);
             return entry;
         }
 
+        dbLedgerStorageStats.getReadCachePolicyMisses().inc();
+
         // Read from main storage
         long entryLocation;
         try {
@@ -446,17 +582,181 @@ public class SingleDirectoryDbLedgerStorage implements CompactableLedgerStorage
             throw e;
         }
 
-        readCache.put(ledgerId, entryId, entry);
+        readCache.putAfterMiss(ledgerId, entryId, entry);
 
         // Try to read more entries
-        long nextEntryLocation = entryLocation + 4 /* size header */ + entry.readableBytes();
-        fillReadAheadCache(ledgerId, entryId + 1, nextEntryLocation);
+        if (readAheadPrefetcher != null) {
+            readAheadPrefetcher.entryRead(ledgerId, entryId, entryLocation, entry.readableBytes());
+        } else {
+            long nextEntryLocation = entryLocation + 4 /* size header */ + entry.readableBytes();
+            fillReadAheadCache(ledgerId, entryId + 1, nextEntryLocation);
+        }
 
         recordSuccessfulEvent(dbLedgerStorageStats.getReadCacheMissStats(), startTime);
         recordSuccessfulEvent(dbLedgerStorageStats.getReadEntryStats(), startTime);
         return entry;
     }
 
+    @Override
+    public List<ByteBuf> getEntries(long ledgerId, long firstEntryId, int maxCount, long maxSize)
+            throws IOException {
+        checkArgument(maxCount > 0, "The number of entries to read must be positive");
+        if (firstEntryId == BookieProtocol.LAST_ADD_CONFIRMED) {
+            return Lists.newArrayList(getEntry(ledgerId, firstEntryId));
+        }
+
+        long startTime = MathUtils.nowInNano();
+        if (log.isDebugEnabled()) {
+            log.debug("Get Entries: {}@{} -- max count: {} -- max size: {}", ledgerId, firstEntryId, maxCount,
+                    maxSize);
+        }
+
+        WriteCache[] localWriteCaches = getWriteCaches();
+
+        EntriesBatch batch = new EntriesBatch(ledgerId, firstEntryId, maxCount, maxSize);
+        try {
+            while (!batch.isFull()) {
+                long entryId = batch.nextEntryId;
+
+                // Recent entries are in any of the write caches, entries read before might be in the read cache
+                ByteBuf entry = getFromWriteCaches(localWriteCaches, ledgerId, entryId);
+                if (entry == null) {
+                    entry = readCache.get(ledgerId, entryId);
+                    if (entry != null) {
+                        dbLedgerStorageStats.getReadCachePolicyHits().inc();
+                    } else {
+                        dbLedgerStorageStats.getReadCachePolicyMisses().inc();
+                    }
+                }
+
+                if (entry != null) {
+                    batch.add(entry);
+                    continue;
+                }
+
+                long entryLocation = batch.getLocation(entryId);
+                if (entryLocation == 0) {
+                    if (batch.entries.isEmpty()) {
+                        throw new NoEntryException(ledgerId, entryId);
+                    }
+                    // Stop at the first missing entry
+                    break;
+                }
+
+                // Read this entry together with all the following ones that are stored right after it in the same
+                // entry log
+                int count = entryLogger.readEntriesSequentially(entryLocation, batch.getReadSize(), batch);
+                if (count == 0 && !batch.isFull()) {
+                    // The entry did not fit in the read, fallback to read it individually
+                    entry = entryLogger.readEntry(ledgerId, entryId, entryLocation);
+                    readCache.putAfterMiss(ledgerId, entryId, entry);
+                    batch.add(entry);
+                }
+            }
+        } catch (IOException | RuntimeException e) {
+            batch.release();
+            recordFailedEvent(dbLedgerStorageStats.getReadEntriesStats(), startTime);
+            throw e;
+        }
+
+        dbLedgerStorageStats.getReadEntriesBatchCountStats().registerSuccessfulValue(batch.entries.size());
+        recordSuccessfulEvent(dbLedgerStorageStats.getReadEntriesStats(), startTime);
+        return batch.entries;
+    }
+
+    /**
+     * Accumulates the entries of a range read, enforcing the count and size limits.
+     *
+     * <p>It is also used to consume the entries read sequentially from the entry logs: an entry is only accepted if
+     * it is the next one in the range and if it is stored at the location that is in the index.
+     */
+    private final class EntriesBatch implements EntryLogger.SequentialEntryConsumer {
+        private final long ledgerId;
+        private final int maxCount;
+        private final long maxSize;
+        private final List<ByteBuf> entries;
+        private long size = 0;
+        private long nextEntryId;
+        private boolean full = false;
+
+        // Locations of a window of entries, looked up with a single scan of the index
+        private final long[] locations;
+        private long locationsFirstEntryId = 0;
+        private long locationsLastEntryId = -1;
+
+        EntriesBatch(long ledgerId, long firstEntryId, int maxCount, long maxSize) {
+            this.ledgerId = ledgerId;
+            this.nextEntryId = firstEntryId;
+            this.maxCount = maxCount;
+            this.maxSize = maxSize;
+            this.entries = new ArrayList<>(Math.min(maxCount, 64));
+            this.locations = new long[Math.min(maxCount, MAX_RANGE_READ_INDEX_LOOKUP)];
+        }
+
+        boolean isFull() {
+            return full;
+        }
+
+        long getLocation(long entryId) throws IOException {
+            if (entryId < locationsFirstEntryId || entryId > locationsLastEntryId) {
+                entryLocationIndex.getLocations(ledgerId, entryId, locations);
+                locationsFirstEntryId = entryId;
+                locationsLastEntryId = entryId + locations.length - 1;
+            }
+            return locations[(int) (entryId - locationsFirstEntryId)];
+        }
+
+        int getReadSize() {
+            // Size the read after the entries seen so far, it will be repeated if they don't all fit
+            long estimatedEntrySize = entries.isEmpty() ? DEFAULT_ESTIMATED_ENTRY_SIZE : size / entries.size();
+            long remainingCount = maxCount - entries.size();
+            long readSize = Math.min(maxSize - size, remainingCount * estimatedEntrySize)
+                    + remainingCount * 4 /* size header */;
+            return (int) Math.max(MIN_RANGE_READ_SIZE, Math.min(readSize, MAX_RANGE_READ_SIZE));
+        }
+
+        private boolean fits(int entrySize) {
+            if (entries.isEmpty() || size + entrySize <= maxSize) {
+                return true;
+            }
+            full = true;
+            return false;
+        }
+
+        void add(ByteBuf entry) {
+            if (!fits(entry.readableBytes())) {
+                entry.release();
+                return;
+            }
+
+            entries.add(entry);
+            size += entry.readableBytes();
+            nextEntryId++;
+            full |= entries.size() >= maxCount;
+        }
+
+        @Override
+        public boolean accept(long entryLedgerId, long entryId, long location, ByteBuf entry) {
+            if (full || entryLedgerId != ledgerId || entryId != nextEntryId || entryId > locationsLastEntryId
+                    || locations[(int) (entryId - locationsFirstEntryId)] != location
+                    || !fits(entry.readableBytes())) {
+                return false;
+            }
+
+            // The entry buffer is only valid for the duration of the call
+            ByteBuf copy = allocator.buffer(entry.readableBytes(), entry.readableBytes());
+            copy.writeBytes(entry, entry.readerIndex(), entry.readableBytes());
+            readCache.putAfterMiss(ledgerId, entryId, entry);
+            add(copy);
+            return !full;
+        }
+
+        void release() {
+            entries.forEach(ByteBuf::release);
+            entries.clear();
+        }
+    }
+
     private void fillReadAheadCache(long orginalLedgerId, long firstEntryId, long firstEntryLocation) {
         try {
             long firstEntryLogId = (firstEntryLocation >> 32);
@@ -524,21 +824,24 @@ public class SingleDirectoryDbLedgerStorage implements CompactableLedgerStorage
                 return entry;
             }
 
-            // If there's a flush going on, the entry might be in the flush buffer
-            entry = writeCacheBeingFlushed.getLastEntry(ledgerId);
-            if (entry != null) {
-                if (log.isDebugEnabled()) {
-                    entry.readLong(); // ledgedId
-                    long entryId = entry.readLong();
-                    entry.resetReaderIndex();
+            // If there are flushes going on, the entry might be in the most recent of the write caches being flushed
+            for (WriteCache cache : writeCachesBeingFlushed) {
+                entry = cache.getLastEntry(ledgerId);
+                if (entry != null) {
                     if (log.isDebugEnabled()) {
-                        log.debug("Found last entry for ledger {} in write cache being flushed: {}", ledgerId, entryId);
+                        entry.readLong(); // ledgedId
+                        long entryId = entry.readLong();
+                        entry.resetReaderIndex();
+                        if (log.isDebugEnabled()) {
+                            log.debug("Found last entry for ledger {} in write cache being flushed: {}", ledgerId,
+                                    entryId);
+                        }
                     }
-                }
 
-                recordSuccessfulEvent(dbLedgerStorageStats.getReadCacheHitStats(), startTime);
-                recordSuccessfulEvent(dbLedgerStorageStats.getReadEntryStats(), startTime);
-                return entry;
+                    recordSuccessfulEvent(dbLedgerStorageStats.getReadCacheHitStats(), startTime);
+                    recordSuccessfulEvent(dbLedgerStorageStats.getReadEntryStats(), startTime);
+                    return entry;
+                }
             }
         } finally {
             writeCacheRotationLock.unlockRead(stamp);
@@ -562,7 +865,7 @@ public class SingleDirectoryDbLedgerStorage implements CompactableLedgerStorage
     boolean isFlushRequired() {
         long stamp = writeCacheRotationLock.readLock();
         try {
-            return !writeCache.isEmpty();
+            return !writeCache.isEmpty() || writeCachesBeingFlushed.length > 0;
         } finally {
             writeCacheRotationLock.unlockRead(stamp);
         }
@@ -575,44 +878,18 @@ public class SingleDirectoryDbLedgerStorage implements CompactableLedgerStorage
             return;
         }
 
-        long startTime = MathUtils.nowInNano();
-
         // Only a single flush operation can happen at a time
         flushMutex.lock();
 
         try {
-            // Swap the write cache so that writes can continue to happen while the flush is
-            // ongoing
-            swapWriteCache();
-
-            long sizeToFlush = writeCacheBeingFlushed.size();
-            if (log.isDebugEnabled()) {
-                log.debug("Flushing entries. count: {} -- size {} Mb", writeCacheBeingFlushed.count(),
-                        sizeToFlush / 1024.0 / 1024);
+            // Rotate the current write cache so that writes can continue to happen while the flush is ongoing. If all
+            // the write caches of the ring are full, flush them first to free one
+            while (!sealWriteCache()) {
+                flushWriteCaches();
             }
 
-            // Write all the pending entries into the entry logger and collect the offset
-            // position for each entry
-
-            Batch batch = entryLocationIndex.newBatch();
-            writeCacheBeingFlushed.forEach((ledgerId, entryId, entry) -> {
-                try {
-                    long location = entryLogger.addEntry(ledgerId, entry, true);
-                    entryLocationIndex.addLocation(batch, ledgerId, entryId, location);
-                } catch (IOException e) {
-                    throw new RuntimeException(e);
-                }
-            });
-
-            entryLogger.flush();
-
-            long batchFlushStarTime = System.nanoTime();
-            batch.flush();
-            batch.close();
-            if (log.isDebugEnabled()) {
-                log.debug("DB batch flushed time : {} s",
-                        MathUtils.elapsedNanos(batchFlushStarTime) / (double) TimeUnit.SECONDS.toNanos(1));
-            }
+            // Flush all the write caches in the order they were filled, including the one that was just rotated
+            flushWriteCaches();
 
             ledgerIndex.flush();
 
@@ -632,19 +909,6 @@ public class SingleDirectoryDbLedgerStorage implements CompactableLedgerStorage
             });
 
             lastCheckpoint = thisCheckpoint;
-
-            // Discard all the entry from the write cache, since they're now persisted
-            writeCacheBeingFlushed.clear();
-
-            double flushTimeSeconds = MathUtils.elapsedNanos(startTime) / (double) TimeUnit.SECONDS.toNanos(1);
-            double flushThroughput = sizeToFlush / 1024.0 / 1024.0 / flushTimeSeconds;
-
-            if (log.isDebugEnabled()) {
-                log.debug("Flushing done time {} s -- Written {} MB/s", flushTimeSeconds, flushThroughput);
-            }
-
-            recordSuccessfulEvent(dbLedgerStorageStats.getFlushStats(), startTime);
-            dbLedgerStorageStats.getFlushSizeStats().registerSuccessfulValue(sizeToFlush);
         } catch (IOException e) {
             // Leave IOExecption as it is
             throw e;
@@ -652,35 +916,307 @@ public class SingleDirectoryDbLedgerStorage implements CompactableLedgerStorage
             // Wrap unchecked exceptions
             throw new IOException(e);
         } finally {
+            flushMutex.unlock();
+        }
+    }
+
+    /**
+     * Flush all the full write caches of the ring to the entry logs and the entry location index, from the oldest
+     * to the most recent, and then release them to be reused. Needs to be called with the flush mutex held.
+     */
+    private void flushWriteCaches() throws IOException {
+        WriteCache[] cachesToFlush = writeCachesBeingFlushed;
+        // Write caches rotated from now on need a new flush
+        hasFlushBeenTriggered.set(false);
+        if (cachesToFlush.length == 0) {
+            return;
+        }
+
+        long startTime = MathUtils.nowInNano();
+        long sizeToFlush = 0;
+        for (WriteCache cache : cachesToFlush) {
+            sizeToFlush += cache.size();
+        }
+        if (log.isDebugEnabled()) {
+            log.debug("Flushing entries of {} write caches. count: {} -- size {} Mb", cachesToFlush.length,
+                    Arrays.stream(cachesToFlush).mapToLong(WriteCache::count).sum(), sizeToFlush / 1024.0 / 1024);
+        }
+
+        if (flushIndexExecutor != null) {
+            flushWriteCachesPipelined(cachesToFlush, startTime);
+        } else {
             try {
-                isFlushOngoing.set(false);
-            } finally {
-                flushMutex.unlock();
+                // Write all the pending entries into the entry logger and collect the offset
+                // position for each entry
+                Batch batch = entryLocationIndex.newBatch();
+                for (int i = cachesToFlush.length - 1; i >= 0; i--) {
+                    cachesToFlush[i].forEach((ledgerId, entryId, entry) -> {
+                        try {
+                            long location = entryLogger.addEntry(ledgerId, entry, true);
+                            entryLocationIndex.addLocation(batch, ledgerId, entryId, location);
+                        } catch (IOException e) {
+                            throw new RuntimeException(e);
+                        }
+                    });
+                }
+
+                entryLogger.flush();
+
+                long batchFlushStarTime = System.nanoTime();
+                batch.flush();
+                batch.close();
+                if (log.isDebugEnabled()) {
+                    log.debug("DB batch flushed time : {} s",
+                            MathUtils.elapsedNanos(batchFlushStarTime) / (double) TimeUnit.SECONDS.toNanos(1));
+                }
+            } catch (IOException | RuntimeException e) {
+                recordFailedEvent(dbLedgerStorageStats.getFlushStats(), startTime);
+                throw e;
+            }
+        }
+
+        // Discard all the entries from the flushed write caches, since they're now persisted, and make them
+        // available to the writers
+        releaseWriteCaches(cachesToFlush.length);
+
+        double flushTimeSeconds = MathUtils.elapsedNanos(startTime) / (double) TimeUnit.SECONDS.toNanos(1);
+        double flushThroughput = sizeToFlush / 1024.0 / 1024.0 / flushTimeSeconds;
+
+        if (log.isDebugEnabled()) {
+            log.debug("Flushing done time {} s -- Written {} MB/s", flushTimeSeconds, flushThroughput);
+        }
+
+        recordSuccessfulEvent(dbLedgerStorageStats.getFlushStats(), startTime);
+        dbLedgerStorageStats.getFlushSizeStats().registerSuccessfulValue(sizeToFlush);
+    }
+
+    /**
+     * Flush the write caches with three overlapping steps: the next write cache is sorted by the sort thread while
+     * the entries of the current one are written to the entry log by the flush thread, and their locations are added
+     * to the entry location index batch by the index thread, in chunks. The batch is committed once the entry log is
+     * flushed, so the index never points to entries that are not persisted.
+     */
+    private void flushWriteCachesPipelined(WriteCache[] cachesToFlush, long startTime) throws IOException {
+        Batch batch = entryLocationIndex.newBatch();
+        LocationsIndexer indexer = new LocationsIndexer(batch);
+        try {
+            // Caches are flushed from the oldest, at the end of the array
+            Future<?> nextSorted = flushSortExecutor.submit(cachesToFlush[cachesToFlush.length - 1]::sortEntries);
+            for (int i = cachesToFlush.length - 1; i >= 0; i--) {
+                waitFor(nextSorted);
+                if (i > 0) {
+                    nextSorted = flushSortExecutor.submit(cachesToFlush[i - 1]::sortEntries);
+                }
+
+                cachesToFlush[i].forEach((ledgerId, entryId, entry) -> {
+                    try {
+                        indexer.addLocation(ledgerId, entryId, entryLogger.addEntry(ledgerId, entry, true));
+                    } catch (IOException e) {
+                        throw new RuntimeException(e);
+                    }
+                });
+            }
+
+            entryLogger.flush();
+            indexer.complete();
+
+            long batchFlushStarTime = System.nanoTime();
+            batch.flush();
+            if (log.isDebugEnabled()) {
+                log.debug("DB batch flushed time : {} s",
+                        MathUtils.elapsedNanos(batchFlushStarTime) / (double) TimeUnit.SECONDS.toNanos(1));
+            }
+        } catch (IOException | RuntimeException e) {
+            recordFailedEvent(dbLedgerStorageStats.getFlushStats(), startTime);
+            throw e;
+        } finally {
+            // The index thread might still be using the batch if the flush failed
+            indexer.awaitQuietly();
+            batch.close();
+        }
+    }
+
+    private static void waitFor(Future<?> future) throws IOException {
+        try {
+            future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while flushing the write cache", e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof IOException) {
+                throw (IOException) e.getCause();
+            }
+            throw new IOException(e.getCause());
+        }
+    }
+
+    /**
+     * Collect the locations of the entries written to the entry log, and add them to the entry location index
+     * batch on the index thread, in chunks of {@link #FLUSH_LOCATIONS_CHUNK_SIZE}. Chunks are added to the batch in
+     * the order they were submitted, since the index thread is single threaded.
+     */
+    private final class LocationsIndexer {
+        private final Batch batch;
+        private final List<Future<?>> pendingChunks = new ArrayList<>();
+        private long[] locations = new long[FLUSH_LOCATIONS_CHUNK_SIZE * 3];
+        private int locationsIdx = 0;
+
+        LocationsIndexer(Batch batch) {
+            this.batch = batch;
+        }
+
+        void addLocation(long ledgerId, long entryId, long location) {
+            locations[locationsIdx] = ledgerId;
+            locations[locationsIdx + 1] = entryId;
+            locations[locationsIdx + 2] = location;
+            locationsIdx += 3;
+            if (locationsIdx == locations.length) {
+                submitChunk();
+            }
+        }
+
+        private void submitChunk() {
+            final long[] chunk = locations;
+            final int chunkSize = locationsIdx;
+            locations = new long[FLUSH_LOCATIONS_CHUNK_SIZE * 3];
+            locationsIdx = 0;
+
+            pendingChunks.add(flushIndexExecutor.submit(() -> {
+                for (int i = 0; i < chunkSize; i += 3) {
+                    entryLocationIndex.addLocation(batch, chunk[i], chunk[i + 1], chunk[i + 2]);
+                }
+                return null;
+            }));
+        }
+
+        /**
+         * Wait until all the locations have been added to the batch.
+         */
+        void complete() throws IOException {
+            if (locationsIdx > 0) {
+                submitChunk();
+            }
+            for (Future<?> chunk : pendingChunks) {
+                waitFor(chunk);
+            }
+            pendingChunks.clear();
+        }
+
+        void awaitQuietly() {
+            for (Future<?> chunk : pendingChunks) {
+                try {
+                    chunk.get();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                } catch (ExecutionException e) {
+                    // Already reported by the flush
+                }
             }
+            pendingChunks.clear();
         }
     }
 
     /**
-     * Swap the current write cache with the replacement cache.
+     * Rotate the current write cache with a free one of the ring, if it is not empty.
+     *
+     * @return false if the current write cache is not empty and there is no free write cache
      */
-    private void swapWriteCache() {
+    private boolean sealWriteCache() {
+        freeWriteCachesLock.lock();
+        try {
+            if (writeCache.isEmpty()) {
+                return true;
+            }
+            WriteCache freeWriteCache = freeWriteCaches.poll();
+            if (freeWriteCache == null) {
+                return false;
+            }
+            rotateWriteCache(freeWriteCache);
+            return true;
+        } finally {
+            freeWriteCachesLock.unlock();
+        }
+    }
+
+    /**
+     * Replace the current write cache with an empty one, and queue the current one for flushing.
+     * Needs to be called with the free write caches lock held.
+     */
+    private void rotateWriteCache(WriteCache freeWriteCache) {
         long stamp = writeCacheRotationLock.writeLock();
         try {
-            // First, swap the current write-cache map with an empty one so that writes will
-            // go on unaffected. Only a single flush is happening at the same time
-            WriteCache tmp = writeCacheBeingFlushed;
-            writeCacheBeingFlushed = writeCache;
-            writeCache = tmp;
-
-            // since the cache is switched, we can allow flush to be triggered
-            hasFlushBeenTriggered.set(false);
+            WriteCache[] caches = new WriteCache[writeCachesBeingFlushed.length + 1];
+            caches[0] = writeCache;
+            System.arraycopy(writeCachesBeingFlushed, 0, caches, 1, writeCachesBeingFlushed.length);
+            writeCachesBeingFlushed = caches;
+            writeCache = freeWriteCache;
         } finally {
+            writeCacheRotationLock.unlockWrite(stamp);
+        }
+    }
+
+    /**
+     * Clear the oldest flushed write caches and make them available to the writers again.
+     */
+    private void releaseWriteCaches(int count) {
+        freeWriteCachesLock.lock();
+        try {
+            WriteCache[] caches = writeCachesBeingFlushed;
+            long stamp = writeCacheRotationLock.writeLock();
             try {
-                isFlushOngoing.set(true);
+                writeCachesBeingFlushed = Arrays.copyOf(caches, caches.length - count);
             } finally {
                 writeCacheRotationLock.unlockWrite(stamp);
             }
+
+            for (int i = caches.length - count; i < caches.length; i++) {
+                caches[i].clear();
+                freeWriteCaches.add(caches[i]);
+            }
+
+            if (writesThrottled) {
+                log.info("Write cache freed, stop throttling writes");
+                writesThrottled = false;
+                notifyWriteBackpressure(false);
+            }
+            writeCacheFreed.signalAll();
+        } finally {
+            freeWriteCachesLock.unlock();
+        }
+    }
+
+    /**
+     * Get the current write cache followed by the write caches being flushed, from the most recent to the oldest.
+     */
+    private WriteCache[] getWriteCaches() {
+        long stamp = writeCacheRotationLock.tryOptimisticRead();
+        WriteCache localWriteCache = writeCache;
+        WriteCache[] localWriteCachesBeingFlushed = writeCachesBeingFlushed;
+        if (!writeCacheRotationLock.validate(stamp)) {
+            // Fallback to regular read lock approach
+            stamp = writeCacheRotationLock.readLock();
+            try {
+                localWriteCache = writeCache;
+                localWriteCachesBeingFlushed = writeCachesBeingFlushed;
+            } finally {
+                writeCacheRotationLock.unlockRead(stamp);
+            }
         }
+
+        WriteCache[] caches = new WriteCache[localWriteCachesBeingFlushed.length + 1];
+        caches[0] = localWriteCache;
+        System.arraycopy(localWriteCachesBeingFlushed, 0, caches, 1, localWriteCachesBeingFlushed.length);
+        return caches;
+    }
+
+    private static ByteBuf getFromWriteCaches(WriteCache[] caches, long ledgerId, long entryId) {
+        for (WriteCache cache : caches) {
+            ByteBuf entry = cache.get(ledgerId, entryId);
+            if (entry != null) {
+                return entry;
+            }
+        }
+        return null;
     }
 
     @Override
@@ -707,6 +1243,10 @@ public class SingleDirectoryDbLedgerStorage implements CompactableLedgerStorage
         entryLocationIndex.delete(ledgerId);
         ledgerIndex.delete(ledgerId);
 
+        if (readAheadPrefetcher != null) {
+            readAheadPrefetcher.ledgerDeleted(ledgerId);
+        }
+
         for (int i = 0, size = ledgerDeletionListeners.size(); i < size; i++) {
             LedgerDeletionListener listener = ledgerDeletionListeners.get(i);
             listener.ledgerDeleted(ledgerId);
@@ -850,6 +1390,11 @@ public class SingleDirectoryDbLedgerStorage implements CompactableLedgerStorage
         ledgerDeletionListeners.add(listener);
     }
 
+    @Override
+    public void registerWriteBackpressureListener(WriteBackpressureListener listener) {
+        writeBackpressureListeners.add(listener);
+    }
+
     public EntryLocationIndex getEntryLocationIndex() {
         return entryLocationIndex;
     }
@@ -863,11 +1408,19 @@ public class SingleDirectoryDbLedgerStorage implements CompactableLedgerStorage
     }
 
     long getWriteCacheSize() {
-        return writeCache.size() + writeCacheBeingFlushed.size();
+        long size = writeCache.size();
+        for (WriteCache cache : writeCachesBeingFlushed) {
+            size += cache.size();
+        }
+        return size;
     }
 
     long getWriteCacheCount() {
-        return writeCache.count() + writeCacheBeingFlushed.count();
+        long count = writeCache.count();
+        for (WriteCache cache : writeCachesBeingFlushed) {
+            count += cache.count();
+        }
+        return count;
     }
 
     long getReadCacheSize() {
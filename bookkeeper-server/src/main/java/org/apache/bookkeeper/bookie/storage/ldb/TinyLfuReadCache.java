@@ -0,0 +1,118 @@
+/**
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *
+ */
+package org.apache.bookkeeper.bookie.storage.ldb;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufAllocator;
+
+/**
+ * Read cache that protects frequently accessed entries from being evicted by scans.
+ *
+ * <p>The memory is split in two {@link ReadCache} rings:
+ * <ul>
+ * <li>a small probation area, where all the new entries are inserted, including the ones coming from read-ahead</li>
+ * <li>a protected area, where entries are promoted when they are hit in the probation area and their estimated
+ * access frequency reaches the admission threshold. A promoted entry is invalidated in the probation area.</li>
+ * </ul>
+ *
+ * <p>Access frequencies are tracked with a {@link FrequencySketch}. An entry that is only read once, as it happens
+ * during a catch-up read or a replication scan, never makes it to the protected area and cannot push out the entries
+ * that are shared by many readers, like the tail of a ledger. The sketch counts the hits, and the misses which are
+ * followed by the insertion of the entry, but not the entries inserted by read-ahead or the misses for entries that
+ * the cache never holds.
+ */
+public class TinyLfuReadCache implements ReadCachePolicy {
+
+    public static final String POLICY_NAME = "tinylfu";
+
+    private static final double PROBATION_RATIO = 0.2;
+
+    // Assumed average entry size, used to size the frequency sketch
+    private static final int AVERAGE_ENTRY_SIZE = 1024;
+
+    // Minimum number of recorded accesses for an entry to be promoted to the protected area
+    static final int ADMISSION_FREQUENCY = 2;
+
+    private final ReadCache probationCache;
+    private final ReadCache protectedCache;
+    private final FrequencySketch sketch;
+
+    public TinyLfuReadCache(ByteBufAllocator allocator, long maxCacheSize, boolean zeroCopyReads) {
+        long probationCacheSize = (long) (maxCacheSize * PROBATION_RATIO);
+        this.probationCache = new ReadCache(allocator, probationCacheSize, zeroCopyReads);
+        this.protectedCache = new ReadCache(allocator, maxCacheSize - probationCacheSize, zeroCopyReads);
+        this.sketch = new FrequencySketch(maxCacheSize / AVERAGE_ENTRY_SIZE);
+    }
+
+    @Override
+    public String getPolicyName() {
+        return POLICY_NAME;
+    }
+
+    @Override
+    public void put(long ledgerId, long entryId, ByteBuf entry) {
+        probationCache.put(ledgerId, entryId, entry);
+    }
+
+    @Override
+    public void putAfterMiss(long ledgerId, long entryId, ByteBuf entry) {
+        // The miss is recorded, so that an entry which is read again after being evicted from the probation area
+        // will be promoted at the next hit
+        sketch.increment(ledgerId, entryId);
+        probationCache.put(ledgerId, entryId, entry);
+    }
+
+    @Override
+    public ByteBuf get(long ledgerId, long entryId) {
+        ByteBuf entry = protectedCache.get(ledgerId, entryId);
+        if (entry != null) {
+            sketch.increment(ledgerId, entryId);
+            return entry;
+        }
+
+        entry = probationCache.get(ledgerId, entryId);
+        if (entry != null) {
+            sketch.increment(ledgerId, entryId);
+            if (sketch.frequency(ledgerId, entryId) >= ADMISSION_FREQUENCY) {
+                protectedCache.put(ledgerId, entryId, entry);
+                probationCache.remove(ledgerId, entryId);
+            }
+        }
+
+        return entry;
+    }
+
+    @Override
+    public long size() {
+        return probationCache.size() + protectedCache.size();
+    }
+
+    @Override
+    public long count() {
+        return probationCache.count() + protectedCache.count();
+    }
+
+    @Override
+    public void close() {
+        probationCache.close();
+        protectedCache.close();
+    }
+}
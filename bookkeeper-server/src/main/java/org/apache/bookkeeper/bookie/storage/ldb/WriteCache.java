@@ -25,6 +25,7 @@ import static com.google.common.base.Preconditions.checkArgument;
 import io.netty.buffer.ByteBuf;
 import io.netty.buffer.ByteBufAllocator;
 import io.netty.buffer.Unpooled;
+import io.netty.util.concurrent.FastThreadLocal;
 
 import java.io.Closeable;
 import java.util.concurrent.atomic.AtomicLong;
@@ -35,7 +36,7 @@ import org.apache.bookkeeper.common.util.MathUtils;
 import org.apache.bookkeeper.util.collections.ConcurrentLongHashSet;
 import org.apache.bookkeeper.util.collections.ConcurrentLongLongHashMap;
 import org.apache.bookkeeper.util.collections.ConcurrentLongLongPairHashMap;
-import org.apache.bookkeeper.util.collections.ConcurrentLongLongPairHashMap.LongPair;
+import org.apache.bookkeeper.util.collections.ConcurrentLongLongPairHashMap.LongPairHolder;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -119,6 +120,13 @@ public class WriteCache implements Closeable {
         index.clear();
         lastEntryMap.clear();
         deletedLedgers.clear();
+
+        sortedEntriesLock.lock();
+        try {
+            sortedEntriesValid = false;
+        } finally {
+            sortedEntriesLock.unlock();
+        }
     }
 
     @Override
@@ -181,8 +189,8 @@ public class WriteCache implements Closeable {
     }
 
     public ByteBuf get(long ledgerId, long entryId) {
-        LongPair result = index.get(ledgerId, entryId);
-        if (result == null) {
+        LongPairHolder result = lookupHolder.get();
+        if (!index.get(ledgerId, entryId, result)) {
             return null;
         }
 
@@ -212,43 +220,68 @@ public class WriteCache implements Closeable {
 
     private static final ArrayGroupSort groupSorter = new ArrayGroupSort(2, 4);
 
-    public void forEach(EntryConsumer consumer) {
+    /**
+     * Sort the entries of the cache by (ledgerId, entryId) ahead of a {@link #forEach(EntryConsumer)}, so that the
+     * sorting can be done by a different thread while the cache is not being modified anymore.
+     */
+    public void sortEntries() {
         sortedEntriesLock.lock();
-
         try {
-            int entriesToSort = (int) index.size();
-            int arrayLen = entriesToSort * 4;
-            if (sortedEntries == null || sortedEntries.length < arrayLen) {
-                sortedEntries = new long[(int) (arrayLen * 2)];
+            if (!sortedEntriesValid) {
+                doSortEntries();
+                sortedEntriesValid = true;
             }
+        } finally {
+            sortedEntriesLock.unlock();
+        }
+    }
 
-            long startTime = MathUtils.nowInNano();
-
-            sortedEntriesIdx = 0;
-            index.forEach((ledgerId, entryId, offset, length) -> {
-                if (deletedLedgers.contains(ledgerId)) {
-                    // Ignore deleted ledgers
-                    return;
-                }
+    private void doSortEntries() {
+        int entriesToSort = (int) index.size();
+        int arrayLen = entriesToSort * 4;
+        if (sortedEntries == null || sortedEntries.length < arrayLen) {
+            sortedEntries = new long[(int) (arrayLen * 2)];
+        }
 
-                sortedEntries[sortedEntriesIdx] = ledgerId;
-                sortedEntries[sortedEntriesIdx + 1] = entryId;
-                sortedEntries[sortedEntriesIdx + 2] = offset;
-                sortedEntries[sortedEntriesIdx + 3] = length;
-                sortedEntriesIdx += 4;
-            });
+        long startTime = MathUtils.nowInNano();
 
-            if (log.isDebugEnabled()) {
-                log.debug("iteration took {} ms", MathUtils.elapsedNanos(startTime) / 1e6);
+        sortedEntriesIdx = 0;
+        index.forEach((ledgerId, entryId, offset, length) -> {
+            if (deletedLedgers.contains(ledgerId)) {
+                // Ignore deleted ledgers
+                return;
             }
-            startTime = MathUtils.nowInNano();
 
-            // Sort entries by (ledgerId, entryId) maintaining the 4 items groups
-            groupSorter.sort(sortedEntries, 0, sortedEntriesIdx);
-            if (log.isDebugEnabled()) {
-                log.debug("sorting {} ms", (MathUtils.elapsedNanos(startTime) / 1e6));
+            sortedEntries[sortedEntriesIdx] = ledgerId;
+            sortedEntries[sortedEntriesIdx + 1] = entryId;
+            sortedEntries[sortedEntriesIdx + 2] = offset;
+            sortedEntries[sortedEntriesIdx + 3] = length;
+            sortedEntriesIdx += 4;
+        });
+
+        if (log.isDebugEnabled()) {
+            log.debug("iteration took {} ms", MathUtils.elapsedNanos(startTime) / 1e6);
+        }
+        startTime = MathUtils.nowInNano();
+
+        // Sort entries by (ledgerId, entryId) maintaining the 4 items groups
+        groupSorter.sort(sortedEntries, 0, sortedEntriesIdx);
+        if (log.isDebugEnabled()) {
+            log.debug("sorting {} ms", (MathUtils.elapsedNanos(startTime) / 1e6));
+        }
+    }
+
+    public void forEach(EntryConsumer consumer) {
+        sortedEntriesLock.lock();
+
+        try {
+            if (!sortedEntriesValid) {
+                doSortEntries();
             }
-            startTime = MathUtils.nowInNano();
+            // The sorting is only valid for one iteration, the cache can be modified afterwards
+            sortedEntriesValid = false;
+
+            long startTime = MathUtils.nowInNano();
 
             ByteBuf[] entrySegments = new ByteBuf[segmentsCount];
             for (int i = 0; i < segmentsCount; i++) {
@@ -298,9 +331,18 @@ public class WriteCache implements Closeable {
         return (long) Math.pow(2, 64 - Long.numberOfLeadingZeros(n - 1));
     }
 
+    // Reused by each thread for the index lookups, to avoid allocating the result
+    private static final FastThreadLocal<LongPairHolder> lookupHolder = new FastThreadLocal<LongPairHolder>() {
+        @Override
+        protected LongPairHolder initialValue() {
+            return new LongPairHolder();
+        }
+    };
+
     private final ReentrantLock sortedEntriesLock = new ReentrantLock();
     private long[] sortedEntries;
     private int sortedEntriesIdx;
+    private boolean sortedEntriesValid = false;
 
     private static final Logger log = LoggerFactory.getLogger(WriteCache.class);
 }
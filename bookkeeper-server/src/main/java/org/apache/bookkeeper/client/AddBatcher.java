@@ -0,0 +1,221 @@
+/*
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *
+ */
+package org.apache.bookkeeper.client;
+
+import static org.apache.bookkeeper.proto.BookieProtocol.FLAG_NONE;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.bookkeeper.common.util.SafeRunnable;
+import org.apache.bookkeeper.net.BookieSocketAddress;
+import org.apache.bookkeeper.proto.BookieClient;
+import org.apache.bookkeeper.proto.BookkeeperInternalCallbacks.BatchedWriteCallback;
+import org.apache.bookkeeper.util.ByteBufList;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Groups the consecutive adds of a ledger into batched add requests.
+ *
+ * <p>The adds are held for up to the configured linger time, or until their total size reaches
+ * the configured limit, and then sent to each bookie of the ensemble with a single request.
+ * It is only used for the ledgers whose ensemble size equals their write quorum size, so that all
+ * the entries of a batch share the same write set.
+ *
+ * <p>The responses of a batched add are dispatched to the {@link PendingAddOp} of each entry, so
+ * the ack quorum, ensemble changes and failure handling are the same as for single adds. The entries
+ * sent to a bookie that does not support batched adds are sent again one by one.
+ */
+class AddBatcher {
+
+    private static final Logger LOG = LoggerFactory.getLogger(AddBatcher.class);
+
+    private final LedgerHandle lh;
+    private final ClientContext clientCtx;
+    private final long lingerNanos;
+    private final int maxBytes;
+
+    // Guarded by this
+    private List<PendingAddOp> pendingOps = new ArrayList<>();
+    private long pendingBytes = 0;
+    private long batchSequence = 0;
+
+    AddBatcher(LedgerHandle lh, ClientContext clientCtx) {
+        this.lh = lh;
+        this.clientCtx = clientCtx;
+        this.lingerNanos = clientCtx.getConf().addBatchLingerNanos;
+        this.maxBytes = clientCtx.getConf().addBatchMaxBytes;
+    }
+
+    /**
+     * Add an operation to the current batch.
+     */
+    void add(PendingAddOp op) {
+        List<PendingAddOp> ops = null;
+        long sequence = -1;
+        synchronized (this) {
+            pendingOps.add(op);
+            pendingBytes += op.entryLength;
+            if (pendingBytes >= maxBytes || lingerNanos <= 0) {
+                ops = takePendingOps();
+            } else if (pendingOps.size() == 1) {
+                sequence = batchSequence;
+            }
+        }
+
+        if (ops != null) {
+            submit(ops);
+        } else if (sequence >= 0) {
+            final long batch = sequence;
+            try {
+                clientCtx.getScheduler().schedule(() -> flush(batch), lingerNanos, TimeUnit.NANOSECONDS);
+            } catch (RejectedExecutionException e) {
+                flush(batch);
+            }
+        }
+    }
+
+    private void flush(long sequence) {
+        List<PendingAddOp> ops;
+        synchronized (this) {
+            if (sequence != batchSequence || pendingOps.isEmpty()) {
+                // the batch was already sent because of its size
+                return;
+            }
+            ops = takePendingOps();
+        }
+        submit(ops);
+    }
+
+    private List<PendingAddOp> takePendingOps() {
+        List<PendingAddOp> ops = pendingOps;
+        pendingOps = new ArrayList<>();
+        pendingBytes = 0;
+        ++batchSequence;
+        return ops;
+    }
+
+    private void submit(List<PendingAddOp> ops) {
+        try {
+            clientCtx.getMainWorkerPool().executeOrdered(lh.ledgerId, new SafeRunnable() {
+                @Override
+                public void safeRun() {
+                    send(ops);
+                }
+
+                @Override
+                public String toString() {
+                    return String.format("BatchedAddEntries(lid=%d, entries=%d)", lh.ledgerId, ops.size());
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            for (PendingAddOp op : ops) {
+                op.cb.addCompleteWithLatency(
+                        BookKeeper.getReturnRc(clientCtx.getBookieClient(), BKException.Code.InterruptedException),
+                        lh, LedgerHandle.INVALID_ENTRY_ID, 0, op.ctx);
+            }
+        }
+    }
+
+    private void send(List<PendingAddOp> ops) {
+        // the adds may have been queued concurrently, out of the order of their entry ids
+        ops.sort(Comparator.comparingLong(PendingAddOp::getEntryId));
+
+        List<PendingAddOp> run = new ArrayList<>(ops.size());
+        for (PendingAddOp op : ops) {
+            if (!op.initiate()) {
+                continue;
+            }
+            if (!run.isEmpty()) {
+                PendingAddOp last = run.get(run.size() - 1);
+                if (op.entryId != last.entryId + 1
+                        || op.ensemble != last.ensemble
+                        || op.allowFailFast != last.allowFailFast) {
+                    sendRun(run);
+                    run = new ArrayList<>(ops.size());
+                }
+            }
+            run.add(op);
+        }
+        if (!run.isEmpty()) {
+            sendRun(run);
+        }
+    }
+
+    private void sendRun(List<PendingAddOp> run) {
+        PendingAddOp first = run.get(0);
+        List<BookieSocketAddress> ensemble = first.ensemble;
+        BookieClient bookieClient = clientCtx.getBookieClient();
+        boolean batchable = run.size() > 1;
+        for (int i = 0; batchable && i < ensemble.size(); i++) {
+            batchable = bookieClient.isBatchAddSupported(ensemble.get(i));
+        }
+        if (!batchable) {
+            for (PendingAddOp op : run) {
+                op.sendWriteRequests();
+            }
+            return;
+        }
+
+        List<ByteBufList> toSend = new ArrayList<>(run.size());
+        for (PendingAddOp op : run) {
+            toSend.add(op.toSend);
+        }
+        BatchedWriteCallback cb = new BatchedWriteCallback() {
+            @Override
+            public void writeEntriesComplete(int rc, long ledgerId, long firstEntryId, int count,
+                                             BookieSocketAddress addr, Object ctx) {
+                int bookieIndex = (Integer) ctx;
+                if (rc == BKException.Code.IllegalOpException) {
+                    if (LOG.isDebugEnabled()) {
+                        LOG.debug("Bookie {} does not support batched adds, sending entries {}-{} of ledger {}"
+                                + " one by one", addr, firstEntryId, firstEntryId + count - 1, ledgerId);
+                    }
+                    for (PendingAddOp op : run) {
+                        op.resendWriteRequest(bookieIndex, addr);
+                    }
+                } else {
+                    for (PendingAddOp op : run) {
+                        op.writeComplete(rc, ledgerId, op.entryId, addr, ctx);
+                    }
+                }
+            }
+        };
+
+        DistributionSchedule.WriteSet writeSet = lh.distributionSchedule.getWriteSet(first.entryId);
+        try {
+            for (int i = 0; i < writeSet.size(); i++) {
+                int bookieIndex = writeSet.get(i);
+                for (PendingAddOp op : run) {
+                    ++op.pendingWriteRequests;
+                }
+                bookieClient.addEntries(ensemble.get(bookieIndex), lh.ledgerId, lh.ledgerKey, first.entryId,
+                                        toSend, cb, bookieIndex, FLAG_NONE, first.allowFailFast, lh.writeFlags);
+            }
+        } finally {
+            writeSet.recycle();
+        }
+    }
+}
@@ -112,6 +112,7 @@ public class BookKeeper implements org.apache.bookkeeper.client.api.BookKeeper {
     // The stats logger for this client.
     private final StatsLogger statsLogger;
     private final BookKeeperClientStats clientStats;
+    private final BookieReadLatencyTracker bookieReadLatencyTracker;
     private final double bookieQuarantineRatio;
 
     // whether the event loop group is one we created, or is owned by whoever
@@ -416,6 +417,8 @@ public class BookKeeper implements org.apache.bookkeeper.client.api.BookKeeper {
         }
 
         this.internalConf = ClientInternalConf.fromConfigAndFeatureProvider(conf, this.featureProvider);
+        this.bookieReadLatencyTracker = new BookieReadLatencyTracker(conf.getReadLatencyEstimateHalfLifeMs(),
+                                                                     TimeUnit.MILLISECONDS);
 
         // initialize resources
         this.scheduler = OrderedScheduler.newSchedulerBuilder().numThreads(1).name("BookKeeperClientScheduler").build();
@@ -535,6 +538,8 @@ public class BookKeeper implements org.apache.bookkeeper.client.api.BookKeeper {
     BookKeeper() {
         conf = new ClientConfiguration();
         internalConf = ClientInternalConf.fromConfig(conf);
+        bookieReadLatencyTracker = new BookieReadLatencyTracker(conf.getReadLatencyEstimateHalfLifeMs(),
+                                                                TimeUnit.MILLISECONDS);
         statsLogger = NullStatsLogger.INSTANCE;
         clientStats = BookKeeperClientStats.newInstance(statsLogger);
         scheduler = null;
@@ -1503,6 +1508,11 @@ public class BookKeeper implements org.apache.bookkeeper.client.api.BookKeeper {
                 return clientStats;
             }
 
+            @Override
+            public BookieReadLatencyTracker getBookieReadLatencyTracker() {
+                return bookieReadLatencyTracker;
+            }
+
             @Override
             public boolean isClientClosed() {
                 return BookKeeper.this.isClosed();
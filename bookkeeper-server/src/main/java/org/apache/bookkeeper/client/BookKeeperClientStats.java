@@ -64,6 +64,7 @@ public interface BookKeeperClientStats {
     String GET_BOOKIE_INFO_OP = "GET_BOOKIE_INFO";
     String SPECULATIVE_READ_COUNT = "SPECULATIVE_READ_COUNT";
     String READ_REQUESTS_REORDERED = "READ_REQUESTS_REORDERED";
+    String READ_REQUESTS_LATENCY_RANKED = "READ_REQUESTS_LATENCY_RANKED";
     String GET_LIST_OF_ENTRIES_OF_LEDGER_OP = "GET_LIST_OF_ENTRIES_OF_LEDGER";
 
     // per channel stats
@@ -71,8 +72,15 @@ public interface BookKeeperClientStats {
 
     String CHANNEL_READ_OP = "READ_ENTRY";
     String CHANNEL_TIMEOUT_READ = "TIMEOUT_READ_ENTRY";
+    String CHANNEL_BATCH_READ_OP = "BATCH_READ_ENTRY";
+    String CHANNEL_TIMEOUT_BATCH_READ = "TIMEOUT_BATCH_READ_ENTRY";
+    String CHANNEL_BATCH_READ_ENTRIES = "BATCH_READ_ENTRIES";
     String CHANNEL_ADD_OP = "ADD_ENTRY";
     String CHANNEL_TIMEOUT_ADD = "TIMEOUT_ADD_ENTRY";
+    String CHANNEL_BATCH_ADD_OP = "BATCH_ADD_ENTRY";
+    String CHANNEL_TIMEOUT_BATCH_ADD = "TIMEOUT_BATCH_ADD_ENTRY";
+    String CHANNEL_BATCH_ADD_ENTRIES = "BATCH_ADD_ENTRIES";
+    String CHANNEL_REQUESTS_PER_FLUSH = "REQUESTS_PER_FLUSH";
     String CHANNEL_WRITE_LAC_OP = "WRITE_LAC";
     String CHANNEL_FORCE_OP = "FORCE";
     String CHANNEL_TIMEOUT_WRITE_LAC = "TIMEOUT_WRITE_LAC";
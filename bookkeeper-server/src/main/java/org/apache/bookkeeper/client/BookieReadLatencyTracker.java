@@ -0,0 +1,124 @@
+/*
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *
+ */
+package org.apache.bookkeeper.client;
+
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.base.Ticker;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheLoader;
+import com.google.common.cache.LoadingCache;
+
+import java.util.concurrent.TimeUnit;
+
+import org.apache.bookkeeper.net.BookieSocketAddress;
+
+/**
+ * Keeps a decaying estimate of the read latency of each bookie, fed by the responses of the reads.
+ *
+ * <p>The estimate of a bookie is an exponentially weighted moving average of its read latencies,
+ * which decays toward zero with the given half-life while the bookie is not read from. A bookie
+ * which was slow once, during a garbage collection or a compaction, thus gets probed again after a
+ * while instead of being avoided for good.
+ *
+ * <p>The estimate of a bookie that is neither read from nor looked up for some half-lives is
+ * dropped, as it decayed to nothing, so that the bookies that left the cluster are forgotten.
+ */
+class BookieReadLatencyTracker {
+
+    // weight of a new sample in the moving average
+    private static final double SAMPLE_WEIGHT = 0.2;
+    // number of half-lives after which an unused estimate is dropped, it's then below 0.1% of its value
+    private static final int EXPIRATION_HALF_LIVES = 10;
+
+    private final double halfLifeNanos;
+    private final Ticker ticker;
+    private final LoadingCache<BookieSocketAddress, Estimate> estimates;
+
+    BookieReadLatencyTracker(long halfLife, TimeUnit unit) {
+        this(halfLife, unit, Ticker.systemTicker());
+    }
+
+    @VisibleForTesting
+    BookieReadLatencyTracker(long halfLife, TimeUnit unit, Ticker ticker) {
+        long halfLifeInNanos = Math.max(1L, unit.toNanos(halfLife));
+        this.halfLifeNanos = halfLifeInNanos;
+        this.ticker = ticker;
+        this.estimates = CacheBuilder.newBuilder()
+            .ticker(ticker)
+            .expireAfterAccess(Math.min(Long.MAX_VALUE / EXPIRATION_HALF_LIVES, halfLifeInNanos)
+                               * EXPIRATION_HALF_LIVES, TimeUnit.NANOSECONDS)
+            .build(new CacheLoader<BookieSocketAddress, Estimate>() {
+                @Override
+                public Estimate load(BookieSocketAddress key) {
+                    return new Estimate();
+                }
+            });
+    }
+
+    /**
+     * Record the latency of a read response from a bookie.
+     */
+    void recordReadLatency(BookieSocketAddress bookie, long latencyNanos) {
+        estimates.getUnchecked(bookie).update(ticker.read(), latencyNanos);
+    }
+
+    /**
+     * Return the read latency estimate of a bookie.
+     *
+     * @return the estimated latency in nanoseconds, -1 if the bookie was never read from
+     */
+    long getReadLatencyNanos(BookieSocketAddress bookie) {
+        Estimate estimate = estimates.getIfPresent(bookie);
+        return estimate == null ? -1L : estimate.get(ticker.read());
+    }
+
+    @VisibleForTesting
+    long getNumEstimates() {
+        estimates.cleanUp();
+        return estimates.size();
+    }
+
+    private class Estimate {
+        private double latencyNanos = -1;
+        private long lastUpdateNanos;
+
+        synchronized void update(long nowNanos, long sampleNanos) {
+            if (latencyNanos < 0) {
+                latencyNanos = sampleNanos;
+            } else {
+                latencyNanos = decayed(nowNanos) * (1 - SAMPLE_WEIGHT) + sampleNanos * SAMPLE_WEIGHT;
+            }
+            lastUpdateNanos = nowNanos;
+        }
+
+        synchronized long get(long nowNanos) {
+            return (long) decayed(nowNanos);
+        }
+
+        private double decayed(long nowNanos) {
+            long elapsedNanos = nowNanos - lastUpdateNanos;
+            if (elapsedNanos <= 0) {
+                return latencyNanos;
+            }
+            return latencyNanos * Math.pow(0.5, elapsedNanos / halfLifeNanos);
+        }
+    }
+}
@@ -44,4 +44,14 @@ public interface BookiesHealthInfo {
      */
     long getBookiePendingRequests(BookieSocketAddress bookieSocketAddress);
 
+    /**
+     * Returns the read latency estimate of a bookie.
+     *
+     * @param bookieSocketAddress
+     * @return estimated read latency in nanoseconds, -1 if it is unknown
+     */
+    default long getBookieReadLatencyNanos(BookieSocketAddress bookieSocketAddress) {
+        return -1L;
+    }
+
 }
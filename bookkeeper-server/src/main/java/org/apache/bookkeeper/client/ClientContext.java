@@ -43,5 +43,6 @@ interface ClientContext {
     OrderedExecutor getMainWorkerPool();
     OrderedScheduler getScheduler();
     BookKeeperClientStats getClientStats();
+    BookieReadLatencyTracker getBookieReadLatencyTracker();
     boolean isClientClosed();
 }
@@ -40,7 +40,13 @@ class ClientInternalConf {
     final long addEntryQuorumTimeoutNanos;
     final boolean enableParallelRecoveryRead;
     final boolean enableReorderReadSequence;
+    final boolean trackBookieReadLatency;
     final boolean enableStickyReads;
+    final int batchReadMaxEntries;
+    final long batchReadMaxSizeBytes;
+    final boolean addBatchEnabled;
+    final long addBatchLingerNanos;
+    final int addBatchMaxBytes;
     final int recoveryReadBatchSize;
     final int throttleValue;
     final int bookieFailureHistoryExpirationMSec;
@@ -67,6 +73,8 @@ class ClientInternalConf {
                                FeatureProvider featureProvider) {
         this.explicitLacInterval = conf.getExplictLacInterval();
         this.enableReorderReadSequence = conf.isReorderReadSequenceEnabled();
+        this.trackBookieReadLatency = conf.isReorderReadSequenceEnabled()
+                && conf.getReadReorderLatencyStrategy() != ReadReorderLatencyStrategy.NONE;
         this.enableParallelRecoveryRead = conf.getEnableParallelRecoveryRead();
         this.recoveryReadBatchSize = conf.getRecoveryReadBatchSize();
         this.waitForWriteSetMs = conf.getWaitTimeoutOnBackpressureMillis();
@@ -82,6 +90,11 @@ class ClientInternalConf {
         this.enableBookieFailureTracking = conf.getEnableBookieFailureTracking();
         this.useV2WireProtocol = conf.getUseV2WireProtocol();
         this.enableStickyReads = conf.isStickyReadsEnabled();
+        this.batchReadMaxEntries = conf.isBatchReadEnabled() ? conf.getBatchReadMaxEntries() : 1;
+        this.batchReadMaxSizeBytes = conf.getBatchReadMaxSizeBytes();
+        this.addBatchEnabled = conf.isAddBatchEnabled();
+        this.addBatchLingerNanos = TimeUnit.MICROSECONDS.toNanos(conf.getAddBatchLingerMicros());
+        this.addBatchMaxBytes = conf.getAddBatchMaxBytes();
         this.enforceMinNumFaultDomainsForWrite = conf.getEnforceMinNumFaultDomainsForWrite();
 
         if (conf.getFirstSpeculativeReadTimeout() > 0) {
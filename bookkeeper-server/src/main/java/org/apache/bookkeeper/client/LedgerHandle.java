@@ -46,12 +46,13 @@ import java.util.Optional;
 import java.util.Queue;
 import java.util.Set;
 import java.util.concurrent.CompletableFuture;
-import java.util.concurrent.ConcurrentLinkedQueue;
 import java.util.concurrent.RejectedExecutionException;
 import java.util.concurrent.ScheduledFuture;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLongFieldUpdater;
+import java.util.concurrent.atomic.AtomicReference;
 import org.apache.bookkeeper.client.AsyncCallback.AddCallback;
 import org.apache.bookkeeper.client.AsyncCallback.AddCallbackWithLatency;
 import org.apache.bookkeeper.client.AsyncCallback.CloseCallback;
@@ -102,14 +103,35 @@ public class LedgerHandle implements WriteHandle {
     final byte[] ledgerKey;
     private Versioned<LedgerMetadata> versionedMetadata;
     final long ledgerId;
-    long lastAddPushed;
+
+    /**
+     * Entry id of the last entry pushed to the ledger and length of the ledger up to that entry.
+     * They are assigned together to the added entries, so that the length piggybacked by an entry
+     * always includes the previous entries, without locking the handle.
+     */
+    private static final class AddSequence {
+        final long lastAddPushed;
+        final long length;
+        // Set when the handle is closed, no entry can be added anymore
+        final boolean sealed;
+
+        AddSequence(long lastAddPushed, long length, boolean sealed) {
+            this.lastAddPushed = lastAddPushed;
+            this.length = length;
+            this.sealed = sealed;
+        }
+    }
+
+    private final AtomicReference<AddSequence> addSequence;
+    // Number of adds being assigned an entry id, which are not queued yet
+    private final AtomicInteger addsBeingSequenced = new AtomicInteger(0);
 
     private enum HandleState {
         OPEN,
         CLOSED
     }
 
-    private HandleState handleState = HandleState.OPEN;
+    private volatile HandleState handleState = HandleState.OPEN;
     private final CompletableFuture<Void> closePromise = new CompletableFuture<>();
 
     /**
@@ -117,6 +139,8 @@ public class LedgerHandle implements WriteHandle {
       * This value is used by readers, the the LAC protocol
       */
     volatile long lastAddConfirmed;
+    private static final AtomicLongFieldUpdater<LedgerHandle> LAST_ADD_CONFIRMED_UPDATER =
+            AtomicLongFieldUpdater.newUpdater(LedgerHandle.class, "lastAddConfirmed");
 
      /**
       * Next entryId which is expected to move forward during {@link #sendAddSuccessCallbacks() }. This is important
@@ -136,10 +160,11 @@ public class LedgerHandle implements WriteHandle {
      */
     private int stickyBookieIndex;
 
-    long length;
     final DigestManager macManager;
     final DistributionSchedule distributionSchedule;
     final RateLimiter throttler;
+    // Null when the adds of the ledger are not batched
+    final AddBatcher addBatcher;
     final LoadingCache<BookieSocketAddress, Long> bookieFailureHistory;
     final BookiesHealthInfo bookiesHealthInfo;
     final EnumSet<WriteFlag> writeFlags;
@@ -181,19 +206,19 @@ public class LedgerHandle implements WriteHandle {
         this.clientCtx = clientCtx;
 
         this.versionedMetadata = versionedMetadata;
-        this.pendingAddOps = new ConcurrentLinkedQueue<PendingAddOp>();
         this.writeFlags = writeFlags;
 
         LedgerMetadata metadata = versionedMetadata.getValue();
         if (metadata.isClosed()) {
-            lastAddConfirmed = lastAddPushed = metadata.getLastEntryId();
-            length = metadata.getLength();
+            lastAddConfirmed = metadata.getLastEntryId();
+            addSequence = new AtomicReference<>(new AddSequence(lastAddConfirmed, metadata.getLength(), true));
         } else {
-            lastAddConfirmed = lastAddPushed = INVALID_ENTRY_ID;
-            length = 0;
+            lastAddConfirmed = INVALID_ENTRY_ID;
+            addSequence = new AtomicReference<>(new AddSequence(INVALID_ENTRY_ID, 0, false));
         }
 
         this.pendingAddsSequenceHead = lastAddConfirmed;
+        this.pendingAddOps = new PendingAddOpRing(lastAddConfirmed + 1);
 
         this.ledgerId = ledgerId;
 
@@ -220,6 +245,12 @@ public class LedgerHandle implements WriteHandle {
                 metadata.getWriteQuorumSize(),
                 metadata.getAckQuorumSize(),
                 metadata.getEnsembleSize());
+        if (clientCtx.getConf().addBatchEnabled
+                && metadata.getEnsembleSize() == metadata.getWriteQuorumSize()) {
+            this.addBatcher = new AddBatcher(this, clientCtx);
+        } else {
+            this.addBatcher = null;
+        }
         this.bookieFailureHistory = CacheBuilder.newBuilder()
             .expireAfterWrite(clientCtx.getConf().bookieFailureHistoryExpirationMSec, TimeUnit.MILLISECONDS)
             .build(new CacheLoader<BookieSocketAddress, Long>() {
@@ -239,6 +270,11 @@ public class LedgerHandle implements WriteHandle {
             public long getBookiePendingRequests(BookieSocketAddress bookieSocketAddress) {
                 return clientCtx.getBookieClient().getNumPendingRequests(bookieSocketAddress, ledgerId);
             }
+
+            @Override
+            public long getBookieReadLatencyNanos(BookieSocketAddress bookieSocketAddress) {
+                return clientCtx.getBookieReadLatencyTracker().getReadLatencyNanos(bookieSocketAddress);
+            }
         };
 
         ensembleChangeCounter = clientCtx.getClientStats().getEnsembleChangeCounter();
@@ -324,11 +360,11 @@ public class LedgerHandle implements WriteHandle {
      * {@inheritDoc}
      */
     @Override
-    public synchronized long getLastAddConfirmed() {
+    public long getLastAddConfirmed() {
         return lastAddConfirmed;
     }
 
-    synchronized void setLastAddConfirmed(long lac) {
+    void setLastAddConfirmed(long lac) {
         this.lastAddConfirmed = lac;
     }
 
@@ -336,8 +372,64 @@ public class LedgerHandle implements WriteHandle {
      * {@inheritDoc}
      */
     @Override
-    public synchronized long getLastAddPushed() {
-        return lastAddPushed;
+    public long getLastAddPushed() {
+        return addSequence.get().lastAddPushed;
+    }
+
+    /**
+     * Set the entry id of the last entry pushed and the length of the ledger, when they are
+     * not assigned by adding an entry, such as when opening or recovering the ledger.
+     */
+    void resetAddSequence(long lastAddPushed, long length) {
+        updateAddSequence(lastAddPushed, length, false);
+    }
+
+    private AddSequence updateAddSequence(long lastAddPushed, long length, boolean seal) {
+        AddSequence current;
+        AddSequence next;
+        do {
+            current = addSequence.get();
+            next = new AddSequence(lastAddPushed, length, seal || current.sealed);
+        } while (!addSequence.compareAndSet(current, next));
+        if (next.lastAddPushed != current.lastAddPushed) {
+            resetPendingAddOps(next.lastAddPushed + 1);
+        }
+        return next;
+    }
+
+    /**
+     * Prevent any entry from being added, and wait for the adds which already got an entry id
+     * to be queued. Must not be called while holding the lock of the handle.
+     */
+    private void sealAddSequence() {
+        AddSequence current;
+        do {
+            current = addSequence.get();
+        } while (!current.sealed
+                 && !addSequence.compareAndSet(current,
+                         new AddSequence(current.lastAddPushed, current.length, true)));
+
+        // The adds being sequenced notify when the last one is queued, once the sequence is sealed
+        boolean interrupted = false;
+        synchronized (addsBeingSequenced) {
+            while (addsBeingSequenced.get() > 0) {
+                try {
+                    addsBeingSequenced.wait();
+                } catch (InterruptedException e) {
+                    // The adds must be queued before the pending adds are drained, keep waiting
+                    interrupted = true;
+                }
+            }
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void resetPendingAddOps(long nextEntryId) {
+        if (pendingAddOps instanceof PendingAddOpRing) {
+            ((PendingAddOpRing) pendingAddOps).reset(nextEntryId);
+        }
     }
 
     /**
@@ -368,8 +460,8 @@ public class LedgerHandle implements WriteHandle {
                 versionedMetadata = newMetadata;
                 LedgerMetadata metadata = versionedMetadata.getValue();
                 if (metadata.isClosed()) {
-                    lastAddConfirmed = lastAddPushed = metadata.getLastEntryId();
-                    length = metadata.getLength();
+                    lastAddConfirmed = metadata.getLastEntryId();
+                    updateAddSequence(lastAddConfirmed, metadata.getLength(), true);
                 }
                 return true;
             } else {
@@ -426,9 +518,14 @@ public class LedgerHandle implements WriteHandle {
      * @param delta
      * @return the length of the ledger after the addition
      */
-    synchronized long addToLength(long delta) {
-        this.length += delta;
-        return this.length;
+    long addToLength(long delta) {
+        AddSequence current;
+        AddSequence next;
+        do {
+            current = addSequence.get();
+            next = new AddSequence(current.lastAddPushed, current.length + delta, current.sealed);
+        } while (!addSequence.compareAndSet(current, next));
+        return next.length;
     }
 
     /**
@@ -437,8 +534,8 @@ public class LedgerHandle implements WriteHandle {
      * @return the length of the ledger in bytes
      */
     @Override
-    public synchronized long getLength() {
-        return this.length;
+    public long getLength() {
+        return addSequence.get().length;
     }
 
     /**
@@ -557,6 +654,9 @@ public class LedgerHandle implements WriteHandle {
                         }
                     });
 
+                // wait for the adds being sequenced without holding the lock, which they might need to be queued
+                sealAddSequence();
+
                 synchronized (LedgerHandle.this) {
                     prevHandleState = handleState;
 
@@ -564,8 +664,8 @@ public class LedgerHandle implements WriteHandle {
                     pendingAdds = drainPendingAddsAndAdjustLength();
 
                     // taking the length must occur after draining, as draining changes the length
-                    lastEntry = lastAddPushed = LedgerHandle.this.lastAddConfirmed;
-                    finalLength = LedgerHandle.this.length;
+                    lastEntry = LedgerHandle.this.lastAddConfirmed;
+                    finalLength = updateAddSequence(lastEntry, getLength(), true).length;
                     handleState = HandleState.CLOSED;
                 }
 
@@ -1298,21 +1398,7 @@ public class LedgerHandle implements WriteHandle {
             throttler.acquire();
         }
 
-        boolean wasClosed = false;
-        synchronized (this) {
-            // synchronized on this to ensure that
-            // the ledger isn't closed between checking and
-            // updating lastAddPushed
-            if (isHandleWritable()) {
-                long entryId = ++lastAddPushed;
-                long currentLedgerLength = addToLength(op.payload.readableBytes());
-                op.setEntryId(entryId);
-                op.setLedgerLength(currentLedgerLength);
-                pendingAddOps.add(op);
-            } else {
-                wasClosed = true;
-            }
-        }
+        boolean wasClosed = !isHandleWritable() || !sequenceAdd(op);
 
         if (wasClosed) {
             // make sure the callback is triggered in main worker pool
@@ -1347,6 +1433,11 @@ public class LedgerHandle implements WriteHandle {
             ws.recycle();
         }
 
+        if (addBatcher != null && !op.isRecoveryAdd) {
+            addBatcher.add(op);
+            return;
+        }
+
         try {
             clientCtx.getMainWorkerPool().executeOrdered(ledgerId, op);
         } catch (RejectedExecutionException e) {
@@ -1356,15 +1447,61 @@ public class LedgerHandle implements WriteHandle {
         }
     }
 
-    synchronized void updateLastConfirmed(long lac, long len) {
-        if (lac > lastAddConfirmed) {
-            lastAddConfirmed = lac;
+    /**
+     * Assign the next entry id and the ledger length to an add operation, and queue it.
+     *
+     * @return false if the handle is closed
+     */
+    private boolean sequenceAdd(PendingAddOp op) {
+        addsBeingSequenced.incrementAndGet();
+        try {
+            long entryLength = op.payload.readableBytes();
+            AddSequence current;
+            AddSequence next;
+            do {
+                current = addSequence.get();
+                if (current.sealed) {
+                    return false;
+                }
+                next = new AddSequence(current.lastAddPushed + 1, current.length + entryLength, false);
+            } while (!addSequence.compareAndSet(current, next));
+            op.setEntryId(next.lastAddPushed);
+            op.setLedgerLength(next.length);
+            pendingAddOps.add(op);
+            return true;
+        } finally {
+            if (addsBeingSequenced.decrementAndGet() == 0 && addSequence.get().sealed) {
+                synchronized (addsBeingSequenced) {
+                    addsBeingSequenced.notifyAll();
+                }
+            }
+        }
+    }
+
+    void updateLastConfirmed(long lac, long len) {
+        long current;
+        do {
+            current = lastAddConfirmed;
+        } while (lac > current && !LAST_ADD_CONFIRMED_UPDATER.compareAndSet(this, current, lac));
+        if (lac > current) {
             lacUpdateHitsCounter.inc();
         } else {
             lacUpdateMissesCounter.inc();
         }
-        lastAddPushed = Math.max(lastAddPushed, lac);
-        length = Math.max(length, len);
+
+        AddSequence sequence;
+        AddSequence next;
+        do {
+            sequence = addSequence.get();
+            if (lac <= sequence.lastAddPushed && len <= sequence.length) {
+                return;
+            }
+            next = new AddSequence(Math.max(sequence.lastAddPushed, lac), Math.max(sequence.length, len),
+                                   sequence.sealed);
+        } while (!addSequence.compareAndSet(sequence, next));
+        if (next.lastAddPushed != sequence.lastAddPushed) {
+            resetPendingAddOps(next.lastAddPushed + 1);
+        }
     }
 
     /**
@@ -1691,7 +1828,7 @@ public class LedgerHandle implements WriteHandle {
             isClosed = metadata.isClosed();
             if (isClosed) {
                 lastAddConfirmed = metadata.getLastEntryId();
-                length = metadata.getLength();
+                resetAddSequence(getLastAddPushed(), metadata.getLength());
             }
         }
         if (isClosed) {
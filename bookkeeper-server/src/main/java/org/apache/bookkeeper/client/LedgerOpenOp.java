@@ -214,7 +214,8 @@ class LedgerOpenOp {
                     if (rc != BKException.Code.OK) {
                         openComplete(bk.getReturnRc(BKException.Code.ReadException), null);
                     } else {
-                        lh.lastAddConfirmed = lh.lastAddPushed = lastConfirmed;
+                        lh.lastAddConfirmed = lastConfirmed;
+                        lh.resetAddSequence(lastConfirmed, lh.getLength());
                         openComplete(BKException.Code.OK, lh);
                     }
                 }
@@ -104,8 +104,8 @@ class LedgerRecoveryOp implements ReadEntryListener, AddCallback {
                     public void readLastConfirmedDataComplete(int rc, RecoveryData data) {
                         if (rc == BKException.Code.OK) {
                             synchronized (lh) {
-                                lh.lastAddPushed = lh.lastAddConfirmed = data.getLastAddConfirmed();
-                                lh.length = data.getLength();
+                                lh.lastAddConfirmed = data.getLastAddConfirmed();
+                                lh.resetAddSequence(lh.lastAddConfirmed, data.getLength());
                                 lh.pendingAddsSequenceHead = lh.lastAddConfirmed;
                                 startEntryToRead = endEntryToRead = lh.lastAddConfirmed;
                             }
@@ -174,11 +174,12 @@ class LedgerRecoveryOp implements ReadEntryListener, AddCallback {
              * be added again when processing the call to add it.
              */
             synchronized (lh) {
-                lh.length = entry.getLength() - (long) data.length;
+                long lastAddPushed = lh.getLastAddPushed();
+                lh.resetAddSequence(lastAddPushed, entry.getLength() - (long) data.length);
                 // check whether entry id is expected, so we won't overwritten any entries by mistake
-                if (entry.getEntryId() != lh.lastAddPushed + 1) {
+                if (entry.getEntryId() != lastAddPushed + 1) {
                     LOG.error("Unexpected to recovery add entry {} as entry {} for ledger {}.",
-                            entry.getEntryId(), (lh.lastAddPushed + 1), lh.getId());
+                            entry.getEntryId(), (lastAddPushed + 1), lh.getId());
                     rc = BKException.Code.UnexpectedConditionException;
                 }
             }
@@ -242,18 +242,45 @@ class PendingAddOp extends SafeRunnable implements WriteCallback {
         sendWriteRequest(ensemble, bookieIndex);
     }
 
+    /**
+     * Resend the write request of a batched add to a bookie that does not support batched adds.
+     */
+    void resendWriteRequest(int bookieIndex, BookieSocketAddress addr) {
+        --pendingWriteRequests;
+        if (callbackTriggered) {
+            maybeRecycle();
+            return;
+        }
+        if (!ensemble.get(bookieIndex).equals(addr)) {
+            // ensemble has already changed, the write request was sent to the new bookie
+            return;
+        }
+        sendWriteRequest(ensemble, bookieIndex);
+    }
+
     /**
      * Initiate the add operation.
      */
     @Override
     public void safeRun() {
+        if (initiate()) {
+            sendWriteRequests();
+        }
+    }
+
+    /**
+     * Compute the digest of the entry, before sending it to the bookies.
+     *
+     * @return false if the add operation was already failed, true otherwise
+     */
+    boolean initiate() {
         hasRun = true;
         if (callbackTriggered) {
             // this should only be true if the request was failed due
             // to another request ahead in the pending queue,
             // so we can just ignore this request
             maybeRecycle();
-            return;
+            return false;
         }
 
         this.requestTimeNanos = MathUtils.nowInNano();
@@ -269,7 +296,10 @@ class PendingAddOp extends SafeRunnable implements WriteCallback {
         // We are about to send. Check if we need to make an ensemble change
         // becasue of delayed write errors
         lh.maybeHandleDelayedWriteBookieFailure();
+        return true;
+    }
 
+    void sendWriteRequests() {
         // Iterate over set and trigger the sendWriteRequests
         DistributionSchedule.WriteSet writeSet = lh.distributionSchedule.getWriteSet(entryId);
 
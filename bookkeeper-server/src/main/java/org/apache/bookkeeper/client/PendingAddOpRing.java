@@ -0,0 +1,195 @@
+/*
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *
+ */
+package org.apache.bookkeeper.client;
+
+import java.util.AbstractQueue;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Queue of the pending add operations of a {@link LedgerHandle}, ordered by entry id.
+ *
+ * <p>The operations are stored in a ring indexed by their entry id, so that the threads adding
+ * entries can publish their operation without any lock, in any order, once they got their entry
+ * id. The head of the queue is the operation of the next entry id to complete: {@link #peek()}
+ * returns null while that operation is not published yet, even if later operations are.
+ *
+ * <p>The entry ids must be increasing: the head can only be moved backward by {@link #reset(long)},
+ * when no operation is pending. Removals, which are done by the thread completing the adds, and
+ * the growth of the ring are synchronized.
+ */
+class PendingAddOpRing extends AbstractQueue<PendingAddOp> {
+
+    private static final int DEFAULT_CAPACITY = 256;
+
+    private volatile AtomicReferenceArray<PendingAddOp> slots;
+    // Entry id of the head of the queue
+    private volatile long head;
+    private final AtomicLong maxEntryId;
+    private final AtomicInteger size = new AtomicInteger();
+
+    PendingAddOpRing(long firstEntryId) {
+        this.slots = new AtomicReferenceArray<>(DEFAULT_CAPACITY);
+        this.head = firstEntryId;
+        this.maxEntryId = new AtomicLong(firstEntryId - 1);
+    }
+
+    /**
+     * Move the head of the queue to the given entry id, when the entry ids of the ledger
+     * handle are reset. It has no effect if some operations are pending.
+     */
+    synchronized void reset(long nextEntryId) {
+        if (size.get() == 0) {
+            head = nextEntryId;
+            maxEntryId.set(nextEntryId - 1);
+        }
+    }
+
+    @Override
+    public boolean offer(PendingAddOp op) {
+        long entryId = op.entryId;
+        AtomicReferenceArray<PendingAddOp> a = slots;
+        while (entryId - head >= a.length()
+                || !a.compareAndSet(index(a, entryId), null, op)) {
+            a = grow(entryId);
+        }
+        size.incrementAndGet();
+        maxEntryId.accumulateAndGet(entryId, Math::max);
+        if (slots != a) {
+            // the ring grew concurrently, and may have been copied before the operation was published
+            republish(op);
+        }
+        return true;
+    }
+
+    @Override
+    public PendingAddOp peek() {
+        if (size.get() == 0) {
+            return null;
+        }
+        long entryId = head;
+        AtomicReferenceArray<PendingAddOp> a = slots;
+        PendingAddOp op = a.get(index(a, entryId));
+        return op != null && op.entryId == entryId ? op : null;
+    }
+
+    @Override
+    public synchronized PendingAddOp poll() {
+        PendingAddOp op = peek();
+        if (op != null) {
+            slots.set(index(slots, op.entryId), null);
+            head = op.entryId + 1;
+            size.decrementAndGet();
+        }
+        return op;
+    }
+
+    @Override
+    public int size() {
+        return size.get();
+    }
+
+    /**
+     * Iterate over the pending operations, in the order of their entry ids.
+     *
+     * <p>The iterator is weakly consistent: it may or may not reflect the concurrent changes.
+     */
+    @Override
+    public Iterator<PendingAddOp> iterator() {
+        return new Iterator<PendingAddOp>() {
+            long nextEntryId = head;
+            final long lastEntryId = maxEntryId.get();
+            PendingAddOp next = advance();
+
+            private PendingAddOp advance() {
+                AtomicReferenceArray<PendingAddOp> a = slots;
+                while (nextEntryId <= lastEntryId) {
+                    long entryId = nextEntryId++;
+                    PendingAddOp op = a.get(index(a, entryId));
+                    if (op != null && op.entryId == entryId) {
+                        return op;
+                    }
+                }
+                return null;
+            }
+
+            @Override
+            public boolean hasNext() {
+                return next != null;
+            }
+
+            @Override
+            public PendingAddOp next() {
+                if (next == null) {
+                    throw new NoSuchElementException();
+                }
+                PendingAddOp op = next;
+                next = advance();
+                return op;
+            }
+        };
+    }
+
+    private synchronized AtomicReferenceArray<PendingAddOp> grow(long entryId) {
+        AtomicReferenceArray<PendingAddOp> a = slots;
+        if (entryId - head < a.length() && a.get(index(a, entryId)) == null) {
+            // another thread already grew the ring
+            return a;
+        }
+        int capacity = a.length();
+        while (entryId - head >= capacity) {
+            capacity <<= 1;
+        }
+        if (capacity == a.length()) {
+            // the slot is still taken by a completed operation which is not removed yet
+            capacity <<= 1;
+        }
+        AtomicReferenceArray<PendingAddOp> newSlots = new AtomicReferenceArray<>(capacity);
+        copy(a, newSlots);
+        slots = newSlots;
+        // copy again the operations published in the old ring while it was copied, the later
+        // ones are published again by their producer
+        copy(a, newSlots);
+        return newSlots;
+    }
+
+    private void copy(AtomicReferenceArray<PendingAddOp> from, AtomicReferenceArray<PendingAddOp> to) {
+        for (int i = 0; i < from.length(); i++) {
+            PendingAddOp op = from.get(i);
+            if (op != null && op.entryId >= head) {
+                to.set(index(to, op.entryId), op);
+            }
+        }
+    }
+
+    private synchronized void republish(PendingAddOp op) {
+        if (op.entryId >= head) {
+            slots.set(index(slots, op.entryId), op);
+        }
+    }
+
+    private static int index(AtomicReferenceArray<PendingAddOp> a, long entryId) {
+        return (int) (entryId & (a.length() - 1));
+    }
+}
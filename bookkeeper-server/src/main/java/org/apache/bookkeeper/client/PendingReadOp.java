@@ -41,6 +41,7 @@ import org.apache.bookkeeper.client.impl.LedgerEntryImpl;
 import org.apache.bookkeeper.common.util.SafeRunnable;
 import org.apache.bookkeeper.net.BookieSocketAddress;
 import org.apache.bookkeeper.proto.BookieProtocol;
+import org.apache.bookkeeper.proto.BookkeeperInternalCallbacks.BatchedReadEntryCallback;
 import org.apache.bookkeeper.proto.BookkeeperInternalCallbacks.ReadEntryCallback;
 import org.apache.bookkeeper.proto.BookkeeperInternalCallbacks.ReadEntryCallbackCtx;
 import org.apache.bookkeeper.proto.checksum.DigestManager;
@@ -55,7 +56,7 @@ import org.slf4j.LoggerFactory;
  * application as soon as it arrives rather than waiting for the whole thing.
  *
  */
-class PendingReadOp implements ReadEntryCallback, SafeRunnable {
+class PendingReadOp implements ReadEntryCallback, BatchedReadEntryCallback, SafeRunnable {
     private static final Logger LOG = LoggerFactory.getLogger(PendingReadOp.class);
 
     private ScheduledFuture<?> speculativeTask = null;
@@ -386,6 +387,22 @@ class PendingReadOp implements ReadEntryCallback, SafeRunnable {
             sendNextRead();
         }
 
+        /**
+         * Record that the entry is being read from the first replica, as part of a batched read.
+         *
+         * @return the bookie index of the first replica, or {@link #NOT_FOUND} if the read was already sent.
+         */
+        synchronized int markFirstReplicaSent() {
+            if (nextReplicaIndexToReadFrom != 0) {
+                return NOT_FOUND;
+            }
+            int bookieIndex = writeSet.get(0);
+            nextReplicaIndexToReadFrom++;
+            sentToHosts.add(ensemble.get(bookieIndex));
+            sentReplicas.set(0);
+            return bookieIndex;
+        }
+
         synchronized BookieSocketAddress sendNextRead() {
             if (nextReplicaIndexToReadFrom >= getLedgerMetadata().getWriteQuorumSize()) {
                 // we are done, the read has failed from all replicas, just fail the
@@ -526,13 +543,62 @@ class PendingReadOp implements ReadEntryCallback, SafeRunnable {
             i++;
         } while (i <= endEntryId);
         // read the entries.
-        for (LedgerEntryRequest entry : seq) {
-            entry.read();
-            if (!parallelRead && clientCtx.getConf().readSpeculativeRequestPolicy.isPresent()) {
-                speculativeTask = clientCtx.getConf().readSpeculativeRequestPolicy.get()
-                    .initiateSpeculativeRequest(clientCtx.getScheduler(), entry);
+        for (int idx = 0; idx < seq.size();) {
+            int batchSize = getBatchReadSize(idx);
+            if (batchSize > 1) {
+                // copy the batch, since the read sequence can be trimmed while the entries complete
+                List<LedgerEntryRequest> batch = new ArrayList<>(seq.subList(idx, idx + batchSize));
+                sendBatchRead(batch);
+                for (LedgerEntryRequest entry : batch) {
+                    maybeInitiateSpeculativeRequest(entry);
+                }
+            } else {
+                LedgerEntryRequest entry = seq.get(idx);
+                entry.read();
+                maybeInitiateSpeculativeRequest(entry);
+            }
+            idx += batchSize;
+        }
+    }
+
+    private void maybeInitiateSpeculativeRequest(LedgerEntryRequest entry) {
+        if (!parallelRead && clientCtx.getConf().readSpeculativeRequestPolicy.isPresent()) {
+            speculativeTask = clientCtx.getConf().readSpeculativeRequestPolicy.get()
+                .initiateSpeculativeRequest(clientCtx.getScheduler(), entry);
+        }
+    }
+
+    /**
+     * Get the number of consecutive entries, starting at <i>idx</i> in the read sequence,
+     * that can be read from their first replica with a single batched read.
+     */
+    private int getBatchReadSize(int idx) {
+        int maxEntries = clientCtx.getConf().batchReadMaxEntries;
+        if (maxEntries <= 1 || parallelRead || isRecoveryRead) {
+            return 1;
+        }
+        LedgerEntryRequest first = seq.get(idx);
+        int bookieIndex = first.writeSet.get(0);
+        if (!clientCtx.getBookieClient().isBatchReadSupported(first.ensemble.get(bookieIndex))) {
+            return 1;
+        }
+        int end = idx + 1;
+        while (end < seq.size() && end - idx < maxEntries) {
+            LedgerEntryRequest next = seq.get(end);
+            if (next.ensemble != first.ensemble || next.writeSet.get(0) != bookieIndex) {
+                break;
             }
+            end++;
         }
+        return end - idx;
+    }
+
+    private void sendBatchRead(List<LedgerEntryRequest> entries) {
+        int bookieIndex = -1;
+        for (LedgerEntryRequest entry : entries) {
+            bookieIndex = ((SequenceReadRequest) entry).markFirstReplicaSent();
+        }
+        sendBatchReadTo(bookieIndex, entries.get(0).ensemble.get(bookieIndex), entries);
     }
 
     @Override
@@ -544,6 +610,7 @@ class PendingReadOp implements ReadEntryCallback, SafeRunnable {
         final int bookieIndex;
         final BookieSocketAddress to;
         final LedgerEntryRequest entry;
+        final long sentNanos = MathUtils.nowInNano();
         long lac = LedgerHandle.INVALID_ENTRY_ID;
 
         ReadContext(int bookieIndex, BookieSocketAddress to, LedgerEntryRequest entry) {
@@ -573,24 +640,135 @@ class PendingReadOp implements ReadEntryCallback, SafeRunnable {
                                               this, new ReadContext(bookieIndex, to, entry), flags);
     }
 
+    private static class BatchedReadContext {
+        final int bookieIndex;
+        final BookieSocketAddress to;
+        final List<LedgerEntryRequest> entries;
+        final long sentNanos = MathUtils.nowInNano();
+
+        BatchedReadContext(int bookieIndex, BookieSocketAddress to, List<LedgerEntryRequest> entries) {
+            this.bookieIndex = bookieIndex;
+            this.to = to;
+            this.entries = entries;
+        }
+    }
+
+    void sendBatchReadTo(int bookieIndex, BookieSocketAddress to, List<LedgerEntryRequest> entries) {
+        if (lh.throttler != null) {
+            lh.throttler.acquire(entries.size());
+        }
+
+        clientCtx.getBookieClient().batchReadEntries(to, lh.ledgerId, entries.get(0).eId, entries.size(),
+                clientCtx.getConf().batchReadMaxSizeBytes, this, new BatchedReadContext(bookieIndex, to, entries),
+                BookieProtocol.FLAG_NONE);
+    }
+
     @Override
     public void readEntryComplete(int rc, long ledgerId, final long entryId, final ByteBuf buffer, Object ctx) {
         final ReadContext rctx = (ReadContext) ctx;
         final LedgerEntryRequest entry = rctx.entry;
+        recordReadLatency(rc, rctx.to, rctx.sentNanos);
 
         if (rc != BKException.Code.OK) {
             entry.logErrorAndReattemptRead(rctx.bookieIndex, rctx.to, "Error: " + BKException.getMessage(rc), rc);
             return;
         }
 
-        heardFromHosts.add(rctx.to);
-        heardFromHostsBitSet.set(rctx.bookieIndex, true);
+        completeEntry(rctx.bookieIndex, rctx.to, entry, buffer, rctx.getLastAddConfirmed());
+    }
+
+    @Override
+    public void readEntriesComplete(int rc, long ledgerId, long firstEntryId, List<ByteBuf> entries, Object ctx) {
+        final BatchedReadContext bctx = (BatchedReadContext) ctx;
+        recordReadLatency(rc, bctx.to, bctx.sentNanos);
+
+        int numRead = 0;
+        if (rc == BKException.Code.OK) {
+            numRead = Math.min(entries.size(), bctx.entries.size());
+            for (int i = 0; i < numRead; i++) {
+                // each entry is verified on its own, as if it was read with a single entry read
+                completeEntry(bctx.bookieIndex, bctx.to, bctx.entries.get(i), entries.get(i),
+                        LedgerHandle.INVALID_ENTRY_ID);
+            }
+        }
+
+        List<LedgerEntryRequest> remaining = bctx.entries.subList(numRead, bctx.entries.size());
+        if (remaining.isEmpty() || remaining.stream().allMatch(LedgerEntryRequest::isComplete)) {
+            return;
+        }
+
+        if (numRead > 0) {
+            // the response was cut by the size limit or by a missing entry, request the rest of the batch
+            if (remaining.size() > 1) {
+                sendBatchReadTo(bctx.bookieIndex, bctx.to, remaining);
+            } else {
+                resendReadTo(bctx.bookieIndex, bctx.to, remaining.get(0));
+            }
+            return;
+        }
+
+        if (LOG.isDebugEnabled()) {
+            LOG.debug("Batched read of L{} E{}-E{} from bookie {} failed: {}", lh.ledgerId,
+                    remaining.get(0).eId, remaining.get(remaining.size() - 1).eId, bctx.to,
+                    BKException.getMessage(rc));
+        }
+
+        switch (rc) {
+            case BKException.Code.IllegalOpException:
+            case BKException.Code.BookieHandleNotAvailableException:
+                // the bookie might not support batched reads, read the entries one by one from the same bookie
+                for (LedgerEntryRequest entry : remaining) {
+                    resendReadTo(bctx.bookieIndex, bctx.to, entry);
+                }
+                break;
+            case BKException.Code.NoSuchEntryException:
+                // only the first entry is known to be missing
+                remaining.get(0).logErrorAndReattemptRead(bctx.bookieIndex, bctx.to,
+                        "Error: " + BKException.getMessage(rc), rc);
+                for (LedgerEntryRequest entry : remaining.subList(1, remaining.size())) {
+                    resendReadTo(bctx.bookieIndex, bctx.to, entry);
+                }
+                break;
+            default:
+                for (LedgerEntryRequest entry : remaining) {
+                    entry.logErrorAndReattemptRead(bctx.bookieIndex, bctx.to,
+                            "Error: " + BKException.getMessage(rc), rc);
+                }
+                break;
+        }
+    }
+
+    private void recordReadLatency(int rc, BookieSocketAddress to, long sentNanos) {
+        // the errors other than timeouts are usually returned right away, and say nothing of the latency
+        if (clientCtx.getConf().trackBookieReadLatency
+                && (rc == BKException.Code.OK || rc == BKException.Code.TimeoutException)) {
+            clientCtx.getBookieReadLatencyTracker().recordReadLatency(to, MathUtils.elapsedNanos(sentNanos));
+        }
+    }
+
+    private void resendReadTo(int bookieIndex, BookieSocketAddress to, LedgerEntryRequest entry) {
+        if (entry.isComplete()) {
+            return;
+        }
+        try {
+            sendReadTo(bookieIndex, to, entry);
+        } catch (InterruptedException ie) {
+            LOG.error("Interrupted reading entry {} : ", entry, ie);
+            Thread.currentThread().interrupt();
+            entry.fail(BKException.Code.InterruptedException);
+        }
+    }
+
+    private void completeEntry(int bookieIndex, BookieSocketAddress to, LedgerEntryRequest entry,
+                               ByteBuf buffer, long lastAddConfirmed) {
+        heardFromHosts.add(to);
+        heardFromHostsBitSet.set(bookieIndex, true);
 
         buffer.retain();
-        if (entry.complete(rctx.bookieIndex, rctx.to, buffer)) {
+        if (entry.complete(bookieIndex, to, buffer)) {
             if (!isRecoveryRead) {
                 // do not advance LastAddConfirmed for recovery reads
-                lh.updateLastConfirmed(rctx.getLastAddConfirmed(), 0L);
+                lh.updateLastConfirmed(lastAddConfirmed, 0L);
             }
             submitCallback(BKException.Code.OK);
         } else {
@@ -599,7 +777,7 @@ class PendingReadOp implements ReadEntryCallback, SafeRunnable {
 
         if (numPendingEntries < 0) {
             LOG.error("Read too many values for ledger {} : [{}, {}].",
-                    ledgerId, startEntryId, endEntryId);
+                    lh.ledgerId, startEntryId, endEntryId);
         }
     }
 
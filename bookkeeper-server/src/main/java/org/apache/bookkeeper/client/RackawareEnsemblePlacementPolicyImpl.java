@@ -23,6 +23,7 @@ import static org.apache.bookkeeper.bookie.BookKeeperServerStats.BOOKIES_LEFT;
 import static org.apache.bookkeeper.bookie.BookKeeperServerStats.FAILED_TO_RESOLVE_NETWORK_LOCATION_COUNTER;
 import static org.apache.bookkeeper.client.BookKeeperClientStats.CLIENT_SCOPE;
 import static org.apache.bookkeeper.client.BookKeeperClientStats.NUM_WRITABLE_BOOKIES_IN_DEFAULT_RACK;
+import static org.apache.bookkeeper.client.BookKeeperClientStats.READ_REQUESTS_LATENCY_RANKED;
 import static org.apache.bookkeeper.client.BookKeeperClientStats.READ_REQUESTS_REORDERED;
 import static org.apache.bookkeeper.client.RegionAwareEnsemblePlacementPolicy.UNKNOWN_REGION;
 
@@ -43,6 +44,7 @@ import java.util.List;
 import java.util.Map;
 import java.util.Optional;
 import java.util.Set;
+import java.util.concurrent.ThreadLocalRandom;
 import java.util.concurrent.TimeUnit;
 
 import java.util.concurrent.locks.ReentrantReadWriteLock;
@@ -112,6 +114,7 @@ public class RackawareEnsemblePlacementPolicyImpl extends TopologyAwareEnsembleP
     protected boolean enforceDurability = false;
     protected int stabilizePeriodSeconds = 0;
     protected int reorderThresholdPendingRequests = 0;
+    protected ReadReorderLatencyStrategy readReorderLatencyStrategy = ReadReorderLatencyStrategy.NONE;
     // looks like these only assigned in the same thread as constructor, immediately after constructor;
     // no need to make volatile
     protected StatsLogger statsLogger = null;
@@ -121,6 +124,12 @@ public class RackawareEnsemblePlacementPolicyImpl extends TopologyAwareEnsembleP
             help = "The distribution of number of bookies reordered on each read request"
     )
     protected OpStatsLogger readReorderedCounter = null;
+    @StatsDoc(
+            name = READ_REQUESTS_LATENCY_RANKED,
+            help = "The distribution of the position in the read sequence of the bookie picked by the read"
+                + " reorder latency strategy, 0 if the read sequence was kept"
+    )
+    protected OpStatsLogger readLatencyRankedCounter = null;
     @StatsDoc(
             name = FAILED_TO_RESOLVE_NETWORK_LOCATION_COUNTER,
             help = "Counter for number of times DNSResolverDecorator failed to resolve Network Location"
@@ -165,6 +174,7 @@ public class RackawareEnsemblePlacementPolicyImpl extends TopologyAwareEnsembleP
         this.bookiesJoinedCounter = statsLogger.getOpStatsLogger(BOOKIES_JOINED);
         this.bookiesLeftCounter = statsLogger.getOpStatsLogger(BOOKIES_LEFT);
         this.readReorderedCounter = statsLogger.getOpStatsLogger(READ_REQUESTS_REORDERED);
+        this.readLatencyRankedCounter = statsLogger.getOpStatsLogger(READ_REQUESTS_LATENCY_RANKED);
         this.failedToResolveNetworkLocationCounter = statsLogger.getCounter(FAILED_TO_RESOLVE_NETWORK_LOCATION_COUNTER);
         this.numWritableBookiesInDefaultRack = new Gauge<Integer>() {
             @Override
@@ -285,6 +295,7 @@ public class RackawareEnsemblePlacementPolicyImpl extends TopologyAwareEnsembleP
                     return -1L;
                 }
             });
+        this.readReorderLatencyStrategy = conf.getReadReorderLatencyStrategy();
         return initialize(
                 dnsResolver,
                 timer,
@@ -887,6 +898,10 @@ public class RackawareEnsemblePlacementPolicyImpl extends TopologyAwareEnsembleP
             }
         }
 
+        if (!reordered && !reorderReadsRandom && readReorderLatencyStrategy != ReadReorderLatencyStrategy.NONE) {
+            reordered = reorderByExpectedLatency(ensemble, writeSet, bookiesHealthInfo);
+        }
+
         if (!isAnyBookieUnavailable) {
             if (reordered) {
                 readReorderedCounter.registerSuccessfulValue(1);
@@ -1005,6 +1020,70 @@ public class RackawareEnsemblePlacementPolicyImpl extends TopologyAwareEnsembleP
         return writeSet;
     }
 
+    /**
+     * Move the bookie picked by the read reorder latency strategy to the first place of the write set.
+     *
+     * <p>The expected latency of a bookie is its read latency estimate scaled by its number of pending
+     * requests. The unavailable and slow bookies are left to the ordering by health.
+     *
+     * @return whether the write set was reordered
+     */
+    private boolean reorderByExpectedLatency(List<BookieSocketAddress> ensemble,
+                                             DistributionSchedule.WriteSet writeSet,
+                                             BookiesHealthInfo bookiesHealthInfo) {
+        // indices in the write set of the candidate bookies, and their expected latency
+        int[] candidates = new int[writeSet.size()];
+        double[] expectedLatencies = new double[writeSet.size()];
+        int numCandidates = 0;
+        for (int i = 0; i < writeSet.size(); i++) {
+            BookieSocketAddress address = ensemble.get(writeSet.get(i));
+            if (!knownBookies.containsKey(address) || slowBookies.getIfPresent(address) != null) {
+                continue;
+            }
+            // a bookie without any estimate is expected to be the fastest, so that it gets probed
+            long latencyNanos = Math.max(0L, bookiesHealthInfo.getBookieReadLatencyNanos(address));
+            long pendingReqs = Math.max(0L, bookiesHealthInfo.getBookiePendingRequests(address));
+            candidates[numCandidates] = i;
+            expectedLatencies[numCandidates] = (double) latencyNanos * (pendingReqs + 1);
+            ++numCandidates;
+        }
+        if (numCandidates < 2) {
+            return false;
+        }
+
+        int best;
+        if (readReorderLatencyStrategy == ReadReorderLatencyStrategy.POWER_OF_TWO_CHOICES) {
+            int first = ThreadLocalRandom.current().nextInt(numCandidates);
+            int second = ThreadLocalRandom.current().nextInt(numCandidates - 1);
+            if (second >= first) {
+                ++second;
+            }
+            // on a tie, keep the original order of the write set
+            best = expectedLatencies[second] < expectedLatencies[first]
+                    || (expectedLatencies[second] == expectedLatencies[first] && second < first) ? second : first;
+        } else {
+            best = 0;
+            for (int i = 1; i < numCandidates; i++) {
+                if (expectedLatencies[i] < expectedLatencies[best]) {
+                    best = i;
+                }
+            }
+        }
+
+        int bestBookieIdx = candidates[best];
+        readLatencyRankedCounter.registerSuccessfulValue(bestBookieIdx);
+        if (bestBookieIdx == 0) {
+            return false;
+        }
+        if (LOG.isDebugEnabled()) {
+            LOG.debug("read set reordered by {} from {} to {} (expected latency {} ns)", readReorderLatencyStrategy,
+                    ensemble.get(writeSet.get(0)), ensemble.get(writeSet.get(bestBookieIdx)),
+                    (long) expectedLatencies[best]);
+        }
+        writeSet.moveAndShift(bestBookieIdx, 0);
+        return true;
+    }
+
     // this method should be called in readlock scope of 'rwlock'
     @Override
     public PlacementPolicyAdherence isEnsembleAdheringToPlacementPolicy(List<BookieSocketAddress> ensembleList,
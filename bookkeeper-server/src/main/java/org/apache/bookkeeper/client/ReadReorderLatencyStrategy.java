@@ -0,0 +1,45 @@
+/*
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *
+ */
+package org.apache.bookkeeper.client;
+
+/**
+ * Strategy used to rank the replicas of an entry by their expected read latency, when reordering
+ * the read sequence.
+ *
+ * <p>The expected latency of a bookie is its decaying read latency estimate, as returned by
+ * {@link BookiesHealthInfo#getBookieReadLatencyNanos}, scaled by its number of pending requests.
+ * A bookie without any estimate is expected to be the fastest, so that it gets probed.
+ */
+public enum ReadReorderLatencyStrategy {
+    /**
+     * The read latency of the bookies is not used to reorder the reads.
+     */
+    NONE,
+    /**
+     * Read first from the bookie with the least expected latency.
+     */
+    LEAST_EXPECTED_LATENCY,
+    /**
+     * Read first from the bookie with the least expected latency among two bookies picked at random,
+     * which spreads the reads over the bookies of similar latency.
+     */
+    POWER_OF_TWO_CHOICES
+}
@@ -28,6 +28,7 @@ import org.apache.bookkeeper.client.BookKeeper.DigestType;
 import org.apache.bookkeeper.client.EnsemblePlacementPolicy;
 import org.apache.bookkeeper.client.LedgerHandle;
 import org.apache.bookkeeper.client.RackawareEnsemblePlacementPolicy;
+import org.apache.bookkeeper.client.ReadReorderLatencyStrategy;
 import org.apache.bookkeeper.client.api.BookKeeperBuilder;
 import org.apache.bookkeeper.common.util.ReflectionUtils;
 import org.apache.bookkeeper.discover.RegistrationClient;
@@ -95,6 +96,9 @@ public class ClientConfiguration extends AbstractConfiguration<ClientConfigurati
     protected static final String CLIENT_RECEIVEBUFFER_SIZE = "clientReceiveBufferSize";
     protected static final String CLIENT_WRITEBUFFER_LOW_WATER_MARK = "clientWriteBufferLowWaterMark";
     protected static final String CLIENT_WRITEBUFFER_HIGH_WATER_MARK = "clientWriteBufferHighWaterMark";
+    protected static final String CLIENT_FLUSH_CONSOLIDATION_ENABLED = "clientFlushConsolidationEnabled";
+    protected static final String CLIENT_FLUSH_CONSOLIDATION_MAX_WRITES = "clientFlushConsolidationMaxWrites";
+    protected static final String CLIENT_FLUSH_CONSOLIDATION_MAX_BYTES = "clientFlushConsolidationMaxBytes";
     protected static final String CLIENT_CONNECT_TIMEOUT_MILLIS = "clientConnectTimeoutMillis";
     protected static final String NUM_CHANNELS_PER_BOOKIE = "numChannelsPerBookie";
     protected static final String USE_V2_WIRE_PROTOCOL = "useV2WireProtocol";
@@ -115,9 +119,15 @@ public class ClientConfiguration extends AbstractConfiguration<ClientConfigurati
     protected static final String RECOVERY_READ_BATCH_SIZE = "recoveryReadBatchSize";
     protected static final String REORDER_READ_SEQUENCE_ENABLED = "reorderReadSequenceEnabled";
     protected static final String STICKY_READS_ENABLED = "stickyReadSEnabled";
+    protected static final String BATCH_READ_ENABLED = "batchReadEnabled";
+    protected static final String BATCH_READ_MAX_ENTRIES = "batchReadMaxEntries";
+    protected static final String BATCH_READ_MAX_SIZE_BYTES = "batchReadMaxSizeBytes";
     // Add Parameters
     protected static final String DELAY_ENSEMBLE_CHANGE = "delayEnsembleChange";
     protected static final String MAX_ALLOWED_ENSEMBLE_CHANGES = "maxNumEnsembleChanges";
+    protected static final String ADD_BATCH_ENABLED = "addBatchEnabled";
+    protected static final String ADD_BATCH_LINGER_MICROS = "addBatchLingerMicros";
+    protected static final String ADD_BATCH_MAX_BYTES = "addBatchMaxBytes";
     // Timeout Setting
     protected static final String ADD_ENTRY_TIMEOUT_SEC = "addEntryTimeoutSec";
     protected static final String ADD_ENTRY_QUORUM_TIMEOUT_SEC = "addEntryQuorumTimeoutSec";
@@ -157,6 +167,8 @@ public class ClientConfiguration extends AbstractConfiguration<ClientConfigurati
     public static final String ENSEMBLE_PLACEMENT_POLICY = "ensemblePlacementPolicy";
     protected static final String NETWORK_TOPOLOGY_STABILIZE_PERIOD_SECONDS = "networkTopologyStabilizePeriodSeconds";
     protected static final String READ_REORDER_THRESHOLD_PENDING_REQUESTS = "readReorderThresholdPendingRequests";
+    protected static final String READ_REORDER_LATENCY_STRATEGY = "readReorderLatencyStrategy";
+    protected static final String READ_LATENCY_ESTIMATE_HALF_LIFE_MS = "readLatencyEstimateHalfLifeMs";
     protected static final String ENSEMBLE_PLACEMENT_POLICY_ORDER_SLOW_BOOKIES =
         "ensemblePlacementPolicyOrderSlowBookies";
 
@@ -458,6 +470,79 @@ public class ClientConfiguration extends AbstractConfiguration<ClientConfigurati
         return this;
     }
 
+    /**
+     * Whether the flushes of the client netty channels are consolidated.
+     *
+     * @return true if the flushes are consolidated.
+     */
+    public boolean getClientFlushConsolidationEnabled() {
+        return getBoolean(CLIENT_FLUSH_CONSOLIDATION_ENABLED, false);
+    }
+
+    /**
+     * Enable the consolidation of the flushes of the client netty channels.
+     *
+     * <p>When enabled, the requests are still written right away, but the channel is only flushed once
+     * the tasks already queued on its event loop ran, so that the requests sent concurrently reach the
+     * socket with a single write. The channel is flushed right away once
+     * {@link #getClientFlushConsolidationMaxWrites()} requests or
+     * {@link #getClientFlushConsolidationMaxBytes()} bytes are pending.
+     *
+     * @param enabled
+     *          whether to consolidate the flushes.
+     * @return client configuration.
+     */
+    public ClientConfiguration setClientFlushConsolidationEnabled(boolean enabled) {
+        setProperty(CLIENT_FLUSH_CONSOLIDATION_ENABLED, enabled);
+        return this;
+    }
+
+    /**
+     * Get the max number of requests written to a client netty channel before it is flushed, when
+     * the flushes are consolidated.
+     *
+     * @return max number of requests per flush.
+     */
+    public int getClientFlushConsolidationMaxWrites() {
+        return getInt(CLIENT_FLUSH_CONSOLIDATION_MAX_WRITES, 64);
+    }
+
+    /**
+     * Set the max number of requests written to a client netty channel before it is flushed, when
+     * the flushes are consolidated.
+     *
+     * @param maxWrites
+     *          max number of requests per flush.
+     * @return client configuration.
+     */
+    public ClientConfiguration setClientFlushConsolidationMaxWrites(int maxWrites) {
+        setProperty(CLIENT_FLUSH_CONSOLIDATION_MAX_WRITES, maxWrites);
+        return this;
+    }
+
+    /**
+     * Get the max number of bytes written to a client netty channel before it is flushed, when
+     * the flushes are consolidated.
+     *
+     * @return max number of bytes per flush.
+     */
+    public int getClientFlushConsolidationMaxBytes() {
+        return getInt(CLIENT_FLUSH_CONSOLIDATION_MAX_BYTES, 64 * 1024);
+    }
+
+    /**
+     * Set the max number of bytes written to a client netty channel before it is flushed, when
+     * the flushes are consolidated.
+     *
+     * @param maxBytes
+     *          max number of bytes per flush.
+     * @return client configuration.
+     */
+    public ClientConfiguration setClientFlushConsolidationMaxBytes(int maxBytes) {
+        setProperty(CLIENT_FLUSH_CONSOLIDATION_MAX_BYTES, maxBytes);
+        return this;
+    }
+
     /**
      * Get the tick duration in milliseconds that used for timeout timer.
      *
@@ -1166,6 +1251,153 @@ public class ClientConfiguration extends AbstractConfiguration<ClientConfigurati
         return this;
     }
 
+    /**
+     * Whether batched reads are enabled or not.
+     *
+     * @return true if batched reads are enabled, otherwise false.
+     */
+    public boolean isBatchReadEnabled() {
+        return getBoolean(BATCH_READ_ENABLED, false);
+    }
+
+    /**
+     * Enable/disable batched reads.
+     *
+     * <p>If this flag is enabled, consecutive entries of a read operation that are stored
+     * on the same bookie are requested with a single batched read request, rather than
+     * with one request per entry. Recovery reads and parallel reads are never batched.
+     *
+     * <p>The bookies are expected to support batched reads when this flag is enabled, so it
+     * must only be enabled once all the bookies are upgraded. With the v2 wire protocol, old
+     * bookies close the connection when receiving a batched read, failing the other requests
+     * in flight on that connection. With the v3 wire protocol, old bookies reject the batched
+     * reads, and they are then read one entry at a time.
+     *
+     * @param enabled the flag to enable/disable batched reads.
+     * @return client configuration instance.
+     */
+    public ClientConfiguration setBatchReadEnabled(boolean enabled) {
+        setProperty(BATCH_READ_ENABLED, enabled);
+        return this;
+    }
+
+    /**
+     * Get the maximum number of entries requested in a single batched read.
+     *
+     * @return the maximum number of entries in a batched read.
+     */
+    public int getBatchReadMaxEntries() {
+        return getInt(BATCH_READ_MAX_ENTRIES, 100);
+    }
+
+    /**
+     * Set the maximum number of entries requested in a single batched read.
+     *
+     * @param maxEntries the maximum number of entries in a batched read.
+     * @return client configuration instance.
+     */
+    public ClientConfiguration setBatchReadMaxEntries(int maxEntries) {
+        setProperty(BATCH_READ_MAX_ENTRIES, maxEntries);
+        return this;
+    }
+
+    /**
+     * Get the maximum total size of the entries returned by a single batched read.
+     *
+     * <p>The bookie may cap this further, so that the response fits in a single frame.
+     * The remaining entries of the batch are requested again.
+     *
+     * @return the maximum size of a batched read response, in bytes.
+     */
+    public long getBatchReadMaxSizeBytes() {
+        return getLong(BATCH_READ_MAX_SIZE_BYTES, 1024 * 1024);
+    }
+
+    /**
+     * Set the maximum total size of the entries returned by a single batched read.
+     *
+     * @param maxSizeBytes the maximum size of a batched read response, in bytes.
+     * @return client configuration instance.
+     */
+    public ClientConfiguration setBatchReadMaxSizeBytes(long maxSizeBytes) {
+        setProperty(BATCH_READ_MAX_SIZE_BYTES, maxSizeBytes);
+        return this;
+    }
+
+    /**
+     * Whether batched adds are enabled or not.
+     *
+     * @return true if batched adds are enabled, otherwise false.
+     */
+    public boolean isAddBatchEnabled() {
+        return getBoolean(ADD_BATCH_ENABLED, false);
+    }
+
+    /**
+     * Enable/disable batched adds.
+     *
+     * <p>If this flag is enabled, the consecutive entries added to a ledger within
+     * {@link #getAddBatchLingerMicros()} are sent to each bookie with a single batched add
+     * request, which the bookie journals with a single write. Only the ledgers whose ensemble
+     * size equals their write quorum size are batched, and recovery adds are never batched.
+     *
+     * <p>The bookies are expected to support batched adds when this flag is enabled, so it
+     * must only be enabled once all the bookies are upgraded. With the v2 wire protocol, old
+     * bookies close the connection when receiving a batched add, failing the other requests
+     * in flight on that connection. With the v3 wire protocol, old bookies reject the batched
+     * adds, and they are then written one entry at a time.
+     *
+     * @param enabled the flag to enable/disable batched adds.
+     * @return client configuration instance.
+     */
+    public ClientConfiguration setAddBatchEnabled(boolean enabled) {
+        setProperty(ADD_BATCH_ENABLED, enabled);
+        return this;
+    }
+
+    /**
+     * Get the time an add waits for other adds to be batched with, in microseconds.
+     *
+     * @return the linger time of a batched add, in microseconds.
+     */
+    public int getAddBatchLingerMicros() {
+        return getInt(ADD_BATCH_LINGER_MICROS, 1000);
+    }
+
+    /**
+     * Set the time an add waits for other adds to be batched with, in microseconds.
+     *
+     * <p>A batch is sent as soon as it reaches {@link #getAddBatchMaxBytes()}. If the linger
+     * time is 0, only the adds submitted concurrently are batched.
+     *
+     * @param lingerMicros the linger time of a batched add, in microseconds.
+     * @return client configuration instance.
+     */
+    public ClientConfiguration setAddBatchLingerMicros(int lingerMicros) {
+        setProperty(ADD_BATCH_LINGER_MICROS, lingerMicros);
+        return this;
+    }
+
+    /**
+     * Get the maximum total size of the entries sent by a single batched add.
+     *
+     * @return the maximum size of a batched add, in bytes.
+     */
+    public int getAddBatchMaxBytes() {
+        return getInt(ADD_BATCH_MAX_BYTES, 128 * 1024);
+    }
+
+    /**
+     * Set the maximum total size of the entries sent by a single batched add.
+     *
+     * @param maxBytes the maximum size of a batched add, in bytes.
+     * @return client configuration instance.
+     */
+    public ClientConfiguration setAddBatchMaxBytes(int maxBytes) {
+        setProperty(ADD_BATCH_MAX_BYTES, maxBytes);
+        return this;
+    }
+
     /**
      * Get Ensemble Placement Policy Class.
      *
@@ -1214,6 +1446,58 @@ public class ClientConfiguration extends AbstractConfiguration<ClientConfigurati
         return this;
     }
 
+    /**
+     * Get the strategy ranking the bookies of a read by their expected latency, when reordering reads.
+     *
+     * <p>The expected latency of a bookie is derived from the latency of its recent read responses,
+     * so that the reads favor the fastest bookies over the ones slowed down by garbage collections
+     * or compactions. It has no effect if reads are reordered randomly.
+     *
+     * @return the read reorder latency strategy. Default is {@link ReadReorderLatencyStrategy#NONE}.
+     */
+    public ReadReorderLatencyStrategy getReadReorderLatencyStrategy() {
+        return ReadReorderLatencyStrategy.valueOf(
+                getString(READ_REORDER_LATENCY_STRATEGY, ReadReorderLatencyStrategy.NONE.toString()));
+    }
+
+    /**
+     * Set the strategy ranking the bookies of a read by their expected latency, when reordering reads.
+     *
+     * @param strategy
+     *          the read reorder latency strategy.
+     * @return client configuration.
+     * @see #getReadReorderLatencyStrategy()
+     */
+    public ClientConfiguration setReadReorderLatencyStrategy(ReadReorderLatencyStrategy strategy) {
+        setProperty(READ_REORDER_LATENCY_STRATEGY, strategy.toString());
+        return this;
+    }
+
+    /**
+     * Get the half-life of the read latency estimate of a bookie, in milliseconds.
+     *
+     * <p>The estimate decays toward zero while the bookie is not read from, so that a bookie
+     * avoided because it was slow is read from again after a while.
+     *
+     * @return the half-life of the read latency estimates, in milliseconds. Default is 10000.
+     */
+    public long getReadLatencyEstimateHalfLifeMs() {
+        return getLong(READ_LATENCY_ESTIMATE_HALF_LIFE_MS, 10000L);
+    }
+
+    /**
+     * Set the half-life of the read latency estimate of a bookie, in milliseconds.
+     *
+     * @param halfLifeMs
+     *          the half-life of the read latency estimates, in milliseconds.
+     * @return client configuration.
+     * @see #getReadLatencyEstimateHalfLifeMs()
+     */
+    public ClientConfiguration setReadLatencyEstimateHalfLifeMs(long halfLifeMs) {
+        setProperty(READ_LATENCY_ESTIMATE_HALF_LIFE_MS, halfLifeMs);
+        return this;
+    }
+
     /**
      * Get the network topology stabilize period in seconds. if it is zero, this feature is turned off.
      *
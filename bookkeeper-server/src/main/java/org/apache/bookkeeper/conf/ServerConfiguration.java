@@ -98,13 +98,17 @@ public class ServerConfiguration extends AbstractConfiguration<ServerConfigurati
     protected static final String COMPACTION_RATE = "compactionRate";
     protected static final String COMPACTION_RATE_BY_ENTRIES = "compactionRateByEntries";
     protected static final String COMPACTION_RATE_BY_BYTES = "compactionRateByBytes";
+    protected static final String COMPACTION_MAX_CONCURRENCY = "compactionMaxConcurrency";
+    protected static final String COMPACTION_TARGET_FOREGROUND_LATENCY_MS = "compactionTargetForegroundLatencyMs";
 
     // Gc Parameters
     protected static final String GC_WAIT_TIME = "gcWaitTime";
     protected static final String IS_FORCE_GC_ALLOW_WHEN_NO_SPACE = "isForceGCAllowWhenNoSpace";
     protected static final String GC_OVERREPLICATED_LEDGER_WAIT_TIME = "gcOverreplicatedLedgerWaitTime";
     protected static final String USE_TRANSACTIONAL_COMPACTION = "useTransactionalCompaction";
+    protected static final String USE_TRANSFER_FOR_COMPACTION = "useTransferForCompaction";
     protected static final String VERIFY_METADATA_ON_GC = "verifyMetadataOnGC";
+    protected static final String GC_ENTRYLOG_METADATA_CACHE_ENABLED = "gcEntryLogMetadataCacheEnabled";
     // Scrub Parameters
     protected static final String LOCAL_SCRUB_PERIOD = "localScrubInterval";
     protected static final String LOCAL_SCRUB_RATE_LIMIT = "localScrubRateLimit";
@@ -126,16 +130,20 @@ public class ServerConfiguration extends AbstractConfiguration<ServerConfigurati
     protected static final String JOURNAL_SYNC_DATA = "journalSyncData";
     protected static final String JOURNAL_ADAPTIVE_GROUP_WRITES = "journalAdaptiveGroupWrites";
     protected static final String JOURNAL_MAX_GROUP_WAIT_MSEC = "journalMaxGroupWaitMSec";
+    protected static final String JOURNAL_ADAPTIVE_GROUP_COMMIT_ENABLED = "journalAdaptiveGroupCommitEnabled";
+    protected static final String JOURNAL_GROUP_COMMIT_TARGET_LATENCY_MSEC = "journalGroupCommitTargetLatencyMSec";
     protected static final String JOURNAL_BUFFERED_WRITES_THRESHOLD = "journalBufferedWritesThreshold";
     protected static final String JOURNAL_BUFFERED_ENTRIES_THRESHOLD = "journalBufferedEntriesThreshold";
     protected static final String JOURNAL_FLUSH_WHEN_QUEUE_EMPTY = "journalFlushWhenQueueEmpty";
     protected static final String JOURNAL_REMOVE_FROM_PAGE_CACHE = "journalRemoveFromPageCache";
+    protected static final String JOURNAL_DIRECT_IO_ENABLED = "journalDirectIOEnabled";
     protected static final String JOURNAL_PRE_ALLOC_SIZE = "journalPreAllocSizeMB";
     protected static final String JOURNAL_WRITE_BUFFER_SIZE = "journalWriteBufferSizeKB";
     protected static final String JOURNAL_ALIGNMENT_SIZE = "journalAlignmentSize";
     protected static final String NUM_JOURNAL_CALLBACK_THREADS = "numJournalCallbackThreads";
     protected static final String JOURNAL_FORMAT_VERSION_TO_WRITE = "journalFormatVersionToWrite";
     protected static final String JOURNAL_QUEUE_SIZE = "journalQueueSize";
+    protected static final String NUM_JOURNAL_WRITERS_PER_DIRECTORY = "numJournalWritersPerDirectory";
     protected static final String JOURNAL_PAGECACHE_FLUSH_INTERVAL_MSEC = "journalPageCacheFlushIntervalMSec";
     // backpressure control
     protected static final String MAX_ADDS_IN_PROGRESS_LIMIT = "maxAddsInProgressLimit";
@@ -161,6 +169,9 @@ public class ServerConfiguration extends AbstractConfiguration<ServerConfigurati
     protected static final String SERVER_SOCK_LINGER = "serverTcpLinger";
     protected static final String SERVER_WRITEBUFFER_LOW_WATER_MARK = "serverWriteBufferLowWaterMark";
     protected static final String SERVER_WRITEBUFFER_HIGH_WATER_MARK = "serverWriteBufferHighWaterMark";
+    protected static final String SERVER_FLUSH_CONSOLIDATION_ENABLED = "serverFlushConsolidationEnabled";
+    protected static final String SERVER_FLUSH_CONSOLIDATION_MAX_WRITES = "serverFlushConsolidationMaxWrites";
+    protected static final String SERVER_FLUSH_CONSOLIDATION_MAX_BYTES = "serverFlushConsolidationMaxBytes";
     protected static final String SERVER_NUM_IO_THREADS = "serverNumIOThreads";
 
     // Zookeeper Parameters
@@ -206,6 +217,8 @@ public class ServerConfiguration extends AbstractConfiguration<ServerConfigurati
     protected static final String REQUEST_TIMER_NO_OF_TICKS = "requestTimerNumTicks";
 
     protected static final String READ_BUFFER_SIZE = "readBufferSizeBytes";
+    protected static final String ENTRY_LOG_READ_MODE = "entryLogReadMode";
+    protected static final String ENTRY_LOG_MAX_OPEN_READ_FILES = "entryLogMaxOpenReadFiles";
     protected static final String WRITE_BUFFER_SIZE = "writeBufferSizeBytes";
     // Whether the bookie should use its hostname or ipaddress for the
     // registration.
@@ -417,6 +430,50 @@ public class ServerConfiguration extends AbstractConfiguration<ServerConfigurati
         return this;
     }
 
+    /**
+     * Get whether transactional compaction moves the surviving entries to the compaction log with
+     * file transfers, instead of reading and writing them again.
+     *
+     * @return use file transfers for transactional compaction or not
+     */
+    public boolean getUseTransferForCompaction() {
+        return this.getBoolean(USE_TRANSFER_FOR_COMPACTION, true);
+    }
+
+    /**
+     * Set whether transactional compaction moves the surviving entries to the compaction log with
+     * file transfers. Only the entry headers are read, and runs of consecutive entries are copied
+     * between the entry logs by the file system.
+     *
+     * @param useTransferForCompaction
+     * @return server configuration
+     */
+    public ServerConfiguration setUseTransferForCompaction(boolean useTransferForCompaction) {
+        this.setProperty(USE_TRANSFER_FOR_COMPACTION, useTransferForCompaction);
+        return this;
+    }
+
+    /**
+     * Get whether the garbage collector persists the metadata of the entry logs, instead of keeping it in memory
+     * and extracting it again from the entry logs after each restart.
+     *
+     * @return whether the entry log metadata is persisted
+     */
+    public boolean isGcEntryLogMetadataCacheEnabled() {
+        return this.getBoolean(GC_ENTRYLOG_METADATA_CACHE_ENABLED, false);
+    }
+
+    /**
+     * Set whether the garbage collector persists the metadata of the entry logs.
+     *
+     * @param gcEntryLogMetadataCacheEnabled
+     * @return server configuration
+     */
+    public ServerConfiguration setGcEntryLogMetadataCacheEnabled(boolean gcEntryLogMetadataCacheEnabled) {
+        this.setProperty(GC_ENTRYLOG_METADATA_CACHE_ENABLED, gcEntryLogMetadataCacheEnabled);
+        return this;
+    }
+
     /**
      * Get whether the bookie is configured to double check prior to gc.
      *
@@ -810,6 +867,33 @@ public class ServerConfiguration extends AbstractConfiguration<ServerConfigurati
         return this.getInt(JOURNAL_QUEUE_SIZE, 10_000);
     }
 
+    /**
+     * Get the number of journal writers for each journal directory.
+     *
+     * <p>Each writer writes its own journal files with its own journal and force write
+     * threads, and the entries are sharded across the writers by ledger id.
+     *
+     * @return the number of journal writers for each journal directory.
+     */
+    public int getNumJournalWritersPerDirectory() {
+        return this.getInt(NUM_JOURNAL_WRITERS_PER_DIRECTORY, 1);
+    }
+
+    /**
+     * Set the number of journal writers for each journal directory.
+     *
+     * <p>A bookie keeps the writers whose directories still hold journal files, so lowering
+     * the number of writers does not skip the replay of their journals.
+     *
+     * @param numJournalWritersPerDirectory
+     *            the number of journal writers for each journal directory
+     * @return server configuration.
+     */
+    public ServerConfiguration setNumJournalWritersPerDirectory(int numJournalWritersPerDirectory) {
+        this.setProperty(NUM_JOURNAL_WRITERS_PER_DIRECTORY, numJournalWritersPerDirectory);
+        return this;
+    }
+
     /**
      * Set PageCache flush interval in second.
      *
@@ -1628,6 +1712,61 @@ public class ServerConfiguration extends AbstractConfiguration<ServerConfigurati
         return this;
     }
 
+    /**
+     * Get the mode used to read entries from the entry logs.
+     *
+     * <p>The possible values are:
+     * <ul>
+     * <li>buffered: each thread reads through its own
+     * {@link org.apache.bookkeeper.bookie.BufferedReadChannel} for each entry log</li>
+     * <li>pread: the entry logs are opened once and shared by all threads, and entries are read with positional
+     * reads directly into the destination buffers</li>
+     * <li>mmap: same as pread, though entry logs that are no longer written are read through a read-only memory
+     * mapping</li>
+     * </ul>
+     * Default is buffered.
+     *
+     * @return entry log read mode
+     */
+    public String getEntryLogReadMode() {
+        return getString(ENTRY_LOG_READ_MODE, "buffered");
+    }
+
+    /**
+     * Set the mode used to read entries from the entry logs.
+     *
+     * @param entryLogReadMode
+     *          entry log read mode, either buffered, pread or mmap
+     * @return server configuration
+     */
+    public ServerConfiguration setEntryLogReadMode(String entryLogReadMode) {
+        setProperty(ENTRY_LOG_READ_MODE, entryLogReadMode);
+        return this;
+    }
+
+    /**
+     * Get the maximum number of entry logs kept open for reading when the entry logs are shared by all threads
+     * (see {@link #getEntryLogReadMode()}). The least recently used entry logs are closed when the limit is reached.
+     * Default is 1000.
+     *
+     * @return max number of entry logs open for reading
+     */
+    public int getEntryLogMaxOpenReadFiles() {
+        return getInt(ENTRY_LOG_MAX_OPEN_READ_FILES, 1000);
+    }
+
+    /**
+     * Set the maximum number of entry logs kept open for reading when the entry logs are shared by all threads.
+     *
+     * @param maxOpenReadFiles
+     *          max number of entry logs open for reading
+     * @return server configuration
+     */
+    public ServerConfiguration setEntryLogMaxOpenReadFiles(int maxOpenReadFiles) {
+        setProperty(ENTRY_LOG_MAX_OPEN_READ_FILES, maxOpenReadFiles);
+        return this;
+    }
+
     /**
      * Set the number of threads that would handle write requests.
      *
@@ -2000,6 +2139,49 @@ public class ServerConfiguration extends AbstractConfiguration<ServerConfigurati
         return this;
     }
 
+    /**
+     * Whether the journal adapts the time it waits to group writes to the observed force write
+     * latency and entries arrival rate, within {@link #getJournalMaxGroupWaitMSec()}.
+     *
+     * @return true if the adaptive group commit is enabled
+     */
+    public boolean isJournalAdaptiveGroupCommitEnabled() {
+        return getBoolean(JOURNAL_ADAPTIVE_GROUP_COMMIT_ENABLED, false);
+    }
+
+    /**
+     * Enable/disable the adaptive group commit of the journal.
+     *
+     * @param enabled flag to enable/disable the adaptive group commit
+     * @return server configuration.
+     */
+    public ServerConfiguration setJournalAdaptiveGroupCommitEnabled(boolean enabled) {
+        setProperty(JOURNAL_ADAPTIVE_GROUP_COMMIT_ENABLED, enabled);
+        return this;
+    }
+
+    /**
+     * The add latency the adaptive group commit aims at. If it is 0, the adaptive group
+     * commit maximizes the throughput instead. Default is 0.
+     *
+     * @return the target latency of the adaptive group commit, in milliseconds
+     */
+    public long getJournalGroupCommitTargetLatencyMSec() {
+        return getLong(JOURNAL_GROUP_COMMIT_TARGET_LATENCY_MSEC, 0);
+    }
+
+    /**
+     * Set the add latency the adaptive group commit aims at.
+     *
+     * @param targetLatencyMSec
+     *          target latency in milliseconds, or 0 to maximize the throughput.
+     * @return server configuration.
+     */
+    public ServerConfiguration setJournalGroupCommitTargetLatencyMSec(long targetLatencyMSec) {
+        setProperty(JOURNAL_GROUP_COMMIT_TARGET_LATENCY_MSEC, targetLatencyMSec);
+        return this;
+    }
+
     /**
      * Maximum bytes to buffer to impose on a journal write to achieve grouping.
      *
@@ -2533,6 +2715,57 @@ public class ServerConfiguration extends AbstractConfiguration<ServerConfigurati
         return this;
     }
 
+    /**
+     * Get the maximum number of ledger directories that can compact entry logs at the same time.
+     * Default is 0, which means that all the directories can compact in parallel.
+     *
+     * @return the maximum number of concurrent compactions
+     */
+    public int getCompactionMaxConcurrency() {
+        return getInt(COMPACTION_MAX_CONCURRENCY, 0);
+    }
+
+    /**
+     * Set the maximum number of ledger directories that can compact entry logs at the same time.
+     *
+     * <p>The compaction rate is shared by all the directories of the ledger storage, so this
+     * only bounds the number of entry logs being read and rewritten concurrently.
+     *
+     * @param maxConcurrency maximum number of concurrent compactions, 0 for no limit
+     *
+     * @return ServerConfiguration
+     */
+    public ServerConfiguration setCompactionMaxConcurrency(int maxConcurrency) {
+        setProperty(COMPACTION_MAX_CONCURRENCY, maxConcurrency);
+        return this;
+    }
+
+    /**
+     * Get the latency of the foreground adds and reads above which compaction backs off.
+     * Default is 0, which disables the back-off.
+     *
+     * @return the target foreground latency, in milliseconds
+     */
+    public long getCompactionTargetForegroundLatencyMs() {
+        return getLong(COMPACTION_TARGET_FOREGROUND_LATENCY_MS, 0);
+    }
+
+    /**
+     * Set the latency of the foreground adds and reads above which compaction backs off.
+     *
+     * <p>When the recent average latency of the journal adds or of the ledger storage adds and
+     * reads goes above the target, the compaction rate is halved, down to 5% of the configured
+     * rate. It is then restored gradually while the latency stays below the target.
+     *
+     * @param latencyMs the target foreground latency in milliseconds, 0 to disable the back-off
+     *
+     * @return ServerConfiguration
+     */
+    public ServerConfiguration setCompactionTargetForegroundLatencyMs(long latencyMs) {
+        setProperty(COMPACTION_TARGET_FOREGROUND_LATENCY_MS, latencyMs);
+        return this;
+    }
+
     /**
      * Should we remove pages from page cache after force write.
      *
@@ -2555,6 +2788,33 @@ public class ServerConfiguration extends AbstractConfiguration<ServerConfigurati
         return this;
     }
 
+    /**
+     * Should the journal be written with direct I/O, bypassing the page cache.
+     *
+     * @return true if journal direct I/O is enabled
+     */
+    @Beta
+    public boolean isJournalDirectIOEnabled() {
+        return getBoolean(JOURNAL_DIRECT_IO_ENABLED, false);
+    }
+
+    /**
+     * Sets whether the journal should be written with direct I/O (O_DIRECT), bypassing
+     * the page cache. Journal files are then preallocated with fallocate and the
+     * journal writes are aligned to at least 4KB.
+     *
+     * <p>It is only supported on Linux. If direct I/O is not available, the journal falls
+     * back to buffered writes.
+     *
+     * @param enabled
+     *            - true to write the journal with direct I/O. otherwise, false
+     * @return ServerConfiguration
+     */
+    public ServerConfiguration setJournalDirectIOEnabled(boolean enabled) {
+        setProperty(JOURNAL_DIRECT_IO_ENABLED, enabled);
+        return this;
+    }
+
     /*
      * Get the {@link LedgerStorage} implementation class name.
      *
@@ -2734,6 +2994,10 @@ public class ServerConfiguration extends AbstractConfiguration<ServerConfigurati
         if (getJournalAlignmentSize() > getJournalPreAllocSizeMB() * 1024 * 1024) {
             throw new ConfigurationException("Invalid preallocation size : " + getJournalPreAllocSizeMB() + " MB");
         }
+        if (getNumJournalWritersPerDirectory() < 1) {
+            throw new ConfigurationException("Invalid number of journal writers per directory : "
+                    + getNumJournalWritersPerDirectory());
+        }
         if (0 == getBookiePort() && !getAllowEphemeralPorts()) {
             throw new ConfigurationException("Invalid port specified, using ephemeral ports accidentally?");
         }
@@ -3219,6 +3483,79 @@ public class ServerConfiguration extends AbstractConfiguration<ServerConfigurati
         setProperty(SERVER_WRITEBUFFER_HIGH_WATER_MARK, waterMark);
         return this;
     }
+
+    /**
+     * Whether the flushes of the server netty channels are consolidated.
+     *
+     * @return true if the flushes are consolidated.
+     */
+    public boolean getServerFlushConsolidationEnabled() {
+        return getBoolean(SERVER_FLUSH_CONSOLIDATION_ENABLED, false);
+    }
+
+    /**
+     * Enable the consolidation of the flushes of the server netty channels.
+     *
+     * <p>When enabled, the responses are still written right away, but the channel is only flushed
+     * once the requests being read are processed and the tasks already queued on its event loop ran,
+     * so that the responses sent concurrently reach the socket with a single write. The channel is
+     * flushed right away once {@link #getServerFlushConsolidationMaxWrites()} responses or
+     * {@link #getServerFlushConsolidationMaxBytes()} bytes are pending.
+     *
+     * @param enabled
+     *          whether to consolidate the flushes.
+     * @return server configuration.
+     */
+    public ServerConfiguration setServerFlushConsolidationEnabled(boolean enabled) {
+        setProperty(SERVER_FLUSH_CONSOLIDATION_ENABLED, enabled);
+        return this;
+    }
+
+    /**
+     * Get the max number of responses written to a server netty channel before it is flushed, when
+     * the flushes are consolidated.
+     *
+     * @return max number of responses per flush.
+     */
+    public int getServerFlushConsolidationMaxWrites() {
+        return getInt(SERVER_FLUSH_CONSOLIDATION_MAX_WRITES, 64);
+    }
+
+    /**
+     * Set the max number of responses written to a server netty channel before it is flushed, when
+     * the flushes are consolidated.
+     *
+     * @param maxWrites
+     *          max number of responses per flush.
+     * @return server configuration.
+     */
+    public ServerConfiguration setServerFlushConsolidationMaxWrites(int maxWrites) {
+        setProperty(SERVER_FLUSH_CONSOLIDATION_MAX_WRITES, maxWrites);
+        return this;
+    }
+
+    /**
+     * Get the max number of bytes written to a server netty channel before it is flushed, when
+     * the flushes are consolidated.
+     *
+     * @return max number of bytes per flush.
+     */
+    public int getServerFlushConsolidationMaxBytes() {
+        return getInt(SERVER_FLUSH_CONSOLIDATION_MAX_BYTES, 64 * 1024);
+    }
+
+    /**
+     * Set the max number of bytes written to a server netty channel before it is flushed, when
+     * the flushes are consolidated.
+     *
+     * @param maxBytes
+     *          max number of bytes per flush.
+     * @return server configuration.
+     */
+    public ServerConfiguration setServerFlushConsolidationMaxBytes(int maxBytes) {
+        setProperty(SERVER_FLUSH_CONSOLIDATION_MAX_BYTES, maxBytes);
+        return this;
+    }
     /**
      * Set registration manager class.
      *
@@ -0,0 +1,204 @@
+/**
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *
+ */
+package org.apache.bookkeeper.proto;
+
+import com.google.protobuf.ByteString;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import io.netty.channel.Channel;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.bookkeeper.bookie.BookieException;
+import org.apache.bookkeeper.bookie.BookieException.OperationRejectedException;
+import org.apache.bookkeeper.client.api.WriteFlag;
+import org.apache.bookkeeper.net.BookieSocketAddress;
+import org.apache.bookkeeper.proto.BookkeeperProtocol.AddRequest;
+import org.apache.bookkeeper.proto.BookkeeperProtocol.BatchAddRequest;
+import org.apache.bookkeeper.proto.BookkeeperProtocol.BatchAddResponse;
+import org.apache.bookkeeper.proto.BookkeeperProtocol.Request;
+import org.apache.bookkeeper.proto.BookkeeperProtocol.Response;
+import org.apache.bookkeeper.proto.BookkeeperProtocol.StatusCode;
+import org.apache.bookkeeper.stats.OpStatsLogger;
+import org.apache.bookkeeper.util.MathUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * A processor class for v3 requests that add a range of consecutive entries.
+ */
+class BatchAddEntryProcessorV3 extends PacketProcessorBaseV3 {
+    private static final Logger logger = LoggerFactory.getLogger(BatchAddEntryProcessorV3.class);
+
+    public BatchAddEntryProcessorV3(Request request, Channel channel,
+                                    BookieRequestProcessor requestProcessor) {
+        super(request, channel, requestProcessor);
+        requestProcessor.onAddRequestStart(channel);
+    }
+
+    // Returns null if there is no exception thrown
+    private BatchAddResponse getBatchAddResponse() {
+        final long startTimeNanos = MathUtils.nowInNano();
+        BatchAddRequest batchAddRequest = request.getBatchAddRequest();
+        long ledgerId = batchAddRequest.getLedgerId();
+        long firstEntryId = batchAddRequest.getFirstEntryId();
+
+        final BatchAddResponse.Builder batchAddResponse = BatchAddResponse.newBuilder()
+                .setLedgerId(ledgerId)
+                .setFirstEntryId(firstEntryId)
+                .setCount(batchAddRequest.getBodyCount());
+
+        if (!isVersionCompatible()) {
+            batchAddResponse.setStatus(StatusCode.EBADVERSION);
+            return batchAddResponse.build();
+        }
+
+        if (requestProcessor.getBookie().isReadOnly()
+            && !(RequestUtils.isHighPriority(request)
+                    && requestProcessor.getBookie().isAvailableForHighPriorityWrites())) {
+            logger.warn("BookieServer is running as readonly mode, so rejecting the request from the client!");
+            batchAddResponse.setStatus(StatusCode.EREADONLY);
+            return batchAddResponse.build();
+        }
+
+        BookkeeperInternalCallbacks.WriteCallback wcb = new BookkeeperInternalCallbacks.WriteCallback() {
+            @Override
+            public void writeComplete(int rc, long ledgerId, long entryId,
+                                      BookieSocketAddress addr, Object ctx) {
+                if (BookieProtocol.EOK == rc) {
+                    requestProcessor.getRequestStats().getBatchAddEntryStats()
+                        .registerSuccessfulEvent(MathUtils.elapsedNanos(startTimeNanos), TimeUnit.NANOSECONDS);
+                } else {
+                    requestProcessor.getRequestStats().getBatchAddEntryStats()
+                        .registerFailedEvent(MathUtils.elapsedNanos(startTimeNanos), TimeUnit.NANOSECONDS);
+                }
+
+                StatusCode status;
+                switch (rc) {
+                    case BookieProtocol.EOK:
+                        status = StatusCode.EOK;
+                        break;
+                    case BookieProtocol.EIO:
+                        status = StatusCode.EIO;
+                        break;
+                    default:
+                        status = StatusCode.EUA;
+                        break;
+                }
+                batchAddResponse.setStatus(status);
+                Response.Builder response = Response.newBuilder()
+                        .setHeader(getHeader())
+                        .setStatus(batchAddResponse.getStatus())
+                        .setBatchAddResponse(batchAddResponse);
+                Response resp = response.build();
+                sendResponse(status, resp, requestProcessor.getRequestStats().getBatchAddRequestStats());
+            }
+        };
+        final EnumSet<WriteFlag> writeFlags;
+        if (batchAddRequest.hasWriteFlags()) {
+            writeFlags = WriteFlag.getWriteFlags(batchAddRequest.getWriteFlags());
+        } else {
+            writeFlags = WriteFlag.NONE;
+        }
+        final boolean ackBeforeSync = writeFlags.contains(WriteFlag.DEFERRED_SYNC);
+        StatusCode status = null;
+        byte[] masterKey = batchAddRequest.getMasterKey().toByteArray();
+        List<ByteBuf> entriesToAdd = new ArrayList<>(batchAddRequest.getBodyCount());
+        for (ByteString body : batchAddRequest.getBodyList()) {
+            entriesToAdd.add(Unpooled.wrappedBuffer(body.asReadOnlyByteBuffer()));
+        }
+        try {
+            if (RequestUtils.hasFlag(batchAddRequest, AddRequest.Flag.RECOVERY_ADD)) {
+                requestProcessor.getBookie().recoveryAddEntries(entriesToAdd, wcb, channel, masterKey);
+            } else {
+                requestProcessor.getBookie().addEntries(entriesToAdd, ackBeforeSync, wcb, channel, masterKey);
+            }
+            status = StatusCode.EOK;
+        } catch (OperationRejectedException e) {
+            // Avoid to log each occurence of this exception as this can happen when the ledger storage is
+            // unable to keep up with the write rate.
+            if (logger.isDebugEnabled()) {
+                logger.debug("Operation rejected while writing {}", request, e);
+            }
+            status = StatusCode.EIO;
+        } catch (IOException e) {
+            logger.error("Error writing entries from:{} to ledger:{}",
+                    firstEntryId, ledgerId, e);
+            status = StatusCode.EIO;
+        } catch (BookieException.LedgerFencedException e) {
+            logger.error("Ledger fenced while writing entries from:{} to ledger:{}",
+                    firstEntryId, ledgerId, e);
+            status = StatusCode.EFENCED;
+        } catch (BookieException e) {
+            logger.error("Unauthorized access to ledger:{} while writing entries from:{}",
+                    ledgerId, firstEntryId, e);
+            status = StatusCode.EUA;
+        } catch (Throwable t) {
+            logger.error("Unexpected exception while writing entries from {}@{} : ",
+                    firstEntryId, ledgerId, t);
+            // some bad request which cause unexpected exception
+            status = StatusCode.EBADREQ;
+        }
+
+        // If everything is okay, we return null so that the calling function
+        // doesn't return a response back to the caller.
+        if (!status.equals(StatusCode.EOK)) {
+            batchAddResponse.setStatus(status);
+            return batchAddResponse.build();
+        }
+        return null;
+    }
+
+    @Override
+    public void safeRun() {
+        BatchAddResponse batchAddResponse = getBatchAddResponse();
+        if (null != batchAddResponse) {
+            // This means there was an error and we should send this back.
+            Response.Builder response = Response.newBuilder()
+                    .setHeader(getHeader())
+                    .setStatus(batchAddResponse.getStatus())
+                    .setBatchAddResponse(batchAddResponse);
+            Response resp = response.build();
+            sendResponse(batchAddResponse.getStatus(), resp,
+                         requestProcessor.getRequestStats().getBatchAddRequestStats());
+        }
+    }
+
+    @Override
+    protected void sendResponse(StatusCode code, Object response, OpStatsLogger statsLogger) {
+        super.sendResponse(code, response, statsLogger);
+        requestProcessor.onAddRequestFinish();
+    }
+
+    /**
+     * this toString method filters out body and masterKey from the output.
+     * masterKey contains the password of the ledger and body is customer data,
+     * so it is not appropriate to have these in logs or system output.
+     */
+    @Override
+    public String toString() {
+        return RequestUtils.toSafeString(request);
+    }
+}
@@ -0,0 +1,130 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.bookkeeper.proto;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.channel.Channel;
+import io.netty.util.Recycler;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.bookkeeper.bookie.Bookie;
+import org.apache.bookkeeper.proto.BookieProtocol.BatchReadRequest;
+import org.apache.bookkeeper.stats.OpStatsLogger;
+import org.apache.bookkeeper.util.MathUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Processor of the v2 requests that read a range of consecutive entries.
+ */
+class BatchReadEntryProcessor extends PacketProcessorBase<BatchReadRequest> {
+    private static final Logger LOG = LoggerFactory.getLogger(BatchReadEntryProcessor.class);
+
+    public static BatchReadEntryProcessor create(BatchReadRequest request,
+                                                 Channel channel,
+                                                 BookieRequestProcessor requestProcessor) {
+        BatchReadEntryProcessor brep = RECYCLER.get();
+        brep.init(request, channel, requestProcessor);
+        return brep;
+    }
+
+    @Override
+    protected void processPacket() {
+        if (LOG.isDebugEnabled()) {
+            LOG.debug("Received new batch read request: {}", request);
+        }
+        int errorCode = BookieProtocol.EOK;
+        long startTimeNanos = MathUtils.nowInNano();
+        List<ByteBuf> entries = null;
+        try {
+            if (request.getMaxCount() <= 0) {
+                throw new IllegalArgumentException("Invalid number of entries to read: " + request.getMaxCount());
+            }
+            long maxSize = Math.min(request.getMaxSize(),
+                    requestProcessor.getMaxBatchReadSize(request.getMaxCount()));
+            entries = requestProcessor.getBookie().readEntries(request.getLedgerId(), request.getEntryId(),
+                    request.getMaxCount(), maxSize);
+        } catch (Bookie.NoLedgerException e) {
+            if (LOG.isDebugEnabled()) {
+                LOG.debug("Error reading {}", request, e);
+            }
+            errorCode = BookieProtocol.ENOLEDGER;
+        } catch (Bookie.NoEntryException e) {
+            if (LOG.isDebugEnabled()) {
+                LOG.debug("Error reading {}", request, e);
+            }
+            errorCode = BookieProtocol.ENOENTRY;
+        } catch (IOException e) {
+            if (LOG.isDebugEnabled()) {
+                LOG.debug("Error reading {}", request, e);
+            }
+            errorCode = BookieProtocol.EIO;
+        } catch (Throwable t) {
+            LOG.error("Unexpected exception reading at {}:{} : {}", request.getLedgerId(), request.getEntryId(),
+                      t.getMessage(), t);
+            errorCode = BookieProtocol.EBADREQ;
+        }
+
+        if (LOG.isTraceEnabled()) {
+            LOG.trace("Batch read entries rc = {} for {}", errorCode, request);
+        }
+        sendResponse(entries, errorCode, startTimeNanos);
+    }
+
+    private void sendResponse(List<ByteBuf> entries, int errorCode, long startTimeNanos) {
+        final RequestStats stats = requestProcessor.getRequestStats();
+        final OpStatsLogger logger = stats.getBatchReadEntryStats();
+        BookieProtocol.Response response;
+        if (errorCode == BookieProtocol.EOK) {
+            logger.registerSuccessfulEvent(MathUtils.elapsedNanos(startTimeNanos), TimeUnit.NANOSECONDS);
+            response = ResponseBuilder.buildBatchReadResponse(entries, request);
+        } else {
+            logger.registerFailedEvent(MathUtils.elapsedNanos(startTimeNanos), TimeUnit.NANOSECONDS);
+            response = ResponseBuilder.buildErrorResponse(errorCode, request);
+        }
+        sendResponse(errorCode, response, stats.getBatchReadRequestStats());
+        recycle();
+    }
+
+    @Override
+    public String toString() {
+        return String.format("BatchReadEntry(%d, %d, %d)", request.getLedgerId(), request.getEntryId(),
+                request.getMaxCount());
+    }
+
+    private void recycle() {
+        super.reset();
+        this.recyclerHandle.recycle(this);
+    }
+
+    private final Recycler.Handle<BatchReadEntryProcessor> recyclerHandle;
+
+    private BatchReadEntryProcessor(Recycler.Handle<BatchReadEntryProcessor> recyclerHandle) {
+        this.recyclerHandle = recyclerHandle;
+    }
+
+    private static final Recycler<BatchReadEntryProcessor> RECYCLER = new Recycler<BatchReadEntryProcessor>() {
+        @Override
+        protected BatchReadEntryProcessor newObject(Recycler.Handle<BatchReadEntryProcessor> handle) {
+            return new BatchReadEntryProcessor(handle);
+        }
+    };
+}
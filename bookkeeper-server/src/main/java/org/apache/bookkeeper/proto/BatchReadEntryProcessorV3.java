@@ -0,0 +1,141 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.bookkeeper.proto;
+
+import com.google.protobuf.ByteString;
+import io.netty.buffer.ByteBuf;
+import io.netty.channel.Channel;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.bookkeeper.bookie.Bookie;
+import org.apache.bookkeeper.proto.BookkeeperProtocol.BatchReadRequest;
+import org.apache.bookkeeper.proto.BookkeeperProtocol.BatchReadResponse;
+import org.apache.bookkeeper.proto.BookkeeperProtocol.Request;
+import org.apache.bookkeeper.proto.BookkeeperProtocol.Response;
+import org.apache.bookkeeper.proto.BookkeeperProtocol.StatusCode;
+import org.apache.bookkeeper.util.MathUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * A processor class for v3 requests that read a range of consecutive entries.
+ */
+class BatchReadEntryProcessorV3 extends PacketProcessorBaseV3 {
+
+    private static final Logger LOG = LoggerFactory.getLogger(BatchReadEntryProcessorV3.class);
+
+    private final BatchReadRequest batchReadRequest;
+    private final long ledgerId;
+    private final long firstEntryId;
+
+    BatchReadEntryProcessorV3(Request request, Channel channel, BookieRequestProcessor requestProcessor) {
+        super(request, channel, requestProcessor);
+        requestProcessor.onReadRequestStart(channel);
+
+        this.batchReadRequest = request.getBatchReadRequest();
+        this.ledgerId = batchReadRequest.getLedgerId();
+        this.firstEntryId = batchReadRequest.getFirstEntryId();
+    }
+
+    private BatchReadResponse getBatchReadResponse() {
+        long startTimeNanos = MathUtils.nowInNano();
+
+        BatchReadResponse.Builder batchReadResponse = BatchReadResponse.newBuilder()
+                .setLedgerId(ledgerId)
+                .setFirstEntryId(firstEntryId);
+
+        if (!isVersionCompatible()) {
+            batchReadResponse.setStatus(StatusCode.EBADVERSION);
+            requestProcessor.getRequestStats().getBatchReadEntryStats()
+                    .registerFailedEvent(MathUtils.elapsedNanos(startTimeNanos), TimeUnit.NANOSECONDS);
+            return batchReadResponse.build();
+        }
+
+        if (LOG.isDebugEnabled()) {
+            LOG.debug("Received new batch read request: {}", request);
+        }
+
+        StatusCode status = StatusCode.EOK;
+        int maxCount = batchReadRequest.getMaxCount();
+        long maxSize = requestProcessor.getMaxBatchReadSize(maxCount);
+        if (batchReadRequest.hasMaxSize()) {
+            maxSize = Math.min(maxSize, batchReadRequest.getMaxSize());
+        }
+
+        List<ByteBuf> entries = null;
+        try {
+            if (maxCount <= 0) {
+                status = StatusCode.EBADREQ;
+            } else {
+                entries = requestProcessor.getBookie().readEntries(ledgerId, firstEntryId, maxCount, maxSize);
+                for (ByteBuf entry : entries) {
+                    batchReadResponse.addBody(ByteString.copyFrom(entry.nioBuffer()));
+                }
+            }
+        } catch (Bookie.NoLedgerException e) {
+            status = StatusCode.ENOLEDGER;
+            if (LOG.isDebugEnabled()) {
+                LOG.debug("No ledger found while reading entries from {}@{}", firstEntryId, ledgerId, e);
+            }
+        } catch (Bookie.NoEntryException e) {
+            status = StatusCode.ENOENTRY;
+            if (LOG.isDebugEnabled()) {
+                LOG.debug("No entry found while reading entries from {}@{}", firstEntryId, ledgerId, e);
+            }
+        } catch (IOException e) {
+            status = StatusCode.EIO;
+            LOG.error("IOException while reading entries from {}@{}", firstEntryId, ledgerId, e);
+        } finally {
+            if (entries != null) {
+                entries.forEach(ByteBuf::release);
+            }
+        }
+
+        if (status == StatusCode.EOK) {
+            requestProcessor.getRequestStats().getBatchReadEntryStats()
+                    .registerSuccessfulEvent(MathUtils.elapsedNanos(startTimeNanos), TimeUnit.NANOSECONDS);
+        } else {
+            batchReadResponse.clearBody();
+            requestProcessor.getRequestStats().getBatchReadEntryStats()
+                    .registerFailedEvent(MathUtils.elapsedNanos(startTimeNanos), TimeUnit.NANOSECONDS);
+        }
+        // Finally set the status and return
+        batchReadResponse.setStatus(status);
+        return batchReadResponse.build();
+    }
+
+    @Override
+    public void safeRun() {
+        BatchReadResponse batchReadResponse;
+        try {
+            batchReadResponse = getBatchReadResponse();
+        } catch (RuntimeException e) {
+            requestProcessor.onReadRequestFinish();
+            throw e;
+        }
+        Response.Builder response = Response.newBuilder().setHeader(getHeader())
+                .setStatus(batchReadResponse.getStatus())
+                .setBatchReadResponse(batchReadResponse);
+        sendResponse(batchReadResponse.getStatus(), response.build(),
+                requestProcessor.getRequestStats().getBatchReadRequestStats());
+        requestProcessor.onReadRequestFinish();
+    }
+}
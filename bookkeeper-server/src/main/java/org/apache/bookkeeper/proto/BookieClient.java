@@ -20,12 +20,16 @@
  */
 package org.apache.bookkeeper.proto;
 
+import java.util.Collections;
 import java.util.EnumSet;
 import java.util.List;
 import java.util.concurrent.CompletableFuture;
 
+import org.apache.bookkeeper.client.BKException;
 import org.apache.bookkeeper.client.api.WriteFlag;
 import org.apache.bookkeeper.net.BookieSocketAddress;
+import org.apache.bookkeeper.proto.BookkeeperInternalCallbacks.BatchedReadEntryCallback;
+import org.apache.bookkeeper.proto.BookkeeperInternalCallbacks.BatchedWriteCallback;
 import org.apache.bookkeeper.proto.BookkeeperInternalCallbacks.ForceLedgerCallback;
 import org.apache.bookkeeper.proto.BookkeeperInternalCallbacks.GetBookieInfoCallback;
 import org.apache.bookkeeper.proto.BookkeeperInternalCallbacks.ReadEntryCallback;
@@ -143,6 +147,47 @@ public interface BookieClient {
                   long entryId, ByteBufList toSend, WriteCallback cb, Object ctx,
                   int options, boolean allowFastFail, EnumSet<WriteFlag> writeFlags);
 
+    /**
+     * Check whether batched adds can be sent to the bookie at address {@code address}.
+     *
+     * @param address address of the bookie
+     * @return true if {@link #addEntries} can be used to write to the bookie
+     */
+    default boolean isBatchAddSupported(BookieSocketAddress address) {
+        return false;
+    }
+
+    /**
+     * Add a range of consecutive entries for ledger {@code ledgerId} on the bookie at address
+     * {@code address}, in a single request.
+     *
+     * <p>The bookie journals the entries together and acknowledges them with a single response, while
+     * each entry is stored individually, as if it was added with {@link #addEntry}.
+     *
+     * <p>If the bookie doesn't support batched adds, the callback is completed with
+     * {@link BKException.Code#IllegalOpException}.
+     *
+     * @param address the address of the bookie
+     * @param ledgerId the ledger to which we wish to add the entries
+     * @param masterKey the master key of the ledger
+     * @param firstEntryId the id of the first entry we wish to add
+     * @param toSend the buffers containing the entries and their digests, in entry id order
+     * @param cb the callback notified when the request completes
+     * @param ctx a context object passed to the callback on completion
+     * @param options a bit mask of flags from BookieProtocol.FLAG_*
+     *                {@link org.apache.bookkeeper.proto.BookieProtocol}
+     * @param allowFastFail fail the add immediately if the channel is non-writable
+     *                      {@link #isWritable(BookieSocketAddress,long)}
+     * @param writeFlags a set of write flags
+     *                   {@link org.apache.bookkeeper.client.api.WriteFlags}
+     */
+    default void addEntries(BookieSocketAddress address, long ledgerId, byte[] masterKey,
+                            long firstEntryId, List<ByteBufList> toSend, BatchedWriteCallback cb, Object ctx,
+                            int options, boolean allowFastFail, EnumSet<WriteFlag> writeFlags) {
+        cb.writeEntriesComplete(BKException.Code.IllegalOpException, ledgerId, firstEntryId, toSend.size(),
+                                address, ctx);
+    }
+
     /**
      * Read entry with a null masterkey, disallowing failfast.
      * @see #readEntry(BookieSocketAddress,long,long,ReadEntryCallback,Object,int,byte[],boolean)
@@ -180,6 +225,43 @@ public interface BookieClient {
                    ReadEntryCallback cb, Object ctx, int flags, byte[] masterKey,
                    boolean allowFastFail);
 
+    /**
+     * Check whether batched reads can be sent to the bookie at address {@code address}.
+     *
+     * @param address address of the bookie
+     * @return true if {@link #batchReadEntries} can be used to read from the bookie
+     */
+    default boolean isBatchReadSupported(BookieSocketAddress address) {
+        return false;
+    }
+
+    /**
+     * Read a range of consecutive entries from bookie at address {@code address}, in a single request.
+     *
+     * <p>The bookie returns the entries starting from {@code firstEntryId}, stopping at the first entry
+     * it doesn't have, after {@code maxCount} entries or before the total size of the entries would exceed
+     * {@code maxSize}. The first entry is always returned, so a successful response contains at least one entry.
+     *
+     * <p>If the bookie doesn't support batched reads, the callback is completed with
+     * {@link BKException.Code#IllegalOpException}.
+     *
+     * @param address address of the bookie to read from
+     * @param ledgerId id of the ledger the entries belong to
+     * @param firstEntryId id of the first entry we wish to read
+     * @param maxCount maximum number of entries to read
+     * @param maxSize maximum total size of the entries to read, in bytes
+     * @param cb the callback notified when the request completes
+     * @param ctx a context object passed to the callback on completion
+     * @param flags a bit mask of flags from BookieProtocol.FLAG_*
+     *              {@link org.apache.bookkeeper.proto.BookieProtocol}
+     */
+    default void batchReadEntries(BookieSocketAddress address, long ledgerId, long firstEntryId,
+                                  int maxCount, long maxSize, BatchedReadEntryCallback cb, Object ctx,
+                                  int flags) {
+        cb.readEntriesComplete(BKException.Code.IllegalOpException, ledgerId, firstEntryId,
+                               Collections.emptyList(), ctx);
+    }
+
     /**
      * Send a long poll request to bookie, waiting for the last add confirmed
      * to be updated. The client can also request that the full entry is returned
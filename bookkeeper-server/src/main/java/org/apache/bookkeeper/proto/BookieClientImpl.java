@@ -36,6 +36,7 @@ import io.netty.util.Recycler.Handle;
 import io.netty.util.concurrent.DefaultThreadFactory;
 
 import java.io.IOException;
+import java.util.Collections;
 import java.util.EnumSet;
 import java.util.List;
 import java.util.concurrent.CompletableFuture;
@@ -56,6 +57,8 @@ import org.apache.bookkeeper.common.util.OrderedExecutor;
 import org.apache.bookkeeper.common.util.SafeRunnable;
 import org.apache.bookkeeper.conf.ClientConfiguration;
 import org.apache.bookkeeper.net.BookieSocketAddress;
+import org.apache.bookkeeper.proto.BookkeeperInternalCallbacks.BatchedReadEntryCallback;
+import org.apache.bookkeeper.proto.BookkeeperInternalCallbacks.BatchedWriteCallback;
 import org.apache.bookkeeper.proto.BookkeeperInternalCallbacks.ForceLedgerCallback;
 import org.apache.bookkeeper.proto.BookkeeperInternalCallbacks.FutureGetListOfEntriesOfLedger;
 import org.apache.bookkeeper.proto.BookkeeperInternalCallbacks.GenericCallback;
@@ -70,6 +73,7 @@ import org.apache.bookkeeper.tls.SecurityException;
 import org.apache.bookkeeper.tls.SecurityHandlerFactory;
 import org.apache.bookkeeper.util.AvailabilityOfEntriesOfLedger;
 import org.apache.bookkeeper.util.ByteBufList;
+import org.apache.bookkeeper.util.MathUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -80,6 +84,9 @@ import org.slf4j.LoggerFactory;
 public class BookieClientImpl implements BookieClient, PerChannelBookieClientFactory {
     static final Logger LOG = LoggerFactory.getLogger(BookieClientImpl.class);
 
+    // How long to stop sending batched reads or adds to a bookie that rejected them
+    private static final long BATCH_UNSUPPORTED_RETRY_INTERVAL_NANOS = TimeUnit.MINUTES.toNanos(10);
+
     private final OrderedExecutor executor;
     private final ScheduledExecutorService scheduler;
     private final ScheduledFuture<?> timeoutFuture;
@@ -102,6 +109,15 @@ public class BookieClientImpl implements BookieClient, PerChannelBookieClientFac
 
     private final long bookieErrorThresholdPerInterval;
 
+    private final boolean batchReadEnabled;
+    // bookies that rejected batched reads, with the time after which they can be tried again
+    private final ConcurrentHashMap<BookieSocketAddress, Long> batchReadUnsupportedBookies =
+            new ConcurrentHashMap<>();
+    private final boolean batchAddEnabled;
+    // bookies that rejected batched adds, with the time after which they can be tried again
+    private final ConcurrentHashMap<BookieSocketAddress, Long> batchAddUnsupportedBookies =
+            new ConcurrentHashMap<>();
+
     public BookieClientImpl(ClientConfiguration conf, EventLoopGroup eventLoopGroup,
                             ByteBufAllocator allocator,
                             OrderedExecutor executor, ScheduledExecutorService scheduler,
@@ -122,6 +138,8 @@ public class BookieClientImpl implements BookieClient, PerChannelBookieClientFac
         this.statsLogger = statsLogger;
         this.numConnectionsPerBookie = conf.getNumChannelsPerBookie();
         this.bookieErrorThresholdPerInterval = conf.getBookieErrorThresholdPerInterval();
+        this.batchReadEnabled = conf.isBatchReadEnabled();
+        this.batchAddEnabled = conf.isAddBatchEnabled();
 
         this.scheduler = scheduler;
         if (conf.getAddEntryTimeout() > 0 || conf.getReadEntryTimeout() > 0) {
@@ -329,6 +347,90 @@ public class BookieClientImpl implements BookieClient, PerChannelBookieClientFac
                       ledgerId);
     }
 
+    @Override
+    public boolean isBatchAddSupported(BookieSocketAddress addr) {
+        if (!batchAddEnabled) {
+            return false;
+        }
+        Long retryTimeNanos = batchAddUnsupportedBookies.get(addr);
+        if (retryTimeNanos == null) {
+            return true;
+        }
+        if (MathUtils.nowInNano() - retryTimeNanos >= 0) {
+            batchAddUnsupportedBookies.remove(addr, retryTimeNanos);
+            return true;
+        }
+        return false;
+    }
+
+    @Override
+    public void addEntries(final BookieSocketAddress addr,
+                           final long ledgerId,
+                           final byte[] masterKey,
+                           final long firstEntryId,
+                           final List<ByteBufList> toSend,
+                           final BatchedWriteCallback cb,
+                           final Object ctx,
+                           final int options,
+                           final boolean allowFastFail,
+                           final EnumSet<WriteFlag> writeFlags) {
+        final PerChannelBookieClientPool client = lookupClient(addr);
+        if (client == null) {
+            completeBatchAdd(getRc(BKException.Code.BookieHandleNotAvailableException),
+                             ledgerId, firstEntryId, toSend.size(), addr, cb, ctx);
+            return;
+        }
+
+        final BatchedWriteCallback batchCb = (rc, lid, eid, count, bookie, context) -> {
+            // Old v3 bookies reject the unknown operation, without failing the other
+            // requests of the connection, so stop sending batched adds to the bookie
+            // for a while. The support of the v2 bookies is only decided by the
+            // configuration, since a failed connection doesn't tell anything about it.
+            if (rc == BKException.Code.IllegalOpException) {
+                if (batchAddUnsupportedBookies.put(addr,
+                        MathUtils.nowInNano() + BATCH_UNSUPPORTED_RETRY_INTERVAL_NANOS) == null) {
+                    LOG.info("Failed to add a batch of entries to bookie {} (rc = {}),"
+                            + " falling back to single entry adds", addr, rc);
+                }
+            }
+            cb.writeEntriesComplete(rc, lid, eid, count, bookie, context);
+        };
+
+        // Retain the buffers, since the connection could be obtained after
+        // the PendingAddOps might have already failed
+        toSend.forEach(ByteBufList::retain);
+
+        client.obtain((rc, pcbc) -> {
+            if (rc != BKException.Code.OK) {
+                completeBatchAdd(rc, ledgerId, firstEntryId, toSend.size(), addr, batchCb, ctx);
+            } else {
+                pcbc.addEntries(ledgerId, masterKey, firstEntryId, toSend, batchCb, ctx, options,
+                                allowFastFail, writeFlags);
+            }
+            toSend.forEach(ByteBufList::release);
+        }, ledgerId);
+    }
+
+    private void completeBatchAdd(final int rc,
+                                  final long ledgerId,
+                                  final long firstEntryId,
+                                  final int count,
+                                  final BookieSocketAddress addr,
+                                  final BatchedWriteCallback cb,
+                                  final Object ctx) {
+        try {
+            executor.executeOrdered(ledgerId, new SafeRunnable() {
+                @Override
+                public void safeRun() {
+                    cb.writeEntriesComplete(rc, ledgerId, firstEntryId, count, addr, ctx);
+                }
+            });
+        } catch (RejectedExecutionException ree) {
+            cb.writeEntriesComplete(getRc(BKException.Code.InterruptedException),
+                                    ledgerId, firstEntryId, count, addr, ctx);
+        }
+    }
+
     @Override
     public CompletableFuture<AvailabilityOfEntriesOfLedger> getListOfEntriesOfLedger(BookieSocketAddress address,
             long ledgerId) {
@@ -512,6 +614,74 @@ public class BookieClientImpl implements BookieClient, PerChannelBookieClientFac
         }, ledgerId);
     }
 
+    @Override
+    public boolean isBatchReadSupported(BookieSocketAddress addr) {
+        if (!batchReadEnabled) {
+            return false;
+        }
+        Long retryTimeNanos = batchReadUnsupportedBookies.get(addr);
+        if (retryTimeNanos == null) {
+            return true;
+        }
+        if (MathUtils.nowInNano() - retryTimeNanos >= 0) {
+            batchReadUnsupportedBookies.remove(addr, retryTimeNanos);
+            return true;
+        }
+        return false;
+    }
+
+    @Override
+    public void batchReadEntries(final BookieSocketAddress addr, final long ledgerId, final long firstEntryId,
+                                 final int maxCount, final long maxSize, final BatchedReadEntryCallback cb,
+                                 final Object ctx, int flags) {
+        final PerChannelBookieClientPool client = lookupClient(addr);
+        if (client == null) {
+            completeBatchRead(getRc(BKException.Code.BookieHandleNotAvailableException),
+                              ledgerId, firstEntryId, cb, ctx);
+            return;
+        }
+
+        final BatchedReadEntryCallback batchCb = (rc, lid, eid, entries, context) -> {
+            // Old v3 bookies reject the unknown operation, without failing the other
+            // requests of the connection, so stop sending batched reads to the bookie
+            // for a while. The support of the v2 bookies is only decided by the
+            // configuration, since a failed connection doesn't tell anything about it.
+            if (rc == BKException.Code.IllegalOpException) {
+                if (batchReadUnsupportedBookies.put(addr,
+                        MathUtils.nowInNano() + BATCH_UNSUPPORTED_RETRY_INTERVAL_NANOS) == null) {
+                    LOG.info("Failed to read a batch of entries from bookie {} (rc = {}),"
+                            + " falling back to single entry reads", addr, rc);
+                }
+            }
+            cb.readEntriesComplete(rc, lid, eid, entries, context);
+        };
+
+        client.obtain((rc, pcbc) -> {
+            if (rc != BKException.Code.OK) {
+                completeBatchRead(rc, ledgerId, firstEntryId, batchCb, ctx);
+            } else {
+                pcbc.batchReadEntries(ledgerId, firstEntryId, maxCount, maxSize, batchCb, ctx, flags, false);
+            }
+        }, ledgerId);
+    }
+
+    private void completeBatchRead(final int rc,
+                                   final long ledgerId,
+                                   final long firstEntryId,
+                                   final BatchedReadEntryCallback cb,
+                                   final Object ctx) {
+        try {
+            executor.executeOrdered(ledgerId, new SafeRunnable() {
+                @Override
+                public void safeRun() {
+                    cb.readEntriesComplete(rc, ledgerId, firstEntryId, Collections.emptyList(), ctx);
+                }
+            });
+        } catch (RejectedExecutionException ree) {
+            cb.readEntriesComplete(getRc(BKException.Code.InterruptedException),
+                                   ledgerId, firstEntryId, Collections.emptyList(), ctx);
+        }
+    }
 
     @Override
     public void readEntryWaitForLACUpdate(final BookieSocketAddress addr,
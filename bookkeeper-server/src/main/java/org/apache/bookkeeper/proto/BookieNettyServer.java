@@ -72,6 +72,7 @@ import javax.net.ssl.SSLPeerUnverifiedException;
 import org.apache.bookkeeper.auth.AuthProviderFactoryFactory;
 import org.apache.bookkeeper.auth.BookKeeperPrincipal;
 import org.apache.bookkeeper.auth.BookieAuthProvider;
+import org.apache.bookkeeper.bookie.BookKeeperServerStats;
 import org.apache.bookkeeper.bookie.Bookie;
 import org.apache.bookkeeper.bookie.BookieException;
 import org.apache.bookkeeper.common.collections.BlockingMpscQueue;
@@ -79,6 +80,9 @@ import org.apache.bookkeeper.common.util.affinity.CpuAffinity;
 import org.apache.bookkeeper.conf.ServerConfiguration;
 import org.apache.bookkeeper.net.BookieSocketAddress;
 import org.apache.bookkeeper.processor.RequestProcessor;
+import org.apache.bookkeeper.stats.OpStatsLogger;
+import org.apache.bookkeeper.stats.StatsLogger;
+import org.apache.bookkeeper.stats.annotations.StatsDoc;
 import org.apache.bookkeeper.util.ByteBufList;
 import org.apache.bookkeeper.util.EventLoopUtil;
 import org.apache.zookeeper.KeeperException;
@@ -110,9 +114,18 @@ class BookieNettyServer {
 
     private final ByteBufAllocator allocator;
 
-    BookieNettyServer(ServerConfiguration conf, RequestProcessor processor, ByteBufAllocator allocator)
+    @StatsDoc(
+        name = BookKeeperServerStats.CHANNEL_RESPONSES_PER_FLUSH,
+        help = "the distribution of number of responses sent by each flush of a channel,"
+            + " when the flushes are consolidated"
+    )
+    private final OpStatsLogger responsesPerFlushLogger;
+
+    BookieNettyServer(ServerConfiguration conf, RequestProcessor processor, ByteBufAllocator allocator,
+                      StatsLogger statsLogger)
         throws IOException, KeeperException, InterruptedException, BookieException {
         this.allocator = allocator;
+        this.responsesPerFlushLogger = statsLogger.getOpStatsLogger(BookKeeperServerStats.CHANNEL_RESPONSES_PER_FLUSH);
         this.maxFrameSize = conf.getNettyMaxFrameSizeBytes();
         this.conf = conf;
         this.requestProcessor = processor;
@@ -335,6 +348,7 @@ class BookieNettyServer {
 
                     pipeline.addLast("lengthbaseddecoder", new LengthFieldBasedFrameDecoder(maxFrameSize, 0, 4, 0, 4));
                     pipeline.addLast("lengthprepender", new LengthFieldPrepender(4));
+                    addFlushConsolidationHandler(pipeline);
 
                     pipeline.addLast("bookieProtoDecoder", new BookieProtoEncoding.RequestDecoder(registry));
                     pipeline.addLast("bookieProtoEncoder", new BookieProtoEncoding.ResponseEncoder(registry));
@@ -395,6 +409,7 @@ class BookieNettyServer {
 
                     pipeline.addLast("lengthbaseddecoder", new LengthFieldBasedFrameDecoder(maxFrameSize, 0, 4, 0, 4));
                     pipeline.addLast("lengthprepender", new LengthFieldPrepender(4));
+                    addFlushConsolidationHandler(pipeline);
 
                     pipeline.addLast("bookieProtoDecoder", new BookieProtoEncoding.RequestDecoder(registry));
                     pipeline.addLast("bookieProtoEncoder", new BookieProtoEncoding.ResponseEncoder(registry));
@@ -416,6 +431,14 @@ class BookieNettyServer {
         }
     }
 
+    private void addFlushConsolidationHandler(ChannelPipeline pipeline) {
+        if (conf.getServerFlushConsolidationEnabled()) {
+            pipeline.addLast(ConsolidatingFlushHandler.NAME, new ConsolidatingFlushHandler(
+                    conf.getServerFlushConsolidationMaxWrites(), conf.getServerFlushConsolidationMaxBytes(),
+                    responsesPerFlushLogger));
+        }
+    }
+
     void start() throws InterruptedException {
         isRunning.set(true);
     }
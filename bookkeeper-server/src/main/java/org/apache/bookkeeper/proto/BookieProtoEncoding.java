@@ -39,6 +39,8 @@ import io.netty.util.ReferenceCountUtil;
 
 import java.io.IOException;
 import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.List;
 
 import org.apache.bookkeeper.proto.BookieProtocol.PacketHeader;
 import org.apache.bookkeeper.proto.BookkeeperProtocol.OperationType;
@@ -118,6 +120,33 @@ public class BookieProtoEncoding {
                 ar.recycle();
                 data.prepend(buf);
                 return data;
+            } else if (r instanceof BookieProtocol.BatchAddRequest) {
+                BookieProtocol.BatchAddRequest bar = (BookieProtocol.BatchAddRequest) r;
+                List<ByteBufList> entries = bar.getEntries();
+                int totalHeaderSize = 4 // for the header
+                    + BookieProtocol.MASTER_KEY_LENGTH // for the master key
+                    + 8 // for ledgerId
+                    + 8 // for first entryId
+                    + 4 // for the number of entries
+                    + 4 * entries.size(); // for the entry sizes
+                ByteBuf buf = allocator.buffer(totalHeaderSize);
+                buf.writeInt(PacketHeader.toInt(r.getProtocolVersion(), r.getOpCode(), r.getFlags()));
+                buf.writeBytes(r.getMasterKey(), 0, BookieProtocol.MASTER_KEY_LENGTH);
+                buf.writeLong(bar.getLedgerId());
+                buf.writeLong(bar.getEntryId());
+                buf.writeInt(entries.size());
+                for (ByteBufList entry : entries) {
+                    buf.writeInt(entry.readableBytes());
+                }
+                ByteBufList data = ByteBufList.get(buf);
+                for (ByteBufList entry : entries) {
+                    for (int i = 0; i < entry.size(); i++) {
+                        // Duplicate the buffers, since the entries are shared with the requests to other bookies
+                        data.add(entry.getBuffer(i).retainedDuplicate());
+                    }
+                }
+                bar.recycle();
+                return data;
             } else if (r instanceof BookieProtocol.ReadRequest) {
                 int totalHeaderSize = 4 // for request type
                     + 8 // for ledgerId
@@ -134,6 +163,21 @@ public class BookieProtoEncoding {
                     buf.writeBytes(r.getMasterKey(), 0, BookieProtocol.MASTER_KEY_LENGTH);
                 }
 
+                return buf;
+            } else if (r instanceof BookieProtocol.BatchReadRequest) {
+                BookieProtocol.BatchReadRequest br = (BookieProtocol.BatchReadRequest) r;
+                int totalHeaderSize = 4 // for request type
+                    + 8 // for ledgerId
+                    + 8 // for first entryId
+                    + 4 // for max count
+                    + 8; // for max size
+
+                ByteBuf buf = allocator.buffer(totalHeaderSize);
+                buf.writeInt(PacketHeader.toInt(r.getProtocolVersion(), r.getOpCode(), r.getFlags()));
+                buf.writeLong(br.getLedgerId());
+                buf.writeLong(br.getEntryId());
+                buf.writeInt(br.getMaxCount());
+                buf.writeLong(br.getMaxSize());
                 return buf;
             } else if (r instanceof BookieProtocol.AuthRequest) {
                 BookkeeperProtocol.AuthMessage am = ((BookieProtocol.AuthRequest) r).getAuthMessage();
@@ -176,6 +220,21 @@ public class BookieProtoEncoding {
                         masterKey, packet.retain());
             }
 
+            case BookieProtocol.BATCH_ADD_ENTRY: {
+                byte[] masterKey = readMasterKey(packet);
+                ledgerId = packet.readLong();
+                entryId = packet.readLong();
+                int count = packet.readInt();
+                int sizesIndex = packet.readerIndex();
+                packet.skipBytes(4 * count);
+                List<ByteBuf> entries = new ArrayList<>(count);
+                for (int i = 0; i < count; i++) {
+                    entries.add(packet.readRetainedSlice(packet.getInt(sizesIndex + 4 * i)));
+                }
+                return new BookieProtocol.ParsedBatchAddRequest(
+                        version, ledgerId, entryId, flags, masterKey, entries);
+            }
+
             case BookieProtocol.READENTRY:
                 ledgerId = packet.readLong();
                 entryId = packet.readLong();
@@ -187,6 +246,13 @@ public class BookieProtoEncoding {
                 } else {
                     return new BookieProtocol.ReadRequest(version, ledgerId, entryId, flags, null);
                 }
+            case BookieProtocol.BATCH_READ_ENTRY: {
+                ledgerId = packet.readLong();
+                entryId = packet.readLong();
+                int maxCount = packet.readInt();
+                long maxSize = packet.readLong();
+                return new BookieProtocol.BatchReadRequest(version, ledgerId, entryId, maxCount, maxSize, flags);
+            }
             case BookieProtocol.AUTH:
                 BookkeeperProtocol.AuthMessage.Builder builder = BookkeeperProtocol.AuthMessage.newBuilder();
                 builder.mergeFrom(new ByteBufInputStream(packet), extensionRegistry);
@@ -255,11 +321,39 @@ public class BookieProtoEncoding {
                     } else {
                         return buf;
                     }
+                } else if (msg instanceof BookieProtocol.BatchReadResponse) {
+                    buf.writeInt(r.getErrorCode());
+                    buf.writeLong(r.getLedgerId());
+                    buf.writeLong(r.getEntryId());
+
+                    BookieProtocol.BatchReadResponse brr = (BookieProtocol.BatchReadResponse) r;
+                    if (r.getErrorCode() != BookieProtocol.EOK) {
+                        brr.release();
+                        return buf;
+                    }
+
+                    // All the entry sizes are written upfront, so that the entries are sent without copies
+                    buf.writeInt(brr.getEntries().size());
+                    for (ByteBuf entry : brr.getEntries()) {
+                        buf.writeInt(entry.readableBytes());
+                    }
+                    ByteBufList data = ByteBufList.get(buf);
+                    for (ByteBuf entry : brr.getEntries()) {
+                        data.add(entry);
+                    }
+                    return data;
                 } else if (msg instanceof BookieProtocol.AddResponse) {
                     buf.writeInt(r.getErrorCode());
                     buf.writeLong(r.getLedgerId());
                     buf.writeLong(r.getEntryId());
 
+                    return buf;
+                } else if (msg instanceof BookieProtocol.BatchAddResponse) {
+                    buf.writeInt(r.getErrorCode());
+                    buf.writeLong(r.getLedgerId());
+                    buf.writeLong(r.getEntryId());
+                    buf.writeInt(((BookieProtocol.BatchAddResponse) r).getCount());
+
                     return buf;
                 } else if (msg instanceof BookieProtocol.AuthResponse) {
                     BookkeeperProtocol.AuthMessage am = ((BookieProtocol.AuthResponse) r).getAuthMessage();
@@ -288,6 +382,11 @@ public class BookieProtoEncoding {
                 ledgerId = buffer.readLong();
                 entryId = buffer.readLong();
                 return BookieProtocol.AddResponse.create(version, rc, ledgerId, entryId);
+            case BookieProtocol.BATCH_ADD_ENTRY:
+                rc = buffer.readInt();
+                ledgerId = buffer.readLong();
+                entryId = buffer.readLong();
+                return new BookieProtocol.BatchAddResponse(version, rc, ledgerId, entryId, buffer.readInt());
             case BookieProtocol.READENTRY:
                 rc = buffer.readInt();
                 ledgerId = buffer.readLong();
@@ -295,6 +394,23 @@ public class BookieProtoEncoding {
 
                 return new BookieProtocol.ReadResponse(
                         version, rc, ledgerId, entryId, buffer.retainedSlice());
+            case BookieProtocol.BATCH_READ_ENTRY: {
+                rc = buffer.readInt();
+                ledgerId = buffer.readLong();
+                entryId = buffer.readLong();
+                if (rc != BookieProtocol.EOK) {
+                    return new BookieProtocol.BatchReadResponse(version, rc, ledgerId, entryId);
+                }
+
+                int count = buffer.readInt();
+                int sizesIndex = buffer.readerIndex();
+                buffer.skipBytes(4 * count);
+                List<ByteBuf> entries = new ArrayList<>(count);
+                for (int i = 0; i < count; i++) {
+                    entries.add(buffer.readRetainedSlice(buffer.getInt(sizesIndex + 4 * i)));
+                }
+                return new BookieProtocol.BatchReadResponse(version, rc, ledgerId, entryId, entries);
+            }
             case BookieProtocol.AUTH:
                 ByteBufInputStream bufStream = new ByteBufInputStream(buffer);
                 BookkeeperProtocol.AuthMessage.Builder builder = BookkeeperProtocol.AuthMessage.newBuilder();
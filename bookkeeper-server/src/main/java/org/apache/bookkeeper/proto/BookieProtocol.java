@@ -26,6 +26,9 @@ import io.netty.util.Recycler;
 import io.netty.util.Recycler.Handle;
 import io.netty.util.ReferenceCountUtil;
 
+import java.util.Collections;
+import java.util.List;
+
 import org.apache.bookkeeper.proto.BookkeeperProtocol.AuthMessage;
 import org.apache.bookkeeper.util.ByteBufList;
 
@@ -134,6 +137,29 @@ public interface BookieProtocol {
     byte WRITE_LAC = 5;
     byte GET_BOOKIE_INFO = 6;
 
+    /**
+     * The Batch read entry request payload will be the ledger number and the
+     * entry number of the first entry to read (8-byte integers), followed by the
+     * maximum number of entries to return (4-byte integer) and the maximum total
+     * size of the returned entries (8-byte integer). The response payload will be
+     * a 4-byte integer representing an error code, the 8-byte ledger number and
+     * the 8-byte number of the first entry. If the error code is EOK, it is
+     * followed by the 4-byte number of entries, the 4-byte size of each entry and
+     * the entries themselves.
+     */
+    byte BATCH_READ_ENTRY = 7;
+
+    /**
+     * The Batch add entry request payload will be the master key (20 bytes),
+     * the ledger number and the entry number of the first entry (8-byte integers),
+     * the 4-byte number of entries, the 4-byte size of each entry and the entries
+     * themselves. Each entry is formatted as in an ADDENTRY request and the entry
+     * numbers must be consecutive. The response payload will be a 4-byte integer
+     * representing an error code, the 8-byte ledger number, the 8-byte number of
+     * the first entry and the 4-byte number of entries.
+     */
+    byte BATCH_ADD_ENTRY = 8;
+
     /**
      * The error code that indicates success.
      */
@@ -353,6 +379,70 @@ public interface BookieProtocol {
         }
     }
 
+    /**
+     * A Request that adds a range of consecutive entries.
+     */
+    class BatchAddRequest extends Request {
+        final List<ByteBufList> entries;
+
+        BatchAddRequest(byte protocolVersion, long ledgerId, long firstEntryId,
+                        short flags, byte[] masterKey, List<ByteBufList> entries) {
+            init(protocolVersion, BATCH_ADD_ENTRY, ledgerId, firstEntryId, flags, masterKey);
+            this.entries = entries;
+            entries.forEach(ByteBufList::retain);
+        }
+
+        List<ByteBufList> getEntries() {
+            return entries;
+        }
+
+        boolean isRecoveryAdd() {
+            return (flags & FLAG_RECOVERY_ADD) == FLAG_RECOVERY_ADD;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("Op(%d)[Ledger:%d,FirstEntry:%d,Count:%d]",
+                                 opCode, ledgerId, entryId, entries.size());
+        }
+
+        @Override
+        public void recycle() {
+            entries.forEach(ReferenceCountUtil::safeRelease);
+        }
+    }
+
+    /**
+     * This is similar to batch add request, but it used when processing the request on the bookie side.
+     */
+    class ParsedBatchAddRequest extends Request {
+        final List<ByteBuf> entries;
+
+        ParsedBatchAddRequest(byte protocolVersion, long ledgerId, long firstEntryId,
+                              short flags, byte[] masterKey, List<ByteBuf> entries) {
+            init(protocolVersion, BATCH_ADD_ENTRY, ledgerId, firstEntryId, flags, masterKey);
+            this.entries = entries;
+        }
+
+        List<ByteBuf> getEntries() {
+            return entries;
+        }
+
+        boolean isRecoveryAdd() {
+            return (flags & FLAG_RECOVERY_ADD) == FLAG_RECOVERY_ADD;
+        }
+
+        void release() {
+            entries.forEach(ByteBuf::release);
+        }
+
+        @Override
+        public String toString() {
+            return String.format("Op(%d)[Ledger:%d,FirstEntry:%d,Count:%d]",
+                                 opCode, ledgerId, entryId, entries.size());
+        }
+    }
+
     /**
      * A Request that reads data.
      */
@@ -367,6 +457,35 @@ public interface BookieProtocol {
         }
     }
 
+    /**
+     * A Request that reads a range of consecutive entries.
+     */
+    class BatchReadRequest extends Request {
+        final int maxCount;
+        final long maxSize;
+
+        BatchReadRequest(byte protocolVersion, long ledgerId, long firstEntryId,
+                         int maxCount, long maxSize, short flags) {
+            init(protocolVersion, BATCH_READ_ENTRY, ledgerId, firstEntryId, flags, null);
+            this.maxCount = maxCount;
+            this.maxSize = maxSize;
+        }
+
+        int getMaxCount() {
+            return maxCount;
+        }
+
+        long getMaxSize() {
+            return maxSize;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("Op(%d)[Ledger:%d,FirstEntry:%d,MaxCount:%d,MaxSize:%d]",
+                                 opCode, ledgerId, entryId, maxCount, maxSize);
+        }
+    }
+
     /**
      * An authentication request.
      */
@@ -472,6 +591,37 @@ public interface BookieProtocol {
         }
     }
 
+    /**
+     * A response to a batch read, with the entries starting from the first requested entry.
+     */
+    class BatchReadResponse extends Response {
+        final List<ByteBuf> entries;
+
+        BatchReadResponse(byte protocolVersion, int errorCode, long ledgerId, long firstEntryId) {
+            this(protocolVersion, errorCode, ledgerId, firstEntryId, Collections.emptyList());
+        }
+
+        BatchReadResponse(byte protocolVersion, int errorCode, long ledgerId, long firstEntryId,
+                          List<ByteBuf> entries) {
+            init(protocolVersion, BATCH_READ_ENTRY, errorCode, ledgerId, firstEntryId);
+            this.entries = entries;
+        }
+
+        List<ByteBuf> getEntries() {
+            return entries;
+        }
+
+        @Override
+        public void retain() {
+            entries.forEach(ByteBuf::retain);
+        }
+
+        @Override
+        public void release() {
+            entries.forEach(ByteBuf::release);
+        }
+    }
+
     /**
      * A response that adds data.
      */
@@ -500,6 +650,28 @@ public interface BookieProtocol {
         }
     }
 
+    /**
+     * A response to a batch add, acknowledging the entries starting from the first added entry.
+     */
+    class BatchAddResponse extends Response {
+        final int count;
+
+        BatchAddResponse(byte protocolVersion, int errorCode, long ledgerId, long firstEntryId, int count) {
+            init(protocolVersion, BATCH_ADD_ENTRY, errorCode, ledgerId, firstEntryId);
+            this.count = count;
+        }
+
+        int getCount() {
+            return count;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("Op(%d)[Ledger:%d,FirstEntry:%d,Count:%d,errorCode=%d]",
+                                 opCode, ledgerId, entryId, count, errorCode);
+        }
+    }
+
     /**
      * An error response.
      */
@@ -37,10 +37,13 @@ import io.netty.util.concurrent.Future;
 import io.netty.util.concurrent.GenericFutureListener;
 
 import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.RejectedExecutionException;
 import java.util.concurrent.Semaphore;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.function.Consumer;
 
 import lombok.AccessLevel;
@@ -122,12 +125,22 @@ public class BookieRequestProcessor implements RequestProcessor {
     final Semaphore addsSemaphore;
     final Semaphore readsSemaphore;
 
+    // Number of ledger storages currently signaling write back-pressure, and the channels whose reads were
+    // paused because of it
+    private final AtomicInteger throttledStorages = new AtomicInteger(0);
+    private final Set<Channel> storageThrottledChannels = ConcurrentHashMap.newKeySet();
+    private volatile long storageThrottlingStartTimeNanos;
+
     // to temporary blacklist channels
     final Optional<Cache<Channel, Boolean>> blacklistedChannels;
     final Consumer<Channel> onResponseTimeout;
 
     private final ByteBufAllocator allocator;
 
+    // Room kept in the response frame of a batch read for the headers and for the framing of each entry
+    private static final int BATCH_READ_RESPONSE_OVERHEAD = 1024;
+    private static final int BATCH_READ_ENTRY_OVERHEAD = 8;
+
     public BookieRequestProcessor(ServerConfiguration serverCfg, Bookie bookie, StatsLogger statsLogger,
             SecurityHandlerFactory shFactory, ByteBufAllocator allocator) throws SecurityException {
         this.serverCfg = serverCfg;
@@ -199,6 +212,36 @@ public class BookieRequestProcessor implements RequestProcessor {
 
         int maxReads = serverCfg.getMaxReadsInProgressLimit();
         readsSemaphore = maxReads > 0 ? new Semaphore(maxReads, true) : null;
+
+        if (bookie != null) {
+            bookie.getLedgerStorage().registerWriteBackpressureListener(this::onStorageWriteBackpressure);
+        }
+    }
+
+    private void onStorageWriteBackpressure(boolean throttled) {
+        if (throttled) {
+            if (throttledStorages.getAndIncrement() == 0) {
+                storageThrottlingStartTimeNanos = MathUtils.nowInNano();
+            }
+        } else if (throttledStorages.decrementAndGet() == 0) {
+            resumeStorageThrottledChannels();
+        }
+    }
+
+    private void resumeStorageThrottledChannels() {
+        int numChannels = 0;
+        for (Channel channel : storageThrottledChannels) {
+            if (storageThrottledChannels.remove(channel)) {
+                channel.config().setAutoRead(true);
+                numChannels++;
+            }
+        }
+        if (numChannels > 0) {
+            final long delayNanos = MathUtils.elapsedNanos(storageThrottlingStartTimeNanos);
+            LOG.info("Re-enabled autoread on {} channels after ledger storage throttling of {} nanos",
+                    numChannels, delayNanos);
+            requestStats.unthrottleChannelsByStorage(numChannels, delayNanos);
+        }
     }
 
     protected void onAddRequestStart(Channel channel) {
@@ -215,6 +258,17 @@ public class BookieRequestProcessor implements RequestProcessor {
                 requestStats.unblockAddRequest(delayNanos);
             }
         }
+        if (throttledStorages.get() > 0 && storageThrottledChannels.add(channel)) {
+            // The ledger storage can't keep up with the writes, stop reading more requests from the channel until it
+            // catches up, rather than letting the add requests pile up in the storage
+            channel.config().setAutoRead(false);
+            requestStats.throttleChannelByStorage();
+            LOG.info("Ledger storage is throttling writes, disabling autoread on channel {}", channel);
+            if (throttledStorages.get() == 0) {
+                // The storage caught up in the meantime
+                resumeStorageThrottledChannels();
+            }
+        }
         requestStats.trackAddRequest();
     }
 
@@ -311,6 +365,12 @@ public class BookieRequestProcessor implements RequestProcessor {
                     case READ_ENTRY:
                         processReadRequestV3(r, c);
                         break;
+                    case RANGE_READ_ENTRY:
+                        processBatchReadRequestV3(r, c);
+                        break;
+                    case RANGE_ADD_ENTRY:
+                        processBatchAddRequestV3(r, c);
+                        break;
                     case FORCE_LEDGER:
                         processForceLedgerRequestV3(r, c);
                         break;
@@ -368,6 +428,14 @@ public class BookieRequestProcessor implements RequestProcessor {
                     checkArgument(r instanceof BookieProtocol.ReadRequest);
                     processReadRequest((BookieProtocol.ReadRequest) r, c);
                     break;
+                case BookieProtocol.BATCH_READ_ENTRY:
+                    checkArgument(r instanceof BookieProtocol.BatchReadRequest);
+                    processBatchReadRequest((BookieProtocol.BatchReadRequest) r, c);
+                    break;
+                case BookieProtocol.BATCH_ADD_ENTRY:
+                    checkArgument(r instanceof BookieProtocol.ParsedBatchAddRequest);
+                    processBatchAddRequest((BookieProtocol.ParsedBatchAddRequest) r, c);
+                    break;
                 case BookieProtocol.AUTH:
                     LOG.info("Ignoring auth operation from client {}", c.remoteAddress());
                     BookkeeperProtocol.AuthMessage message = BookkeeperProtocol.AuthMessage
@@ -451,6 +519,42 @@ public class BookieRequestProcessor implements RequestProcessor {
         }
     }
 
+    private void processBatchAddRequestV3(final BookkeeperProtocol.Request r, final Channel c) {
+        BatchAddEntryProcessorV3 write = new BatchAddEntryProcessorV3(r, c, this);
+
+        final OrderedExecutor threadPool;
+        if (RequestUtils.isHighPriority(r)) {
+            threadPool = highPriorityThreadPool;
+        } else {
+            threadPool = writeThreadPool;
+        }
+
+        if (null == threadPool) {
+            write.run();
+        } else {
+            try {
+                threadPool.executeOrdered(r.getBatchAddRequest().getLedgerId(), write);
+            } catch (RejectedExecutionException e) {
+                if (LOG.isDebugEnabled()) {
+                    LOG.debug("Failed to process request to add entries from {}:{}. Too many pending requests",
+                              r.getBatchAddRequest().getLedgerId(), r.getBatchAddRequest().getFirstEntryId());
+                }
+                BookkeeperProtocol.BatchAddResponse.Builder batchAddResponse =
+                    BookkeeperProtocol.BatchAddResponse.newBuilder()
+                        .setLedgerId(r.getBatchAddRequest().getLedgerId())
+                        .setFirstEntryId(r.getBatchAddRequest().getFirstEntryId())
+                        .setCount(r.getBatchAddRequest().getBodyCount())
+                        .setStatus(BookkeeperProtocol.StatusCode.ETOOMANYREQUESTS);
+                BookkeeperProtocol.Response.Builder response = BookkeeperProtocol.Response.newBuilder()
+                    .setHeader(write.getHeader())
+                    .setStatus(batchAddResponse.getStatus())
+                    .setBatchAddResponse(batchAddResponse);
+                write.sendResponse(batchAddResponse.getStatus(), response.build(),
+                    requestStats.getBatchAddRequestStats());
+            }
+        }
+    }
+
     private void processForceLedgerRequestV3(final BookkeeperProtocol.Request r, final Channel c) {
         ForceLedgerProcessorV3 forceLedger = new ForceLedgerProcessorV3(r, c, this);
 
@@ -538,6 +642,36 @@ public class BookieRequestProcessor implements RequestProcessor {
         }
     }
 
+    private void processBatchReadRequestV3(final BookkeeperProtocol.Request r, final Channel c) {
+        BatchReadEntryProcessorV3 read = new BatchReadEntryProcessorV3(r, c, this);
+        final OrderedExecutor threadPool = RequestUtils.isHighPriority(r) ? highPriorityThreadPool : readThreadPool;
+
+        if (null == threadPool) {
+            read.run();
+        } else {
+            try {
+                threadPool.executeOrdered(r.getBatchReadRequest().getLedgerId(), read);
+            } catch (RejectedExecutionException e) {
+                if (LOG.isDebugEnabled()) {
+                    LOG.debug("Failed to process request to read entries from {}:{}. Too many pending requests",
+                              r.getBatchReadRequest().getLedgerId(), r.getBatchReadRequest().getFirstEntryId());
+                }
+                BookkeeperProtocol.BatchReadResponse.Builder batchReadResponse =
+                    BookkeeperProtocol.BatchReadResponse.newBuilder()
+                        .setLedgerId(r.getBatchReadRequest().getLedgerId())
+                        .setFirstEntryId(r.getBatchReadRequest().getFirstEntryId())
+                        .setStatus(BookkeeperProtocol.StatusCode.ETOOMANYREQUESTS);
+                BookkeeperProtocol.Response.Builder response = BookkeeperProtocol.Response.newBuilder()
+                    .setHeader(read.getHeader())
+                    .setStatus(batchReadResponse.getStatus())
+                    .setBatchReadResponse(batchReadResponse);
+                read.sendResponse(batchReadResponse.getStatus(), response.build(),
+                    requestStats.getBatchReadRequestStats());
+                onReadRequestFinish();
+            }
+        }
+    }
+
     private void processStartTLSRequestV3(final BookkeeperProtocol.Request r, final Channel c) {
         BookkeeperProtocol.Response.Builder response = BookkeeperProtocol.Response.newBuilder();
         BookkeeperProtocol.BKPacketHeader.Builder header = BookkeeperProtocol.BKPacketHeader.newBuilder();
@@ -631,6 +765,32 @@ public class BookieRequestProcessor implements RequestProcessor {
         }
     }
 
+    private void processBatchAddRequest(final BookieProtocol.ParsedBatchAddRequest r, final Channel c) {
+        BatchAddEntryProcessor write = BatchAddEntryProcessor.create(r, c, this);
+
+        // High priority adds (recovery) bypass the normal writeThreadPool, as for single entry adds
+        final OrderedExecutor threadPool = r.isHighPriority() ? highPriorityThreadPool : writeThreadPool;
+
+        if (null == threadPool) {
+            write.run();
+        } else {
+            try {
+                threadPool.executeOrdered(r.getLedgerId(), write);
+            } catch (RejectedExecutionException e) {
+                if (LOG.isDebugEnabled()) {
+                    LOG.debug("Failed to process request to add entries from {}:{}. Too many pending requests",
+                            r.ledgerId, r.entryId);
+                }
+
+                r.release();
+                write.sendResponse(
+                    BookieProtocol.ETOOMANYREQUESTS,
+                    ResponseBuilder.buildErrorResponse(BookieProtocol.ETOOMANYREQUESTS, r),
+                    requestStats.getBatchAddRequestStats());
+            }
+        }
+    }
+
     private void processReadRequest(final BookieProtocol.ReadRequest r, final Channel c) {
         ExecutorService fenceThreadPool =
                 null == highPriorityThreadPool ? null : highPriorityThreadPool.chooseThread(c);
@@ -665,6 +825,39 @@ public class BookieRequestProcessor implements RequestProcessor {
         }
     }
 
+    private void processBatchReadRequest(final BookieProtocol.BatchReadRequest r, final Channel c) {
+        BatchReadEntryProcessor read = BatchReadEntryProcessor.create(r, c, this);
+        final OrderedExecutor threadPool = r.isHighPriority() ? highPriorityThreadPool : readThreadPool;
+
+        if (null == threadPool) {
+            read.run();
+        } else {
+            try {
+                threadPool.executeOrdered(r.getLedgerId(), read);
+            } catch (RejectedExecutionException e) {
+                if (LOG.isDebugEnabled()) {
+                    LOG.debug("Failed to process request to read entries from {}:{}. Too many pending requests",
+                            r.ledgerId, r.entryId);
+                }
+
+                read.sendResponse(
+                    BookieProtocol.ETOOMANYREQUESTS,
+                    ResponseBuilder.buildErrorResponse(BookieProtocol.ETOOMANYREQUESTS, r),
+                    requestStats.getBatchReadRequestStats());
+            }
+        }
+    }
+
+    /**
+     * Get the max total size of the entries returned by a batch read, so that the response fits in a frame.
+     *
+     * @param maxCount max number of entries of the batch read
+     */
+    long getMaxBatchReadSize(int maxCount) {
+        return serverCfg.getNettyMaxFrameSizeBytes() - BATCH_READ_RESPONSE_OVERHEAD
+                - (long) BATCH_READ_ENTRY_OVERHEAD * maxCount;
+    }
+
     public long getWaitTimeoutOnBackpressureMillis() {
         return waitTimeoutOnBackpressureMillis;
     }
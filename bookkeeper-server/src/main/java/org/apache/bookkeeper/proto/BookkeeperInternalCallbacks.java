@@ -23,6 +23,7 @@ package org.apache.bookkeeper.proto;
 
 import io.netty.buffer.ByteBuf;
 
+import java.util.List;
 import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.LinkedBlockingQueue;
@@ -80,6 +81,15 @@ public class BookkeeperInternalCallbacks {
         void writeComplete(int rc, long ledgerId, long entryId, BookieSocketAddress addr, Object ctx);
     }
 
+    /**
+     * Declaration of a callback implementation for replies of batched add operations
+     * (operations to add a range of consecutive entries to a ledger).
+     */
+    public interface BatchedWriteCallback {
+        void writeEntriesComplete(int rc, long ledgerId, long firstEntryId, int count,
+                                  BookieSocketAddress addr, Object ctx);
+    }
+
     /**
      * A last-add-confirmed (LAC) reader callback interface.
      */
@@ -223,6 +233,17 @@ public class BookkeeperInternalCallbacks {
         void readEntryComplete(int rc, long ledgerId, long entryId, ByteBuf buffer, Object ctx);
     }
 
+    /**
+     * Declaration of a callback implementation for replies of batched read operations
+     * (operations to read a range of consecutive entries from a ledger).
+     *
+     * <p>The entries are only valid for the duration of the callback, implementations
+     * have to retain the buffers they want to keep.
+     */
+    public interface BatchedReadEntryCallback {
+        void readEntriesComplete(int rc, long ledgerId, long firstEntryId, List<ByteBuf> entries, Object ctx);
+    }
+
     /**
      * Listener on entries responded.
      */
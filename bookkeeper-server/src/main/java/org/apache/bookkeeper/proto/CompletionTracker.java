@@ -0,0 +1,399 @@
+/*
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *
+ */
+package org.apache.bookkeeper.proto;
+
+import com.google.common.annotations.VisibleForTesting;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLongFieldUpdater;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.function.Consumer;
+import java.util.function.LongSupplier;
+
+import org.apache.bookkeeper.proto.BookkeeperProtocol.OperationType;
+import org.apache.bookkeeper.proto.PerChannelBookieClient.CompletionValue;
+import org.apache.bookkeeper.util.collections.ConcurrentLongHashMap;
+
+/**
+ * Tracker of the requests of a {@link PerChannelBookieClient} waiting for their response.
+ *
+ * <p>Each request is tracked by a transaction id taken from the generator of the client, so the ids
+ * of a channel are dense and increase with the time the requests are sent:
+ * <ul>
+ * <li>the requests are stored in a ring indexed by their transaction id. A request whose slot is
+ * still taken by an older request goes to an overflow map;</li>
+ * <li>the v2 requests, whose responses have no transaction id, are also indexed by their
+ * (ledgerId, entryId, operation) in open addressing tables, which allow several requests with the
+ * same key;</li>
+ * <li>the ring doubles as the timer wheel of the timeouts: as the requests are ordered by the time
+ * they were sent, the sweep of the timed out requests resumes where the previous sweep stopped and
+ * stops at the first request too recent to have timed out, instead of scanning all the requests.
+ * The requests passed by the sweep while still waiting, like long polls with a longer timeout, are
+ * kept in the overflow map, which is scanned on every sweep.</li>
+ * </ul>
+ *
+ * <p>The request is completed by the thread which removes it from the tracker, which is decided by
+ * a CAS on its transaction id, so the tracking does not allocate nor lock on the v3 path.
+ */
+class CompletionTracker {
+
+    static final long NO_TXN_ID = -1L;
+
+    private static final AtomicLongFieldUpdater<CompletionValue> TXN_ID_UPDATER =
+            AtomicLongFieldUpdater.newUpdater(CompletionValue.class, "txnId");
+
+    private static final int RING_CAPACITY = 4096;
+    private static final int V2_SECTIONS = 16;
+
+    private final AtomicReferenceArray<CompletionValue> ring = new AtomicReferenceArray<>(RING_CAPACITY);
+    private final ConcurrentLongHashMap<CompletionValue> overflow = new ConcurrentLongHashMap<>(16, 1);
+    private final V2Section[] v2Sections;
+    private final AtomicInteger size = new AtomicInteger();
+
+    private final LongSupplier lastTxnId;
+    private final long minTimeoutNanos;
+
+    // The requests with a transaction id below the cursor were already swept, so they are also kept
+    // in the overflow map when they are tracked late
+    private volatile long sweepCursor;
+
+    /**
+     * Get the shortest of the timeouts of the requests, ignoring the disabled ones.
+     *
+     * @return the shortest timeout, or 0 if the requests never time out
+     */
+    static long getMinTimeoutNanos(long... timeoutsNanos) {
+        long minTimeoutNanos = 0;
+        for (long timeoutNanos : timeoutsNanos) {
+            if (timeoutNanos > 0 && (minTimeoutNanos == 0 || timeoutNanos < minTimeoutNanos)) {
+                minTimeoutNanos = timeoutNanos;
+            }
+        }
+        return minTimeoutNanos;
+    }
+
+    /**
+     * @param lastTxnId
+     *            supplier of the last transaction id generated by the client
+     * @param minTimeoutNanos
+     *            the shortest timeout of the requests, or 0 if the requests never time out
+     */
+    CompletionTracker(LongSupplier lastTxnId, long minTimeoutNanos) {
+        this.lastTxnId = lastTxnId;
+        this.minTimeoutNanos = minTimeoutNanos;
+        this.sweepCursor = lastTxnId.getAsLong() + 1;
+        this.v2Sections = new V2Section[V2_SECTIONS];
+        for (int i = 0; i < V2_SECTIONS; i++) {
+            v2Sections[i] = new V2Section();
+        }
+    }
+
+    int size() {
+        return size.get();
+    }
+
+    @VisibleForTesting
+    long getSweepCursor() {
+        return sweepCursor;
+    }
+
+    /**
+     * Track a request whose response is matched by its transaction id.
+     */
+    void put(long txnId, OperationType operationType, CompletionValue completion) {
+        completion.operationType = operationType;
+        completion.v2Tracked = false;
+        track(txnId, completion);
+    }
+
+    /**
+     * Track a v2 request, whose response is matched by its ledger id, entry id and operation.
+     */
+    void putV2(long txnId, long ledgerId, long entryId, OperationType operationType, CompletionValue completion) {
+        completion.operationType = operationType;
+        completion.v2LedgerId = ledgerId;
+        completion.v2EntryId = entryId;
+        completion.v2Tracked = true;
+        v2Section(ledgerId, entryId, operationType).add(completion);
+        track(txnId, completion);
+    }
+
+    private void track(long txnId, CompletionValue completion) {
+        completion.txnId = txnId;
+        size.incrementAndGet();
+        if (!ring.compareAndSet(index(txnId), null, completion)) {
+            overflow.put(txnId, completion);
+        } else if (txnId < sweepCursor) {
+            // the sweep may have passed this id before the request was tracked
+            overflow.put(txnId, completion);
+        }
+    }
+
+    /**
+     * Get the request tracked with the given transaction id, without removing it.
+     */
+    CompletionValue get(long txnId) {
+        CompletionValue completion = ring.get(index(txnId));
+        if (completion != null && completion.txnId == txnId) {
+            return completion;
+        }
+        completion = overflow.get(txnId);
+        return completion != null && completion.txnId == txnId ? completion : null;
+    }
+
+    /**
+     * Remove the request tracked with the given transaction id.
+     *
+     * @return the request, or null if it is not tracked or already removed
+     */
+    CompletionValue remove(long txnId) {
+        CompletionValue completion = get(txnId);
+        return completion != null && claim(completion, txnId) ? completion : null;
+    }
+
+    /**
+     * Remove the request tracked with the given transaction id, if it is of the given operation.
+     */
+    CompletionValue remove(long txnId, OperationType operationType) {
+        CompletionValue completion = get(txnId);
+        return completion != null && completion.operationType == operationType && claim(completion, txnId)
+                ? completion : null;
+    }
+
+    /**
+     * Remove a v2 request of the given ledger id, entry id and operation.
+     */
+    CompletionValue removeV2(long ledgerId, long entryId, OperationType operationType) {
+        return v2Section(ledgerId, entryId, operationType).claim(ledgerId, entryId, operationType);
+    }
+
+    /**
+     * Remove the requests which timed out.
+     *
+     * @return the number of requests removed
+     */
+    synchronized int removeTimedOut(long nowNanos, Consumer<CompletionValue> onTimeout) {
+        if (minTimeoutNanos <= 0) {
+            // the timeouts are disabled, the requests are not expected to be swept
+            return 0;
+        }
+
+        int removed = 0;
+        long lastId = lastTxnId.getAsLong();
+        long cursor = sweepCursor;
+        long newCursor = cursor;
+        for (long txnId = cursor; txnId <= lastId; txnId++) {
+            CompletionValue completion = ring.get(index(txnId));
+            if (completion != null && completion.txnId == txnId) {
+                if (nowNanos - completion.startTime < minTimeoutNanos) {
+                    // the later requests are more recent
+                    break;
+                }
+                if (completion.isTimedOut(nowNanos) && claim(completion, txnId)) {
+                    onTimeout.accept(completion);
+                    ++removed;
+                }
+            }
+            // completed, not tracked, in the overflow map, or waiting with a longer timeout
+            newCursor = txnId + 1;
+        }
+
+        if (newCursor != cursor) {
+            sweepCursor = newCursor;
+            // keep the requests still waiting, and the ones tracked while the ids were swept, in the
+            // overflow map, so that they are not missed by the next sweeps
+            for (long txnId = cursor; txnId < newCursor; txnId++) {
+                CompletionValue completion = ring.get(index(txnId));
+                if (completion != null && completion.txnId == txnId) {
+                    overflow.putIfAbsent(txnId, completion);
+                }
+            }
+        }
+
+        if (!overflow.isEmpty()) {
+            List<CompletionValue> timedOut = new ArrayList<>();
+            List<Long> stale = new ArrayList<>();
+            overflow.forEach((txnId, completion) -> {
+                if (completion.txnId != txnId) {
+                    stale.add(txnId);
+                } else if (completion.isTimedOut(nowNanos)) {
+                    timedOut.add(completion);
+                }
+            });
+            for (CompletionValue completion : timedOut) {
+                long txnId = completion.txnId;
+                if (txnId != NO_TXN_ID && claim(completion, txnId)) {
+                    onTimeout.accept(completion);
+                    ++removed;
+                }
+            }
+            for (long txnId : stale) {
+                CompletionValue completion = overflow.get(txnId);
+                if (completion != null && completion.txnId != txnId) {
+                    overflow.remove(txnId, completion);
+                }
+            }
+        }
+        return removed;
+    }
+
+    /**
+     * Remove all the requests.
+     */
+    void removeAll(Consumer<CompletionValue> consumer) {
+        for (int i = 0; i < ring.length(); i++) {
+            CompletionValue completion = ring.get(i);
+            if (completion != null) {
+                long txnId = completion.txnId;
+                if (txnId != NO_TXN_ID && claim(completion, txnId)) {
+                    consumer.accept(completion);
+                }
+            }
+        }
+        for (CompletionValue completion : overflow.values()) {
+            long txnId = completion.txnId;
+            if (txnId != NO_TXN_ID && claim(completion, txnId)) {
+                consumer.accept(completion);
+            }
+        }
+    }
+
+    /**
+     * Take the ownership of a request, and stop tracking it.
+     *
+     * @return false if another thread removed the request first
+     */
+    private boolean claim(CompletionValue completion, long txnId) {
+        if (!TXN_ID_UPDATER.compareAndSet(completion, txnId, NO_TXN_ID)) {
+            return false;
+        }
+        if (completion.v2Tracked) {
+            v2Section(completion.v2LedgerId, completion.v2EntryId, completion.operationType).remove(completion);
+        }
+        untrack(completion, txnId);
+        return true;
+    }
+
+    private void untrack(CompletionValue completion, long txnId) {
+        if (!ring.compareAndSet(index(txnId), completion, null)) {
+            overflow.remove(txnId, completion);
+        }
+        size.decrementAndGet();
+    }
+
+    private static int index(long txnId) {
+        return (int) (txnId & (RING_CAPACITY - 1));
+    }
+
+    private static int hash(long ledgerId, long entryId, OperationType operationType) {
+        long h = (ledgerId * 31 + entryId) * 31 + operationType.getNumber();
+        h *= 0x9E3779B97F4A7C15L;
+        return (int) (h ^ (h >>> 32));
+    }
+
+    private V2Section v2Section(long ledgerId, long entryId, OperationType operationType) {
+        return v2Sections[(hash(ledgerId, entryId, operationType) >>> 24) & (V2_SECTIONS - 1)];
+    }
+
+    /**
+     * Open addressing table of the v2 requests, with linear probing. The requests with the same key,
+     * like duplicated reads of an entry, are stored in different buckets of the same probe sequence.
+     */
+    private final class V2Section {
+        private CompletionValue[] table = new CompletionValue[16];
+        private int count = 0;
+
+        synchronized void add(CompletionValue completion) {
+            if (2 * (count + 1) > table.length) {
+                rehash(table.length * 2);
+            }
+            insert(table, completion);
+            ++count;
+        }
+
+        synchronized CompletionValue claim(long ledgerId, long entryId, OperationType operationType) {
+            int mask = table.length - 1;
+            for (int i = hash(ledgerId, entryId, operationType) & mask; table[i] != null; i = (i + 1) & mask) {
+                CompletionValue completion = table[i];
+                long txnId = completion.txnId;
+                if (completion.v2LedgerId == ledgerId
+                        && completion.v2EntryId == entryId
+                        && completion.operationType == operationType
+                        && txnId != NO_TXN_ID
+                        && TXN_ID_UPDATER.compareAndSet(completion, txnId, NO_TXN_ID)) {
+                    removeAt(i);
+                    untrack(completion, txnId);
+                    return completion;
+                }
+            }
+            return null;
+        }
+
+        synchronized void remove(CompletionValue completion) {
+            int mask = table.length - 1;
+            int start = hash(completion.v2LedgerId, completion.v2EntryId, completion.operationType) & mask;
+            for (int i = start; table[i] != null; i = (i + 1) & mask) {
+                if (table[i] == completion) {
+                    removeAt(i);
+                    return;
+                }
+            }
+        }
+
+        private void removeAt(int i) {
+            int mask = table.length - 1;
+            table[i] = null;
+            --count;
+            // shift back the following entries of the probe sequence
+            for (int j = (i + 1) & mask; table[j] != null; j = (j + 1) & mask) {
+                CompletionValue completion = table[j];
+                int k = hash(completion.v2LedgerId, completion.v2EntryId, completion.operationType) & mask;
+                boolean inPlace = i <= j ? (i < k && k <= j) : (i < k || k <= j);
+                if (!inPlace) {
+                    table[i] = completion;
+                    table[j] = null;
+                    i = j;
+                }
+            }
+        }
+
+        private void rehash(int capacity) {
+            CompletionValue[] newTable = new CompletionValue[capacity];
+            for (CompletionValue completion : table) {
+                if (completion != null) {
+                    insert(newTable, completion);
+                }
+            }
+            table = newTable;
+        }
+
+        private void insert(CompletionValue[] t, CompletionValue completion) {
+            int mask = t.length - 1;
+            int i = hash(completion.v2LedgerId, completion.v2EntryId, completion.operationType) & mask;
+            while (t[i] != null) {
+                i = (i + 1) & mask;
+            }
+            t[i] = completion;
+        }
+    }
+}
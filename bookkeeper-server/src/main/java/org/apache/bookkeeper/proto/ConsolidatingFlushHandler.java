@@ -0,0 +1,164 @@
+/*
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *
+ */
+package org.apache.bookkeeper.proto;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.channel.ChannelDuplexHandler;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelPromise;
+
+import org.apache.bookkeeper.stats.OpStatsLogger;
+import org.apache.bookkeeper.util.ByteBufList;
+
+/**
+ * Handler consolidating the flushes of a channel, so that the messages written by several requests
+ * or responses reach the socket with a single write.
+ *
+ * <p>The messages are written right away, but a requested flush is delayed:
+ * <ul>
+ * <li>while the channel is reading, until the read is complete, since the messages read are likely
+ * to write more;</li>
+ * <li>otherwise, until the tasks already queued on the event loop of the channel ran, so that the
+ * messages written by them are flushed together.</li>
+ * </ul>
+ * The channel is flushed right away once <i>maxWrites</i> messages or <i>maxBytes</i> bytes are
+ * pending, which bounds the latency added to a message to the processing of that many messages by
+ * the event loop.
+ *
+ * <p>It is placed right below the encoder of the protocol in the pipeline, so that it sees one encoded
+ * message per request or response. The number of messages sent by each flush is recorded by the given
+ * stats logger.
+ */
+class ConsolidatingFlushHandler extends ChannelDuplexHandler {
+
+    public static final String NAME = "flushConsolidation";
+
+    private final int maxWrites;
+    private final long maxBytes;
+    private final OpStatsLogger writesPerFlushLogger;
+
+    // Only accessed from the event loop of the channel
+    private int pendingWrites = 0;
+    private long pendingBytes = 0;
+    private boolean flushPending = false;
+    private boolean flushScheduled = false;
+    private boolean readInProgress = false;
+    private Runnable flushTask;
+
+    ConsolidatingFlushHandler(int maxWrites, long maxBytes, OpStatsLogger writesPerFlushLogger) {
+        this.maxWrites = maxWrites;
+        this.maxBytes = maxBytes;
+        this.writesPerFlushLogger = writesPerFlushLogger;
+    }
+
+    @Override
+    public void handlerAdded(ChannelHandlerContext ctx) throws Exception {
+        flushTask = () -> {
+            flushScheduled = false;
+            flushIfPending(ctx);
+        };
+    }
+
+    @Override
+    public void handlerRemoved(ChannelHandlerContext ctx) throws Exception {
+        flushIfPending(ctx);
+    }
+
+    @Override
+    public void write(ChannelHandlerContext ctx, Object msg, ChannelPromise promise) throws Exception {
+        ++pendingWrites;
+        if (msg instanceof ByteBuf) {
+            pendingBytes += ((ByteBuf) msg).readableBytes();
+        } else if (msg instanceof ByteBufList) {
+            pendingBytes += ((ByteBufList) msg).readableBytes();
+        }
+        ctx.write(msg, promise);
+    }
+
+    @Override
+    public void flush(ChannelHandlerContext ctx) throws Exception {
+        if (pendingWrites >= maxWrites || pendingBytes >= maxBytes) {
+            flushNow(ctx);
+            return;
+        }
+        flushPending = true;
+        if (!readInProgress && !flushScheduled) {
+            flushScheduled = true;
+            ctx.channel().eventLoop().execute(flushTask);
+        }
+    }
+
+    @Override
+    public void channelRead(ChannelHandlerContext ctx, Object msg) throws Exception {
+        readInProgress = true;
+        ctx.fireChannelRead(msg);
+    }
+
+    @Override
+    public void channelReadComplete(ChannelHandlerContext ctx) throws Exception {
+        readInProgress = false;
+        flushIfPending(ctx);
+        ctx.fireChannelReadComplete();
+    }
+
+    @Override
+    public void channelWritabilityChanged(ChannelHandlerContext ctx) throws Exception {
+        if (!ctx.channel().isWritable()) {
+            // let the pending messages drain from the outbound buffer
+            flushIfPending(ctx);
+        }
+        ctx.fireChannelWritabilityChanged();
+    }
+
+    @Override
+    public void exceptionCaught(ChannelHandlerContext ctx, Throwable cause) throws Exception {
+        flushIfPending(ctx);
+        ctx.fireExceptionCaught(cause);
+    }
+
+    @Override
+    public void disconnect(ChannelHandlerContext ctx, ChannelPromise promise) throws Exception {
+        flushIfPending(ctx);
+        ctx.disconnect(promise);
+    }
+
+    @Override
+    public void close(ChannelHandlerContext ctx, ChannelPromise promise) throws Exception {
+        flushIfPending(ctx);
+        ctx.close(promise);
+    }
+
+    private void flushIfPending(ChannelHandlerContext ctx) {
+        if (flushPending) {
+            flushNow(ctx);
+        }
+    }
+
+    private void flushNow(ChannelHandlerContext ctx) {
+        if (pendingWrites > 0) {
+            writesPerFlushLogger.registerSuccessfulValue(pendingWrites);
+        }
+        pendingWrites = 0;
+        pendingBytes = 0;
+        flushPending = false;
+        ctx.flush();
+    }
+}
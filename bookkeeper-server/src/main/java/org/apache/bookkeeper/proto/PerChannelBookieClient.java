@@ -72,13 +72,11 @@ import java.util.Collections;
 import java.util.EnumSet;
 import java.util.List;
 import java.util.Map;
-import java.util.Optional;
 import java.util.Queue;
 import java.util.Set;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicLong;
 import java.util.concurrent.locks.ReentrantReadWriteLock;
-import java.util.function.BiPredicate;
 
 import javax.net.ssl.SSLHandshakeException;
 import javax.net.ssl.SSLPeerUnverifiedException;
@@ -93,6 +91,8 @@ import org.apache.bookkeeper.common.util.MdcUtils;
 import org.apache.bookkeeper.common.util.OrderedExecutor;
 import org.apache.bookkeeper.conf.ClientConfiguration;
 import org.apache.bookkeeper.net.BookieSocketAddress;
+import org.apache.bookkeeper.proto.BookkeeperInternalCallbacks.BatchedReadEntryCallback;
+import org.apache.bookkeeper.proto.BookkeeperInternalCallbacks.BatchedWriteCallback;
 import org.apache.bookkeeper.proto.BookkeeperInternalCallbacks.ForceLedgerCallback;
 import org.apache.bookkeeper.proto.BookkeeperInternalCallbacks.GenericCallback;
 import org.apache.bookkeeper.proto.BookkeeperInternalCallbacks.GetBookieInfoCallback;
@@ -106,6 +106,10 @@ import org.apache.bookkeeper.proto.BookkeeperInternalCallbacks.WriteLacCallback;
 import org.apache.bookkeeper.proto.BookkeeperProtocol.AddRequest;
 import org.apache.bookkeeper.proto.BookkeeperProtocol.AddResponse;
 import org.apache.bookkeeper.proto.BookkeeperProtocol.BKPacketHeader;
+import org.apache.bookkeeper.proto.BookkeeperProtocol.BatchAddRequest;
+import org.apache.bookkeeper.proto.BookkeeperProtocol.BatchAddResponse;
+import org.apache.bookkeeper.proto.BookkeeperProtocol.BatchReadRequest;
+import org.apache.bookkeeper.proto.BookkeeperProtocol.BatchReadResponse;
 import org.apache.bookkeeper.proto.BookkeeperProtocol.ForceLedgerRequest;
 import org.apache.bookkeeper.proto.BookkeeperProtocol.ForceLedgerResponse;
 import org.apache.bookkeeper.proto.BookkeeperProtocol.GetBookieInfoRequest;
@@ -136,8 +140,6 @@ import org.apache.bookkeeper.util.ByteBufList;
 import org.apache.bookkeeper.util.MathUtils;
 import org.apache.bookkeeper.util.SafeRunnable;
 import org.apache.bookkeeper.util.StringUtils;
-import org.apache.bookkeeper.util.collections.ConcurrentOpenHashMap;
-import org.apache.bookkeeper.util.collections.SynchronizedHashMultiMap;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.slf4j.MDC;
@@ -165,7 +167,6 @@ public class PerChannelBookieClient extends ChannelInboundHandlerAdapter {
                         BKException.Code.DuplicateEntryIdException,
                         BKException.Code.WriteOnReadOnlyBookieException));
     private static final int DEFAULT_HIGH_PRIORITY_VALUE = 100; // We may add finer grained priority later.
-    private static final AtomicLong txnIdGenerator = new AtomicLong(0);
 
     final BookieSocketAddress addr;
     final EventLoopGroup eventLoopGroup;
@@ -177,13 +178,9 @@ public class PerChannelBookieClient extends ChannelInboundHandlerAdapter {
     final int getBookieInfoTimeout;
     final int startTLSTimeout;
 
-    private final ConcurrentOpenHashMap<CompletionKey, CompletionValue> completionObjects =
-        new ConcurrentOpenHashMap<CompletionKey, CompletionValue>();
-
-    // Map that hold duplicated read requests. The idea is to only use this map (synchronized) when there is a duplicate
-    // read request for the same ledgerId/entryId
-    private final SynchronizedHashMultiMap<CompletionKey, CompletionValue> completionObjectsV2Conflicts =
-        new SynchronizedHashMultiMap<>();
+    // The transaction ids are per channel, so that the requests of a channel have dense ids
+    private final AtomicLong txnIdGenerator = new AtomicLong(0);
+    private final CompletionTracker completions;
 
     private final StatsLogger statsLogger;
     @StatsDoc(
@@ -196,11 +193,47 @@ public class PerChannelBookieClient extends ChannelInboundHandlerAdapter {
         help = "timeout stats of read entries requests"
     )
     private final OpStatsLogger readTimeoutOpLogger;
+    @StatsDoc(
+        name = BookKeeperClientStats.CHANNEL_BATCH_READ_OP,
+        help = "channel stats of batched read entries requests"
+    )
+    private final OpStatsLogger batchReadEntryOpLogger;
+    @StatsDoc(
+        name = BookKeeperClientStats.CHANNEL_TIMEOUT_BATCH_READ,
+        help = "timeout stats of batched read entries requests"
+    )
+    private final OpStatsLogger batchReadTimeoutOpLogger;
+    @StatsDoc(
+        name = BookKeeperClientStats.CHANNEL_BATCH_READ_ENTRIES,
+        help = "the distribution of number of entries returned by batched read entries requests"
+    )
+    private final OpStatsLogger batchReadEntriesCountLogger;
     @StatsDoc(
         name = BookKeeperClientStats.CHANNEL_ADD_OP,
         help = "channel stats of add entries requests"
     )
     private final OpStatsLogger addEntryOpLogger;
+    @StatsDoc(
+        name = BookKeeperClientStats.CHANNEL_BATCH_ADD_OP,
+        help = "channel stats of batched add entries requests"
+    )
+    private final OpStatsLogger batchAddEntryOpLogger;
+    @StatsDoc(
+        name = BookKeeperClientStats.CHANNEL_TIMEOUT_BATCH_ADD,
+        help = "timeout stats of batched add entries requests"
+    )
+    private final OpStatsLogger batchAddTimeoutOpLogger;
+    @StatsDoc(
+        name = BookKeeperClientStats.CHANNEL_BATCH_ADD_ENTRIES,
+        help = "the distribution of number of entries sent by batched add entries requests"
+    )
+    private final OpStatsLogger batchAddEntriesCountLogger;
+    @StatsDoc(
+        name = BookKeeperClientStats.CHANNEL_REQUESTS_PER_FLUSH,
+        help = "the distribution of number of requests sent by each flush of the channel,"
+            + " when the flushes are consolidated"
+    )
+    private final OpStatsLogger requestsPerFlushLogger;
     @StatsDoc(
         name = BookKeeperClientStats.CHANNEL_WRITE_LAC_OP,
         help = "channel stats of write_lac requests"
@@ -376,6 +409,8 @@ public class PerChannelBookieClient extends ChannelInboundHandlerAdapter {
         this.state = ConnectionState.DISCONNECTED;
         this.addEntryTimeoutNanos = TimeUnit.SECONDS.toNanos(conf.getAddEntryTimeout());
         this.readEntryTimeoutNanos = TimeUnit.SECONDS.toNanos(conf.getReadEntryTimeout());
+        this.completions = new CompletionTracker(txnIdGenerator::get,
+                CompletionTracker.getMinTimeoutNanos(addEntryTimeoutNanos, readEntryTimeoutNanos));
         this.getBookieInfoTimeout = conf.getBookieInfoTimeout();
         this.startTLSTimeout = conf.getStartTLSTimeout();
         this.useV2WireProtocol = conf.getUseV2WireProtocol();
@@ -400,7 +435,14 @@ public class PerChannelBookieClient extends ChannelInboundHandlerAdapter {
         getListOfEntriesOfLedgerCompletionOpLogger = statsLogger
                 .getOpStatsLogger(BookKeeperClientStats.GET_LIST_OF_ENTRIES_OF_LEDGER_OP);
         readTimeoutOpLogger = statsLogger.getOpStatsLogger(BookKeeperClientStats.CHANNEL_TIMEOUT_READ);
+        batchReadEntryOpLogger = statsLogger.getOpStatsLogger(BookKeeperClientStats.CHANNEL_BATCH_READ_OP);
+        batchReadTimeoutOpLogger = statsLogger.getOpStatsLogger(BookKeeperClientStats.CHANNEL_TIMEOUT_BATCH_READ);
+        batchReadEntriesCountLogger = statsLogger.getOpStatsLogger(BookKeeperClientStats.CHANNEL_BATCH_READ_ENTRIES);
         addTimeoutOpLogger = statsLogger.getOpStatsLogger(BookKeeperClientStats.CHANNEL_TIMEOUT_ADD);
+        batchAddEntryOpLogger = statsLogger.getOpStatsLogger(BookKeeperClientStats.CHANNEL_BATCH_ADD_OP);
+        batchAddTimeoutOpLogger = statsLogger.getOpStatsLogger(BookKeeperClientStats.CHANNEL_TIMEOUT_BATCH_ADD);
+        batchAddEntriesCountLogger = statsLogger.getOpStatsLogger(BookKeeperClientStats.CHANNEL_BATCH_ADD_ENTRIES);
+        requestsPerFlushLogger = statsLogger.getOpStatsLogger(BookKeeperClientStats.CHANNEL_REQUESTS_PER_FLUSH);
         writeLacTimeoutOpLogger = statsLogger.getOpStatsLogger(BookKeeperClientStats.CHANNEL_TIMEOUT_WRITE_LAC);
         forceLedgerTimeoutOpLogger = statsLogger.getOpStatsLogger(BookKeeperClientStats.CHANNEL_TIMEOUT_FORCE);
         readLacTimeoutOpLogger = statsLogger.getOpStatsLogger(BookKeeperClientStats.CHANNEL_TIMEOUT_READ_LAC);
@@ -510,7 +552,7 @@ public class PerChannelBookieClient extends ChannelInboundHandlerAdapter {
     }
 
     protected long getNumPendingCompletionRequests() {
-        return completionObjects.size();
+        return completions.size();
     }
 
     protected ChannelFuture connect() {
@@ -562,6 +604,11 @@ public class PerChannelBookieClient extends ChannelInboundHandlerAdapter {
                 pipeline.addLast("lengthbasedframedecoder",
                         new LengthFieldBasedFrameDecoder(maxFrameSize, 0, 4, 0, 4));
                 pipeline.addLast("lengthprepender", new LengthFieldPrepender(4));
+                if (conf.getClientFlushConsolidationEnabled()) {
+                    pipeline.addLast(ConsolidatingFlushHandler.NAME, new ConsolidatingFlushHandler(
+                            conf.getClientFlushConsolidationMaxWrites(), conf.getClientFlushConsolidationMaxBytes(),
+                            requestsPerFlushLogger));
+                }
                 pipeline.addLast("bookieProtoEncoder", new BookieProtoEncoding.RequestEncoder(extRegistry));
                 pipeline.addLast(
                     "bookieProtoDecoder",
@@ -651,12 +698,9 @@ public class PerChannelBookieClient extends ChannelInboundHandlerAdapter {
     void writeLac(final long ledgerId, final byte[] masterKey, final long lac, ByteBufList toSend, WriteLacCallback cb,
             Object ctx) {
         final long txnId = getTxnId();
-        final CompletionKey completionKey = new V3CompletionKey(txnId,
-                                                                OperationType.WRITE_LAC);
         // writeLac is mostly like addEntry hence uses addEntryTimeout
-        completionObjects.put(completionKey,
-                              new WriteLacCompletion(completionKey, cb,
-                                                     ctx, lac));
+        completions.put(txnId, OperationType.WRITE_LAC,
+                        new WriteLacCompletion(cb, ctx, lac));
 
         // Build the request
         BKPacketHeader.Builder headerBuilder = BKPacketHeader.newBuilder()
@@ -681,7 +725,7 @@ public class PerChannelBookieClient extends ChannelInboundHandlerAdapter {
                 .setHeader(headerBuilder)
                 .setWriteLacRequest(writeLacBuilder)
                 .build();
-        writeAndFlush(channel, completionKey, writeLacRequest);
+        writeAndFlush(channel, txnId, writeLacRequest);
     }
 
     void forceLedger(final long ledgerId, ForceLedgerCallback cb, Object ctx) {
@@ -693,12 +737,9 @@ public class PerChannelBookieClient extends ChannelInboundHandlerAdapter {
                 return;
         }
         final long txnId = getTxnId();
-        final CompletionKey completionKey = new V3CompletionKey(txnId,
-                                                                OperationType.FORCE_LEDGER);
         // force is mostly like addEntry hence uses addEntryTimeout
-        completionObjects.put(completionKey,
-                              new ForceLedgerCompletion(completionKey, cb,
-                                                     ctx, ledgerId));
+        completions.put(txnId, OperationType.FORCE_LEDGER,
+                        new ForceLedgerCompletion(cb, ctx, ledgerId));
 
         // Build the request
         BKPacketHeader.Builder headerBuilder = BKPacketHeader.newBuilder()
@@ -712,7 +753,7 @@ public class PerChannelBookieClient extends ChannelInboundHandlerAdapter {
                 .setHeader(headerBuilder)
                 .setForceLedgerRequest(writeLacBuilder)
                 .build();
-        writeAndFlush(channel, completionKey, forceLedgerRequest);
+        writeAndFlush(channel, txnId, forceLedgerRequest);
     }
 
     /**
@@ -739,7 +780,7 @@ public class PerChannelBookieClient extends ChannelInboundHandlerAdapter {
     void addEntry(final long ledgerId, byte[] masterKey, final long entryId, ByteBufList toSend, WriteCallback cb,
                   Object ctx, final int options, boolean allowFastFail, final EnumSet<WriteFlag> writeFlags) {
         Object request = null;
-        CompletionKey completionKey = null;
+        final long txnId = getTxnId();
         if (useV2WireProtocol) {
             if (writeFlags.contains(WriteFlag.DEFERRED_SYNC)) {
                 LOG.error("invalid writeflags {} for v2 protocol", writeFlags);
@@ -748,14 +789,10 @@ public class PerChannelBookieClient extends ChannelInboundHandlerAdapter {
                 });
                 return;
             }
-            completionKey = acquireV2Key(ledgerId, entryId, OperationType.ADD_ENTRY);
             request = BookieProtocol.AddRequest.create(
                     BookieProtocol.CURRENT_PROTOCOL_VERSION, ledgerId, entryId,
                     (short) options, masterKey, toSend);
         } else {
-            final long txnId = getTxnId();
-            completionKey = new V3CompletionKey(txnId, OperationType.ADD_ENTRY);
-
             // Build the request and calculate the total size to be included in the packet.
             BKPacketHeader.Builder headerBuilder = BKPacketHeader.newBuilder()
                     .setVersion(ProtocolVersion.VERSION_THREE)
@@ -765,21 +802,11 @@ public class PerChannelBookieClient extends ChannelInboundHandlerAdapter {
                 headerBuilder.setPriority(DEFAULT_HIGH_PRIORITY_VALUE);
             }
 
-            ByteString body = null;
-            if (toSend.hasArray()) {
-                body = UnsafeByteOperations.unsafeWrap(toSend.array(), toSend.arrayOffset(), toSend.readableBytes());
-            } else {
-                for (int i = 0; i < toSend.size(); i++) {
-                    ByteString piece = UnsafeByteOperations.unsafeWrap(toSend.getBuffer(i).nioBuffer());
-                    // use ByteString.concat to avoid byte[] allocation when toSend has multiple ByteBufs
-                    body = (body == null) ? piece : body.concat(piece);
-                }
-            }
             AddRequest.Builder addBuilder = AddRequest.newBuilder()
                     .setLedgerId(ledgerId)
                     .setEntryId(entryId)
                     .setMasterKey(UnsafeByteOperations.unsafeWrap(masterKey))
-                    .setBody(body);
+                    .setBody(toByteString(toSend));
 
             if (((short) options & BookieProtocol.FLAG_RECOVERY_ADD) == BookieProtocol.FLAG_RECOVERY_ADD) {
                 addBuilder.setFlag(AddRequest.Flag.RECOVERY_ADD);
@@ -796,33 +823,28 @@ public class PerChannelBookieClient extends ChannelInboundHandlerAdapter {
                     .build();
         }
 
-        putCompletionKeyValue(completionKey,
-                              acquireAddCompletion(completionKey,
-                                                   cb, ctx, ledgerId, entryId));
+        putCompletion(txnId, ledgerId, entryId, OperationType.ADD_ENTRY,
+                      acquireAddCompletion(cb, ctx, ledgerId, entryId));
         final Channel c = channel;
         if (c == null) {
             // usually checked in writeAndFlush, but we have extra check
             // because we need to release toSend.
-            errorOut(completionKey);
+            errorOut(txnId);
             toSend.release();
             return;
         } else {
             // addEntry times out on backpressure
-            writeAndFlush(c, completionKey, request, allowFastFail);
+            writeAndFlush(c, txnId, request, allowFastFail);
         }
     }
 
     public void readLac(final long ledgerId, ReadLacCallback cb, Object ctx) {
         Object request = null;
-        CompletionKey completionKey = null;
+        final long txnId = getTxnId();
         if (useV2WireProtocol) {
             request = new BookieProtocol.ReadRequest(BookieProtocol.CURRENT_PROTOCOL_VERSION,
                                                      ledgerId, 0, (short) 0, null);
-            completionKey = acquireV2Key(ledgerId, 0, OperationType.READ_LAC);
         } else {
-            final long txnId = getTxnId();
-            completionKey = new V3CompletionKey(txnId, OperationType.READ_LAC);
-
             // Build the request and calculate the total size to be included in the packet.
             BKPacketHeader.Builder headerBuilder = BKPacketHeader.newBuilder()
                     .setVersion(ProtocolVersion.VERSION_THREE)
@@ -835,16 +857,15 @@ public class PerChannelBookieClient extends ChannelInboundHandlerAdapter {
                     .setReadLacRequest(readLacBuilder)
                     .build();
         }
-        putCompletionKeyValue(completionKey,
-                              new ReadLacCompletion(completionKey, cb,
-                                                    ctx, ledgerId));
-        writeAndFlush(channel, completionKey, request);
+        putCompletion(txnId, ledgerId, 0, OperationType.READ_LAC,
+                      new ReadLacCompletion(cb, ctx, ledgerId));
+        writeAndFlush(channel, txnId, request);
     }
 
     public void getListOfEntriesOfLedger(final long ledgerId, GetListOfEntriesOfLedgerCallback cb) {
         final long txnId = getTxnId();
-        final CompletionKey completionKey = new V3CompletionKey(txnId, OperationType.GET_LIST_OF_ENTRIES_OF_LEDGER);
-        completionObjects.put(completionKey, new GetListOfEntriesOfLedgerCompletion(completionKey, cb, ledgerId));
+        completions.put(txnId, OperationType.GET_LIST_OF_ENTRIES_OF_LEDGER,
+                        new GetListOfEntriesOfLedgerCompletion(cb, ledgerId));
 
         // Build the request.
         BKPacketHeader.Builder headerBuilder = BKPacketHeader.newBuilder().setVersion(ProtocolVersion.VERSION_THREE)
@@ -856,7 +877,7 @@ public class PerChannelBookieClient extends ChannelInboundHandlerAdapter {
         final Request getListOfEntriesOfLedgerRequest = Request.newBuilder().setHeader(headerBuilder)
                 .setGetListOfEntriesOfLedgerRequest(getListOfEntriesOfLedgerRequestBuilder).build();
 
-        writeAndFlush(channel, completionKey, getListOfEntriesOfLedgerRequest);
+        writeAndFlush(channel, txnId, getListOfEntriesOfLedgerRequest);
     }
 
     /**
@@ -898,15 +919,11 @@ public class PerChannelBookieClient extends ChannelInboundHandlerAdapter {
                                    byte[] masterKey,
                                    boolean allowFastFail) {
         Object request = null;
-        CompletionKey completionKey = null;
+        final long txnId = getTxnId();
         if (useV2WireProtocol) {
             request = new BookieProtocol.ReadRequest(BookieProtocol.CURRENT_PROTOCOL_VERSION,
                     ledgerId, entryId, (short) flags, masterKey);
-            completionKey = acquireV2Key(ledgerId, entryId, OperationType.READ_ENTRY);
         } else {
-            final long txnId = getTxnId();
-            completionKey = new V3CompletionKey(txnId, OperationType.READ_ENTRY);
-
             // Build the request and calculate the total size to be included in the packet.
             BKPacketHeader.Builder headerBuilder = BKPacketHeader.newBuilder()
                     .setVersion(ProtocolVersion.VERSION_THREE)
@@ -961,18 +978,145 @@ public class PerChannelBookieClient extends ChannelInboundHandlerAdapter {
                     .build();
         }
 
-        ReadCompletion readCompletion = new ReadCompletion(completionKey, cb, ctx, ledgerId, entryId);
-        putCompletionKeyValue(completionKey, readCompletion);
+        ReadCompletion readCompletion = new ReadCompletion(cb, ctx, ledgerId, entryId);
+        putCompletion(txnId, ledgerId, entryId, OperationType.READ_ENTRY, readCompletion);
+
+        writeAndFlush(channel, txnId, request, allowFastFail);
+    }
+    private static ByteString toByteString(ByteBufList toSend) {
+        ByteString body = null;
+        if (toSend.hasArray()) {
+            body = UnsafeByteOperations.unsafeWrap(toSend.array(), toSend.arrayOffset(), toSend.readableBytes());
+        } else {
+            for (int i = 0; i < toSend.size(); i++) {
+                ByteString piece = UnsafeByteOperations.unsafeWrap(toSend.getBuffer(i).nioBuffer());
+                // use ByteString.concat to avoid byte[] allocation when toSend has multiple ByteBufs
+                body = (body == null) ? piece : body.concat(piece);
+            }
+        }
+        return body;
+    }
+
+    /**
+     * Batched Adds.
+     *
+     * <p>Add the consecutive entries starting from <i>firstEntryId</i>, in a single request.
+     * This method should be called only after connection has been checked for
+     * {@link #connectIfNeededAndDoOp(GenericCallback)}.
+     */
+    void addEntries(final long ledgerId, byte[] masterKey, final long firstEntryId, List<ByteBufList> toSend,
+                    BatchedWriteCallback cb, Object ctx, final int options, boolean allowFastFail,
+                    final EnumSet<WriteFlag> writeFlags) {
+        Object request = null;
+        final long txnId = getTxnId();
+        if (useV2WireProtocol) {
+            if (writeFlags.contains(WriteFlag.DEFERRED_SYNC)) {
+                LOG.error("invalid writeflags {} for v2 protocol", writeFlags);
+                executor.executeOrdered(ledgerId, () -> {
+                    cb.writeEntriesComplete(BKException.Code.IllegalOpException, ledgerId, firstEntryId,
+                                            toSend.size(), addr, ctx);
+                });
+                return;
+            }
+            request = new BookieProtocol.BatchAddRequest(
+                    BookieProtocol.CURRENT_PROTOCOL_VERSION, ledgerId, firstEntryId,
+                    (short) options, masterKey, toSend);
+        } else {
+            BKPacketHeader.Builder headerBuilder = BKPacketHeader.newBuilder()
+                    .setVersion(ProtocolVersion.VERSION_THREE)
+                    .setOperation(OperationType.RANGE_ADD_ENTRY)
+                    .setTxnId(txnId);
+            if (((short) options & BookieProtocol.FLAG_HIGH_PRIORITY) == BookieProtocol.FLAG_HIGH_PRIORITY) {
+                headerBuilder.setPriority(DEFAULT_HIGH_PRIORITY_VALUE);
+            }
+
+            BatchAddRequest.Builder batchAddBuilder = BatchAddRequest.newBuilder()
+                    .setLedgerId(ledgerId)
+                    .setFirstEntryId(firstEntryId)
+                    .setMasterKey(UnsafeByteOperations.unsafeWrap(masterKey));
+            for (ByteBufList entry : toSend) {
+                batchAddBuilder.addBody(toByteString(entry));
+            }
+
+            if (((short) options & BookieProtocol.FLAG_RECOVERY_ADD) == BookieProtocol.FLAG_RECOVERY_ADD) {
+                batchAddBuilder.setFlag(AddRequest.Flag.RECOVERY_ADD);
+            }
+
+            if (!writeFlags.isEmpty()) {
+                batchAddBuilder.setWriteFlags(WriteFlag.getWriteFlagsValue(writeFlags));
+            }
+
+            request = withRequestContext(Request.newBuilder())
+                    .setHeader(headerBuilder)
+                    .setBatchAddRequest(batchAddBuilder)
+                    .build();
+        }
+
+        putCompletion(txnId, ledgerId, firstEntryId, OperationType.RANGE_ADD_ENTRY,
+                      new BatchedAddCompletion(cb, ctx, ledgerId, firstEntryId, toSend.size()));
+        final Channel c = channel;
+        if (c == null) {
+            errorOut(txnId);
+            if (request instanceof BookieProtocol.Request) {
+                ((BookieProtocol.Request) request).recycle();
+            }
+            return;
+        } else {
+            // addEntries times out on backpressure
+            writeAndFlush(c, txnId, request, allowFastFail);
+        }
+    }
 
-        writeAndFlush(channel, completionKey, request, allowFastFail);
+    /**
+     * Batched Reads.
+     *
+     * <p>Read up to <i>maxCount</i> consecutive entries starting from <i>firstEntryId</i>, in a single
+     * request. The bookie stops before the total size of the entries would exceed <i>maxSize</i>.
+     */
+    public void batchReadEntries(final long ledgerId,
+                                 final long firstEntryId,
+                                 final int maxCount,
+                                 final long maxSize,
+                                 BatchedReadEntryCallback cb,
+                                 Object ctx,
+                                 int flags,
+                                 boolean allowFastFail) {
+        Object request = null;
+        final long txnId = getTxnId();
+        if (useV2WireProtocol) {
+            request = new BookieProtocol.BatchReadRequest(BookieProtocol.CURRENT_PROTOCOL_VERSION,
+                    ledgerId, firstEntryId, maxCount, maxSize, (short) flags);
+        } else {
+            BKPacketHeader.Builder headerBuilder = BKPacketHeader.newBuilder()
+                    .setVersion(ProtocolVersion.VERSION_THREE)
+                    .setOperation(OperationType.RANGE_READ_ENTRY)
+                    .setTxnId(txnId);
+            if (((short) flags & BookieProtocol.FLAG_HIGH_PRIORITY) == BookieProtocol.FLAG_HIGH_PRIORITY) {
+                headerBuilder.setPriority(DEFAULT_HIGH_PRIORITY_VALUE);
+            }
+
+            BatchReadRequest.Builder batchReadBuilder = BatchReadRequest.newBuilder()
+                    .setLedgerId(ledgerId)
+                    .setFirstEntryId(firstEntryId)
+                    .setMaxCount(maxCount)
+                    .setMaxSize(maxSize);
+
+            request = withRequestContext(Request.newBuilder())
+                    .setHeader(headerBuilder)
+                    .setBatchReadRequest(batchReadBuilder)
+                    .build();
+        }
+
+        BatchedReadCompletion batchedReadCompletion = new BatchedReadCompletion(cb, ctx, ledgerId, firstEntryId);
+        putCompletion(txnId, ledgerId, firstEntryId, OperationType.RANGE_READ_ENTRY, batchedReadCompletion);
+
+        writeAndFlush(channel, txnId, request, allowFastFail);
     }
 
     public void getBookieInfo(final long requested, GetBookieInfoCallback cb, Object ctx) {
         final long txnId = getTxnId();
-        final CompletionKey completionKey = new V3CompletionKey(txnId, OperationType.GET_BOOKIE_INFO);
-        completionObjects.put(completionKey,
-                              new GetBookieInfoCompletion(
-                                      completionKey, cb, ctx));
+        completions.put(txnId, OperationType.GET_BOOKIE_INFO,
+                        new GetBookieInfoCompletion(cb, ctx));
 
         // Build the request and calculate the total size to be included in the packet.
         BKPacketHeader.Builder headerBuilder = BKPacketHeader.newBuilder()
@@ -988,17 +1132,11 @@ public class PerChannelBookieClient extends ChannelInboundHandlerAdapter {
                 .setGetBookieInfoRequest(getBookieInfoBuilder)
                 .build();
 
-        writeAndFlush(channel, completionKey, getBookieInfoRequest);
+        writeAndFlush(channel, txnId, getBookieInfoRequest);
     }
 
-    private static final BiPredicate<CompletionKey, CompletionValue> timeoutCheck = (key, value) -> {
-        return value.maybeTimeout();
-    };
-
     public void checkTimeoutOnPendingOperations() {
-        int timedOutOperations = completionObjects.removeIf(timeoutCheck);
-
-        timedOutOperations += completionObjectsV2Conflicts.removeIf(timeoutCheck);
+        int timedOutOperations = completions.removeTimedOut(MathUtils.nowInNano(), CompletionValue::timeout);
 
         if (timedOutOperations > 0) {
             LOG.info("Timed-out {} operations to channel {} for {}",
@@ -1084,18 +1222,18 @@ public class PerChannelBookieClient extends ChannelInboundHandlerAdapter {
     }
 
     private void writeAndFlush(final Channel channel,
-                               final CompletionKey key,
+                               final long txnId,
                                final Object request) {
-        writeAndFlush(channel, key, request, false);
+        writeAndFlush(channel, txnId, request, false);
     }
 
     private void writeAndFlush(final Channel channel,
-                           final CompletionKey key,
+                           final long txnId,
                            final Object request,
                            final boolean allowFastFail) {
         if (channel == null) {
             LOG.warn("Operation {} failed: channel == null", StringUtils.requestToString(request));
-            errorOut(key);
+            errorOut(txnId);
             return;
         }
 
@@ -1109,7 +1247,7 @@ public class PerChannelBookieClient extends ChannelInboundHandlerAdapter {
             LOG.warn("Operation {} failed: TooManyRequestsException",
                     StringUtils.requestToString(request));
 
-            errorOut(key, BKException.Code.TooManyRequestsException);
+            errorOut(txnId, BKException.Code.TooManyRequestsException);
             return;
         }
 
@@ -1119,7 +1257,7 @@ public class PerChannelBookieClient extends ChannelInboundHandlerAdapter {
             ChannelPromise promise = channel.newPromise().addListener(future -> {
                 if (future.isSuccess()) {
                     nettyOpLogger.registerSuccessfulEvent(MathUtils.elapsedNanos(startTime), TimeUnit.NANOSECONDS);
-                    CompletionValue completion = completionObjects.get(key);
+                    CompletionValue completion = completions.get(txnId);
                     if (completion != null) {
                         completion.setOutstanding();
                     }
@@ -1131,33 +1269,27 @@ public class PerChannelBookieClient extends ChannelInboundHandlerAdapter {
             channel.writeAndFlush(request, promise);
         } catch (Throwable e) {
             LOG.warn("Operation {} failed", StringUtils.requestToString(request), e);
-            errorOut(key);
+            errorOut(txnId);
         }
     }
 
-    void errorOut(final CompletionKey key) {
+    void errorOut(final long txnId) {
         if (LOG.isDebugEnabled()) {
-            LOG.debug("Removing completion key: {}", key);
+            LOG.debug("Removing completion of txn: {}", txnId);
         }
-        CompletionValue completion = completionObjects.remove(key);
+        CompletionValue completion = completions.remove(txnId);
         if (completion != null) {
             completion.errorOut();
-        } else {
-            // If there's no completion object here, try in the multimap
-            completionObjectsV2Conflicts.removeAny(key).ifPresent(c -> c.errorOut());
         }
     }
 
-    void errorOut(final CompletionKey key, final int rc) {
+    void errorOut(final long txnId, final int rc) {
         if (LOG.isDebugEnabled()) {
-            LOG.debug("Removing completion key: {}", key);
+            LOG.debug("Removing completion of txn: {}", txnId);
         }
-        CompletionValue completion = completionObjects.remove(key);
+        CompletionValue completion = completions.remove(txnId);
         if (completion != null) {
             completion.errorOut(rc);
-        } else {
-            // If there's no completion object here, try in the multimap
-            completionObjectsV2Conflicts.removeAny(key).ifPresent(c -> c.errorOut(rc));
         }
     }
 
@@ -1186,14 +1318,7 @@ public class PerChannelBookieClient extends ChannelInboundHandlerAdapter {
      */
 
     void errorOutOutstandingEntries(int rc) {
-        Optional<CompletionKey> multikey = completionObjectsV2Conflicts.getAnyKey();
-        while (multikey.isPresent()) {
-            multikey.ifPresent(k -> errorOut(k, rc));
-            multikey = completionObjectsV2Conflicts.getAnyKey();
-        }
-        for (CompletionKey key : completionObjects.keys()) {
-            errorOut(key, rc);
-        }
+        completions.removeAll(completion -> completion.errorOut(rc));
     }
 
     void recordError() {
@@ -1311,9 +1436,7 @@ public class PerChannelBookieClient extends ChannelInboundHandlerAdapter {
         OperationType operationType = getOperationType(response.getOpCode());
         StatusCode status = getStatusCodeFromErrorCode(response.errorCode);
 
-        CompletionKey key = acquireV2Key(response.ledgerId, response.entryId, operationType);
-        CompletionValue completionValue = getCompletionValue(key);
-        key.release();
+        CompletionValue completionValue = completions.removeV2(response.ledgerId, response.entryId, operationType);
 
         if (null == completionValue) {
             // Unexpected response, so log it. The txnId should have been present.
@@ -1385,6 +1508,10 @@ public class PerChannelBookieClient extends ChannelInboundHandlerAdapter {
                 return  OperationType.ADD_ENTRY;
             case BookieProtocol.READENTRY:
                 return OperationType.READ_ENTRY;
+            case BookieProtocol.BATCH_READ_ENTRY:
+                return OperationType.RANGE_READ_ENTRY;
+            case BookieProtocol.BATCH_ADD_ENTRY:
+                return OperationType.RANGE_ADD_ENTRY;
             case BookieProtocol.AUTH:
                 return OperationType.AUTH;
             case BookieProtocol.READ_LAC:
@@ -1428,8 +1555,7 @@ public class PerChannelBookieClient extends ChannelInboundHandlerAdapter {
     private void readV3Response(final Response response) {
         final BKPacketHeader header = response.getHeader();
 
-        final CompletionKey key = newCompletionKey(header.getTxnId(), header.getOperation());
-        final CompletionValue completionValue = completionObjects.get(key);
+        final CompletionValue completionValue = completions.remove(header.getTxnId(), header.getOperation());
 
         if (null == completionValue) {
             // Unexpected response, so log it. The txnId should have been present.
@@ -1454,8 +1580,6 @@ public class PerChannelBookieClient extends ChannelInboundHandlerAdapter {
                 }
             });
         }
-
-        completionObjects.remove(key);
     }
 
     void initTLSHandshake() {
@@ -1541,6 +1665,13 @@ public class PerChannelBookieClient extends ChannelInboundHandlerAdapter {
 
     // visible for testing
     abstract class CompletionValue {
+        // Tracking state, managed by the CompletionTracker
+        volatile long txnId = CompletionTracker.NO_TXN_ID;
+        OperationType operationType;
+        boolean v2Tracked;
+        long v2LedgerId;
+        long v2EntryId;
+
         private final OpStatsLogger opLogger;
         private final OpStatsLogger timeoutOpLogger;
         private final String operationName;
@@ -1582,13 +1713,8 @@ public class PerChannelBookieClient extends ChannelInboundHandlerAdapter {
             }
         }
 
-        boolean maybeTimeout() {
-            if (MathUtils.elapsedNanos(startTime) >= readEntryTimeoutNanos) {
-                timeout();
-                return true;
-            } else {
-                return false;
-            }
+        boolean isTimedOut(long nowNanos) {
+            return readEntryTimeoutNanos > 0 && nowNanos - startTime >= readEntryTimeoutNanos;
         }
 
         void timeout() {
@@ -1660,8 +1786,7 @@ public class PerChannelBookieClient extends ChannelInboundHandlerAdapter {
     class WriteLacCompletion extends CompletionValue {
         final WriteLacCallback cb;
 
-        public WriteLacCompletion(final CompletionKey key,
-                                  final WriteLacCallback originalCallback,
+        public WriteLacCompletion(final WriteLacCallback originalCallback,
                                   final Object originalCtx,
                                   final long ledgerId) {
             super("WriteLAC",
@@ -1675,7 +1800,6 @@ public class PerChannelBookieClient extends ChannelInboundHandlerAdapter {
                         logOpResult(rc);
                         originalCallback.writeLacComplete(rc, ledgerId,
                                                           addr, originalCtx);
-                        key.release();
                     }
                 };
         }
@@ -1709,8 +1833,7 @@ public class PerChannelBookieClient extends ChannelInboundHandlerAdapter {
     class ForceLedgerCompletion extends CompletionValue {
         final ForceLedgerCallback cb;
 
-        public ForceLedgerCompletion(final CompletionKey key,
-                                  final ForceLedgerCallback originalCallback,
+        public ForceLedgerCompletion(final ForceLedgerCallback originalCallback,
                                   final Object originalCtx,
                                   final long ledgerId) {
             super("ForceLedger",
@@ -1724,7 +1847,6 @@ public class PerChannelBookieClient extends ChannelInboundHandlerAdapter {
                         logOpResult(rc);
                         originalCallback.forceLedgerComplete(rc, ledgerId,
                                                           addr, originalCtx);
-                        key.release();
                     }
                 };
         }
@@ -1759,8 +1881,7 @@ public class PerChannelBookieClient extends ChannelInboundHandlerAdapter {
     class ReadLacCompletion extends CompletionValue {
         final ReadLacCallback cb;
 
-        public ReadLacCompletion(final CompletionKey key,
-                                 ReadLacCallback originalCallback,
+        public ReadLacCompletion(ReadLacCallback originalCallback,
                                  final Object ctx, final long ledgerId) {
             super("ReadLAC", ctx, ledgerId, BookieProtocol.LAST_ADD_CONFIRMED,
                   readLacOpLogger, readLacTimeoutOpLogger);
@@ -1773,7 +1894,6 @@ public class PerChannelBookieClient extends ChannelInboundHandlerAdapter {
                         logOpResult(rc);
                         originalCallback.readLacComplete(
                                 rc, ledgerId, lacBuffer, lastEntryBuffer, ctx);
-                        key.release();
                     }
                 };
         }
@@ -1819,8 +1939,7 @@ public class PerChannelBookieClient extends ChannelInboundHandlerAdapter {
     class ReadCompletion extends CompletionValue {
         final ReadEntryCallback cb;
 
-        public ReadCompletion(final CompletionKey key,
-                              final ReadEntryCallback originalCallback,
+        public ReadCompletion(final ReadEntryCallback originalCallback,
                               final Object originalCtx,
                               long ledgerId, final long entryId) {
             super("Read", originalCtx, ledgerId, entryId,
@@ -1835,7 +1954,6 @@ public class PerChannelBookieClient extends ChannelInboundHandlerAdapter {
                         originalCallback.readEntryComplete(rc,
                                                            ledgerId, entryId,
                                                            buffer, originalCtx);
-                        key.release();
                     }
                 };
         }
@@ -1917,17 +2035,204 @@ public class PerChannelBookieClient extends ChannelInboundHandlerAdapter {
         }
     }
 
+    // visible for testing
+    class BatchedReadCompletion extends CompletionValue {
+        final BatchedReadEntryCallback cb;
+
+        public BatchedReadCompletion(final BatchedReadEntryCallback originalCallback,
+                                     final Object originalCtx,
+                                     long ledgerId, final long firstEntryId) {
+            super("BatchedRead", originalCtx, ledgerId, firstEntryId,
+                  batchReadEntryOpLogger, batchReadTimeoutOpLogger);
+
+            this.cb = new BatchedReadEntryCallback() {
+                    @Override
+                    public void readEntriesComplete(int rc, long ledgerId,
+                                                    long firstEntryId, List<ByteBuf> entries,
+                                                    Object ctx) {
+                        logOpResult(rc);
+                        if (rc == BKException.Code.OK) {
+                            batchReadEntriesCountLogger.registerSuccessfulValue(entries.size());
+                        }
+                        originalCallback.readEntriesComplete(rc,
+                                                             ledgerId, firstEntryId,
+                                                             entries, originalCtx);
+                    }
+                };
+        }
+
+        @Override
+        public void errorOut() {
+            errorOut(BKException.Code.BookieHandleNotAvailableException);
+        }
+
+        @Override
+        public void errorOut(final int rc) {
+            errorOutAndRunCallback(
+                    () -> cb.readEntriesComplete(rc, ledgerId, entryId,
+                                                 Collections.emptyList(), ctx));
+        }
+
+        @Override
+        public void setOutstanding() {
+            readEntryOutstanding.inc();
+        }
+
+        @Override
+        public void handleV2Response(long ledgerId, long entryId,
+                                     StatusCode status,
+                                     BookieProtocol.Response response) {
+            readEntryOutstanding.dec();
+            if (!(response instanceof BookieProtocol.BatchReadResponse)) {
+                return;
+            }
+            BookieProtocol.BatchReadResponse batchReadResponse = (BookieProtocol.BatchReadResponse) response;
+            handleBatchReadResponse(ledgerId, entryId, status, batchReadResponse.getEntries());
+        }
+
+        @Override
+        public void handleV3Response(BookkeeperProtocol.Response response) {
+            readEntryOutstanding.dec();
+            if (!response.hasBatchReadResponse()) {
+                // Bookies that do not know about batched reads reject the request without a
+                // batch read response; report it as an unsupported operation so that the
+                // caller can fall back to single entry reads.
+                if (LOG.isDebugEnabled()) {
+                    logResponse(response.getStatus(), "ledger", ledgerId, "firstEntry", entryId);
+                }
+                int rc = response.getStatus() == StatusCode.EBADREQ
+                        ? BKException.Code.IllegalOpException
+                        : convertStatus(response.getStatus(), BKException.Code.ReadException);
+                cb.readEntriesComplete(rc, ledgerId, entryId, Collections.emptyList(), ctx);
+                return;
+            }
+            BatchReadResponse batchReadResponse = response.getBatchReadResponse();
+            StatusCode status = response.getStatus() == StatusCode.EOK
+                ? batchReadResponse.getStatus() : response.getStatus();
+            List<ByteBuf> entries = new ArrayList<>(batchReadResponse.getBodyCount());
+            for (ByteString body : batchReadResponse.getBodyList()) {
+                entries.add(Unpooled.wrappedBuffer(body.asReadOnlyByteBuffer()));
+            }
+            handleBatchReadResponse(batchReadResponse.getLedgerId(),
+                                    batchReadResponse.getFirstEntryId(),
+                                    status, entries);
+        }
+
+        private void handleBatchReadResponse(long ledgerId,
+                                             long firstEntryId,
+                                             StatusCode status,
+                                             List<ByteBuf> entries) {
+            if (LOG.isDebugEnabled()) {
+                logResponse(status, "ledger", ledgerId, "firstEntry", firstEntryId, "entries", entries.size());
+            }
+
+            int rc = convertStatus(status, BKException.Code.ReadException);
+            if (rc == BKException.Code.OK && entries.isEmpty()) {
+                rc = BKException.Code.ReadException;
+            }
+            cb.readEntriesComplete(rc, ledgerId, firstEntryId,
+                                   rc == BKException.Code.OK ? entries : Collections.emptyList(), ctx);
+        }
+    }
+
+    // visible for testing
+    class BatchedAddCompletion extends CompletionValue {
+        final BatchedWriteCallback cb;
+        final int count;
+
+        public BatchedAddCompletion(final BatchedWriteCallback originalCallback,
+                                    final Object originalCtx,
+                                    long ledgerId, final long firstEntryId,
+                                    final int count) {
+            super("BatchedAdd", originalCtx, ledgerId, firstEntryId,
+                  batchAddEntryOpLogger, batchAddTimeoutOpLogger);
+            this.count = count;
+
+            this.cb = new BatchedWriteCallback() {
+                    @Override
+                    public void writeEntriesComplete(int rc, long ledgerId, long firstEntryId, int count,
+                                                     BookieSocketAddress addr, Object ctx) {
+                        logOpResult(rc);
+                        if (rc == BKException.Code.OK) {
+                            batchAddEntriesCountLogger.registerSuccessfulValue(count);
+                        }
+                        originalCallback.writeEntriesComplete(rc, ledgerId, firstEntryId, count,
+                                                              addr, originalCtx);
+                    }
+                };
+        }
+
+        @Override
+        boolean isTimedOut(long nowNanos) {
+            return addEntryTimeoutNanos > 0 && nowNanos - startTime >= addEntryTimeoutNanos;
+        }
+
+        @Override
+        public void errorOut() {
+            errorOut(BKException.Code.BookieHandleNotAvailableException);
+        }
+
+        @Override
+        public void errorOut(final int rc) {
+            errorOutAndRunCallback(
+                    () -> cb.writeEntriesComplete(rc, ledgerId, entryId, count, addr, ctx));
+        }
+
+        @Override
+        public void setOutstanding() {
+            addEntryOutstanding.inc();
+        }
+
+        @Override
+        public void handleV2Response(long ledgerId, long entryId,
+                                     StatusCode status,
+                                     BookieProtocol.Response response) {
+            addEntryOutstanding.dec();
+            handleResponse(ledgerId, entryId, status);
+        }
+
+        @Override
+        public void handleV3Response(BookkeeperProtocol.Response response) {
+            addEntryOutstanding.dec();
+            if (!response.hasBatchAddResponse()) {
+                // Bookies that do not know about batched adds reject the request without a
+                // batch add response; report it as an unsupported operation so that the
+                // caller can fall back to single entry adds.
+                if (LOG.isDebugEnabled()) {
+                    logResponse(response.getStatus(), "ledger", ledgerId, "firstEntry", entryId);
+                }
+                int rc = response.getStatus() == StatusCode.EBADREQ
+                        ? BKException.Code.IllegalOpException
+                        : convertStatus(response.getStatus(), BKException.Code.WriteException);
+                cb.writeEntriesComplete(rc, ledgerId, entryId, count, addr, ctx);
+                return;
+            }
+            BatchAddResponse batchAddResponse = response.getBatchAddResponse();
+            StatusCode status = response.getStatus() == StatusCode.EOK
+                ? batchAddResponse.getStatus() : response.getStatus();
+            handleResponse(batchAddResponse.getLedgerId(), batchAddResponse.getFirstEntryId(), status);
+        }
+
+        private void handleResponse(long ledgerId, long firstEntryId, StatusCode status) {
+            if (LOG.isDebugEnabled()) {
+                logResponse(status, "ledger", ledgerId, "firstEntry", firstEntryId, "entries", count);
+            }
+
+            int rc = convertStatus(status, BKException.Code.WriteException);
+            cb.writeEntriesComplete(rc, ledgerId, firstEntryId, count, addr, ctx);
+        }
+    }
+
     class StartTLSCompletion extends CompletionValue {
         final StartTLSCallback cb;
 
-        public StartTLSCompletion(final CompletionKey key) {
+        public StartTLSCompletion() {
             super("StartTLS", null, -1, -1,
                   startTLSOpLogger, startTLSTimeoutOpLogger);
             this.cb = new StartTLSCallback() {
                 @Override
                 public void startTLSComplete(int rc, Object ctx) {
                     logOpResult(rc);
-                    key.release();
                 }
             };
         }
@@ -1972,8 +2277,7 @@ public class PerChannelBookieClient extends ChannelInboundHandlerAdapter {
     class GetBookieInfoCompletion extends CompletionValue {
         final GetBookieInfoCallback cb;
 
-        public GetBookieInfoCompletion(final CompletionKey key,
-                                       final GetBookieInfoCallback origCallback,
+        public GetBookieInfoCompletion(final GetBookieInfoCallback origCallback,
                                        final Object origCtx) {
             super("GetBookieInfo", origCtx, 0L, 0L,
                   getBookieInfoOpLogger, getBookieInfoTimeoutOpLogger);
@@ -1983,7 +2287,6 @@ public class PerChannelBookieClient extends ChannelInboundHandlerAdapter {
                                                   Object ctx) {
                     logOpResult(rc);
                     origCallback.getBookieInfoComplete(rc, bInfo, origCtx);
-                    key.release();
                 }
             };
         }
@@ -2022,8 +2325,8 @@ public class PerChannelBookieClient extends ChannelInboundHandlerAdapter {
     class GetListOfEntriesOfLedgerCompletion extends CompletionValue {
         final GetListOfEntriesOfLedgerCallback cb;
 
-        public GetListOfEntriesOfLedgerCompletion(final CompletionKey key,
-                final GetListOfEntriesOfLedgerCallback origCallback, final long ledgerId) {
+        public GetListOfEntriesOfLedgerCompletion(final GetListOfEntriesOfLedgerCallback origCallback,
+                final long ledgerId) {
             super("GetListOfEntriesOfLedger", null, ledgerId, 0L, getListOfEntriesOfLedgerCompletionOpLogger,
                     getListOfEntriesOfLedgerCompletionTimeoutOpLogger);
             this.cb = new GetListOfEntriesOfLedgerCallback() {
@@ -2032,7 +2335,6 @@ public class PerChannelBookieClient extends ChannelInboundHandlerAdapter {
                         AvailabilityOfEntriesOfLedger availabilityOfEntriesOfLedger) {
                     logOpResult(rc);
                     origCallback.getListOfEntriesOfLedgerComplete(rc, ledgerId, availabilityOfEntriesOfLedger);
-                    key.release();
                 }
             };
         }
@@ -2081,12 +2383,11 @@ public class PerChannelBookieClient extends ChannelInboundHandlerAdapter {
             }
         };
 
-    AddCompletion acquireAddCompletion(final CompletionKey key,
-                                       final WriteCallback originalCallback,
+    AddCompletion acquireAddCompletion(final WriteCallback originalCallback,
                                        final Object originalCtx,
                                        final long ledgerId, final long entryId) {
         AddCompletion completion = addCompletionRecycler.get();
-        completion.reset(key, originalCallback, originalCtx, ledgerId, entryId);
+        completion.reset(originalCallback, originalCtx, ledgerId, entryId);
         return completion;
     }
 
@@ -2094,7 +2395,6 @@ public class PerChannelBookieClient extends ChannelInboundHandlerAdapter {
     class AddCompletion extends CompletionValue implements WriteCallback {
         final Recycler.Handle<AddCompletion> handle;
 
-        CompletionKey key = null;
         WriteCallback originalCallback = null;
 
         AddCompletion(Recycler.Handle<AddCompletion> handle) {
@@ -2102,11 +2402,9 @@ public class PerChannelBookieClient extends ChannelInboundHandlerAdapter {
             this.handle = handle;
         }
 
-        void reset(final CompletionKey key,
-                   final WriteCallback originalCallback,
+        void reset(final WriteCallback originalCallback,
                    final Object originalCtx,
                    final long ledgerId, final long entryId) {
-            this.key = key;
             this.originalCallback = originalCallback;
             this.ctx = originalCtx;
             this.ledgerId = ledgerId;
@@ -2120,18 +2418,12 @@ public class PerChannelBookieClient extends ChannelInboundHandlerAdapter {
                                   Object ctx) {
             logOpResult(rc);
             originalCallback.writeComplete(rc, ledgerId, entryId, addr, ctx);
-            key.release();
             handle.recycle(this);
         }
 
         @Override
-        boolean maybeTimeout() {
-            if (MathUtils.elapsedNanos(startTime) >= addEntryTimeoutNanos) {
-                timeout();
-                return true;
-            } else {
-                return false;
-            }
+        boolean isTimedOut(long nowNanos) {
+            return addEntryTimeoutNanos > 0 && nowNanos - startTime >= addEntryTimeoutNanos;
         }
 
         @Override
@@ -2180,51 +2472,6 @@ public class PerChannelBookieClient extends ChannelInboundHandlerAdapter {
         }
     }
 
-    // visable for testing
-    CompletionKey newCompletionKey(long txnId, OperationType operationType) {
-        return new V3CompletionKey(txnId, operationType);
-    }
-
-    class V3CompletionKey extends CompletionKey {
-
-        public V3CompletionKey(long txnId, OperationType operationType) {
-            super(txnId, operationType);
-        }
-
-        @Override
-        public boolean equals(Object obj) {
-            if (!(obj instanceof V3CompletionKey)) {
-                return false;
-            }
-            V3CompletionKey that = (V3CompletionKey) obj;
-            return this.txnId == that.txnId && this.operationType == that.operationType;
-        }
-
-        @Override
-        public int hashCode() {
-            return ((int) txnId);
-        }
-
-        @Override
-        public String toString() {
-            return String.format("TxnId(%d), OperationType(%s)", txnId, operationType);
-        }
-
-    }
-
-    abstract class CompletionKey {
-        final long txnId;
-        OperationType operationType;
-
-        CompletionKey(long txnId,
-                      OperationType operationType) {
-            this.txnId = txnId;
-            this.operationType = operationType;
-        }
-
-        public void release() {}
-    }
-
     /**
      * Note : Helper functions follow
      */
@@ -2256,85 +2503,19 @@ public class PerChannelBookieClient extends ChannelInboundHandlerAdapter {
         }
     }
 
-    private void putCompletionKeyValue(CompletionKey key, CompletionValue value) {
-        CompletionValue existingValue = completionObjects.putIfAbsent(key, value);
-        if (existingValue != null) { // will only happen for V2 keys, as V3 have unique txnid
-            // There's a pending read request on same ledger/entry. Use the multimap to track all of them
-            completionObjectsV2Conflicts.put(key, value);
-        }
-    }
-
-    private CompletionValue getCompletionValue(CompletionKey key) {
-        CompletionValue completionValue = completionObjects.remove(key);
-        if (completionValue == null) {
-            // If there's no completion object here, try in the multimap
-            completionValue = completionObjectsV2Conflicts.removeAny(key).orElse(null);
+    private void putCompletion(long txnId, long ledgerId, long entryId, OperationType operationType,
+                               CompletionValue completion) {
+        if (useV2WireProtocol) {
+            completions.putV2(txnId, ledgerId, entryId, operationType, completion);
+        } else {
+            completions.put(txnId, operationType, completion);
         }
-        return completionValue;
     }
 
     private long getTxnId() {
         return txnIdGenerator.incrementAndGet();
     }
 
-    private final Recycler<V2CompletionKey> v2KeyRecycler = new Recycler<V2CompletionKey>() {
-            @Override
-            protected V2CompletionKey newObject(
-                    Recycler.Handle<V2CompletionKey> handle) {
-                return new V2CompletionKey(handle);
-            }
-        };
-
-    V2CompletionKey acquireV2Key(long ledgerId, long entryId,
-                             OperationType operationType) {
-        V2CompletionKey key = v2KeyRecycler.get();
-        key.reset(ledgerId, entryId, operationType);
-        return key;
-    }
-
-    private class V2CompletionKey extends CompletionKey {
-        private final Handle<V2CompletionKey> recyclerHandle;
-        long ledgerId;
-        long entryId;
-
-        private V2CompletionKey(Handle<V2CompletionKey> handle) {
-            super(-1, null);
-            this.recyclerHandle = handle;
-        }
-
-        void reset(long ledgerId, long entryId, OperationType operationType) {
-            this.ledgerId = ledgerId;
-            this.entryId = entryId;
-            this.operationType = operationType;
-        }
-
-        @Override
-        public boolean equals(Object object) {
-            if (!(object instanceof V2CompletionKey)) {
-                return  false;
-            }
-            V2CompletionKey that = (V2CompletionKey) object;
-            return this.entryId == that.entryId
-                && this.ledgerId == that.ledgerId
-                && this.operationType == that.operationType;
-        }
-
-        @Override
-        public int hashCode() {
-            return Long.hashCode(ledgerId) * 31 + Long.hashCode(entryId);
-        }
-
-        @Override
-        public String toString() {
-            return String.format("%d:%d %s", ledgerId, entryId, operationType);
-        }
-
-        @Override
-        public void release() {
-            recyclerHandle.recycle(this);
-        }
-    }
-
     Request.Builder withRequestContext(Request.Builder builder) {
         if (preserveMdcForTaskExecution) {
             return appendRequestContext(builder);
@@ -2494,9 +2675,7 @@ public class PerChannelBookieClient extends ChannelInboundHandlerAdapter {
         LOG.info("Initializing TLS to {}", channel);
         assert state == ConnectionState.CONNECTING;
         final long txnId = getTxnId();
-        final CompletionKey completionKey = new V3CompletionKey(txnId, OperationType.START_TLS);
-        completionObjects.put(completionKey,
-                              new StartTLSCompletion(completionKey));
+        completions.put(txnId, OperationType.START_TLS, new StartTLSCompletion());
         BookkeeperProtocol.Request.Builder h = withRequestContext(BookkeeperProtocol.Request.newBuilder());
         BKPacketHeader.Builder headerBuilder = BKPacketHeader.newBuilder()
                 .setVersion(ProtocolVersion.VERSION_THREE)
@@ -2505,7 +2684,7 @@ public class PerChannelBookieClient extends ChannelInboundHandlerAdapter {
         h.setHeader(headerBuilder.build());
         h.setStartTLSRequest(BookkeeperProtocol.StartTLSRequest.newBuilder().build());
         state = ConnectionState.START_TLS;
-        writeAndFlush(channel, completionKey, h.build());
+        writeAndFlush(channel, txnId, h.build());
     }
 
     private void failTLS(int rc) {
@@ -24,6 +24,12 @@ import static org.apache.bookkeeper.bookie.BookKeeperServerStats.ADD_ENTRY_BLOCK
 import static org.apache.bookkeeper.bookie.BookKeeperServerStats.ADD_ENTRY_BLOCKED_WAIT;
 import static org.apache.bookkeeper.bookie.BookKeeperServerStats.ADD_ENTRY_IN_PROGRESS;
 import static org.apache.bookkeeper.bookie.BookKeeperServerStats.ADD_ENTRY_REQUEST;
+import static org.apache.bookkeeper.bookie.BookKeeperServerStats.ADD_ENTRY_STORAGE_THROTTLED;
+import static org.apache.bookkeeper.bookie.BookKeeperServerStats.ADD_ENTRY_STORAGE_THROTTLED_CHANNELS;
+import static org.apache.bookkeeper.bookie.BookKeeperServerStats.BATCH_ADD_ENTRY;
+import static org.apache.bookkeeper.bookie.BookKeeperServerStats.BATCH_ADD_ENTRY_REQUEST;
+import static org.apache.bookkeeper.bookie.BookKeeperServerStats.BATCH_READ_ENTRY;
+import static org.apache.bookkeeper.bookie.BookKeeperServerStats.BATCH_READ_ENTRY_REQUEST;
 import static org.apache.bookkeeper.bookie.BookKeeperServerStats.CATEGORY_SERVER;
 import static org.apache.bookkeeper.bookie.BookKeeperServerStats.CHANNEL_WRITE;
 import static org.apache.bookkeeper.bookie.BookKeeperServerStats.FORCE_LEDGER;
@@ -75,6 +81,7 @@ public class RequestStats {
     final AtomicInteger addsInProgress = new AtomicInteger(0);
     final AtomicInteger maxAddsInProgress = new AtomicInteger(0);
     final AtomicInteger addsBlocked = new AtomicInteger(0);
+    final AtomicInteger channelsThrottledByStorage = new AtomicInteger(0);
     final AtomicInteger readsInProgress = new AtomicInteger(0);
     final AtomicInteger readsBlocked = new AtomicInteger(0);
     final AtomicInteger maxReadsInProgress = new AtomicInteger(0);
@@ -101,6 +108,28 @@ public class RequestStats {
         parent = READ_ENTRY_REQUEST
     )
     final OpStatsLogger readEntryStats;
+    @StatsDoc(
+        name = BATCH_READ_ENTRY_REQUEST,
+        help = "request stats of BatchReadEntry on a bookie"
+    )
+    final OpStatsLogger batchReadRequestStats;
+    @StatsDoc(
+        name = BATCH_READ_ENTRY,
+        help = "operation stats of BatchReadEntry on a bookie",
+        parent = BATCH_READ_ENTRY_REQUEST
+    )
+    final OpStatsLogger batchReadEntryStats;
+    @StatsDoc(
+        name = BATCH_ADD_ENTRY_REQUEST,
+        help = "request stats of BatchAddEntry on a bookie"
+    )
+    final OpStatsLogger batchAddRequestStats;
+    @StatsDoc(
+        name = BATCH_ADD_ENTRY,
+        help = "operation stats of BatchAddEntry on a bookie",
+        parent = BATCH_ADD_ENTRY_REQUEST
+    )
+    final OpStatsLogger batchAddEntryStats;
     @StatsDoc(
         name = FORCE_LEDGER,
         help = "operation stats of ForceLedger on a bookie",
@@ -207,6 +236,11 @@ public class RequestStats {
         help = "operation stats of AddEntry blocked on a bookie"
     )
     final OpStatsLogger addEntryBlockedStats;
+    @StatsDoc(
+        name = ADD_ENTRY_STORAGE_THROTTLED,
+        help = "operation stats of the periods where AddEntry requests are throttled by the ledger storage"
+    )
+    final OpStatsLogger addEntryStorageThrottledStats;
     @StatsDoc(
         name = READ_ENTRY_BLOCKED,
         help = "operation stats of ReadEntry blocked on a bookie"
@@ -228,6 +262,10 @@ public class RequestStats {
         this.addEntryStats = statsLogger.getOpStatsLogger(ADD_ENTRY);
         this.addRequestStats = statsLogger.getOpStatsLogger(ADD_ENTRY_REQUEST);
         this.readEntryStats = statsLogger.getOpStatsLogger(READ_ENTRY);
+        this.batchReadRequestStats = statsLogger.getOpStatsLogger(BATCH_READ_ENTRY_REQUEST);
+        this.batchReadEntryStats = statsLogger.getOpStatsLogger(BATCH_READ_ENTRY);
+        this.batchAddRequestStats = statsLogger.getOpStatsLogger(BATCH_ADD_ENTRY_REQUEST);
+        this.batchAddEntryStats = statsLogger.getOpStatsLogger(BATCH_ADD_ENTRY);
         this.forceLedgerStats = statsLogger.getOpStatsLogger(FORCE_LEDGER);
         this.forceLedgerRequestStats = statsLogger.getOpStatsLogger(FORCE_LEDGER_REQUEST);
         this.readRequestStats = statsLogger.getOpStatsLogger(READ_ENTRY_REQUEST);
@@ -249,6 +287,7 @@ public class RequestStats {
         this.channelWriteStats = statsLogger.getOpStatsLogger(CHANNEL_WRITE);
 
         this.addEntryBlockedStats = statsLogger.getOpStatsLogger(ADD_ENTRY_BLOCKED_WAIT);
+        this.addEntryStorageThrottledStats = statsLogger.getOpStatsLogger(ADD_ENTRY_STORAGE_THROTTLED);
         this.readEntryBlockedStats = statsLogger.getOpStatsLogger(READ_ENTRY_BLOCKED_WAIT);
 
         this.getListOfEntriesOfLedgerStats = statsLogger.getOpStatsLogger(GET_LIST_OF_ENTRIES_OF_LEDGER);
@@ -279,6 +318,18 @@ public class RequestStats {
             }
         });
 
+        statsLogger.registerGauge(ADD_ENTRY_STORAGE_THROTTLED_CHANNELS, new Gauge<Number>() {
+            @Override
+            public Number getDefaultValue() {
+                return 0;
+            }
+
+            @Override
+            public Number getSample() {
+                return channelsThrottledByStorage;
+            }
+        });
+
         statsLogger.registerGauge(READ_ENTRY_IN_PROGRESS, new Gauge<Number>() {
             @Override
             public Number getDefaultValue() {
@@ -317,6 +368,15 @@ public class RequestStats {
         addsBlocked.decrementAndGet();
     }
 
+    void throttleChannelByStorage() {
+        channelsThrottledByStorage.incrementAndGet();
+    }
+
+    void unthrottleChannelsByStorage(int numChannels, long delayNanos) {
+        addEntryStorageThrottledStats.registerSuccessfulEvent(delayNanos, TimeUnit.NANOSECONDS);
+        channelsThrottledByStorage.addAndGet(-numChannels);
+    }
+
     void trackAddRequest() {
         final int curr = addsInProgress.incrementAndGet();
         maxAddsInProgress.accumulateAndGet(curr, Integer::max);
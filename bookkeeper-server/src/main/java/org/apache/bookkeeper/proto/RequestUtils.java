@@ -48,6 +48,10 @@ class RequestUtils {
         return request.hasFlag() && request.getFlag() == flag;
     }
 
+    static boolean hasFlag(BookkeeperProtocol.BatchAddRequest request, BookkeeperProtocol.AddRequest.Flag flag) {
+        return request.hasFlag() && request.getFlag() == flag;
+    }
+
     /**
      * this toSafeString method filters out body and masterKey from the output.
      * masterKey contains the password of the ledger and body is customer data,
@@ -68,6 +72,19 @@ class RequestUtils {
                 stringHelper.add("writeFlags", addRequest.getWriteFlags());
             }
             return stringHelper.toString();
+        } else if (request.hasBatchAddRequest()) {
+            BookkeeperProtocol.BatchAddRequest batchAddRequest = request.getBatchAddRequest();
+            includeHeaderFields(stringHelper, header);
+            stringHelper.add("ledgerId", batchAddRequest.getLedgerId());
+            stringHelper.add("firstEntryId", batchAddRequest.getFirstEntryId());
+            stringHelper.add("count", batchAddRequest.getBodyCount());
+            if (batchAddRequest.hasFlag()) {
+                stringHelper.add("flag", batchAddRequest.getFlag());
+            }
+            if (batchAddRequest.hasWriteFlags()) {
+                stringHelper.add("writeFlags", batchAddRequest.getWriteFlags());
+            }
+            return stringHelper.toString();
         } else if (request.hasReadRequest()) {
             BookkeeperProtocol.ReadRequest readRequest = request.getReadRequest();
             includeHeaderFields(stringHelper, header);
@@ -83,6 +100,16 @@ class RequestUtils {
                 stringHelper.add("timeOut", readRequest.getTimeOut());
             }
             return stringHelper.toString();
+        } else if (request.hasBatchReadRequest()) {
+            BookkeeperProtocol.BatchReadRequest batchReadRequest = request.getBatchReadRequest();
+            includeHeaderFields(stringHelper, header);
+            stringHelper.add("ledgerId", batchReadRequest.getLedgerId());
+            stringHelper.add("firstEntryId", batchReadRequest.getFirstEntryId());
+            stringHelper.add("maxCount", batchReadRequest.getMaxCount());
+            if (batchReadRequest.hasMaxSize()) {
+                stringHelper.add("maxSize", batchReadRequest.getMaxSize());
+            }
+            return stringHelper.toString();
         } else if (request.hasWriteLacRequest()) {
             BookkeeperProtocol.WriteLacRequest writeLacRequest = request.getWriteLacRequest();
             includeHeaderFields(stringHelper, header);
@@ -22,11 +22,18 @@ package org.apache.bookkeeper.proto;
 
 import io.netty.buffer.ByteBuf;
 
+import java.util.List;
+
 class ResponseBuilder {
     static BookieProtocol.Response buildErrorResponse(int errorCode, BookieProtocol.Request r) {
         if (r.getOpCode() == BookieProtocol.ADDENTRY) {
             return BookieProtocol.AddResponse.create(r.getProtocolVersion(), errorCode,
                                                   r.getLedgerId(), r.getEntryId());
+        } else if (r.getOpCode() == BookieProtocol.BATCH_ADD_ENTRY) {
+            return buildBatchAddResponse(errorCode, r);
+        } else if (r.getOpCode() == BookieProtocol.BATCH_READ_ENTRY) {
+            return new BookieProtocol.BatchReadResponse(r.getProtocolVersion(), errorCode,
+                                                        r.getLedgerId(), r.getEntryId());
         } else {
             assert(r.getOpCode() == BookieProtocol.READENTRY);
             return new BookieProtocol.ReadResponse(r.getProtocolVersion(), errorCode,
@@ -43,4 +50,16 @@ class ResponseBuilder {
         return new BookieProtocol.ReadResponse(r.getProtocolVersion(), BookieProtocol.EOK,
                 r.getLedgerId(), r.getEntryId(), data);
     }
+
+    static BookieProtocol.Response buildBatchReadResponse(List<ByteBuf> entries, BookieProtocol.Request r) {
+        return new BookieProtocol.BatchReadResponse(r.getProtocolVersion(), BookieProtocol.EOK,
+                r.getLedgerId(), r.getEntryId(), entries);
+    }
+
+    static BookieProtocol.Response buildBatchAddResponse(int errorCode, BookieProtocol.Request r) {
+        int count = r instanceof BookieProtocol.ParsedBatchAddRequest
+                ? ((BookieProtocol.ParsedBatchAddRequest) r).getEntries().size() : 0;
+        return new BookieProtocol.BatchAddResponse(r.getProtocolVersion(), errorCode,
+                r.getLedgerId(), r.getEntryId(), count);
+    }
 }
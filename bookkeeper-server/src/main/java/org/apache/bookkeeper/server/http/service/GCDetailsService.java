@@ -43,7 +43,15 @@ import org.slf4j.LoggerFactory;
  *           "lastMajorCompactionTime" : 1544578144944,
  *           "lastMinorCompactionTime" : 1544578144944,
  *           "majorCompactionCounter" : 1,
- *           "minorCompactionCounter" : 0
+ *           "minorCompactionCounter" : 0,
+ *           "compactingEntryLogId" : 12,
+ *           "entryLogsToCompact" : 4,
+ *           "entryLogsCompacted" : 1,
+ *           "compactionReclaimedBytes" : 805306368,
+ *           "compactionThrottled" : true,
+ *           "compactionRateFactor" : 0.25,
+ *           "compactionRate" : 250000.0,
+ *           "foregroundLatencyMicros" : 12500
  *         } ]
  */
 public class GCDetailsService implements HttpEndpointService {
@@ -76,11 +76,22 @@ public class GetLastLogMarkService implements HttpEndpointService {
                  */
                 Map<String, String> output = Maps.newHashMap();
 
-                List<Journal> journals = Lists.newArrayListWithCapacity(conf.getJournalDirs().length);
-                int idx = 0;
-                for (File journalDir : conf.getJournalDirs()) {
-                    journals.add(new Journal(idx++, journalDir, conf, new LedgerDirsManager(conf, conf.getLedgerDirs(),
-                      new DiskChecker(conf.getDiskUsageThreshold(), conf.getDiskUsageWarnThreshold()))));
+                File[] journalDirs = conf.getJournalDirs();
+                int numWriters = conf.getNumJournalWritersPerDirectory();
+                for (File journalDir : journalDirs) {
+                    numWriters = Journal.getNumJournalWriters(journalDir, numWriters);
+                }
+                List<Journal> journals = Lists.newArrayListWithCapacity(journalDirs.length);
+                for (int w = 0; w < numWriters; w++) {
+                    for (int idx = 0; idx < journalDirs.length; idx++) {
+                        File writerDir = Journal.getJournalWriterDirectory(journalDirs[idx], w);
+                        if (w > 0 && !writerDir.exists()) {
+                            continue;
+                        }
+                        journals.add(new Journal(Journal.getJournalIndex(journalDirs.length, idx, w), writerDir,
+                          conf, new LedgerDirsManager(conf, conf.getLedgerDirs(),
+                          new DiskChecker(conf.getDiskUsageThreshold(), conf.getDiskUsageWarnThreshold()))));
+                    }
                 }
                 for (Journal journal : journals) {
                     LogMark lastLogMark = journal.getLastLogMark().getCurMark();
@@ -51,13 +51,24 @@ public class LastMarkCommand extends BookieCommand<CliFlags> {
             conf, conf.getLedgerDirs(),
             new DiskChecker(conf.getDiskUsageThreshold(), conf.getDiskUsageWarnThreshold()));
         File[] journalDirs = conf.getJournalDirs();
+        int numWriters = conf.getNumJournalWritersPerDirectory();
+        for (File journalDir : journalDirs) {
+            numWriters = Journal.getNumJournalWriters(journalDir, numWriters);
+        }
 
-        for (int idx = 0; idx < journalDirs.length; idx++) {
-            Journal journal = new Journal(idx, journalDirs[idx], conf, dirsManager);
-            LogMark lastLogMark = journal.getLastLogMark().getCurMark();
-            System.out.println("LastLogMark : Journal Id - " + lastLogMark.getLogFileId() + "("
-                + Long.toHexString(lastLogMark.getLogFileId()) + ".txn), Pos - "
-                + lastLogMark.getLogFileOffset());
+        for (int w = 0; w < numWriters; w++) {
+            for (int idx = 0; idx < journalDirs.length; idx++) {
+                File writerDir = Journal.getJournalWriterDirectory(journalDirs[idx], w);
+                if (w > 0 && !writerDir.exists()) {
+                    continue;
+                }
+                Journal journal = new Journal(Journal.getJournalIndex(journalDirs.length, idx, w), writerDir,
+                    conf, dirsManager);
+                LogMark lastLogMark = journal.getLastLogMark().getCurMark();
+                System.out.println("LastLogMark : Journal Id - " + lastLogMark.getLogFileId() + "("
+                    + Long.toHexString(lastLogMark.getLogFileId()) + ".txn), Pos - "
+                    + lastLogMark.getLogFileOffset());
+            }
         }
         return true;
     }
@@ -173,12 +173,24 @@ public class ReadJournalCommand extends BookieCommand<ReadJournalCommand.ReadJou
 
     private synchronized List<Journal> getJournals(ServerConfiguration conf) {
         if (null == journals) {
-            journals = Lists.newArrayListWithCapacity(conf.getJournalDirs().length);
-            int idx = 0;
-            for (File journalDir : conf.getJournalDirs()) {
-                journals.add(new Journal(idx++, new File(journalDir, BookKeeperConstants.CURRENT_DIR), conf,
-                         new LedgerDirsManager(conf, conf.getLedgerDirs(),
-                               new DiskChecker(conf.getDiskUsageThreshold(), conf.getDiskUsageWarnThreshold()))));
+            File[] journalDirs = conf.getJournalDirs();
+            int numWriters = conf.getNumJournalWritersPerDirectory();
+            for (File journalDir : journalDirs) {
+                numWriters = Journal.getNumJournalWriters(new File(journalDir, BookKeeperConstants.CURRENT_DIR),
+                    numWriters);
+            }
+            journals = Lists.newArrayListWithCapacity(journalDirs.length);
+            for (int w = 0; w < numWriters; w++) {
+                for (int idx = 0; idx < journalDirs.length; idx++) {
+                    File writerDir = Journal.getJournalWriterDirectory(
+                        new File(journalDirs[idx], BookKeeperConstants.CURRENT_DIR), w);
+                    if (w > 0 && !writerDir.exists()) {
+                        continue;
+                    }
+                    journals.add(new Journal(Journal.getJournalIndex(journalDirs.length, idx, w), writerDir, conf,
+                             new LedgerDirsManager(conf, conf.getLedgerDirs(),
+                                   new DiskChecker(conf.getDiskUsageThreshold(), conf.getDiskUsageWarnThreshold()))));
+                }
             }
         }
         return journals;
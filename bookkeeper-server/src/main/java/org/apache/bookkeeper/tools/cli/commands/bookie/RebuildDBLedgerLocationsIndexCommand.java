@@ -18,9 +18,13 @@
  */
 package org.apache.bookkeeper.tools.cli.commands.bookie;
 
+import com.beust.jcommander.Parameter;
 import java.io.IOException;
+import lombok.Setter;
+import lombok.experimental.Accessors;
 import org.apache.bookkeeper.bookie.storage.ldb.LocationsIndexRebuildOp;
 import org.apache.bookkeeper.conf.ServerConfiguration;
+import org.apache.bookkeeper.tools.cli.commands.bookie.RebuildDBLedgerLocationsIndexCommand.RebuildFlags;
 import org.apache.bookkeeper.tools.cli.helpers.BookieCommand;
 import org.apache.bookkeeper.tools.framework.CliFlags;
 import org.apache.bookkeeper.tools.framework.CliSpec;
@@ -30,7 +34,7 @@ import org.slf4j.LoggerFactory;
 /**
  * Command to rebuild DBLedgerStorage locations index.
  */
-public class RebuildDBLedgerLocationsIndexCommand extends BookieCommand<CliFlags> {
+public class RebuildDBLedgerLocationsIndexCommand extends BookieCommand<RebuildFlags> {
 
     static final Logger LOG = LoggerFactory.getLogger(RebuildDBLedgerLocationsIndexCommand.class);
 
@@ -38,15 +42,34 @@ public class RebuildDBLedgerLocationsIndexCommand extends BookieCommand<CliFlags
     private static final String DESC = "Rbuild DBLedgerStorage locations index by scanning the entry logs";
 
     public RebuildDBLedgerLocationsIndexCommand() {
-        super(CliSpec.newBuilder().withName(NAME).withDescription(DESC).withFlags(new CliFlags()).build());
+        this(new RebuildFlags());
+    }
+
+    public RebuildDBLedgerLocationsIndexCommand(RebuildFlags flags) {
+        super(CliSpec.<RebuildFlags>newBuilder().withName(NAME).withDescription(DESC).withFlags(flags).build());
+    }
+
+    /**
+     * Flags for rebuild locations index command.
+     */
+    @Accessors(fluent = true)
+    @Setter
+    public static class RebuildFlags extends CliFlags {
+
+        @Parameter(names = { "-t", "--threads" }, description = "Number of entry logs scanned in parallel "
+                + "(default: number of processors)")
+        private int threads = Runtime.getRuntime().availableProcessors();
+
+        @Parameter(names = { "-r", "--resume" }, description = "Resume a previously interrupted rebuild")
+        private boolean resume = false;
     }
 
     @Override
-    public boolean apply(ServerConfiguration conf, CliFlags cmdFlags) {
+    public boolean apply(ServerConfiguration conf, RebuildFlags cmdFlags) {
         LOG.info("=== Rebuilding bookie index ===");
         ServerConfiguration serverConfiguration = new ServerConfiguration(conf);
         try {
-            new LocationsIndexRebuildOp(serverConfiguration).initiate();
+            new LocationsIndexRebuildOp(serverConfiguration, cmdFlags.threads, cmdFlags.resume).initiate();
         } catch (IOException e) {
             e.printStackTrace();
         }
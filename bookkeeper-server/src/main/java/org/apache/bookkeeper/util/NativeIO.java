@@ -20,8 +20,10 @@ package org.apache.bookkeeper.util;
 
 import com.sun.jna.LastErrorException;
 import com.sun.jna.Native;
+import com.sun.jna.Pointer;
 
 import java.io.FileDescriptor;
+import java.io.IOException;
 import java.lang.reflect.Field;
 
 import org.slf4j.Logger;
@@ -35,8 +37,18 @@ public final class NativeIO {
 
     private static final int POSIX_FADV_DONTNEED = 4; /* fadvise.h */
 
+    private static final int O_WRONLY = 01; /* fcntl.h */
+    private static final int O_DIRECT = getODirectFlag();
+    private static final int EOPNOTSUPP = 95; /* errno.h */
+
+    /**
+     * The alignment required for the buffers, offsets and lengths of direct I/O writes.
+     */
+    public static final int DIRECT_IO_ALIGNMENT = 4096;
+
     private static boolean initialized = false;
     private static boolean fadvisePossible = true;
+    private static volatile boolean fallocatePossible = true;
 
     static {
         try {
@@ -54,8 +66,27 @@ public final class NativeIO {
     // fadvice
     public static native int posix_fadvise(int fd, long offset, long len, int flag) throws LastErrorException;
 
+    // direct I/O
+    private static native int open(String pathname, int flags, int mode) throws LastErrorException;
+    private static native long pwrite(int fd, Pointer buf, long count, long offset) throws LastErrorException;
+    private static native int fallocate(int fd, int mode, long offset, long len) throws LastErrorException;
+    private static native int fsync(int fd) throws LastErrorException;
+    private static native int fdatasync(int fd) throws LastErrorException;
+    private static native int close(int fd) throws LastErrorException;
+
     private NativeIO() {}
 
+    private static int getODirectFlag() {
+        String arch = System.getProperty("os.arch", "");
+        if (arch.startsWith("aarch64") || arch.startsWith("arm")) {
+            return 0200000;
+        } else if (arch.startsWith("ppc")) {
+            return 0400000;
+        } else {
+            return 040000;
+        }
+    }
+
     private static Field getFieldByReflection(Class cls, String fieldName) {
         Field field = null;
 
@@ -118,4 +149,102 @@ public final class NativeIO {
         }
     }
 
+    /**
+     * Whether files can be opened for direct I/O with {@link #openDirect(String)}.
+     */
+    public static boolean isDirectIOSupported() {
+        return initialized && System.getProperty("os.name", "").startsWith("Linux");
+    }
+
+    /**
+     * Open an existing file for writing with direct I/O (O_DIRECT), bypassing the page cache.
+     *
+     * <p>The buffers, offsets and lengths of the writes to the returned file descriptor must be
+     * aligned to {@link #DIRECT_IO_ALIGNMENT}.
+     *
+     * @param path the path of the file
+     * @return the file descriptor
+     * @throws IOException if the file can't be opened for direct I/O
+     */
+    public static int openDirect(String path) throws IOException {
+        if (!isDirectIOSupported()) {
+            throw new IOException("Direct I/O is not supported on this platform");
+        }
+        try {
+            return open(path, O_WRONLY | O_DIRECT, 0);
+        } catch (LastErrorException | UnsatisfiedLinkError e) {
+            throw new IOException("Failed to open " + path + " for direct I/O", e);
+        }
+    }
+
+    /**
+     * Write <i>length</i> bytes starting at native memory <i>address</i> to the file at <i>offset</i>.
+     */
+    public static void pwriteFully(int fd, long address, int length, long offset) throws IOException {
+        long written = 0;
+        try {
+            while (written < length) {
+                written += pwrite(fd, new Pointer(address + written), length - written, offset + written);
+            }
+        } catch (LastErrorException e) {
+            throw new IOException("pwrite failed on file descriptor " + fd + " at offset " + (offset + written), e);
+        }
+    }
+
+    /**
+     * Allocate disk space for the range of the file between <i>offset</i> and <i>offset + len</i>,
+     * extending the file size if needed.
+     *
+     * @return true if the space was allocated, false if fallocate is not supported
+     * @throws IOException if the allocation failed
+     */
+    public static boolean fallocateIfPossible(int fd, long offset, long len) throws IOException {
+        if (!initialized || !fallocatePossible || fd < 0) {
+            return false;
+        }
+        try {
+            fallocate(fd, 0, offset, len);
+            return true;
+        } catch (LastErrorException e) {
+            if (e.getErrorCode() == EOPNOTSUPP) {
+                LOG.info("fallocate is not supported by the file system, disabling it");
+                fallocatePossible = false;
+                return false;
+            }
+            throw new IOException("fallocate failed on file descriptor " + fd + " at offset " + offset, e);
+        } catch (UnsatisfiedLinkError ule) {
+            LOG.warn("Unsatisfied Link error: fallocate is not available : ", ule);
+            fallocatePossible = false;
+            return false;
+        }
+    }
+
+    /**
+     * Force the data written to the file descriptor to the storage device.
+     *
+     * @param fd the file descriptor
+     * @param forceMetadata whether the file metadata should be forced as well
+     */
+    public static void forceFd(int fd, boolean forceMetadata) throws IOException {
+        try {
+            if (forceMetadata) {
+                fsync(fd);
+            } else {
+                fdatasync(fd);
+            }
+        } catch (LastErrorException e) {
+            throw new IOException("Failed to sync file descriptor " + fd, e);
+        }
+    }
+
+    /**
+     * Close a file descriptor opened with {@link #openDirect(String)}.
+     */
+    public static void closeFd(int fd) throws IOException {
+        try {
+            close(fd);
+        } catch (LastErrorException e) {
+            throw new IOException("Failed to close file descriptor " + fd, e);
+        }
+    }
 }
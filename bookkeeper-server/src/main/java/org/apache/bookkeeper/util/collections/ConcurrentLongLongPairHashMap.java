@@ -68,6 +68,13 @@ public class ConcurrentLongLongPairHashMap {
         long apply(long key1, long key2);
     }
 
+    /**
+     * A consumer of a pair of longs.
+     */
+    public interface LongPairConsumer {
+        void accept(long first, long second);
+    }
+
     /**
      * A Long pair predicate.
      */
@@ -138,13 +145,39 @@ public class ConcurrentLongLongPairHashMap {
      * @return the value or -1 if the key was not present
      */
     public LongPair get(long key1, long key2) {
+        LongPairHolder holder = new LongPairHolder();
+        return get(key1, key2, holder) ? new LongPair(holder.first, holder.second) : null;
+    }
+
+    /**
+     * Get the value associated with a key, without allocating a new object.
+     *
+     * @param holder
+     *            the holder that will be filled with the value, if the key is present
+     * @return true if the key was present
+     */
+    public boolean get(long key1, long key2, LongPairHolder holder) {
+        return get(key1, key2, (LongPairConsumer) holder);
+    }
+
+    /**
+     * Pass the value associated with a key to a consumer, without allocating a new object.
+     *
+     * @param consumer
+     *            the consumer that will be invoked with the value, if the key is present. It must not access the map,
+     *            since it might be invoked while holding the lock of a section
+     * @return true if the key was present
+     */
+    public boolean get(long key1, long key2, LongPairConsumer consumer) {
         checkBiggerEqualZero(key1);
         long h = hash(key1, key2);
-        return getSection(h).get(key1, key2, (int) h);
+        return getSection(h).get(key1, key2, (int) h, consumer);
     }
 
     public boolean containsKey(long key1, long key2) {
-        return get(key1, key2) != null;
+        checkBiggerEqualZero(key1);
+        long h = hash(key1, key2);
+        return getSection(h).get(key1, key2, (int) h, null);
     }
 
     public boolean put(long key1, long key2, long value1, long value2) {
@@ -180,6 +213,20 @@ public class ConcurrentLongLongPairHashMap {
         return getSection(h).remove(key1, key2, value1, value2, (int) h);
     }
 
+    /**
+     * Remove all the entries matching the given predicate.
+     *
+     * @param filter
+     * @return the number of removed entries
+     */
+    public int removeIf(LongLongPairPredicate filter) {
+        int removedCount = 0;
+        for (Section s : sections) {
+            removedCount += s.removeIf(filter);
+        }
+        return removedCount;
+    }
+
     private Section getSection(long hash) {
         // Use 32 msb out of long to get the section
         final int sectionIdx = (int) (hash >>> 32) & (sections.length - 1);
@@ -198,18 +245,47 @@ public class ConcurrentLongLongPairHashMap {
         }
     }
 
+    /**
+     * Iterate over all the keys, without allocating a new object for each of them.
+     */
+    public void forEachKey(LongPairConsumer processor) {
+        forEach((key1, key2, value1, value2) -> processor.accept(key1, key2));
+    }
+
+    /**
+     * Iterate over all the values, without allocating a new object for each of them.
+     */
+    public void forEachValue(LongPairConsumer processor) {
+        forEach((key1, key2, value1, value2) -> processor.accept(value1, value2));
+    }
+
+    /**
+     * @return the number of sections of the map, that can be iterated independently with
+     *         {@link #forEachInSection(int, BiConsumerLongPair)}
+     */
+    public int getSectionsCount() {
+        return sections.length;
+    }
+
+    /**
+     * Iterate over the entries of a single section of the map, eg. to split the iteration between multiple threads.
+     */
+    public void forEachInSection(int sectionIdx, BiConsumerLongPair processor) {
+        sections[sectionIdx].forEach(processor);
+    }
+
     /**
      * @return a new list of all keys (makes a copy)
      */
     public List<LongPair> keys() {
-        List<LongPair> keys = Lists.newArrayList();
-        forEach((key1, key2, value1, value2) -> keys.add(new LongPair(key1, key2)));
+        List<LongPair> keys = Lists.newArrayListWithExpectedSize((int) size());
+        forEachKey((key1, key2) -> keys.add(new LongPair(key1, key2)));
         return keys;
     }
 
     public List<LongPair> values() {
-        List<LongPair> values = Lists.newArrayList();
-        forEach((key1, key2, value1, value2) -> values.add(new LongPair(value1, value2)));
+        List<LongPair> values = Lists.newArrayListWithExpectedSize((int) size());
+        forEachValue((value1, value2) -> values.add(new LongPair(value1, value2)));
         return values;
     }
 
@@ -239,7 +315,7 @@ public class ConcurrentLongLongPairHashMap {
             Arrays.fill(table, EmptyKey);
         }
 
-        LongPair get(long key1, long key2, int keyHash) {
+        boolean get(long key1, long key2, int keyHash, LongPairConsumer consumer) {
             long stamp = tryOptimisticRead();
             boolean acquiredLock = false;
             int bucket = signSafeMod(keyHash, capacity);
@@ -255,10 +331,13 @@ public class ConcurrentLongLongPairHashMap {
                     if (!acquiredLock && validate(stamp)) {
                         // The values we have read are consistent
                         if (key1 == storedKey1 && key2 == storedKey2) {
-                            return new LongPair(storedValue1, storedValue2);
+                            if (consumer != null) {
+                                consumer.accept(storedValue1, storedValue2);
+                            }
+                            return true;
                         } else if (storedKey1 == EmptyKey) {
                             // Not found
-                            return null;
+                            return false;
                         }
                     } else {
                         // Fallback to acquiring read lock
@@ -274,10 +353,13 @@ public class ConcurrentLongLongPairHashMap {
                         }
 
                         if (key1 == storedKey1 && key2 == storedKey2) {
-                            return new LongPair(storedValue1, storedValue2);
+                            if (consumer != null) {
+                                consumer.accept(storedValue1, storedValue2);
+                            }
+                            return true;
                         } else if (storedKey1 == EmptyKey) {
                             // Not found
-                            return null;
+                            return false;
                         }
                     }
 
@@ -380,6 +462,32 @@ public class ConcurrentLongLongPairHashMap {
             }
         }
 
+        int removeIf(LongLongPairPredicate filter) {
+            long stamp = writeLock();
+
+            int removedCount = 0;
+            try {
+                // Go through all the buckets for this section
+                for (int bucket = 0; bucket < table.length; bucket += 4) {
+                    long storedKey1 = table[bucket];
+                    long storedKey2 = table[bucket + 1];
+                    long storedValue1 = table[bucket + 2];
+                    long storedValue2 = table[bucket + 3];
+
+                    if (storedKey1 != DeletedKey && storedKey1 != EmptyKey
+                            && filter.test(storedKey1, storedKey2, storedValue1, storedValue2)) {
+                        --size;
+                        ++removedCount;
+                        cleanBucket(bucket);
+                    }
+                }
+
+                return removedCount;
+            } finally {
+                unlockWrite(stamp);
+            }
+        }
+
         private void cleanBucket(int bucket) {
             int nextInArray = (bucket + 4) & (table.length - 1);
             if (table[nextInArray] == EmptyKey) {
@@ -526,6 +634,20 @@ public class ConcurrentLongLongPairHashMap {
         }
     }
 
+    /**
+     * A mutable holder of a pair of long values, that can be reused across lookups to avoid allocations.
+     */
+    public static class LongPairHolder implements LongPairConsumer {
+        public long first;
+        public long second;
+
+        @Override
+        public void accept(long first, long second) {
+            this.first = first;
+            this.second = second;
+        }
+    }
+
     /**
      * A pair of long values.
      */
@@ -0,0 +1,468 @@
+/*
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *
+ */
+package org.apache.bookkeeper.util.collections;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+import com.google.common.collect.Lists;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufAllocator;
+import io.netty.buffer.PooledByteBufAllocator;
+
+import java.io.Closeable;
+import java.util.List;
+import java.util.concurrent.locks.StampedLock;
+import java.util.function.LongConsumer;
+
+/**
+ * Concurrent hash map from primitive long to a fixed-size struct, stored in direct memory.
+ *
+ * <p>Each bucket holds a state byte, the key and the bytes of the struct, in a direct buffer per section, so that no
+ * per-entry Java object is kept on the heap and very large maps don't add to the GC pressure. The structs are
+ * copied in and out of the map through buffers provided by the caller, which can be reused across calls.
+ *
+ * <p>Since the table of a section can be freed when it's expanded, lookups always acquire the read lock of the
+ * section instead of the optimistic reads used by the heap maps.
+ *
+ * <p>The bucket state is kept apart from the key, so any long value is a valid key. The map must be closed to
+ * release its memory.
+ */
+public class ConcurrentLongStructHashMap implements Closeable {
+
+    // Bucket states
+    private static final byte Empty = 0;
+    private static final byte Used = 1;
+    private static final byte Deleted = 2;
+
+    // Bucket layout
+    private static final int StateOffset = 0;
+    private static final int KeyOffset = 1;
+    private static final int StructOffset = KeyOffset + Long.BYTES;
+
+    private static final float MapFillFactor = 0.66f;
+
+    private static final int DefaultExpectedItems = 256;
+    private static final int DefaultConcurrencyLevel = 16;
+
+    private final Section[] sections;
+    private final int structSize;
+
+    /**
+     * Processor of the entries of the map.
+     */
+    public interface EntryProcessor {
+        /**
+         * @param key
+         *            the key
+         * @param struct
+         *            the buffer holding the struct, between its reader and writer index. It's only valid during the
+         *            call and must not be modified
+         */
+        void accept(long key, ByteBuf struct);
+    }
+
+    public ConcurrentLongStructHashMap(int structSize) {
+        this(structSize, DefaultExpectedItems, DefaultConcurrencyLevel, PooledByteBufAllocator.DEFAULT);
+    }
+
+    public ConcurrentLongStructHashMap(int structSize, int expectedItems, int concurrencyLevel,
+            ByteBufAllocator allocator) {
+        checkArgument(structSize > 0);
+        checkArgument(expectedItems > 0);
+        checkArgument(concurrencyLevel > 0);
+        checkArgument(expectedItems >= concurrencyLevel);
+
+        this.structSize = structSize;
+        int numSections = concurrencyLevel;
+        int perSectionExpectedItems = expectedItems / numSections;
+        int perSectionCapacity = (int) (perSectionExpectedItems / MapFillFactor);
+        this.sections = new Section[numSections];
+
+        for (int i = 0; i < numSections; i++) {
+            sections[i] = new Section(perSectionCapacity, structSize, allocator);
+        }
+    }
+
+    public int getStructSize() {
+        return structSize;
+    }
+
+    public long size() {
+        long size = 0;
+        for (Section s : sections) {
+            size += s.size;
+        }
+        return size;
+    }
+
+    public long capacity() {
+        long capacity = 0;
+        for (Section s : sections) {
+            capacity += s.capacity;
+        }
+        return capacity;
+    }
+
+    /**
+     * @return the direct memory used by the map, in bytes
+     */
+    public long getMemorySize() {
+        return capacity() * (StructOffset + structSize);
+    }
+
+    public boolean isEmpty() {
+        for (Section s : sections) {
+            if (s.size != 0) {
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+    /**
+     * Copy the struct associated with a key into a buffer.
+     *
+     * @param dst
+     *            the buffer where the struct is written, at its writer index
+     * @return true if the key was present
+     */
+    public boolean get(long key, ByteBuf dst) {
+        long h = hash(key);
+        return getSection(h).get(key, (int) h, dst);
+    }
+
+    public boolean containsKey(long key) {
+        long h = hash(key);
+        return getSection(h).get(key, (int) h, null);
+    }
+
+    /**
+     * Associate a struct with a key.
+     *
+     * @param struct
+     *            the buffer holding the struct at its reader index. The reader index is not modified
+     * @return true if the key was not present
+     */
+    public boolean put(long key, ByteBuf struct) {
+        checkArgument(struct.readableBytes() >= structSize);
+        long h = hash(key);
+        return getSection(h).put(key, struct, (int) h, false);
+    }
+
+    /**
+     * Associate a struct with a key, only if the key is not present.
+     *
+     * @return true if the key was not present
+     */
+    public boolean putIfAbsent(long key, ByteBuf struct) {
+        checkArgument(struct.readableBytes() >= structSize);
+        long h = hash(key);
+        return getSection(h).put(key, struct, (int) h, true);
+    }
+
+    /**
+     * Remove an existing entry if found.
+     *
+     * @return true if the key was present
+     */
+    public boolean remove(long key) {
+        long h = hash(key);
+        return getSection(h).remove(key, (int) h);
+    }
+
+    private Section getSection(long hash) {
+        // Use 32 msb out of long to get the section
+        final int sectionIdx = (int) (hash >>> 32) & (sections.length - 1);
+        return sections[sectionIdx];
+    }
+
+    public void clear() {
+        for (Section s : sections) {
+            s.clear();
+        }
+    }
+
+    public void forEach(EntryProcessor processor) {
+        for (Section s : sections) {
+            s.forEach(processor);
+        }
+    }
+
+    public void forEachKey(LongConsumer processor) {
+        forEach((key, struct) -> processor.accept(key));
+    }
+
+    /**
+     * @return a new list of all keys (makes a copy)
+     */
+    public List<Long> keys() {
+        List<Long> keys = Lists.newArrayListWithExpectedSize((int) size());
+        forEachKey(keys::add);
+        return keys;
+    }
+
+    @Override
+    public void close() {
+        for (Section s : sections) {
+            s.close();
+        }
+    }
+
+    // A section is a portion of the hash map that is covered by a single lock
+    @SuppressWarnings("serial")
+    private static final class Section extends StampedLock {
+        private final int structSize;
+        private final int bucketSize;
+        private final ByteBufAllocator allocator;
+
+        // State, key and struct of each bucket, stored interleaved
+        private ByteBuf table;
+
+        private volatile int capacity;
+        private volatile int size;
+        private int usedBuckets;
+        private int resizeThreshold;
+
+        Section(int capacity, int structSize, ByteBufAllocator allocator) {
+            this.structSize = structSize;
+            this.bucketSize = StructOffset + structSize;
+            this.allocator = allocator;
+            this.capacity = alignToPowerOfTwo(capacity);
+            this.table = newTable(this.capacity);
+            this.size = 0;
+            this.usedBuckets = 0;
+            this.resizeThreshold = (int) (this.capacity * MapFillFactor);
+        }
+
+        private ByteBuf newTable(int capacity) {
+            ByteBuf newTable = allocator.directBuffer(capacity * bucketSize, capacity * bucketSize);
+            newTable.setZero(0, capacity * bucketSize);
+            return newTable;
+        }
+
+        boolean get(long key, int keyHash, ByteBuf dst) {
+            long stamp = readLock();
+            try {
+                int bucket = signSafeMod(keyHash, capacity);
+                while (true) {
+                    int offset = bucket * bucketSize;
+                    byte state = table.getByte(offset + StateOffset);
+                    if (state == Used && table.getLong(offset + KeyOffset) == key) {
+                        if (dst != null) {
+                            dst.writeBytes(table, offset + StructOffset, structSize);
+                        }
+                        return true;
+                    } else if (state == Empty) {
+                        // Not found
+                        return false;
+                    }
+
+                    bucket = (bucket + 1) & (capacity - 1);
+                }
+            } finally {
+                unlockRead(stamp);
+            }
+        }
+
+        boolean put(long key, ByteBuf struct, int keyHash, boolean onlyIfAbsent) {
+            long stamp = writeLock();
+            int bucket = signSafeMod(keyHash, capacity);
+
+            // Remember where we find the first available spot
+            int firstDeletedBucket = -1;
+
+            try {
+                while (true) {
+                    int offset = bucket * bucketSize;
+                    byte state = table.getByte(offset + StateOffset);
+
+                    if (state == Used && table.getLong(offset + KeyOffset) == key) {
+                        if (!onlyIfAbsent) {
+                            // Over written an old value for same key
+                            table.setBytes(offset + StructOffset, struct, struct.readerIndex(), structSize);
+                        }
+                        return false;
+                    } else if (state == Empty) {
+                        // Found an empty bucket. This means the key is not in the map. If we've already seen a deleted
+                        // bucket, we should write at that position
+                        if (firstDeletedBucket != -1) {
+                            offset = firstDeletedBucket * bucketSize;
+                        } else {
+                            ++usedBuckets;
+                        }
+
+                        table.setByte(offset + StateOffset, Used);
+                        table.setLong(offset + KeyOffset, key);
+                        table.setBytes(offset + StructOffset, struct, struct.readerIndex(), structSize);
+                        ++size;
+                        return true;
+                    } else if (state == Deleted) {
+                        // The bucket contained a different deleted key
+                        if (firstDeletedBucket == -1) {
+                            firstDeletedBucket = bucket;
+                        }
+                    }
+
+                    bucket = (bucket + 1) & (capacity - 1);
+                }
+            } finally {
+                if (usedBuckets > resizeThreshold) {
+                    try {
+                        rehash();
+                    } finally {
+                        unlockWrite(stamp);
+                    }
+                } else {
+                    unlockWrite(stamp);
+                }
+            }
+        }
+
+        boolean remove(long key, int keyHash) {
+            long stamp = writeLock();
+            int bucket = signSafeMod(keyHash, capacity);
+
+            try {
+                while (true) {
+                    int offset = bucket * bucketSize;
+                    byte state = table.getByte(offset + StateOffset);
+                    if (state == Used && table.getLong(offset + KeyOffset) == key) {
+                        --size;
+                        cleanBucket(bucket);
+                        return true;
+                    } else if (state == Empty) {
+                        // Key wasn't found
+                        return false;
+                    }
+
+                    bucket = (bucket + 1) & (capacity - 1);
+                }
+            } finally {
+                unlockWrite(stamp);
+            }
+        }
+
+        private void cleanBucket(int bucket) {
+            int nextInArray = (bucket + 1) & (capacity - 1);
+            if (table.getByte(nextInArray * bucketSize + StateOffset) == Empty) {
+                table.setByte(bucket * bucketSize + StateOffset, Empty);
+                --usedBuckets;
+            } else {
+                table.setByte(bucket * bucketSize + StateOffset, Deleted);
+            }
+        }
+
+        void clear() {
+            long stamp = writeLock();
+
+            try {
+                table.setZero(0, capacity * bucketSize);
+                this.size = 0;
+                this.usedBuckets = 0;
+            } finally {
+                unlockWrite(stamp);
+            }
+        }
+
+        void forEach(EntryProcessor processor) {
+            long stamp = readLock();
+            try {
+                ByteBuf struct = table.duplicate();
+                for (int bucket = 0; bucket < capacity; bucket++) {
+                    int offset = bucket * bucketSize;
+                    if (table.getByte(offset + StateOffset) == Used) {
+                        struct.setIndex(offset + StructOffset, offset + bucketSize);
+                        processor.accept(table.getLong(offset + KeyOffset), struct);
+                    }
+                }
+            } finally {
+                unlockRead(stamp);
+            }
+        }
+
+        void close() {
+            long stamp = writeLock();
+            try {
+                if (table.refCnt() > 0) {
+                    table.release();
+                }
+                this.size = 0;
+            } finally {
+                unlockWrite(stamp);
+            }
+        }
+
+        private void rehash() {
+            // Expand the hashmap
+            int newCapacity = capacity * 2;
+            ByteBuf newTable = newTable(newCapacity);
+
+            // Re-hash table
+            for (int bucket = 0; bucket < capacity; bucket++) {
+                int offset = bucket * bucketSize;
+                if (table.getByte(offset + StateOffset) == Used) {
+                    insertKeyValueNoLock(newTable, newCapacity, table.getLong(offset + KeyOffset), offset);
+                }
+            }
+
+            table.release();
+            table = newTable;
+            usedBuckets = size;
+            capacity = newCapacity;
+            resizeThreshold = (int) (capacity * MapFillFactor);
+        }
+
+        private void insertKeyValueNoLock(ByteBuf newTable, int newCapacity, long key, int srcOffset) {
+            int bucket = signSafeMod(hash(key), newCapacity);
+
+            while (true) {
+                int offset = bucket * bucketSize;
+                if (newTable.getByte(offset + StateOffset) == Empty) {
+                    // The bucket is empty, so we can use it
+                    newTable.setBytes(offset, table, srcOffset, bucketSize);
+                    return;
+                }
+
+                bucket = (bucket + 1) & (newCapacity - 1);
+            }
+        }
+    }
+
+    private static final long HashMixer = 0xc6a4a7935bd1e995L;
+    private static final int R = 47;
+
+    static final long hash(long key) {
+        long hash = key * HashMixer;
+        hash ^= hash >>> R;
+        hash *= HashMixer;
+        return hash;
+    }
+
+    static final int signSafeMod(long n, int max) {
+        return (int) (n & (max - 1));
+    }
+
+    private static int alignToPowerOfTwo(int n) {
+        return (int) Math.pow(2, 32 - Integer.numberOfLeadingZeros(n - 1));
+    }
+}
@@ -0,0 +1,198 @@
+/**
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *
+ */
+package org.apache.bookkeeper.bookie;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import io.netty.buffer.ByteBufAllocator;
+import io.netty.buffer.Unpooled;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.Random;
+
+import org.apache.bookkeeper.util.NativeIO;
+import org.junit.After;
+import org.junit.Assume;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * Unit test for {@link DirectIOBufferedChannel}.
+ */
+public class DirectIOBufferedChannelTest {
+
+    private static final int CAPACITY = 4 * NativeIO.DIRECT_IO_ALIGNMENT;
+
+    @Rule
+    public TemporaryFolder tmpDir = new TemporaryFolder();
+
+    private final Random random = new Random(1);
+    private File file;
+    private RandomAccessFile raf;
+    private DirectIOBufferedChannel channel;
+
+    @Before
+    public void setup() throws Exception {
+        Assume.assumeTrue(NativeIO.isDirectIOSupported());
+        file = tmpDir.newFile();
+    }
+
+    @After
+    public void teardown() throws Exception {
+        if (channel != null) {
+            channel.close();
+        }
+        if (raf != null) {
+            raf.close();
+        }
+    }
+
+    private void open(long position) throws IOException {
+        raf = new RandomAccessFile(file, "rw");
+        raf.getChannel().position(position);
+        try {
+            channel = DirectIOBufferedChannel.open(ByteBufAllocator.DEFAULT, file, raf.getChannel(), CAPACITY);
+        } catch (IOException e) {
+            // The file system of the temporary folder might not support O_DIRECT
+            Assume.assumeNoException(e);
+        }
+    }
+
+    private byte[] randomBytes(int length) {
+        byte[] bytes = new byte[length];
+        random.nextBytes(bytes);
+        return bytes;
+    }
+
+    private void assertFileContent(byte[] expected) throws IOException {
+        byte[] content = Files.readAllBytes(file.toPath());
+        // The last block is padded with zeros
+        assertTrue(content.length >= expected.length);
+        assertEquals(0, content.length % NativeIO.DIRECT_IO_ALIGNMENT);
+        assertArrayEquals(expected, Arrays.copyOf(content, expected.length));
+    }
+
+    @Test
+    public void unalignedWrites() throws Exception {
+        open(0);
+
+        byte[] data = randomBytes(10 * CAPACITY + 123);
+        int written = 0;
+        int chunk = 1;
+        while (written < data.length) {
+            int length = Math.min(chunk, data.length - written);
+            channel.write(Unpooled.wrappedBuffer(data, written, length));
+            written += length;
+            chunk = chunk * 3 + 7;
+            // Flush at unaligned positions, so that the last partial block is rewritten
+            channel.flush();
+        }
+
+        assertEquals(data.length, channel.position());
+        assertFileContent(data);
+    }
+
+    @Test
+    public void reopenAtUnalignedPosition() throws Exception {
+        byte[] existing = randomBytes(NativeIO.DIRECT_IO_ALIGNMENT + 100);
+        Files.write(file.toPath(), existing);
+        open(existing.length);
+
+        byte[] data = randomBytes(2 * CAPACITY);
+        channel.write(Unpooled.wrappedBuffer(data));
+        channel.flush();
+
+        byte[] expected = Arrays.copyOf(existing, existing.length + data.length);
+        System.arraycopy(data, 0, expected, existing.length, data.length);
+        assertEquals(expected.length, channel.position());
+        assertFileContent(expected);
+    }
+
+    @Test
+    public void transferFrom() throws Exception {
+        File srcFile = tmpDir.newFile();
+        byte[] src = randomBytes(3 * CAPACITY + 500);
+        Files.write(srcFile.toPath(), src);
+        open(0);
+
+        byte[] head = randomBytes(100);
+        byte[] tail = randomBytes(300);
+        int srcPosition = 17;
+        int count = src.length - 1000;
+        try (RandomAccessFile srcRaf = new RandomAccessFile(srcFile, "r")) {
+            channel.write(Unpooled.wrappedBuffer(head));
+            channel.transferFrom(srcRaf.getChannel(), srcPosition, count);
+            assertEquals(head.length + count, channel.position());
+            channel.write(Unpooled.wrappedBuffer(tail));
+            channel.flush();
+
+            // Transferring past the end of the source file fails
+            try {
+                channel.transferFrom(srcRaf.getChannel(), src.length - 10, 20);
+                fail("The transfer should have failed");
+            } catch (IOException e) {
+                // Expected
+            }
+        }
+
+        byte[] expected = new byte[head.length + count + tail.length];
+        System.arraycopy(head, 0, expected, 0, head.length);
+        System.arraycopy(src, srcPosition, expected, head.length, count);
+        System.arraycopy(tail, 0, expected, head.length + count, tail.length);
+        assertFileContent(expected);
+    }
+
+    @Test
+    public void extendWithZeros() throws Exception {
+        open(0);
+
+        byte[] head = randomBytes(CAPACITY + 100);
+        channel.write(Unpooled.wrappedBuffer(head));
+        channel.flush();
+        assertEquals(CAPACITY + NativeIO.DIRECT_IO_ALIGNMENT, file.length());
+
+        // The last block is already written by the flushes
+        channel.extendWithZeros(CAPACITY + 10);
+        assertEquals(CAPACITY + NativeIO.DIRECT_IO_ALIGNMENT, file.length());
+
+        channel.extendWithZeros(10 * CAPACITY + 1);
+        assertEquals(10 * CAPACITY + NativeIO.DIRECT_IO_ALIGNMENT, file.length());
+
+        // The data written afterwards overwrites the zeros
+        byte[] tail = randomBytes(2 * CAPACITY);
+        channel.write(Unpooled.wrappedBuffer(tail));
+        channel.flush();
+
+        byte[] expected = new byte[10 * CAPACITY + NativeIO.DIRECT_IO_ALIGNMENT];
+        System.arraycopy(head, 0, expected, 0, head.length);
+        System.arraycopy(tail, 0, expected, head.length, tail.length);
+        assertFileContent(expected);
+    }
+}
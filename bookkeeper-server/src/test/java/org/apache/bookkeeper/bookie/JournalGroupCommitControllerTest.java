@@ -0,0 +1,161 @@
+/**
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *
+ */
+package org.apache.bookkeeper.bookie;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+
+/**
+ * Unit test for {@link JournalGroupCommitController}.
+ */
+public class JournalGroupCommitControllerTest {
+
+    private static final long MAX_GROUP_WAIT = TimeUnit.MILLISECONDS.toNanos(10);
+
+    private static long millis(long millis) {
+        return TimeUnit.MILLISECONDS.toNanos(millis);
+    }
+
+    /**
+     * Flush groups of entries at a steady rate, starting at the given time.
+     *
+     * @return the time of the last flush
+     */
+    private static long flush(JournalGroupCommitController controller, long startNanos, int numFlushes,
+                              int entriesPerFlush, long intervalNanos) {
+        long now = startNanos;
+        for (int i = 0; i < numFlushes; i++) {
+            now += intervalNanos;
+            controller.onFlush(entriesPerFlush, now);
+        }
+        return now;
+    }
+
+    @Test
+    public void maxGroupWaitUntilEnoughSamples() {
+        JournalGroupCommitController controller = new JournalGroupCommitController(MAX_GROUP_WAIT, 0);
+        assertEquals(MAX_GROUP_WAIT, controller.getGroupWaitNanos());
+        assertEquals(0, controller.getSyncLatencyNanos());
+
+        // No arrival rate before the second flush
+        controller.recordSyncLatency(millis(2));
+        assertEquals(MAX_GROUP_WAIT, controller.onFlush(100, millis(1)));
+
+        // No sync latency yet
+        controller = new JournalGroupCommitController(MAX_GROUP_WAIT, 0);
+        controller.onFlush(100, millis(1));
+        assertEquals(MAX_GROUP_WAIT, controller.onFlush(100, millis(2)));
+    }
+
+    @Test
+    public void windowIsTheSyncLatencyWithoutTarget() {
+        JournalGroupCommitController controller = new JournalGroupCommitController(MAX_GROUP_WAIT, 0);
+        controller.recordSyncLatency(millis(2));
+        controller.onFlush(100, millis(1));
+        assertEquals(millis(2), controller.onFlush(100, millis(2)));
+        assertEquals(millis(2), controller.getGroupWaitNanos());
+        assertEquals(millis(2), controller.getSyncLatencyNanos());
+    }
+
+    @Test
+    public void windowIsBoundedByTheMaxGroupWait() {
+        JournalGroupCommitController controller = new JournalGroupCommitController(MAX_GROUP_WAIT, 0);
+        controller.recordSyncLatency(millis(50));
+        controller.onFlush(100, millis(1));
+        assertEquals(MAX_GROUP_WAIT, controller.onFlush(100, millis(2)));
+    }
+
+    @Test
+    public void windowIsWhatIsLeftOfTheTargetLatency() {
+        JournalGroupCommitController controller = new JournalGroupCommitController(MAX_GROUP_WAIT, millis(5));
+        controller.recordSyncLatency(millis(2));
+        controller.onFlush(100, millis(1));
+        assertEquals(millis(3), controller.onFlush(100, millis(2)));
+
+        // The force writes alone exceed the target, don't wait at all
+        controller = new JournalGroupCommitController(MAX_GROUP_WAIT, millis(5));
+        controller.recordSyncLatency(millis(6));
+        controller.onFlush(100, millis(1));
+        assertEquals(0, controller.onFlush(100, millis(2)));
+    }
+
+    @Test
+    public void noWindowWhenNoOtherEntryIsExpected() {
+        JournalGroupCommitController controller = new JournalGroupCommitController(MAX_GROUP_WAIT, 0);
+        controller.recordSyncLatency(millis(2));
+        // One entry every 100ms, waiting 2ms would only delay it
+        controller.onFlush(1, millis(100));
+        assertEquals(0, controller.onFlush(1, millis(200)));
+    }
+
+    @Test
+    public void windowGrowsAndShrinksWithTheLoad() {
+        JournalGroupCommitController controller = new JournalGroupCommitController(MAX_GROUP_WAIT, 0);
+        controller.recordSyncLatency(millis(1));
+        long now = flush(controller, 0, 2, 100, millis(1));
+        assertEquals(millis(1), controller.getGroupWaitNanos());
+
+        // The force writes get slower: the window grows with them, up to the max group wait
+        long previous = controller.getGroupWaitNanos();
+        for (int i = 0; i < 50; i++) {
+            controller.recordSyncLatency(millis(20));
+            now = flush(controller, now, 1, 100, millis(1));
+            long window = controller.getGroupWaitNanos();
+            assertTrue(window >= previous);
+            previous = window;
+        }
+        assertEquals(MAX_GROUP_WAIT, controller.getGroupWaitNanos());
+
+        // The load drops: the window shrinks until it is not worth waiting anymore
+        now = flush(controller, now, 1, 1, millis(1000));
+        assertTrue(controller.getGroupWaitNanos() <= MAX_GROUP_WAIT);
+        now = flush(controller, now, 50, 1, millis(1000));
+        assertEquals(0, controller.getGroupWaitNanos());
+
+        // The force writes get faster and the load comes back
+        for (int i = 0; i < 50; i++) {
+            controller.recordSyncLatency(millis(1));
+        }
+        flush(controller, now, 50, 100, millis(1));
+        long window = controller.getGroupWaitNanos();
+        assertTrue(window > 0 && window < millis(2));
+    }
+
+    @Test
+    public void negativeNanoTime() {
+        // System.nanoTime() has an arbitrary origin, and can be negative
+        JournalGroupCommitController controller = new JournalGroupCommitController(MAX_GROUP_WAIT, 0);
+        controller.recordSyncLatency(millis(2));
+        long start = -TimeUnit.SECONDS.toNanos(100);
+        controller.onFlush(100, start);
+        assertEquals(millis(2), controller.onFlush(100, start + millis(1)));
+
+        // Also across zero
+        controller = new JournalGroupCommitController(MAX_GROUP_WAIT, 0);
+        controller.recordSyncLatency(millis(2));
+        controller.onFlush(100, -millis(1));
+        assertEquals(millis(2), controller.onFlush(100, 0));
+    }
+}
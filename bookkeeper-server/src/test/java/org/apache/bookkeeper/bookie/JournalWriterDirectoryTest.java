@@ -0,0 +1,111 @@
+/**
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *
+ */
+package org.apache.bookkeeper.bookie;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.util.HashSet;
+import java.util.Set;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * Unit test for the journal writer directories of {@link Journal}.
+ */
+public class JournalWriterDirectoryTest {
+
+    @Rule
+    public TemporaryFolder tmpDir = new TemporaryFolder();
+
+    @Test
+    public void firstWriterUsesTheJournalDirectory() throws Exception {
+        File journalDir = tmpDir.newFolder();
+
+        assertEquals(journalDir, Journal.getJournalWriterDirectory(journalDir, 0));
+        assertEquals(new File(journalDir, "writer-1"), Journal.getJournalWriterDirectory(journalDir, 1));
+        assertEquals(new File(journalDir, "writer-7"), Journal.getJournalWriterDirectory(journalDir, 7));
+    }
+
+    @Test
+    public void journalIndexes() {
+        int numDirs = 3;
+        int numWriters = 4;
+
+        // The first writers keep the indexes of their journal directories
+        for (int dir = 0; dir < numDirs; dir++) {
+            assertEquals(dir, Journal.getJournalIndex(numDirs, dir, 0));
+        }
+
+        // Every writer of every directory gets its own index, without any gap
+        Set<Integer> indexes = new HashSet<>();
+        for (int writer = 0; writer < numWriters; writer++) {
+            for (int dir = 0; dir < numDirs; dir++) {
+                int index = Journal.getJournalIndex(numDirs, dir, writer);
+                assertTrue(index >= 0 && index < numDirs * numWriters);
+                assertTrue("duplicated index " + index, indexes.add(index));
+            }
+        }
+    }
+
+    @Test
+    public void configuredWritersWithoutWriterDirectories() throws Exception {
+        File journalDir = tmpDir.newFolder();
+        assertEquals(1, Journal.getNumJournalWriters(journalDir, 1));
+        assertEquals(4, Journal.getNumJournalWriters(journalDir, 4));
+
+        // A missing journal directory has no writer directory
+        assertEquals(2, Journal.getNumJournalWriters(new File(journalDir, "missing"), 2));
+    }
+
+    @Test
+    public void writerDirectoriesWithJournalFilesAreKept() throws Exception {
+        File journalDir = tmpDir.newFolder();
+
+        // Left by a previous run with 4 writers per directory
+        for (int writer = 1; writer < 4; writer++) {
+            File writerDir = Journal.getJournalWriterDirectory(journalDir, writer);
+            assertTrue(writerDir.mkdir());
+            assertTrue(new File(writerDir, Long.toHexString(writer) + ".txn").createNewFile());
+        }
+
+        assertEquals(4, Journal.getNumJournalWriters(journalDir, 1));
+        assertEquals(4, Journal.getNumJournalWriters(journalDir, 2));
+        assertEquals(6, Journal.getNumJournalWriters(journalDir, 6));
+    }
+
+    @Test
+    public void writerDirectoriesWithoutJournalFilesAreIgnored() throws Exception {
+        File journalDir = tmpDir.newFolder();
+
+        File emptyWriterDir = Journal.getJournalWriterDirectory(journalDir, 5);
+        assertTrue(emptyWriterDir.mkdir());
+        assertTrue(new File(emptyWriterDir, "lastMark").createNewFile());
+        assertTrue(new File(journalDir, "writer-x").mkdir());
+        assertTrue(new File(new File(journalDir, "writer-x"), "1.txn").createNewFile());
+        assertTrue(new File(journalDir, "writer-9.txn").createNewFile());
+
+        assertEquals(2, Journal.getNumJournalWriters(journalDir, 2));
+    }
+}
@@ -0,0 +1,111 @@
+/**
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *
+ */
+package org.apache.bookkeeper.bookie;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Unit test for the default implementation of {@link LedgerStorage#getEntries}.
+ */
+public class LedgerStorageGetEntriesTest {
+
+    private static final long LEDGER_ID = 1L;
+    private static final int NUM_ENTRIES = 10;
+    private static final int ENTRY_SIZE = 100;
+
+    private LedgerStorage storage;
+    private final List<ByteBuf> readEntries = new ArrayList<>();
+
+    @Before
+    public void setup() throws Exception {
+        storage = mock(LedgerStorage.class);
+        when(storage.getEntries(anyLong(), anyLong(), anyInt(), anyLong())).thenCallRealMethod();
+        when(storage.getEntry(eq(LEDGER_ID), anyLong())).then(invocation -> {
+            long entryId = invocation.getArgument(1);
+            if (entryId < 0 || entryId >= NUM_ENTRIES) {
+                throw new Bookie.NoEntryException(LEDGER_ID, entryId);
+            }
+            ByteBuf entry = Unpooled.buffer(ENTRY_SIZE);
+            entry.writeLong(entryId);
+            entry.writerIndex(ENTRY_SIZE);
+            readEntries.add(entry);
+            return entry;
+        });
+    }
+
+    private static void assertEntries(List<ByteBuf> entries, long firstEntryId, int count) {
+        assertEquals(count, entries.size());
+        for (int i = 0; i < count; i++) {
+            assertEquals(firstEntryId + i, entries.get(i).getLong(0));
+        }
+        entries.forEach(ByteBuf::release);
+    }
+
+    @Test
+    public void readUpToMaxCount() throws Exception {
+        assertEntries(storage.getEntries(LEDGER_ID, 2, 5, Long.MAX_VALUE), 2, 5);
+    }
+
+    @Test
+    public void stopAtFirstMissingEntry() throws Exception {
+        assertEntries(storage.getEntries(LEDGER_ID, 7, 100, Long.MAX_VALUE), 7, 3);
+    }
+
+    @Test
+    public void stopBeforeExceedingMaxSize() throws Exception {
+        assertEntries(storage.getEntries(LEDGER_ID, 0, 100, 3 * ENTRY_SIZE + 50), 0, 3);
+        // The entry read past the size limit is released
+        for (ByteBuf entry : readEntries.subList(3, readEntries.size())) {
+            assertEquals(0, entry.refCnt());
+        }
+    }
+
+    @Test
+    public void firstEntryIsAlwaysReturned() throws Exception {
+        assertEntries(storage.getEntries(LEDGER_ID, 0, 100, 1), 0, 1);
+    }
+
+    @Test
+    public void missingFirstEntry() throws Exception {
+        try {
+            storage.getEntries(LEDGER_ID, NUM_ENTRIES, 100, Long.MAX_VALUE);
+            fail("should have failed on the missing first entry");
+        } catch (Bookie.NoEntryException e) {
+            // expected
+        }
+        assertEquals(0, readEntries.size());
+    }
+}
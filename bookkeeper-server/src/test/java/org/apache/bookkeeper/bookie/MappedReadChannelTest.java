@@ -0,0 +1,162 @@
+/**
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *
+ */
+package org.apache.bookkeeper.bookie;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+
+import org.apache.bookkeeper.conf.ServerConfiguration;
+import org.apache.bookkeeper.util.DiskChecker;
+import org.junit.Assume;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * Unit test for {@link MappedReadChannel}.
+ */
+public class MappedReadChannelTest {
+
+    private static final Path PROC_SELF_MAPS = Paths.get("/proc/self/maps");
+
+    @Rule
+    public TemporaryFolder tmpDir = new TemporaryFolder();
+
+    @Test
+    public void read() throws Exception {
+        File file = tmpDir.newFile();
+        Files.write(file.toPath(), "0123456789".getBytes(StandardCharsets.UTF_8));
+
+        try (FileChannel fc = new RandomAccessFile(file, "r").getChannel()) {
+            MappedReadChannel channel = new MappedReadChannel(fc);
+            assertEquals(10, channel.size());
+
+            ByteBuf buf = Unpooled.buffer(16);
+            assertEquals(4, channel.read(buf, 2, 4));
+            assertEquals("2345", buf.toString(StandardCharsets.UTF_8));
+
+            // Short read at the end of the file
+            buf.clear();
+            assertEquals(2, channel.read(buf, 8, 4));
+            assertEquals("89", buf.toString(StandardCharsets.UTF_8));
+
+            buf.clear();
+            assertEquals(-1, channel.read(buf, 10, 4));
+            channel.close();
+        }
+    }
+
+    @Test
+    public void closedChannelIsUnmapped() throws Exception {
+        File file = tmpDir.newFile();
+        Files.write(file.toPath(), "0123456789".getBytes(StandardCharsets.UTF_8));
+
+        try (FileChannel fc = new RandomAccessFile(file, "r").getChannel()) {
+            MappedReadChannel channel = new MappedReadChannel(fc);
+            assertTrue(channel.isMapped());
+
+            channel.close();
+            assertFalse(channel.isMapped());
+            // Closing twice is harmless
+            channel.close();
+
+            try {
+                channel.read(Unpooled.buffer(16), 0, 4);
+                fail("Should not be able to read from a closed channel");
+            } catch (BufferedChannelBase.BufferedChannelClosedException e) {
+                // expected
+            }
+        }
+    }
+
+    @Test
+    public void removedEntryLogIsUnmapped() throws Exception {
+        Assume.assumeTrue(Files.isReadable(PROC_SELF_MAPS));
+
+        File ledgerDir = tmpDir.newFolder();
+        File currentDir = Bookie.getCurrentDirectory(ledgerDir);
+        Bookie.checkDirectoryStructure(currentDir);
+
+        ServerConfiguration conf = new ServerConfiguration();
+        conf.setLedgerDirNames(new String[] { ledgerDir.getAbsolutePath() });
+        conf.setEntryLogReadMode(EntryLogger.ENTRY_LOG_READ_MODE_MMAP);
+        // Roll the entry log after a few entries
+        conf.setEntryLogSizeLimit(64 * 1024);
+
+        LedgerDirsManager ledgerDirsManager = new LedgerDirsManager(conf, conf.getLedgerDirs(),
+                new DiskChecker(conf.getDiskUsageThreshold(), conf.getDiskUsageWarnThreshold()));
+        EntryLogger entryLogger = new EntryLogger(conf, ledgerDirsManager);
+        try {
+            long firstLocation = entryLogger.addEntry(1L, entry(1L, 0L), true);
+            long location = firstLocation;
+            for (long entryId = 1; EntryLogger.logIdForOffset(location) == EntryLogger.logIdForOffset(firstLocation);
+                    entryId++) {
+                location = entryLogger.addEntry(1L, entry(1L, entryId), true);
+            }
+            entryLogger.flush();
+
+            // The first entry log was rotated, so it's memory mapped when it's read
+            long logId = EntryLogger.logIdForOffset(firstLocation);
+            assertNotEquals(logId, EntryLogger.logIdForOffset(location));
+            ByteBuf read = entryLogger.readEntry(1L, 0L, firstLocation);
+            try {
+                assertEquals(0L, read.getLong(8));
+            } finally {
+                read.release();
+            }
+
+            String logPath = new File(currentDir, Long.toHexString(logId) + ".log").getCanonicalPath();
+            assertTrue(isMapped(logPath));
+
+            assertTrue(entryLogger.removeEntryLog(logId));
+            assertFalse(isMapped(logPath));
+        } finally {
+            entryLogger.shutdown();
+        }
+    }
+
+    private static boolean isMapped(String path) throws IOException {
+        return Files.readAllLines(PROC_SELF_MAPS).stream().anyMatch(line -> line.contains(path));
+    }
+
+    private static ByteBuf entry(long ledgerId, long entryId) {
+        ByteBuf entry = Unpooled.buffer(16 * 1024);
+        entry.writeLong(ledgerId);
+        entry.writeLong(entryId);
+        entry.writerIndex(entry.capacity());
+        return entry;
+    }
+}
@@ -0,0 +1,252 @@
+/**
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *
+ */
+package org.apache.bookkeeper.bookie.storage.ldb;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import io.netty.buffer.ByteBufAllocator;
+
+import java.util.Collections;
+
+import org.apache.bookkeeper.bookie.EntryLocation;
+import org.apache.bookkeeper.bookie.storage.ldb.KeyValueStorage.Batch;
+import org.apache.bookkeeper.conf.ServerConfiguration;
+import org.apache.bookkeeper.test.TestStatsProvider;
+import org.apache.bookkeeper.test.TestStatsProvider.TestCounter;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * Unit test for {@link CompactEntryLocationIndex}.
+ */
+public class CompactEntryLocationIndexTest {
+
+    private static final long LOG_1 = 1L << 32;
+    private static final long LOG_2 = 2L << 32;
+
+    @Rule
+    public TemporaryFolder tmpDir = new TemporaryFolder();
+
+    private ServerConfiguration conf;
+    private TestStatsProvider statsProvider;
+    private CompactEntryLocationIndex index;
+
+    @Before
+    public void setup() throws Exception {
+        conf = new ServerConfiguration();
+        statsProvider = new TestStatsProvider();
+        index = newIndex();
+    }
+
+    @After
+    public void teardown() throws Exception {
+        index.close();
+    }
+
+    private CompactEntryLocationIndex newIndex() throws Exception {
+        return new CompactEntryLocationIndex(conf, KeyValueStorageRocksDB.factory,
+                tmpDir.newFolder().getAbsolutePath(), statsProvider.getStatsLogger(""), ByteBufAllocator.DEFAULT);
+    }
+
+    private long hits() {
+        TestCounter counter = statsProvider.getCounter("location-runs-hits");
+        return counter != null ? counter.get() : 0;
+    }
+
+    private long misses() {
+        TestCounter counter = statsProvider.getCounter("location-runs-misses");
+        return counter != null ? counter.get() : 0;
+    }
+
+    private void addLocations(long ledgerId, long firstEntryId, long... locations) throws Exception {
+        Batch batch = index.newBatch();
+        try {
+            for (int i = 0; i < locations.length; i++) {
+                index.addLocation(batch, ledgerId, firstEntryId + i, locations[i]);
+            }
+            batch.flush();
+        } finally {
+            batch.close();
+        }
+    }
+
+    @Test
+    public void consecutiveEntriesAreEncodedInASingleRun() throws Exception {
+        long[] locations = new long[100];
+        for (int i = 0; i < locations.length; i++) {
+            locations[i] = LOG_1 + 1024 + i * 100;
+        }
+        addLocations(1, 0, locations);
+
+        // A single run of 100 entries, with the offsets on 4 bytes, fits in the initial buffer of 64 entries
+        // grown once
+        long memorySize = index.getMemorySize();
+        assertTrue(memorySize >= 100 * 4);
+        assertTrue(memorySize <= 128 * 4);
+
+        for (int i = 0; i < locations.length; i++) {
+            assertEquals(locations[i], index.getLocation(1, i));
+        }
+        assertEquals(100, hits());
+        assertEquals(0, misses());
+
+        // Entries after the run
+        assertEquals(0, index.getLocation(1, 100));
+        assertEquals(0, index.getLocation(2, 0));
+        assertEquals(2, misses());
+    }
+
+    @Test
+    public void newRunsWhenTheEntriesAreNotContiguous() throws Exception {
+        // Another entry log
+        addLocations(1, 0, LOG_1 + 1024, LOG_1 + 2048);
+        addLocations(1, 2, LOG_2 + 1024, LOG_2 + 2048);
+        // Before the location of the first entry of the run
+        addLocations(1, 4, LOG_2 + 512);
+        // A gap in the entry ids
+        addLocations(1, 10, LOG_2 + 4096, LOG_2 + 8192);
+
+        assertEquals(LOG_1 + 1024, index.getLocation(1, 0));
+        assertEquals(LOG_1 + 2048, index.getLocation(1, 1));
+        assertEquals(LOG_2 + 1024, index.getLocation(1, 2));
+        assertEquals(LOG_2 + 2048, index.getLocation(1, 3));
+        assertEquals(LOG_2 + 512, index.getLocation(1, 4));
+        assertEquals(LOG_2 + 4096, index.getLocation(1, 10));
+        assertEquals(LOG_2 + 8192, index.getLocation(1, 11));
+        assertEquals(7, hits());
+        assertEquals(0, misses());
+
+        // In the gap
+        assertEquals(0, index.getLocation(1, 5));
+        assertEquals(0, index.getLocation(1, 9));
+        assertEquals(2, misses());
+    }
+
+    @Test
+    public void lookupsSpanningRuns() throws Exception {
+        addLocations(1, 0, LOG_1 + 1024, LOG_1 + 2048);
+        addLocations(1, 2, LOG_2 + 1024, LOG_2 + 2048);
+        addLocations(1, 4, LOG_2 + 512);
+
+        long[] locations = new long[4];
+        assertEquals(4, index.getLocations(1, 1, locations));
+        assertArrayEquals(new long[] { LOG_1 + 2048, LOG_2 + 1024, LOG_2 + 2048, LOG_2 + 512 }, locations);
+        assertEquals(4, hits());
+        assertEquals(0, misses());
+    }
+
+    @Test
+    public void lookupsSpanningAGapFallBackToRocksDb() throws Exception {
+        addLocations(1, 0, LOG_1 + 1024, LOG_1 + 2048);
+        addLocations(1, 4, LOG_1 + 4096, LOG_1 + 8192);
+
+        long[] locations = new long[6];
+        assertEquals(4, index.getLocations(1, 0, locations));
+        assertArrayEquals(new long[] { LOG_1 + 1024, LOG_1 + 2048, 0, 0, LOG_1 + 4096, LOG_1 + 8192 }, locations);
+        assertEquals(0, hits());
+        assertEquals(6, misses());
+
+        // Past the last entry
+        locations = new long[3];
+        assertEquals(1, index.getLocations(1, 5, locations));
+        assertArrayEquals(new long[] { LOG_1 + 8192, 0, 0 }, locations);
+    }
+
+    @Test
+    public void runsOfADeletedLedgerAreDropped() throws Exception {
+        addLocations(1, 0, LOG_1 + 1024, LOG_1 + 2048);
+        addLocations(2, 0, LOG_1 + 4096);
+        long memorySize = index.getMemorySize();
+
+        index.delete(1);
+        assertTrue(index.getMemorySize() < memorySize);
+
+        // The locations are still in RocksDB until the indexes of the deleted ledgers are removed
+        assertEquals(LOG_1 + 1024, index.getLocation(1, 0));
+        assertEquals(0, hits());
+        assertEquals(1, misses());
+
+        // The locations of a deleted ledger are not added to the runs anymore
+        addLocations(1, 2, LOG_1 + 8192);
+        assertEquals(LOG_1 + 8192, index.getLocation(1, 2));
+        assertEquals(2, misses());
+
+        assertEquals(LOG_1 + 4096, index.getLocation(2, 0));
+        assertEquals(1, hits());
+
+        index.delete(2);
+        assertEquals(0, index.getMemorySize());
+    }
+
+    @Test
+    public void runsOfACompactedLedgerAreDropped() throws Exception {
+        addLocations(1, 0, LOG_1 + 1024, LOG_1 + 2048, LOG_1 + 4096);
+
+        // The compaction moves an entry to another entry log
+        index.updateLocations(Collections.singletonList(new EntryLocation(1, 1, LOG_2 + 1024)));
+        assertEquals(0, index.getMemorySize());
+
+        assertEquals(LOG_1 + 1024, index.getLocation(1, 0));
+        assertEquals(LOG_2 + 1024, index.getLocation(1, 1));
+        assertEquals(LOG_1 + 4096, index.getLocation(1, 2));
+        assertEquals(0, hits());
+        assertEquals(3, misses());
+
+        // The following entries are added to new runs
+        addLocations(1, 3, LOG_2 + 2048);
+        assertEquals(LOG_2 + 2048, index.getLocation(1, 3));
+        assertEquals(1, hits());
+    }
+
+    @Test
+    public void ledgersWithTheLowestIdsAreEvictedFirst() throws Exception {
+        index.close();
+        conf.setProperty(CompactEntryLocationIndex.COMPACT_LOCATION_INDEX_MAX_SIZE_MB, 1);
+        index = newIndex();
+
+        // Each ledger has a run of a single entry, which takes at least 256 bytes
+        int numLedgers = 8 * 1024;
+        Batch batch = index.newBatch();
+        try {
+            for (long ledgerId = 0; ledgerId < numLedgers; ledgerId++) {
+                index.addLocation(batch, ledgerId, 0, LOG_1 + 1024 * (ledgerId + 1));
+            }
+            batch.flush();
+        } finally {
+            batch.close();
+        }
+        assertTrue(index.getMemorySize() <= 1024 * 1024);
+        assertTrue(index.getMemorySize() > 0);
+
+        // The evicted ledgers are still found in RocksDB
+        assertEquals(LOG_1 + 1024, index.getLocation(0, 0));
+        assertEquals(0, hits());
+        assertEquals(1, misses());
+
+        assertEquals(LOG_1 + 1024 * numLedgers, index.getLocation(numLedgers - 1, 0));
+        assertEquals(1, hits());
+    }
+}
@@ -111,7 +111,11 @@ public class DeleteLedgerMetadataTest extends LedgerMetadataInitialization {
         }
 
         this.ledgerMetadataIndex.removeDeletedLedgers();
-        verify(super.getKeyValueStorage()).delete(this.ledgerIdByte);
+        verify(super.getBatch()).remove(this.ledgerIdByte);
+        verify(super.getBatch(), never()).deleteRange(any(), any());
+        verify(super.getBatch()).flush();
+        verify(super.getBatch()).close();
+        verify(super.getKeyValueStorage(), never()).delete(any());
         this.ledgerMetadataIndex.get(this.ledgerId);
     }
 }
@@ -0,0 +1,66 @@
+/**
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *
+ */
+package org.apache.bookkeeper.bookie.storage.ldb;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+/**
+ * Unit test for {@link FrequencySketch}.
+ */
+public class FrequencySketchTest {
+
+    @Test
+    public void incrementAndSaturate() {
+        FrequencySketch sketch = new FrequencySketch(1024);
+        assertEquals(0, sketch.frequency(1, 1));
+
+        for (int i = 1; i <= 10; i++) {
+            sketch.increment(1, 1);
+            assertEquals(i, sketch.frequency(1, 1));
+        }
+
+        // The counters are capped at 15
+        for (int i = 0; i < 10; i++) {
+            sketch.increment(1, 1);
+        }
+        assertEquals(15, sketch.frequency(1, 1));
+        assertEquals(0, sketch.frequency(1, 2));
+    }
+
+    @Test
+    public void resetHalvesTheFrequencies() {
+        // 64 slots, so the counters are halved after 640 additions
+        FrequencySketch sketch = new FrequencySketch(64);
+        for (int i = 0; i < 8; i++) {
+            sketch.increment(1, 1);
+        }
+        assertEquals(8, sketch.frequency(1, 1));
+
+        for (int i = 0; i < 700; i++) {
+            sketch.increment(2, i);
+        }
+        int frequency = sketch.frequency(1, 1);
+        assertTrue("frequency not halved: " + frequency, frequency >= 4 && frequency < 8);
+    }
+}
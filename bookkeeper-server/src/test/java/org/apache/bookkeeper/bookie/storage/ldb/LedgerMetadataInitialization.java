@@ -27,6 +27,9 @@ public abstract class LedgerMetadataInitialization {
     @Mock
     private KeyValueStorage keyValueStorage;
 
+    @Mock
+    private KeyValueStorage.Batch batch;
+
     @Rule
     public MockitoRule mockitoRule = MockitoJUnit.rule();
 
@@ -40,6 +43,7 @@ public abstract class LedgerMetadataInitialization {
     public void configureMock() throws IOException {
 
         when(this.keyValueStorageFactory.newKeyValueStorage(any(),any(),any())).thenReturn(this.keyValueStorage);
+        when(this.keyValueStorage.newBatch()).thenReturn(this.batch);
         when(keyValueStorage.iterator()).then(invocationOnMock -> {
             this.iterator = this.ledgerDataMap.entrySet().iterator();
             return this.closeableIterator;
@@ -65,4 +69,8 @@ public abstract class LedgerMetadataInitialization {
     protected KeyValueStorage getKeyValueStorage() {
         return keyValueStorage;
     }
+
+    protected KeyValueStorage.Batch getBatch() {
+        return batch;
+    }
 }
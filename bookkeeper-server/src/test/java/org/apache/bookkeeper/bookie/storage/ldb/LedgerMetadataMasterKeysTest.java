@@ -0,0 +1,160 @@
+/**
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *
+ */
+package org.apache.bookkeeper.bookie.storage.ldb;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import com.google.protobuf.ByteString;
+
+import java.nio.ByteBuffer;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.apache.bookkeeper.bookie.storage.ldb.DbLedgerStorageDataFormats.LedgerData;
+import org.apache.bookkeeper.conf.ServerConfiguration;
+import org.apache.bookkeeper.stats.NullStatsLogger;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Unit test for the reference counted master keys of {@link LedgerMetadataIndex}.
+ */
+public class LedgerMetadataMasterKeysTest extends LedgerMetadataInitialization {
+
+    private static final ByteString KEY_A = ByteString.copyFrom("key-a", UTF_8);
+    private static final ByteString KEY_B = ByteString.copyFrom("key-b", UTF_8);
+    private static final ByteString KEY_C = ByteString.copyFrom("key-c", UTF_8);
+    private static final ByteString KEY_D = ByteString.copyFrom("key-d", UTF_8);
+
+    private LedgerMetadataIndex ledgerMetadataIndex;
+
+    public LedgerMetadataMasterKeysTest() {
+        super(true);
+    }
+
+    private static byte[] key(long ledgerId) {
+        return ByteBuffer.allocate(Long.BYTES).putLong(ledgerId).array();
+    }
+
+    private static LedgerData ledgerData(ByteString masterKey, boolean fenced) {
+        return LedgerData.newBuilder().setExists(true).setFenced(fenced).setMasterKey(masterKey).build();
+    }
+
+    @Before
+    public void setup() throws Exception {
+        // Ledgers 1 and 2 share the same master key
+        Map<byte[], byte[]> ledgerDataMap = new HashMap<>();
+        ledgerDataMap.put(key(1), ledgerData(KEY_A, false).toByteArray());
+        ledgerDataMap.put(key(2), ledgerData(KEY_A, true).toByteArray());
+        ledgerDataMap.put(key(3), ledgerData(KEY_B, false).toByteArray());
+        setLedgerDataMap(ledgerDataMap);
+
+        ledgerMetadataIndex = new LedgerMetadataIndex(new ServerConfiguration(), getKeyValueStorageFactory(),
+                "fakePath", new NullStatsLogger());
+    }
+
+    private void assertLedger(long ledgerId, ByteString masterKey, boolean fenced) throws Exception {
+        LedgerData ledgerData = ledgerMetadataIndex.get(ledgerId);
+        assertTrue(ledgerData.getExists());
+        assertEquals(fenced, ledgerData.getFenced());
+        assertEquals(masterKey, ledgerData.getMasterKey());
+        assertEquals(fenced, ledgerMetadataIndex.isFenced(ledgerId));
+        assertTrue(ledgerMetadataIndex.exists(ledgerId));
+    }
+
+    @Test
+    public void sharedMasterKeysAreLoadedOnce() throws Exception {
+        assertEquals(2, ledgerMetadataIndex.getMasterKeysCount());
+        assertLedger(1, KEY_A, false);
+        assertLedger(2, KEY_A, true);
+        assertLedger(3, KEY_B, false);
+    }
+
+    @Test
+    public void masterKeyIsReleasedWithItsLastLedger() throws Exception {
+        ledgerMetadataIndex.delete(3);
+        assertEquals(1, ledgerMetadataIndex.getMasterKeysCount());
+        assertFalse(ledgerMetadataIndex.exists(3));
+
+        // Still referenced by ledger 2
+        ledgerMetadataIndex.delete(1);
+        assertEquals(1, ledgerMetadataIndex.getMasterKeysCount());
+        assertLedger(2, KEY_A, true);
+
+        ledgerMetadataIndex.delete(2);
+        assertEquals(0, ledgerMetadataIndex.getMasterKeysCount());
+
+        // Deleting a missing ledger doesn't release anything
+        ledgerMetadataIndex.delete(2);
+        assertEquals(0, ledgerMetadataIndex.getMasterKeysCount());
+    }
+
+    @Test
+    public void replacedMasterKeyIsReleased() throws Exception {
+        ledgerMetadataIndex.set(3, ledgerData(KEY_C, false));
+        assertEquals(2, ledgerMetadataIndex.getMasterKeysCount());
+        assertLedger(3, KEY_C, false);
+
+        // Setting the same master key again doesn't leak a reference
+        ledgerMetadataIndex.set(3, ledgerData(KEY_C, true));
+        ledgerMetadataIndex.set(4, ledgerData(KEY_C, false));
+        ledgerMetadataIndex.delete(3);
+        ledgerMetadataIndex.delete(4);
+        assertEquals(1, ledgerMetadataIndex.getMasterKeysCount());
+
+        // Fencing keeps the master key
+        assertTrue(ledgerMetadataIndex.setFenced(1));
+        assertFalse(ledgerMetadataIndex.setFenced(1));
+        assertLedger(1, KEY_A, true);
+        assertEquals(1, ledgerMetadataIndex.getMasterKeysCount());
+    }
+
+    @Test
+    public void releasedMasterKeyIdIsReused() throws Exception {
+        ledgerMetadataIndex.delete(3);
+        assertEquals(1, ledgerMetadataIndex.getMasterKeysCount());
+
+        // The new master key may take the id released by ledger 3, without affecting the other ledgers
+        ledgerMetadataIndex.setMasterKey(5, KEY_D.toByteArray());
+        assertEquals(2, ledgerMetadataIndex.getMasterKeysCount());
+        assertLedger(5, KEY_D, false);
+        assertLedger(1, KEY_A, false);
+        assertLedger(2, KEY_A, true);
+
+        // Many distinct master keys, growing the registry
+        for (int i = 0; i < 100; i++) {
+            ledgerMetadataIndex.setMasterKey(100 + i, ("key-" + i).getBytes(UTF_8));
+        }
+        assertEquals(102, ledgerMetadataIndex.getMasterKeysCount());
+        for (int i = 0; i < 100; i++) {
+            assertLedger(100 + i, ByteString.copyFrom("key-" + i, UTF_8), false);
+        }
+
+        for (int i = 0; i < 100; i++) {
+            ledgerMetadataIndex.delete(100 + i);
+        }
+        assertEquals(2, ledgerMetadataIndex.getMasterKeysCount());
+        assertLedger(5, KEY_D, false);
+    }
+}
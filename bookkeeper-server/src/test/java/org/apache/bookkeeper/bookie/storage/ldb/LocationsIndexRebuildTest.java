@@ -0,0 +1,201 @@
+/**
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *
+ */
+package org.apache.bookkeeper.bookie.storage.ldb;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufAllocator;
+import io.netty.buffer.Unpooled;
+
+import java.io.File;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+
+import org.apache.bookkeeper.bookie.Bookie;
+import org.apache.bookkeeper.bookie.CheckpointSource;
+import org.apache.bookkeeper.bookie.CheckpointSource.Checkpoint;
+import org.apache.bookkeeper.bookie.Checkpointer;
+import org.apache.bookkeeper.bookie.LedgerDirsManager;
+import org.apache.bookkeeper.bookie.storage.ldb.KeyValueStorage.BulkLoad;
+import org.apache.bookkeeper.bookie.storage.ldb.KeyValueStorageFactory.DbConfigType;
+import org.apache.bookkeeper.conf.ServerConfiguration;
+import org.apache.bookkeeper.stats.NullStatsLogger;
+import org.apache.bookkeeper.util.DiskChecker;
+import org.apache.commons.io.FileUtils;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * Unit test for {@link LocationsIndexRebuildOp} and the bulk loads of the locations.
+ */
+public class LocationsIndexRebuildTest {
+
+    private static final int NUM_LEDGERS = 10;
+    private static final int NUM_ENTRIES = 500;
+    private static final int ENTRY_SIZE = 1024;
+
+    @Rule
+    public TemporaryFolder tmpDir = new TemporaryFolder();
+
+    private ServerConfiguration conf;
+    private File currentDir;
+    private ScheduledExecutorService gcExecutor;
+
+    @Before
+    public void setup() throws Exception {
+        File ledgerDir = tmpDir.newFolder();
+        currentDir = Bookie.getCurrentDirectory(ledgerDir);
+        Bookie.checkDirectoryStructure(currentDir);
+
+        conf = new ServerConfiguration();
+        conf.setLedgerDirNames(new String[] { ledgerDir.getAbsolutePath() });
+        // Spread the entries over several entry logs
+        conf.setEntryLogSizeLimit(1024 * 1024);
+        gcExecutor = Executors.newSingleThreadScheduledExecutor();
+    }
+
+    @After
+    public void teardown() {
+        gcExecutor.shutdown();
+    }
+
+    private SingleDirectoryDbLedgerStorage newStorage() throws Exception {
+        LedgerDirsManager ledgerDirsManager = new LedgerDirsManager(conf, conf.getLedgerDirs(),
+                new DiskChecker(conf.getDiskUsageThreshold(), conf.getDiskUsageWarnThreshold()));
+        CheckpointSource checkpointSource = mock(CheckpointSource.class);
+        when(checkpointSource.newCheckpoint()).thenReturn(Checkpoint.MAX);
+        return new SingleDirectoryDbLedgerStorage(conf, null, ledgerDirsManager, ledgerDirsManager, null,
+                checkpointSource, Checkpointer.NULL, NullStatsLogger.INSTANCE, ByteBufAllocator.DEFAULT, gcExecutor,
+                4 * 1024 * 1024, 1024 * 1024);
+    }
+
+    private static ByteBuf entry(long ledgerId, long entryId) {
+        ByteBuf entry = Unpooled.buffer(ENTRY_SIZE);
+        entry.writeLong(ledgerId);
+        entry.writeLong(entryId);
+        entry.writeLong(entryId - 1);
+        while (entry.writerIndex() < ENTRY_SIZE) {
+            entry.writeByte((int) entryId);
+        }
+        return entry;
+    }
+
+    private void rebuildIndex(LocationsIndexRebuildOp rebuildOp) throws Exception {
+        SingleDirectoryDbLedgerStorage storage = newStorage();
+        for (long ledgerId = 0; ledgerId < NUM_LEDGERS; ledgerId++) {
+            storage.setMasterKey(ledgerId, new byte[0]);
+        }
+        for (long entryId = 0; entryId < NUM_ENTRIES; entryId++) {
+            for (long ledgerId = 0; ledgerId < NUM_LEDGERS; ledgerId++) {
+                storage.addEntry(entry(ledgerId, entryId));
+            }
+        }
+        storage.flush();
+        storage.shutdown();
+
+        // Lose the locations index
+        FileUtils.deleteDirectory(new File(currentDir, "locations"));
+
+        rebuildOp.initiate();
+        assertTrue(new File(currentDir, "locations").isDirectory());
+        assertFalse(new File(currentDir, "locations.REBUILD").exists());
+        assertFalse(new File(currentDir, "locations.REBUILD.progress").exists());
+        assertFalse(new File(currentDir, "locations.REBUILD.tmp").exists());
+
+        storage = newStorage();
+        try {
+            for (long ledgerId = 0; ledgerId < NUM_LEDGERS; ledgerId++) {
+                for (long entryId = 0; entryId < NUM_ENTRIES; entryId++) {
+                    ByteBuf res = storage.getEntry(ledgerId, entryId);
+                    assertEquals(entry(ledgerId, entryId), res);
+                    res.release();
+                }
+            }
+        } finally {
+            storage.shutdown();
+        }
+    }
+
+    @Test
+    public void rebuildIndex() throws Exception {
+        rebuildIndex(new LocationsIndexRebuildOp(conf));
+    }
+
+    @Test
+    public void rebuildIndexWithSeveralLoadsPerEntryLog() throws Exception {
+        // Each entry log holds about a thousand entries, which are loaded in the index by small batches
+        rebuildIndex(new LocationsIndexRebuildOp(conf, 4, false, 100));
+    }
+
+    @Test
+    public void memoryIsSharedByTheScanningThreads() {
+        long maxLocationsInMemory = 16 * 1024 * 1024;
+        assertEquals(maxLocationsInMemory, LocationsIndexRebuildOp.getMaxLocationsPerLoad(maxLocationsInMemory, 1));
+        assertEquals(maxLocationsInMemory / 8,
+                LocationsIndexRebuildOp.getMaxLocationsPerLoad(maxLocationsInMemory, 8));
+        assertEquals(LocationsIndexRebuildOp.MIN_LOCATIONS_PER_LOAD,
+                LocationsIndexRebuildOp.getMaxLocationsPerLoad(maxLocationsInMemory, 1024));
+    }
+
+    @Test
+    public void bulkLoad() throws Exception {
+        KeyValueStorage storage = KeyValueStorageRocksDB.factory.newKeyValueStorage(
+                tmpDir.newFolder().getAbsolutePath(), DbConfigType.Huge, conf);
+        String sstPath = new File(tmpDir.getRoot(), "bulk.sst").getAbsolutePath();
+        try {
+            storage.put(new byte[] { 0 }, new byte[] { 0 });
+
+            try (BulkLoad bulkLoad = storage.newBulkLoad(sstPath)) {
+                for (int i = 1; i <= 100; i++) {
+                    bulkLoad.put(new byte[] { (byte) i }, new byte[] { (byte) -i });
+                }
+                // The keys are only visible once loaded
+                assertNull(storage.get(new byte[] { 1 }));
+                bulkLoad.load();
+            }
+            assertFalse(new File(sstPath).exists());
+
+            assertArrayEquals(new byte[] { 0 }, storage.get(new byte[] { 0 }));
+            for (int i = 1; i <= 100; i++) {
+                assertArrayEquals(new byte[] { (byte) -i }, storage.get(new byte[] { (byte) i }));
+            }
+            assertNull(storage.get(new byte[] { (byte) 101 }));
+
+            // An empty bulk load doesn't change the storage
+            try (BulkLoad bulkLoad = storage.newBulkLoad(sstPath)) {
+                bulkLoad.load();
+            }
+            assertArrayEquals(new byte[] { 0 }, storage.get(new byte[] { 0 }));
+        } finally {
+            storage.close();
+        }
+    }
+}
@@ -0,0 +1,238 @@
+/**
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *
+ */
+package org.apache.bookkeeper.bookie.storage.ldb;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufAllocator;
+import io.netty.buffer.Unpooled;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.junit.Test;
+
+/**
+ * Unit test for {@link ReadCache}.
+ */
+public class ReadCacheTest {
+
+    private static ByteBuf entry(int size, int value) {
+        ByteBuf entry = Unpooled.buffer(size);
+        entry.writerIndex(size);
+        entry.setByte(0, value);
+        return entry;
+    }
+
+    @Test
+    public void simple() {
+        ReadCache cache = new ReadCache(ByteBufAllocator.DEFAULT, 10 * 1024, 1024);
+
+        assertEquals(0, cache.count());
+        assertEquals(0, cache.size());
+
+        for (int i = 0; i < 10; i++) {
+            ByteBuf entry = entry(1024, i);
+            cache.put(0, i, entry);
+            entry.release();
+        }
+
+        for (int i = 0; i < 10; i++) {
+            ByteBuf res = cache.get(0, i);
+            assertNotNull(res);
+            assertEquals(1024, res.readableBytes());
+            assertEquals(i, res.getByte(0));
+            assertFalse(res.isReadOnly());
+            res.release();
+        }
+        assertEquals(10, cache.count());
+        assertEquals(10 * 1024, cache.size());
+
+        // The next entry recycles the oldest segment, and its entry is dropped from the index
+        ByteBuf entry = entry(1024, 10);
+        cache.put(0, 10, entry);
+        entry.release();
+
+        assertNull(cache.get(0, 0));
+        for (int i = 1; i <= 10; i++) {
+            ByteBuf res = cache.get(0, i);
+            assertNotNull(res);
+            assertEquals(i, res.getByte(0));
+            res.release();
+        }
+        assertEquals(10, cache.count());
+        assertEquals(10 * 1024, cache.size());
+
+        cache.close();
+    }
+
+    @Test
+    public void rotationInvalidatesOldGenerations() {
+        // 2 segments of 1024 bytes, each holding 16 entries of 64 bytes
+        ReadCache cache = new ReadCache(ByteBufAllocator.DEFAULT, 2 * 1024, 1024);
+
+        // Go around the ring a few times
+        for (int i = 0; i < 100; i++) {
+            ByteBuf entry = entry(64, i);
+            cache.put(1, i, entry);
+            entry.release();
+        }
+
+        // Only the last full segment and the current one are still cached
+        int firstCached = 100 - 16 - (100 % 16);
+        for (int i = 0; i < 100; i++) {
+            ByteBuf res = cache.get(1, i);
+            if (i < firstCached) {
+                assertNull("entry " + i + " should have been evicted", res);
+            } else {
+                assertNotNull("entry " + i + " should be cached", res);
+                assertEquals((byte) i, res.getByte(0));
+                res.release();
+            }
+        }
+        assertEquals(100 - firstCached, cache.count());
+
+        cache.close();
+    }
+
+    @Test
+    public void concurrentPutAndGet() throws Exception {
+        ReadCache cache = new ReadCache(ByteBufAllocator.DEFAULT, 4 * 1024, 1024);
+        int numReaders = 4;
+        int numEntries = 100_000;
+        ExecutorService executor = Executors.newFixedThreadPool(numReaders + 1);
+        AtomicBoolean done = new AtomicBoolean();
+        CountDownLatch started = new CountDownLatch(numReaders);
+
+        try {
+            Future<?>[] readers = new Future<?>[numReaders];
+            for (int r = 0; r < numReaders; r++) {
+                readers[r] = executor.submit(() -> {
+                    started.countDown();
+                    long entryId = 0;
+                    while (!done.get()) {
+                        ByteBuf res = cache.get(1, entryId++ % numEntries);
+                        if (res != null) {
+                            // A hit must never return the content of another entry, even when the segment is
+                            // recycled concurrently
+                            assertEquals(64, res.readableBytes());
+                            assertEquals((byte) ((entryId - 1) % numEntries), res.getByte(0));
+                            res.release();
+                        }
+                    }
+                    return null;
+                });
+            }
+
+            started.await();
+            executor.submit(() -> {
+                for (int i = 0; i < numEntries; i++) {
+                    ByteBuf entry = entry(64, i);
+                    cache.put(1, i, entry);
+                    entry.release();
+                }
+                return null;
+            }).get(1, TimeUnit.MINUTES);
+            done.set(true);
+
+            for (Future<?> reader : readers) {
+                reader.get(1, TimeUnit.MINUTES);
+            }
+        } finally {
+            done.set(true);
+            executor.shutdownNow();
+            cache.close();
+        }
+    }
+
+    @Test
+    public void zeroCopyHit() {
+        ReadCache cache = new ReadCache(ByteBufAllocator.DEFAULT, 10 * 1024, 1024, true);
+
+        ByteBuf entry = entry(64, 7);
+        cache.put(1, 0, entry);
+        entry.release();
+
+        ByteBuf res = cache.get(1, 0);
+        assertNotNull(res);
+        assertEquals(64, res.readableBytes());
+        assertEquals(7, res.getByte(0));
+        assertTrue(res.isReadOnly());
+        res.release();
+
+        assertNull(cache.get(1, 1));
+        cache.close();
+    }
+
+    @Test
+    public void rotationDeferredWhileSliceIsHeld() {
+        // 2 segments of 1024 bytes, each holding 16 entries of 64 bytes
+        ReadCache cache = new ReadCache(ByteBufAllocator.DEFAULT, 2 * 1024, 1024, true);
+        ByteBuf entry = entry(64, 1);
+
+        for (int i = 0; i < 32; i++) {
+            cache.put(1, i, entry);
+        }
+        assertEquals(32, cache.count());
+        assertEquals(2 * 1024, cache.size());
+
+        // Holding a slice of the first segment pins it
+        ByteBuf slice = cache.get(1, 0);
+        assertNotNull(slice);
+
+        // The rollover into the first segment is deferred, and the new entries are not cached. The current segment
+        // offset must not overflow while the rollover keeps being deferred
+        int deferredPuts = 100_000;
+        for (int i = 0; i < deferredPuts; i++) {
+            cache.put(2, i, entry);
+        }
+        assertEquals(deferredPuts, cache.getDeferredRotations());
+        assertNull(cache.get(2, 0));
+        assertEquals(32, cache.count());
+        assertEquals(2 * 1024, cache.size());
+
+        // The held slice is still valid
+        assertEquals(64, slice.readableBytes());
+        assertEquals(1, slice.getByte(0));
+        slice.release();
+
+        // Once the slice is released, the cache rolls over to the first segment again
+        cache.put(3, 0, entry);
+        ByteBuf res = cache.get(3, 0);
+        assertNotNull(res);
+        assertEquals(1, res.getByte(0));
+        res.release();
+        assertNull(cache.get(1, 0));
+        assertEquals(deferredPuts, cache.getDeferredRotations());
+
+        entry.release();
+        cache.close();
+    }
+}
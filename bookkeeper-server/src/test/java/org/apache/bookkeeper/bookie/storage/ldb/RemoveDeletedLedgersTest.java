@@ -0,0 +1,125 @@
+/**
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *
+ */
+package org.apache.bookkeeper.bookie.storage.ldb;
+
+import static org.junit.Assert.assertEquals;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+
+import org.apache.bookkeeper.conf.ServerConfiguration;
+import org.apache.bookkeeper.stats.NullStatsLogger;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.Parameterized;
+
+/**
+ * Unit test for the batched deletes of {@link LedgerMetadataIndex#removeDeletedLedgers()}.
+ */
+@RunWith(Parameterized.class)
+public class RemoveDeletedLedgersTest extends LedgerMetadataInitialization {
+
+    private final long[] deletedLedgers;
+    private final List<String> expectedOperations;
+
+    private final List<String> operations = new ArrayList<>();
+    private LedgerMetadataIndex ledgerMetadataIndex;
+
+    public RemoveDeletedLedgersTest(long[] deletedLedgers, List<String> expectedOperations) {
+        super(false);
+        this.deletedLedgers = deletedLedgers;
+        this.expectedOperations = expectedOperations;
+    }
+
+    @Parameterized.Parameters
+    public static Collection<Object[]> getTestParameters() {
+        List<Object[]> inputs = new ArrayList<>();
+
+        // Single ledger
+        inputs.add(input(new long[] { 7 }, "remove 7"));
+        // Consecutive ledgers, deleted in any order, are merged into a single range
+        inputs.add(input(new long[] { 3, 1, 2, 4 }, "deleteRange 1 5"));
+        // Duplicated ids
+        inputs.add(input(new long[] { 5, 5 }, "remove 5"));
+        inputs.add(input(new long[] { 6, 5, 5, 6, 7 }, "deleteRange 5 8"));
+        // Non-contiguous ids
+        inputs.add(input(new long[] { 1, 3, 5 }, "remove 1", "remove 3", "remove 5"));
+        inputs.add(input(new long[] { 10, 1, 2, 11, 12, 20 }, "deleteRange 1 3", "deleteRange 10 13", "remove 20"));
+        // Ranges that would end before their start as unsigned keys are never merged
+        inputs.add(input(new long[] { -1, 0, 1 }, "remove -1", "deleteRange 0 2"));
+        inputs.add(input(new long[] { Long.MAX_VALUE - 1, Long.MAX_VALUE },
+                "remove " + (Long.MAX_VALUE - 1), "remove " + Long.MAX_VALUE));
+
+        return inputs;
+    }
+
+    private static Object[] input(long[] deletedLedgers, String... expectedOperations) {
+        return new Object[] { deletedLedgers, Arrays.asList(expectedOperations) };
+    }
+
+    private static long toLong(byte[] key) {
+        return ByteBuffer.wrap(key).getLong();
+    }
+
+    @Before
+    public void setup() throws Exception {
+        // The keys are reused across the operations of the batch, so they are decoded when they are added
+        doAnswer(invocation -> {
+            operations.add("remove " + toLong(invocation.getArgument(0)));
+            return null;
+        }).when(getBatch()).remove(any());
+        doAnswer(invocation -> {
+            operations.add("deleteRange " + toLong(invocation.getArgument(0)) + " "
+                    + toLong(invocation.getArgument(1)));
+            return null;
+        }).when(getBatch()).deleteRange(any(), any());
+
+        ledgerMetadataIndex = new LedgerMetadataIndex(new ServerConfiguration(), getKeyValueStorageFactory(),
+                "fakePath", new NullStatsLogger());
+    }
+
+    @Test
+    public void removeDeletedLedgers() throws Exception {
+        for (long ledgerId : deletedLedgers) {
+            ledgerMetadataIndex.delete(ledgerId);
+        }
+
+        ledgerMetadataIndex.removeDeletedLedgers();
+
+        assertEquals(expectedOperations, operations);
+        verify(getBatch()).flush();
+        verify(getBatch()).close();
+        verify(getKeyValueStorage(), never()).delete(any());
+
+        // Nothing is left to delete
+        operations.clear();
+        ledgerMetadataIndex.removeDeletedLedgers();
+        assertEquals(0, operations.size());
+    }
+}
@@ -0,0 +1,129 @@
+/**
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *
+ */
+package org.apache.bookkeeper.bookie.storage.ldb;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufAllocator;
+import io.netty.buffer.Unpooled;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Unit test for {@link TinyLfuReadCache}.
+ */
+public class TinyLfuReadCacheTest {
+
+    // 2 KB of probation area, in 2 segments holding 16 entries each
+    private static final long CACHE_SIZE = 10 * 1024;
+    private static final int ENTRY_SIZE = 64;
+    private static final long FILLER_LEDGER_ID = 1000;
+
+    private TinyLfuReadCache cache;
+    private ByteBuf entry;
+    private long fillerEntryId = 0;
+
+    @Before
+    public void setup() {
+        cache = new TinyLfuReadCache(ByteBufAllocator.DEFAULT, CACHE_SIZE, false);
+        entry = Unpooled.buffer(ENTRY_SIZE);
+        entry.writerIndex(ENTRY_SIZE);
+    }
+
+    @After
+    public void teardown() {
+        entry.release();
+        cache.close();
+    }
+
+    private boolean isCached(long ledgerId, long entryId) {
+        ByteBuf res = cache.get(ledgerId, entryId);
+        if (res == null) {
+            return false;
+        }
+        res.release();
+        return true;
+    }
+
+    /**
+     * Insert enough entries through read-ahead to recycle the whole probation area.
+     */
+    private void evictProbation() {
+        for (int i = 0; i < 48; i++) {
+            cache.put(FILLER_LEDGER_ID, fillerEntryId++, entry);
+        }
+    }
+
+    @Test
+    public void readAheadEntryIsNotPromotedByASingleHit() {
+        cache.put(1, 0, entry);
+        assertEquals(1, cache.count());
+
+        assertTrue(isCached(1, 0));
+        evictProbation();
+        assertNull(cache.get(1, 0));
+    }
+
+    @Test
+    public void promotedEntryIsRemovedFromProbation() {
+        cache.put(1, 0, entry);
+        assertTrue(isCached(1, 0));
+        // The second hit promotes the entry, which is only kept in the protected area
+        assertTrue(isCached(1, 0));
+        assertEquals(1, cache.count());
+
+        evictProbation();
+        ByteBuf res = cache.get(1, 0);
+        assertNotNull(res);
+        assertEquals(ENTRY_SIZE, res.readableBytes());
+        res.release();
+    }
+
+    @Test
+    public void missFollowedByInsertIsCounted() {
+        assertNull(cache.get(1, 0));
+        cache.putAfterMiss(1, 0, entry);
+
+        // The miss and this hit reach the admission frequency
+        assertTrue(isCached(1, 0));
+        evictProbation();
+        assertTrue(isCached(1, 0));
+    }
+
+    @Test
+    public void missWithoutInsertIsNotCounted() {
+        // Misses for an entry the cache does not hold do not count toward its admission
+        for (int i = 0; i < 10; i++) {
+            assertNull(cache.get(1, 0));
+        }
+
+        cache.put(1, 0, entry);
+        assertTrue(isCached(1, 0));
+        evictProbation();
+        assertNull(cache.get(1, 0));
+    }
+}
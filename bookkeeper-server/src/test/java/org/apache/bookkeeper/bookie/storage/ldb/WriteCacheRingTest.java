@@ -0,0 +1,160 @@
+/**
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *
+ */
+package org.apache.bookkeeper.bookie.storage.ldb;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufAllocator;
+import io.netty.buffer.Unpooled;
+
+import java.io.File;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+
+import org.apache.bookkeeper.bookie.Bookie;
+import org.apache.bookkeeper.bookie.BookieException.OperationRejectedException;
+import org.apache.bookkeeper.bookie.CheckpointSource;
+import org.apache.bookkeeper.bookie.CheckpointSource.Checkpoint;
+import org.apache.bookkeeper.bookie.Checkpointer;
+import org.apache.bookkeeper.bookie.LedgerDirsManager;
+import org.apache.bookkeeper.conf.ServerConfiguration;
+import org.apache.bookkeeper.stats.NullStatsLogger;
+import org.apache.bookkeeper.util.DiskChecker;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * Unit test for the ring of write caches of {@link SingleDirectoryDbLedgerStorage}.
+ */
+public class WriteCacheRingTest {
+
+    private static final int RING_SIZE = 3;
+    // Each write cache of the ring holds 16 entries of 1 KB
+    private static final int ENTRY_SIZE = 1024;
+    private static final long WRITE_CACHE_SIZE = RING_SIZE * 16 * ENTRY_SIZE;
+
+    @Rule
+    public TemporaryFolder tmpDir = new TemporaryFolder();
+
+    private CheckpointSource checkpointSource;
+    private ScheduledExecutorService gcExecutor;
+    private SingleDirectoryDbLedgerStorage storage;
+
+    @Before
+    public void setup() throws Exception {
+        File ledgerDir = tmpDir.newFolder();
+        Bookie.checkDirectoryStructure(Bookie.getCurrentDirectory(ledgerDir));
+
+        ServerConfiguration conf = new ServerConfiguration();
+        conf.setLedgerDirNames(new String[] { ledgerDir.getAbsolutePath() });
+        conf.setProperty(SingleDirectoryDbLedgerStorage.WRITE_CACHE_RING_SIZE, RING_SIZE);
+        LedgerDirsManager ledgerDirsManager = new LedgerDirsManager(conf, conf.getLedgerDirs(),
+                new DiskChecker(conf.getDiskUsageThreshold(), conf.getDiskUsageWarnThreshold()));
+
+        checkpointSource = mock(CheckpointSource.class);
+        when(checkpointSource.newCheckpoint()).thenReturn(Checkpoint.MAX);
+        gcExecutor = Executors.newSingleThreadScheduledExecutor();
+
+        storage = new SingleDirectoryDbLedgerStorage(conf, null, ledgerDirsManager, ledgerDirsManager, null,
+                checkpointSource, Checkpointer.NULL, NullStatsLogger.INSTANCE, ByteBufAllocator.DEFAULT, gcExecutor,
+                WRITE_CACHE_SIZE, 1024 * 1024);
+    }
+
+    @After
+    public void teardown() throws Exception {
+        storage.shutdown();
+        gcExecutor.shutdown();
+    }
+
+    private static ByteBuf entry(long ledgerId, long entryId, int size) {
+        ByteBuf entry = Unpooled.buffer(size);
+        entry.writeLong(ledgerId);
+        entry.writeLong(entryId);
+        entry.writeLong(entryId - 1);
+        while (entry.writerIndex() < size) {
+            entry.writeByte((int) entryId);
+        }
+        return entry;
+    }
+
+    private void checkEntries(long ledgerId, int numEntries) throws Exception {
+        for (int i = 0; i < numEntries; i++) {
+            ByteBuf res = storage.getEntry(ledgerId, i);
+            ByteBuf expected = entry(ledgerId, i, ENTRY_SIZE);
+            assertEquals(expected, res);
+            res.release();
+        }
+    }
+
+    @Test
+    public void fullWriteCachesAreFlushedInBackground() throws Exception {
+        // Fill the ring several times over
+        int numEntries = 10 * RING_SIZE * 16;
+        for (int i = 0; i < numEntries; i++) {
+            storage.addEntry(entry(1, i, ENTRY_SIZE));
+        }
+
+        // The background flushes complete the checkpoint, so the journal can be trimmed
+        verify(checkpointSource, timeout(10_000).atLeastOnce()).checkpointComplete(eq(Checkpoint.MAX), eq(true));
+        checkEntries(1, numEntries);
+
+        storage.flush();
+        assertEquals(0, storage.getWriteCacheCount());
+        assertEquals(0, storage.getWriteCacheSize());
+        checkEntries(1, numEntries);
+    }
+
+    @Test
+    public void entriesAreReadFromEveryWriteCacheOfTheRing() throws Exception {
+        // Less entries than the ring can hold, so that some of them might still be in write caches waiting to be
+        // flushed
+        int numEntries = 2 * 16 + 8;
+        for (int i = 0; i < numEntries; i++) {
+            storage.addEntry(entry(2, i, ENTRY_SIZE));
+        }
+        checkEntries(2, numEntries);
+
+        ByteBuf lastEntry = storage.getLastEntry(2);
+        assertEquals(numEntries - 1, lastEntry.getLong(8));
+        lastEntry.release();
+    }
+
+    @Test
+    public void entryLargerThanAWriteCacheIsRejected() throws Exception {
+        try {
+            storage.addEntry(entry(3, 0, (int) (WRITE_CACHE_SIZE / RING_SIZE) + 1));
+            fail("The entry should have been rejected");
+        } catch (OperationRejectedException e) {
+            // Expected
+        }
+        assertEquals(0, storage.getWriteCacheCount());
+    }
+}
@@ -0,0 +1,218 @@
+/**
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *
+ */
+package org.apache.bookkeeper.client;
+
+import static org.junit.Assert.assertEquals;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyBoolean;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.argThat;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import com.google.common.collect.Lists;
+import io.netty.buffer.ByteBufAllocator;
+
+import java.util.ArrayList;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.bookkeeper.client.api.WriteFlag;
+import org.apache.bookkeeper.common.util.OrderedExecutor;
+import org.apache.bookkeeper.common.util.OrderedScheduler;
+import org.apache.bookkeeper.conf.ClientConfiguration;
+import org.apache.bookkeeper.net.BookieSocketAddress;
+import org.apache.bookkeeper.proto.BookieClient;
+import org.apache.bookkeeper.proto.BookkeeperInternalCallbacks.BatchedWriteCallback;
+import org.apache.bookkeeper.proto.BookkeeperInternalCallbacks.WriteCallback;
+import org.apache.bookkeeper.stats.NullStatsLogger;
+import org.apache.bookkeeper.util.ByteBufList;
+import org.apache.bookkeeper.versioning.LongVersion;
+import org.apache.bookkeeper.versioning.Versioned;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Unit test for the batched adds of {@link AddBatcher}.
+ */
+public class AddBatcherTest {
+
+    private static final long LEDGER_ID = 1L;
+    private static final int ENTRY_SIZE = 100;
+    private static final int NUM_ENTRIES = 10;
+
+    private final List<BookieSocketAddress> ensemble = Lists.newArrayList(
+            new BookieSocketAddress("127.0.0.1", 3181),
+            new BookieSocketAddress("127.0.0.2", 3181),
+            new BookieSocketAddress("127.0.0.3", 3181));
+    private OrderedExecutor mainWorkerPool;
+    private OrderedScheduler scheduler;
+    private BookieClient bookieClient;
+    private LedgerHandle lh;
+
+    // Result code of the batched adds sent to the first bookie
+    private int firstBookieBatchRc = BKException.Code.OK;
+
+    @Before
+    public void setup() throws Exception {
+        mainWorkerPool = OrderedExecutor.newBuilder().name("test-worker").numThreads(1).build();
+        scheduler = OrderedScheduler.newSchedulerBuilder().name("test-scheduler").numThreads(1).build();
+
+        // The batch is sent as soon as its size reaches the limit, well before the linger time
+        ClientConfiguration conf = new ClientConfiguration()
+                .setAddBatchEnabled(true)
+                .setAddBatchLingerMicros((int) TimeUnit.SECONDS.toMicros(10))
+                .setAddBatchMaxBytes(NUM_ENTRIES * ENTRY_SIZE);
+        ClientContext clientCtx = mock(ClientContext.class);
+        when(clientCtx.getConf()).thenReturn(ClientInternalConf.fromConfig(conf));
+        when(clientCtx.getPlacementPolicy()).thenReturn(new DefaultEnsemblePlacementPolicy());
+        when(clientCtx.getByteBufAllocator()).thenReturn(ByteBufAllocator.DEFAULT);
+        when(clientCtx.getMainWorkerPool()).thenReturn(mainWorkerPool);
+        when(clientCtx.getScheduler()).thenReturn(scheduler);
+        when(clientCtx.getClientStats()).thenReturn(BookKeeperClientStats.newInstance(NullStatsLogger.INSTANCE));
+        when(clientCtx.getBookieReadLatencyTracker()).thenReturn(new BookieReadLatencyTracker(10, TimeUnit.SECONDS));
+
+        bookieClient = mock(BookieClient.class);
+        when(bookieClient.isWritable(any(), anyLong())).thenReturn(true);
+        when(bookieClient.isBatchAddSupported(any())).thenReturn(true);
+        when(clientCtx.getBookieClient()).thenReturn(bookieClient);
+
+        doAnswer(invocation -> {
+            BookieSocketAddress addr = invocation.getArgument(0);
+            long firstEntryId = invocation.getArgument(3);
+            List<ByteBufList> toSend = invocation.getArgument(4);
+            BatchedWriteCallback cb = invocation.getArgument(5);
+            Object ctx = invocation.getArgument(6);
+            int rc = addr.equals(ensemble.get(0)) ? firstBookieBatchRc : BKException.Code.OK;
+            int count = toSend.size();
+            // Like the bookie client, complete the requests on the ordered thread of the ledger
+            mainWorkerPool.executeOrdered(LEDGER_ID,
+                    () -> cb.writeEntriesComplete(rc, LEDGER_ID, firstEntryId, count, addr, ctx));
+            return null;
+        }).when(bookieClient).addEntries(any(), anyLong(), any(), anyLong(), anyList(),
+                                         any(BatchedWriteCallback.class), any(), anyInt(), anyBoolean(), any());
+
+        doAnswer(invocation -> {
+            BookieSocketAddress addr = invocation.getArgument(0);
+            long entryId = invocation.getArgument(3);
+            WriteCallback cb = invocation.getArgument(5);
+            Object ctx = invocation.getArgument(6);
+            mainWorkerPool.executeOrdered(LEDGER_ID,
+                    () -> cb.writeComplete(BKException.Code.OK, LEDGER_ID, entryId, addr, ctx));
+            return null;
+        }).when(bookieClient).addEntry(any(), anyLong(), any(), anyLong(), any(ByteBufList.class),
+                                       any(WriteCallback.class), any(), anyInt(), anyBoolean(), any());
+
+        // The batching is only used when each entry is written to the whole ensemble
+        LedgerMetadata metadata = LedgerMetadataBuilder.create()
+                .withEnsembleSize(3).withWriteQuorumSize(3).withAckQuorumSize(2)
+                .withPassword(new byte[0]).withDigestType(BookKeeper.DigestType.CRC32C.toApiDigestType())
+                .newEnsembleEntry(0L, ensemble)
+                .build();
+        lh = new LedgerHandle(clientCtx, LEDGER_ID, new Versioned<>(metadata, new LongVersion(0L)),
+                              BookKeeper.DigestType.CRC32C, new byte[0], EnumSet.noneOf(WriteFlag.class));
+    }
+
+    @After
+    public void teardown() {
+        mainWorkerPool.shutdown();
+        scheduler.shutdown();
+    }
+
+    private void addAndCheck() throws Exception {
+        CountDownLatch latch = new CountDownLatch(NUM_ENTRIES);
+        List<Integer> results = new ArrayList<>();
+        List<Long> entryIds = new ArrayList<>();
+        for (int i = 0; i < NUM_ENTRIES; i++) {
+            lh.asyncAddEntry(new byte[ENTRY_SIZE], (rc, handle, entryId, ctx) -> {
+                synchronized (results) {
+                    results.add(rc);
+                    entryIds.add(entryId);
+                }
+                latch.countDown();
+            }, null);
+        }
+        latch.await(10, TimeUnit.SECONDS);
+
+        synchronized (results) {
+            assertEquals(NUM_ENTRIES, results.size());
+            for (int i = 0; i < NUM_ENTRIES; i++) {
+                assertEquals(BKException.Code.OK, (int) results.get(i));
+                assertEquals(i, (long) entryIds.get(i));
+            }
+        }
+        assertEquals(NUM_ENTRIES - 1, lh.getLastAddPushed());
+    }
+
+    @Test
+    public void consecutiveAddsAreSentInASingleRequest() throws Exception {
+        addAndCheck();
+
+        for (BookieSocketAddress bookie : ensemble) {
+            verify(bookieClient, times(1)).addEntries(eq(bookie), eq(LEDGER_ID), any(), eq(0L),
+                    argThat(toSend -> toSend.size() == NUM_ENTRIES), any(BatchedWriteCallback.class), any(),
+                    anyInt(), anyBoolean(), any());
+        }
+        verify(bookieClient, never()).addEntry(any(), anyLong(), any(), anyLong(), any(ByteBufList.class),
+                any(WriteCallback.class), any(), anyInt(), anyBoolean(), any());
+    }
+
+    @Test
+    public void entriesAreSentOneByOneToBookiesWithoutBatchedAdds() throws Exception {
+        when(bookieClient.isBatchAddSupported(ensemble.get(1))).thenReturn(false);
+
+        addAndCheck();
+
+        verify(bookieClient, never()).addEntries(any(), anyLong(), any(), anyLong(), anyList(),
+                any(BatchedWriteCallback.class), any(), anyInt(), anyBoolean(), any());
+        for (BookieSocketAddress bookie : ensemble) {
+            verify(bookieClient, times(NUM_ENTRIES)).addEntry(eq(bookie), eq(LEDGER_ID), any(), anyLong(),
+                    any(ByteBufList.class), any(WriteCallback.class), any(), anyInt(), anyBoolean(), any());
+        }
+    }
+
+    @Test
+    public void rejectedBatchIsResentOneByOne() throws Exception {
+        firstBookieBatchRc = BKException.Code.IllegalOpException;
+
+        addAndCheck();
+
+        for (BookieSocketAddress bookie : ensemble) {
+            verify(bookieClient, times(1)).addEntries(eq(bookie), eq(LEDGER_ID), any(), eq(0L), anyList(),
+                    any(BatchedWriteCallback.class), any(), anyInt(), anyBoolean(), any());
+        }
+        // Only the bookie that rejected the batch gets the entries one by one
+        verify(bookieClient, times(NUM_ENTRIES)).addEntry(eq(ensemble.get(0)), eq(LEDGER_ID), any(), anyLong(),
+                any(ByteBufList.class), any(WriteCallback.class), any(), anyInt(), anyBoolean(), any());
+        verify(bookieClient, never()).addEntry(eq(ensemble.get(1)), anyLong(), any(), anyLong(),
+                any(ByteBufList.class), any(WriteCallback.class), any(), anyInt(), anyBoolean(), any());
+    }
+}
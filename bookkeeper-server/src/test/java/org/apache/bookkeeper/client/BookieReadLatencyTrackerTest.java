@@ -0,0 +1,97 @@
+/**
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *
+ */
+package org.apache.bookkeeper.client;
+
+import static org.junit.Assert.assertEquals;
+
+import com.google.common.base.Ticker;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.bookkeeper.net.BookieSocketAddress;
+import org.junit.Test;
+
+/**
+ * Unit test for {@link BookieReadLatencyTracker}.
+ */
+public class BookieReadLatencyTrackerTest {
+
+    private static final long HALF_LIFE_NANOS = TimeUnit.SECONDS.toNanos(10);
+
+    private final BookieSocketAddress bookie1 = new BookieSocketAddress("127.0.0.1", 3181);
+    private final BookieSocketAddress bookie2 = new BookieSocketAddress("127.0.0.2", 3181);
+
+    private final AtomicLong nowNanos = new AtomicLong(System.nanoTime());
+    private final BookieReadLatencyTracker tracker = new BookieReadLatencyTracker(10, TimeUnit.SECONDS,
+            new Ticker() {
+                @Override
+                public long read() {
+                    return nowNanos.get();
+                }
+            });
+
+    @Test
+    public void unknownBookie() {
+        assertEquals(-1L, tracker.getReadLatencyNanos(bookie1));
+    }
+
+    @Test
+    public void movingAverage() {
+        tracker.recordReadLatency(bookie1, 1000);
+        assertEquals(1000, tracker.getReadLatencyNanos(bookie1));
+
+        tracker.recordReadLatency(bookie1, 2000);
+        assertEquals(1200, tracker.getReadLatencyNanos(bookie1));
+        assertEquals(-1L, tracker.getReadLatencyNanos(bookie2));
+    }
+
+    @Test
+    public void estimateDecaysWhileTheBookieIsNotRead() {
+        tracker.recordReadLatency(bookie1, 1000);
+
+        nowNanos.addAndGet(HALF_LIFE_NANOS);
+        assertEquals(500, tracker.getReadLatencyNanos(bookie1));
+
+        nowNanos.addAndGet(HALF_LIFE_NANOS);
+        assertEquals(250, tracker.getReadLatencyNanos(bookie1));
+
+        // The new sample is averaged with the decayed estimate
+        tracker.recordReadLatency(bookie1, 1250);
+        assertEquals(450, tracker.getReadLatencyNanos(bookie1));
+    }
+
+    @Test
+    public void unusedEstimatesAreDropped() {
+        tracker.recordReadLatency(bookie1, 1000);
+        tracker.recordReadLatency(bookie2, 1000);
+        assertEquals(2, tracker.getNumEstimates());
+
+        // The estimate of the first bookie is still looked up, the second bookie left the cluster
+        for (int i = 0; i < 11; i++) {
+            nowNanos.addAndGet(HALF_LIFE_NANOS);
+            tracker.getReadLatencyNanos(bookie1);
+        }
+        assertEquals(1, tracker.getNumEstimates());
+        assertEquals(-1L, tracker.getReadLatencyNanos(bookie2));
+        assertEquals(0, tracker.getReadLatencyNanos(bookie1));
+    }
+}
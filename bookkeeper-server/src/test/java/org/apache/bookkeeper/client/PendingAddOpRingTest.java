@@ -0,0 +1,235 @@
+/**
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *
+ */
+package org.apache.bookkeeper.client;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import static org.mockito.Mockito.mock;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.junit.Test;
+
+/**
+ * Unit test for {@link PendingAddOpRing}.
+ */
+public class PendingAddOpRingTest {
+
+    private static PendingAddOp op(long entryId) {
+        PendingAddOp op = mock(PendingAddOp.class);
+        op.entryId = entryId;
+        return op;
+    }
+
+    private static List<PendingAddOp> ops(long firstEntryId, int count) {
+        List<PendingAddOp> ops = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            ops.add(op(firstEntryId + i));
+        }
+        return ops;
+    }
+
+    private static void assertPolledInOrder(PendingAddOpRing ring, List<PendingAddOp> ops) {
+        for (PendingAddOp op : ops) {
+            assertSame(op, ring.peek());
+            assertSame(op, ring.poll());
+        }
+        assertTrue(ring.isEmpty());
+        assertNull(ring.peek());
+        assertNull(ring.poll());
+    }
+
+    @Test
+    public void emptyRing() {
+        PendingAddOpRing ring = new PendingAddOpRing(0L);
+        assertEquals(0, ring.size());
+        assertNull(ring.peek());
+        assertNull(ring.poll());
+        assertFalse(ring.iterator().hasNext());
+    }
+
+    @Test
+    public void operationsArePolledInEntryIdOrder() {
+        PendingAddOpRing ring = new PendingAddOpRing(10L);
+        List<PendingAddOp> ops = ops(10L, 100);
+        for (PendingAddOp op : ops) {
+            assertTrue(ring.offer(op));
+        }
+        assertEquals(100, ring.size());
+        assertPolledInOrder(ring, ops);
+    }
+
+    @Test
+    public void headIsHiddenUntilItIsPublished() {
+        PendingAddOpRing ring = new PendingAddOpRing(0L);
+        List<PendingAddOp> ops = ops(0L, 3);
+        ring.offer(ops.get(2));
+        ring.offer(ops.get(1));
+
+        // The later operations are pending, but the queue can't move past the missing head
+        assertEquals(2, ring.size());
+        assertNull(ring.peek());
+        assertNull(ring.poll());
+        assertEquals(2, ring.size());
+
+        ring.offer(ops.get(0));
+        assertPolledInOrder(ring, ops);
+    }
+
+    @Test
+    public void ringGrowsWithThePendingOperations() {
+        PendingAddOpRing ring = new PendingAddOpRing(0L);
+        List<PendingAddOp> ops = ops(0L, 10000);
+        // Publish the operations in reverse order, so that the ring grows while the head is missing
+        List<PendingAddOp> reversed = new ArrayList<>(ops);
+        Collections.reverse(reversed);
+        for (PendingAddOp op : reversed) {
+            ring.offer(op);
+        }
+        assertEquals(10000, ring.size());
+        assertPolledInOrder(ring, ops);
+    }
+
+    @Test
+    public void slotsAreReusedOnceTheOperationsAreRemoved() {
+        PendingAddOpRing ring = new PendingAddOpRing(0L);
+        List<PendingAddOp> ops = ops(0L, 10000);
+        // Keep a small window of pending operations moving along the entry ids
+        for (int i = 0; i < ops.size(); i++) {
+            ring.offer(ops.get(i));
+            if (i >= 100) {
+                assertSame(ops.get(i - 100), ring.poll());
+            }
+        }
+        assertEquals(100, ring.size());
+        assertPolledInOrder(ring, ops.subList(ops.size() - 100, ops.size()));
+    }
+
+    @Test
+    public void reset() {
+        PendingAddOpRing ring = new PendingAddOpRing(0L);
+        PendingAddOp op0 = op(0L);
+        ring.offer(op0);
+
+        // Ignored while operations are pending
+        ring.reset(10L);
+        assertSame(op0, ring.poll());
+
+        ring.reset(10L);
+        PendingAddOp op10 = op(10L);
+        ring.offer(op10);
+        assertSame(op10, ring.peek());
+        assertSame(op10, ring.poll());
+
+        // The head can be moved backward
+        ring.reset(5L);
+        List<PendingAddOp> ops = ops(5L, 3);
+        ops.forEach(ring::offer);
+        assertPolledInOrder(ring, ops);
+    }
+
+    @Test
+    public void iteratorSkipsTheUnpublishedOperations() {
+        PendingAddOpRing ring = new PendingAddOpRing(0L);
+        List<PendingAddOp> ops = ops(0L, 6);
+        ring.offer(ops.get(5));
+        ring.offer(ops.get(1));
+        ring.offer(ops.get(3));
+
+        Iterator<PendingAddOp> iterator = ring.iterator();
+        assertSame(ops.get(1), iterator.next());
+        assertSame(ops.get(3), iterator.next());
+        assertSame(ops.get(5), iterator.next());
+        assertFalse(iterator.hasNext());
+        try {
+            iterator.next();
+            fail("Should have thrown NoSuchElementException");
+        } catch (NoSuchElementException e) {
+            // expected
+        }
+
+        ring.offer(ops.get(0));
+        assertSame(ops.get(0), ring.poll());
+        assertSame(ops.get(1), ring.poll());
+        List<PendingAddOp> remaining = new ArrayList<>();
+        ring.iterator().forEachRemaining(remaining::add);
+        assertEquals(2, remaining.size());
+        assertSame(ops.get(3), remaining.get(0));
+        assertSame(ops.get(5), remaining.get(1));
+    }
+
+    @Test
+    public void concurrentOffers() throws Exception {
+        final int numThreads = 8;
+        final int numOps = 10000;
+        PendingAddOpRing ring = new PendingAddOpRing(0L);
+        List<PendingAddOp> ops = ops(0L, numOps);
+        AtomicLong nextEntryId = new AtomicLong();
+        CyclicBarrier barrier = new CyclicBarrier(numThreads + 1);
+
+        // Each thread publishes the operations of the entry ids it got, like the threads adding entries
+        List<Thread> threads = new ArrayList<>();
+        for (int i = 0; i < numThreads; i++) {
+            Thread thread = new Thread(() -> {
+                try {
+                    barrier.await();
+                } catch (Exception e) {
+                    throw new RuntimeException(e);
+                }
+                long entryId;
+                while ((entryId = nextEntryId.getAndIncrement()) < numOps) {
+                    ring.offer(ops.get((int) entryId));
+                }
+            });
+            thread.start();
+            threads.add(thread);
+        }
+
+        // The operations are removed concurrently, in order, as soon as the head is published
+        barrier.await();
+        int polled = 0;
+        while (polled < numOps) {
+            PendingAddOp op = ring.poll();
+            if (op == null) {
+                Thread.yield();
+                continue;
+            }
+            assertSame(ops.get(polled), op);
+            ++polled;
+        }
+
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        assertTrue(ring.isEmpty());
+        assertNull(ring.poll());
+    }
+}
@@ -0,0 +1,222 @@
+/**
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *
+ */
+package org.apache.bookkeeper.client;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import com.google.common.collect.Lists;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufAllocator;
+import io.netty.buffer.Unpooled;
+
+import java.util.ArrayList;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.bookkeeper.client.api.LedgerEntries;
+import org.apache.bookkeeper.client.api.LedgerEntry;
+import org.apache.bookkeeper.client.api.WriteFlag;
+import org.apache.bookkeeper.common.util.OrderedExecutor;
+import org.apache.bookkeeper.common.util.OrderedScheduler;
+import org.apache.bookkeeper.conf.ClientConfiguration;
+import org.apache.bookkeeper.net.BookieSocketAddress;
+import org.apache.bookkeeper.proto.BookieClient;
+import org.apache.bookkeeper.proto.BookkeeperInternalCallbacks.BatchedReadEntryCallback;
+import org.apache.bookkeeper.proto.BookkeeperInternalCallbacks.ReadEntryCallback;
+import org.apache.bookkeeper.stats.NullStatsLogger;
+import org.apache.bookkeeper.util.ByteBufList;
+import org.apache.bookkeeper.versioning.LongVersion;
+import org.apache.bookkeeper.versioning.Versioned;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Unit test of the batched reads of {@link PendingReadOp}.
+ */
+public class PendingReadOpBatchReadTest {
+
+    private static final long LEDGER_ID = 1L;
+    private static final int NUM_ENTRIES = 10;
+
+    private final BookieSocketAddress bookie = new BookieSocketAddress("127.0.0.1", 3181);
+    private OrderedExecutor mainWorkerPool;
+    private OrderedScheduler scheduler;
+    private BookieClient bookieClient;
+    private LedgerHandle lh;
+
+    // Number of entries returned by each batched read, 0 to fail the batched reads as unsupported
+    private int batchResponseSize = NUM_ENTRIES;
+
+    @Before
+    public void setup() throws Exception {
+        mainWorkerPool = OrderedExecutor.newBuilder().name("test-worker").numThreads(1).build();
+        scheduler = OrderedScheduler.newSchedulerBuilder().name("test-scheduler").numThreads(1).build();
+
+        ClientConfiguration conf = new ClientConfiguration()
+                .setBatchReadEnabled(true)
+                .setBatchReadMaxEntries(100)
+                .setSpeculativeReadTimeout(0);
+        ClientContext clientCtx = mock(ClientContext.class);
+        when(clientCtx.getConf()).thenReturn(ClientInternalConf.fromConfig(conf));
+        when(clientCtx.getPlacementPolicy()).thenReturn(new DefaultEnsemblePlacementPolicy());
+        when(clientCtx.getByteBufAllocator()).thenReturn(ByteBufAllocator.DEFAULT);
+        when(clientCtx.getMainWorkerPool()).thenReturn(mainWorkerPool);
+        when(clientCtx.getScheduler()).thenReturn(scheduler);
+        when(clientCtx.getClientStats()).thenReturn(BookKeeperClientStats.newInstance(NullStatsLogger.INSTANCE));
+        when(clientCtx.getBookieReadLatencyTracker()).thenReturn(new BookieReadLatencyTracker(10, TimeUnit.SECONDS));
+
+        bookieClient = mock(BookieClient.class);
+        when(bookieClient.isBatchReadSupported(any())).thenReturn(true);
+        when(clientCtx.getBookieClient()).thenReturn(bookieClient);
+
+        // All the entries are stored on a single bookie, so that they can be read with a single batched read
+        LedgerMetadata metadata = LedgerMetadataBuilder.create()
+                .withEnsembleSize(1).withWriteQuorumSize(1).withAckQuorumSize(1)
+                .withPassword(new byte[0]).withDigestType(BookKeeper.DigestType.CRC32C.toApiDigestType())
+                .newEnsembleEntry(0L, Lists.newArrayList(bookie))
+                .withClosedState().withLastEntryId(NUM_ENTRIES - 1).withLength(0)
+                .build();
+        lh = new LedgerHandle(clientCtx, LEDGER_ID, new Versioned<>(metadata, new LongVersion(0L)),
+                              BookKeeper.DigestType.CRC32C, new byte[0], EnumSet.noneOf(WriteFlag.class));
+
+        doAnswer(invocation -> {
+            long firstEntryId = invocation.getArgument(2);
+            int maxCount = invocation.getArgument(3);
+            BatchedReadEntryCallback cb = invocation.getArgument(5);
+            Object ctx = invocation.getArgument(6);
+            if (batchResponseSize == 0) {
+                cb.readEntriesComplete(BKException.Code.IllegalOpException, LEDGER_ID, firstEntryId,
+                                       new ArrayList<>(), ctx);
+                return null;
+            }
+            List<ByteBuf> entries = new ArrayList<>();
+            for (int i = 0; i < Math.min(maxCount, batchResponseSize); i++) {
+                entries.add(packageEntry(firstEntryId + i));
+            }
+            cb.readEntriesComplete(BKException.Code.OK, LEDGER_ID, firstEntryId, entries, ctx);
+            entries.forEach(ByteBuf::release);
+            return null;
+        }).when(bookieClient).batchReadEntries(any(), anyLong(), anyLong(), anyInt(), anyLong(),
+                                               any(BatchedReadEntryCallback.class), any(), anyInt());
+
+        doAnswer(invocation -> {
+            long entryId = invocation.getArgument(2);
+            ReadEntryCallback cb = invocation.getArgument(3);
+            ByteBuf entry = packageEntry(entryId);
+            cb.readEntryComplete(BKException.Code.OK, LEDGER_ID, entryId, entry, invocation.getArgument(4));
+            entry.release();
+            return null;
+        }).when(bookieClient).readEntry(any(), anyLong(), anyLong(), any(ReadEntryCallback.class), any(), anyInt());
+    }
+
+    @After
+    public void teardown() {
+        mainWorkerPool.shutdown();
+        scheduler.shutdown();
+    }
+
+    private static byte[] data(long entryId) {
+        return ("entry-" + entryId).getBytes(UTF_8);
+    }
+
+    private ByteBuf packageEntry(long entryId) {
+        byte[] data = data(entryId);
+        ByteBufList packaged = lh.macManager.computeDigestAndPackageForSending(entryId, NUM_ENTRIES - 1,
+                data.length, Unpooled.wrappedBuffer(data));
+        ByteBuf entry = ByteBufList.coalesce(packaged);
+        packaged.release();
+        return entry;
+    }
+
+    private void readAndCheck() throws Exception {
+        PendingReadOp op = new PendingReadOp(lh, lh.clientCtx, 0, NUM_ENTRIES - 1, false);
+        op.initiate();
+        try (LedgerEntries entries = op.future().get(10, TimeUnit.SECONDS)) {
+            long entryId = 0;
+            for (LedgerEntry entry : entries) {
+                assertEquals(entryId, entry.getEntryId());
+                assertArrayEquals(data(entryId), entry.getEntryBytes());
+                entryId++;
+            }
+            assertEquals(NUM_ENTRIES, entryId);
+        }
+    }
+
+    @Test
+    public void consecutiveEntriesAreReadWithASingleRequest() throws Exception {
+        readAndCheck();
+
+        verify(bookieClient, times(1)).batchReadEntries(eq(bookie), eq(LEDGER_ID), eq(0L), eq(NUM_ENTRIES),
+                anyLong(), any(BatchedReadEntryCallback.class), any(), anyInt());
+        verify(bookieClient, never()).readEntry(any(), anyLong(), anyLong(), any(ReadEntryCallback.class), any(),
+                anyInt());
+    }
+
+    @Test
+    public void restOfTheBatchIsRequestedAgainWhenTheResponseIsCut() throws Exception {
+        batchResponseSize = 4;
+        readAndCheck();
+
+        verify(bookieClient).batchReadEntries(eq(bookie), eq(LEDGER_ID), eq(0L), eq(10), anyLong(),
+                any(BatchedReadEntryCallback.class), any(), anyInt());
+        verify(bookieClient).batchReadEntries(eq(bookie), eq(LEDGER_ID), eq(4L), eq(6), anyLong(),
+                any(BatchedReadEntryCallback.class), any(), anyInt());
+        verify(bookieClient).batchReadEntries(eq(bookie), eq(LEDGER_ID), eq(8L), eq(2), anyLong(),
+                any(BatchedReadEntryCallback.class), any(), anyInt());
+        verify(bookieClient, never()).readEntry(any(), anyLong(), anyLong(), any(ReadEntryCallback.class), any(),
+                anyInt());
+    }
+
+    @Test
+    public void entriesAreReadOneByOneWhenBatchedReadsAreNotSupported() throws Exception {
+        batchResponseSize = 0;
+        readAndCheck();
+
+        verify(bookieClient, times(1)).batchReadEntries(any(), anyLong(), anyLong(), anyInt(), anyLong(),
+                any(BatchedReadEntryCallback.class), any(), anyInt());
+        verify(bookieClient, times(NUM_ENTRIES)).readEntry(eq(bookie), eq(LEDGER_ID), anyLong(),
+                any(ReadEntryCallback.class), any(), anyInt());
+    }
+
+    @Test
+    public void noBatchedReadsForRecoveryReads() throws Exception {
+        PendingReadOp op = new PendingReadOp(lh, lh.clientCtx, 0, NUM_ENTRIES - 1, true);
+        op.initiate();
+        op.future().get(10, TimeUnit.SECONDS).close();
+
+        verify(bookieClient, never()).batchReadEntries(any(), anyLong(), anyLong(), anyInt(), anyLong(),
+                any(BatchedReadEntryCallback.class), any(), anyInt());
+    }
+}
@@ -0,0 +1,175 @@
+/**
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *
+ */
+package org.apache.bookkeeper.client;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertTrue;
+
+import com.google.common.collect.Lists;
+import com.google.common.collect.Sets;
+import io.netty.util.HashedWheelTimer;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+
+import org.apache.bookkeeper.client.TopologyAwareEnsemblePlacementPolicy.DefaultResolver;
+import org.apache.bookkeeper.conf.ClientConfiguration;
+import org.apache.bookkeeper.feature.SettableFeatureProvider;
+import org.apache.bookkeeper.net.BookieSocketAddress;
+import org.apache.bookkeeper.net.NetworkTopology;
+import org.apache.bookkeeper.stats.NullStatsLogger;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Unit test for the reordering of the reads by {@link ReadReorderLatencyStrategy}.
+ */
+public class ReadReorderLatencyStrategyTest {
+
+    private final List<BookieSocketAddress> ensemble = Lists.newArrayList(
+            new BookieSocketAddress("127.0.0.1", 3181),
+            new BookieSocketAddress("127.0.0.2", 3181),
+            new BookieSocketAddress("127.0.0.3", 3181));
+    private final Map<BookieSocketAddress, Long> latencies = new HashMap<>();
+    private final Map<BookieSocketAddress, Long> pendingRequests = new HashMap<>();
+    private final BookiesHealthInfo healthInfo = new BookiesHealthInfo() {
+        @Override
+        public long getBookieFailureHistory(BookieSocketAddress bookieSocketAddress) {
+            return -1L;
+        }
+
+        @Override
+        public long getBookiePendingRequests(BookieSocketAddress bookieSocketAddress) {
+            return pendingRequests.getOrDefault(bookieSocketAddress, 0L);
+        }
+
+        @Override
+        public long getBookieReadLatencyNanos(BookieSocketAddress bookieSocketAddress) {
+            return latencies.getOrDefault(bookieSocketAddress, -1L);
+        }
+    };
+
+    private HashedWheelTimer timer;
+    private RackawareEnsemblePlacementPolicy policy;
+
+    @Before
+    public void setup() {
+        timer = new HashedWheelTimer();
+    }
+
+    @After
+    public void teardown() {
+        if (policy != null) {
+            policy.uninitalize();
+        }
+        timer.stop();
+    }
+
+    private void initializePolicy(ReadReorderLatencyStrategy strategy) {
+        ClientConfiguration conf = new ClientConfiguration();
+        conf.setReadReorderLatencyStrategy(strategy);
+        policy = new RackawareEnsemblePlacementPolicy();
+        policy.initialize(conf, Optional.of(new DefaultResolver(() -> NetworkTopology.DEFAULT_RACK)), timer,
+                SettableFeatureProvider.DISABLE_ALL, NullStatsLogger.INSTANCE);
+        policy.onClusterChanged(new HashSet<>(ensemble), Collections.emptySet());
+    }
+
+    private void setLatencies(long... latenciesNanos) {
+        for (int i = 0; i < latenciesNanos.length; i++) {
+            latencies.put(ensemble.get(i), latenciesNanos[i]);
+        }
+    }
+
+    private List<Integer> reorder() {
+        DistributionSchedule.WriteSet writeSet = policy.reorderReadSequence(ensemble, healthInfo,
+                RoundRobinDistributionSchedule.writeSetFromValues(0, 1, 2));
+        List<Integer> order = Lists.newArrayList(writeSet.get(0), writeSet.get(1), writeSet.get(2));
+        writeSet.recycle();
+        return order;
+    }
+
+    @Test
+    public void noReorderWithoutStrategy() {
+        initializePolicy(ReadReorderLatencyStrategy.NONE);
+        setLatencies(300, 100, 200);
+        assertEquals(Lists.newArrayList(0, 1, 2), reorder());
+    }
+
+    @Test
+    public void leastExpectedLatency() {
+        initializePolicy(ReadReorderLatencyStrategy.LEAST_EXPECTED_LATENCY);
+        setLatencies(300, 100, 200);
+        // Only the best bookie is moved to the first place
+        assertEquals(Lists.newArrayList(1, 0, 2), reorder());
+
+        setLatencies(100, 300, 200);
+        assertEquals(Lists.newArrayList(0, 1, 2), reorder());
+    }
+
+    @Test
+    public void latencyIsScaledByThePendingRequests() {
+        initializePolicy(ReadReorderLatencyStrategy.LEAST_EXPECTED_LATENCY);
+        setLatencies(300, 100, 200);
+        // 100ns * (5 + 1) pending requests is slower than 200ns * (0 + 1)
+        pendingRequests.put(ensemble.get(1), 5L);
+        assertEquals(Lists.newArrayList(2, 0, 1), reorder());
+    }
+
+    @Test
+    public void bookieWithoutEstimateIsProbedFirst() {
+        initializePolicy(ReadReorderLatencyStrategy.LEAST_EXPECTED_LATENCY);
+        setLatencies(300, 100);
+        assertEquals(Lists.newArrayList(2, 0, 1), reorder());
+    }
+
+    @Test
+    public void unavailableBookiesAreNotPicked() {
+        initializePolicy(ReadReorderLatencyStrategy.LEAST_EXPECTED_LATENCY);
+        setLatencies(300, 100, 200);
+        policy.onClusterChanged(Sets.newHashSet(ensemble.get(0), ensemble.get(2)), Collections.emptySet());
+        // The bookie 1 is left to the ordering by health, which moves it to the end
+        assertEquals(Lists.newArrayList(2, 0, 1), reorder());
+    }
+
+    @Test
+    public void powerOfTwoChoices() {
+        initializePolicy(ReadReorderLatencyStrategy.POWER_OF_TWO_CHOICES);
+        setLatencies(300, 100, 200);
+
+        Set<Integer> firstBookies = new HashSet<>();
+        for (int i = 0; i < 100; i++) {
+            int first = reorder().get(0);
+            // The slowest bookie loses against any other bookie
+            assertNotEquals(0, first);
+            firstBookies.add(first);
+        }
+        // The reads are spread over the two fastest bookies
+        assertTrue(firstBookies.contains(1));
+        assertTrue(firstBookies.contains(2));
+    }
+}
@@ -0,0 +1,223 @@
+/**
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *
+ */
+package org.apache.bookkeeper.proto;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import com.google.protobuf.ExtensionRegistry;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufAllocator;
+import io.netty.buffer.Unpooled;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.apache.bookkeeper.proto.BookieProtoEncoding.RequestEnDeCoderPreV3;
+import org.apache.bookkeeper.proto.BookieProtoEncoding.ResponseEnDeCoderPreV3;
+import org.apache.bookkeeper.util.ByteBufList;
+import org.junit.Test;
+
+/**
+ * Unit test for the v2 encoding of the batched requests and responses in {@link BookieProtoEncoding}.
+ */
+public class BookieProtoEncodingTest {
+
+    private final ExtensionRegistry registry = ExtensionRegistry.newInstance();
+    private final RequestEnDeCoderPreV3 requestCodec = new RequestEnDeCoderPreV3(registry);
+    private final ResponseEnDeCoderPreV3 responseCodec = new ResponseEnDeCoderPreV3(registry);
+
+    /**
+     * Flatten an encoded message in a single buffer, as received by the decoder.
+     */
+    private static ByteBuf toPacket(Object encoded) {
+        if (encoded instanceof ByteBufList) {
+            ByteBufList list = (ByteBufList) encoded;
+            ByteBuf packet = ByteBufList.coalesce(list);
+            list.release();
+            return packet;
+        }
+        return (ByteBuf) encoded;
+    }
+
+    private static ByteBuf entry(int size, int value) {
+        ByteBuf entry = Unpooled.buffer(size);
+        for (int i = 0; i < size; i++) {
+            entry.writeByte(value);
+        }
+        return entry;
+    }
+
+    private BookieProtocol.ParsedBatchAddRequest encodeAndDecodeBatchAdd(short flags) throws Exception {
+        byte[] masterKey = new byte[BookieProtocol.MASTER_KEY_LENGTH];
+        Arrays.fill(masterKey, (byte) 7);
+        ByteBuf header = entry(10, 1);
+        ByteBuf payload = entry(1000, 2);
+        List<ByteBufList> entries = new ArrayList<>();
+        // An entry sent as its digest header followed by its payload
+        entries.add(ByteBufList.get(header, payload));
+        entries.add(ByteBufList.get(entry(0, 3)));
+        entries.add(ByteBufList.get(entry(100, 4)));
+        BookieProtocol.BatchAddRequest request = new BookieProtocol.BatchAddRequest(
+                BookieProtocol.CURRENT_PROTOCOL_VERSION, 1L, 10L, flags, masterKey, entries);
+
+        ByteBuf packet = toPacket(requestCodec.encode(request, ByteBufAllocator.DEFAULT));
+        // The entries are sent without copies, and the request releases its references once encoded
+        for (ByteBufList entry : entries) {
+            assertEquals(1, entry.refCnt());
+        }
+        assertEquals(1, header.refCnt());
+        assertEquals(1, payload.refCnt());
+        entries.forEach(ByteBufList::release);
+        assertEquals(0, payload.refCnt());
+
+        Object decoded = requestCodec.decode(packet);
+        packet.release();
+
+        assertTrue(decoded instanceof BookieProtocol.ParsedBatchAddRequest);
+        BookieProtocol.ParsedBatchAddRequest res = (BookieProtocol.ParsedBatchAddRequest) decoded;
+        assertEquals(BookieProtocol.BATCH_ADD_ENTRY, res.getOpCode());
+        assertEquals(1L, res.getLedgerId());
+        assertEquals(10L, res.getEntryId());
+        assertEquals(flags, res.getFlags());
+        assertArrayEquals(masterKey, res.getMasterKey());
+        return res;
+    }
+
+    @Test
+    public void batchAddRequest() throws Exception {
+        BookieProtocol.ParsedBatchAddRequest res = encodeAndDecodeBatchAdd(BookieProtocol.FLAG_NONE);
+        assertFalse(res.isRecoveryAdd());
+
+        List<ByteBuf> entries = res.getEntries();
+        assertEquals(3, entries.size());
+        assertEquals(1010, entries.get(0).readableBytes());
+        assertEquals(1, entries.get(0).getByte(9));
+        assertEquals(2, entries.get(0).getByte(10));
+        assertEquals(2, entries.get(0).getByte(1009));
+        assertEquals(0, entries.get(1).readableBytes());
+        assertEquals(100, entries.get(2).readableBytes());
+        assertEquals(4, entries.get(2).getByte(0));
+        assertEquals(4, entries.get(2).getByte(99));
+
+        // The decoded entries hold the only references to the received packet
+        ByteBuf entry = entries.get(2);
+        res.release();
+        assertEquals(0, entry.refCnt());
+    }
+
+    @Test
+    public void batchAddRecoveryRequest() throws Exception {
+        BookieProtocol.ParsedBatchAddRequest res = encodeAndDecodeBatchAdd(BookieProtocol.FLAG_RECOVERY_ADD);
+        assertTrue(res.isRecoveryAdd());
+        assertEquals(3, res.getEntries().size());
+        res.release();
+    }
+
+    @Test
+    public void batchAddResponse() throws Exception {
+        BookieProtocol.BatchAddResponse response = new BookieProtocol.BatchAddResponse(
+                BookieProtocol.CURRENT_PROTOCOL_VERSION, BookieProtocol.EOK, 1L, 10L, 100);
+
+        ByteBuf packet = toPacket(responseCodec.encode(response, ByteBufAllocator.DEFAULT));
+        Object decoded = responseCodec.decode(packet);
+        packet.release();
+
+        assertTrue(decoded instanceof BookieProtocol.BatchAddResponse);
+        BookieProtocol.BatchAddResponse res = (BookieProtocol.BatchAddResponse) decoded;
+        assertEquals(BookieProtocol.BATCH_ADD_ENTRY, res.getOpCode());
+        assertEquals(BookieProtocol.EOK, res.getErrorCode());
+        assertEquals(1L, res.getLedgerId());
+        assertEquals(10L, res.getEntryId());
+        assertEquals(100, res.getCount());
+    }
+
+    @Test
+    public void batchReadRequest() throws Exception {
+        BookieProtocol.BatchReadRequest request = new BookieProtocol.BatchReadRequest(
+                BookieProtocol.CURRENT_PROTOCOL_VERSION, 1L, 10L, 100, 1024 * 1024L, BookieProtocol.FLAG_NONE);
+
+        ByteBuf packet = toPacket(requestCodec.encode(request, ByteBufAllocator.DEFAULT));
+        Object decoded = requestCodec.decode(packet);
+        packet.release();
+
+        assertTrue(decoded instanceof BookieProtocol.BatchReadRequest);
+        BookieProtocol.BatchReadRequest res = (BookieProtocol.BatchReadRequest) decoded;
+        assertEquals(BookieProtocol.BATCH_READ_ENTRY, res.getOpCode());
+        assertEquals(1L, res.getLedgerId());
+        assertEquals(10L, res.getEntryId());
+        assertEquals(100, res.getMaxCount());
+        assertEquals(1024 * 1024L, res.getMaxSize());
+        assertEquals(BookieProtocol.FLAG_NONE, res.getFlags());
+    }
+
+    @Test
+    public void batchReadResponse() throws Exception {
+        List<ByteBuf> entries = new ArrayList<>();
+        entries.add(entry(10, 1));
+        entries.add(entry(0, 2));
+        entries.add(entry(1000, 3));
+        BookieProtocol.BatchReadResponse response = new BookieProtocol.BatchReadResponse(
+                BookieProtocol.CURRENT_PROTOCOL_VERSION, BookieProtocol.EOK, 1L, 10L, entries);
+
+        ByteBuf packet = toPacket(responseCodec.encode(response, ByteBufAllocator.DEFAULT));
+        // The entries are sent without copies, and released once written
+        for (ByteBuf entry : entries) {
+            assertEquals(0, entry.refCnt());
+        }
+
+        Object decoded = responseCodec.decode(packet);
+        packet.release();
+
+        assertTrue(decoded instanceof BookieProtocol.BatchReadResponse);
+        BookieProtocol.BatchReadResponse res = (BookieProtocol.BatchReadResponse) decoded;
+        assertEquals(BookieProtocol.EOK, res.getErrorCode());
+        assertEquals(1L, res.getLedgerId());
+        assertEquals(10L, res.getEntryId());
+        assertEquals(3, res.getEntries().size());
+        assertEquals(10, res.getEntries().get(0).readableBytes());
+        assertEquals(1, res.getEntries().get(0).getByte(9));
+        assertEquals(0, res.getEntries().get(1).readableBytes());
+        assertEquals(1000, res.getEntries().get(2).readableBytes());
+        assertEquals(3, res.getEntries().get(2).getByte(999));
+        res.release();
+    }
+
+    @Test
+    public void batchReadErrorResponse() throws Exception {
+        BookieProtocol.BatchReadResponse response = new BookieProtocol.BatchReadResponse(
+                BookieProtocol.CURRENT_PROTOCOL_VERSION, BookieProtocol.ENOENTRY, 1L, 10L);
+
+        ByteBuf packet = toPacket(responseCodec.encode(response, ByteBufAllocator.DEFAULT));
+        Object decoded = responseCodec.decode(packet);
+        packet.release();
+
+        assertTrue(decoded instanceof BookieProtocol.BatchReadResponse);
+        BookieProtocol.BatchReadResponse res = (BookieProtocol.BatchReadResponse) decoded;
+        assertEquals(BookieProtocol.ENOENTRY, res.getErrorCode());
+        assertEquals(1L, res.getLedgerId());
+        assertEquals(10L, res.getEntryId());
+        assertTrue(res.getEntries().isEmpty());
+    }
+}
@@ -0,0 +1,339 @@
+/**
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *
+ */
+package org.apache.bookkeeper.proto;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.bookkeeper.proto.BookkeeperProtocol.OperationType;
+import org.apache.bookkeeper.proto.PerChannelBookieClient.CompletionValue;
+import org.junit.Test;
+
+/**
+ * Unit test for {@link CompletionTracker}.
+ */
+public class CompletionTrackerTest {
+
+    private static final long MIN_TIMEOUT = TimeUnit.SECONDS.toNanos(5);
+    private static final int RING_CAPACITY = 4096;
+
+    private final AtomicLong txnIdGenerator = new AtomicLong(0);
+    private final CompletionTracker tracker = new CompletionTracker(txnIdGenerator::get, MIN_TIMEOUT);
+
+    private static CompletionValue completion(long startTime, long timeout) {
+        CompletionValue completion = mock(CompletionValue.class);
+        completion.startTime = startTime;
+        when(completion.isTimedOut(anyLong())).thenAnswer(
+                invocation -> invocation.<Long>getArgument(0) - completion.startTime >= timeout);
+        return completion;
+    }
+
+    private CompletionValue put(long startTime, long timeout) {
+        CompletionValue completion = completion(startTime, timeout);
+        tracker.put(txnIdGenerator.incrementAndGet(), OperationType.ADD_ENTRY, completion);
+        return completion;
+    }
+
+    private CompletionValue putV2(long ledgerId, long entryId) {
+        CompletionValue completion = completion(0L, MIN_TIMEOUT);
+        tracker.putV2(txnIdGenerator.incrementAndGet(), ledgerId, entryId, OperationType.READ_ENTRY, completion);
+        return completion;
+    }
+
+    private List<CompletionValue> removeTimedOut(long nowNanos) {
+        List<CompletionValue> timedOut = new ArrayList<>();
+        tracker.removeTimedOut(nowNanos, timedOut::add);
+        return timedOut;
+    }
+
+    @Test
+    public void putAndRemove() {
+        CompletionValue c1 = put(0L, MIN_TIMEOUT);
+        CompletionValue c2 = put(0L, MIN_TIMEOUT);
+        assertEquals(2, tracker.size());
+        assertSame(c1, tracker.get(1L));
+        assertSame(c2, tracker.get(2L));
+        assertNull(tracker.get(3L));
+
+        assertNull(tracker.remove(1L, OperationType.READ_ENTRY));
+        assertSame(c1, tracker.remove(1L, OperationType.ADD_ENTRY));
+        assertNull(tracker.remove(1L));
+        assertNull(tracker.get(1L));
+        assertEquals(CompletionTracker.NO_TXN_ID, c1.txnId);
+
+        assertSame(c2, tracker.remove(2L));
+        assertNull(tracker.remove(2L));
+        assertEquals(0, tracker.size());
+    }
+
+    @Test
+    public void ringWrapAround() {
+        // Twice as many pending requests as slots in the ring: the later ones go to the overflow map
+        List<CompletionValue> completions = new ArrayList<>();
+        for (int i = 0; i < 2 * RING_CAPACITY + 10; i++) {
+            completions.add(put(0L, MIN_TIMEOUT));
+        }
+        assertEquals(completions.size(), tracker.size());
+        for (int i = 0; i < completions.size(); i++) {
+            assertSame(completions.get(i), tracker.get(i + 1));
+        }
+
+        // Complete the requests out of order
+        for (int i = completions.size() - 1; i >= 0; i -= 2) {
+            assertSame(completions.get(i), tracker.remove(i + 1));
+        }
+        for (int i = completions.size() - 2; i >= 0; i -= 2) {
+            assertSame(completions.get(i), tracker.remove(i + 1));
+        }
+        assertEquals(0, tracker.size());
+
+        // The ids keep increasing, and reuse the slots of the ring
+        for (int round = 0; round < 10; round++) {
+            CompletionValue completion = put(0L, MIN_TIMEOUT);
+            long txnId = txnIdGenerator.get();
+            assertSame(completion, tracker.get(txnId));
+            assertNull(tracker.get(txnId - RING_CAPACITY));
+            assertSame(completion, tracker.remove(txnId));
+        }
+        assertEquals(0, tracker.size());
+    }
+
+    @Test
+    public void v2RequestsWithTheSameKey() {
+        // Duplicated reads of an entry are all tracked, and each response completes one of them
+        Set<CompletionValue> completions = new HashSet<>();
+        for (int i = 0; i < 100; i++) {
+            completions.add(putV2(1L, 2L));
+        }
+        assertNull(tracker.removeV2(1L, 3L, OperationType.READ_ENTRY));
+        assertNull(tracker.removeV2(1L, 2L, OperationType.ADD_ENTRY));
+        for (int i = 0; i < 100; i++) {
+            CompletionValue completion = tracker.removeV2(1L, 2L, OperationType.READ_ENTRY);
+            assertTrue(completions.remove(completion));
+        }
+        assertTrue(completions.isEmpty());
+        assertNull(tracker.removeV2(1L, 2L, OperationType.READ_ENTRY));
+        assertEquals(0, tracker.size());
+    }
+
+    @Test
+    public void v2Collisions() {
+        // Enough keys to collide in the open addressing tables and to grow them
+        final int numLedgers = 20;
+        final int numEntries = 200;
+        List<CompletionValue> completions = new ArrayList<>();
+        for (long ledgerId = 0; ledgerId < numLedgers; ledgerId++) {
+            for (long entryId = 0; entryId < numEntries; entryId++) {
+                completions.add(putV2(ledgerId, entryId));
+            }
+        }
+        assertEquals(numLedgers * numEntries, tracker.size());
+
+        // Remove the requests in random order, both by transaction id, like the timeouts, and by
+        // key, like the responses, so that the probe sequences are shifted back in every way
+        List<Integer> order = new ArrayList<>();
+        for (int i = 0; i < completions.size(); i++) {
+            order.add(i);
+        }
+        Collections.shuffle(order, new Random(1234));
+        for (int n = 0; n < order.size(); n++) {
+            int i = order.get(n);
+            CompletionValue completion = completions.get(i);
+            if (n % 2 == 0) {
+                assertSame(completion, tracker.remove(i + 1));
+            } else {
+                assertSame(completion, tracker.removeV2(i / numEntries, i % numEntries, OperationType.READ_ENTRY));
+            }
+            assertNull(tracker.removeV2(i / numEntries, i % numEntries, OperationType.READ_ENTRY));
+            assertNull(tracker.get(i + 1));
+        }
+        assertEquals(0, tracker.size());
+    }
+
+    @Test
+    public void timedOutRequestsAreRemoved() {
+        List<CompletionValue> old = new ArrayList<>();
+        for (int i = 0; i < 10; i++) {
+            old.add(put(0L, MIN_TIMEOUT));
+        }
+        List<CompletionValue> recent = new ArrayList<>();
+        for (int i = 0; i < 10; i++) {
+            recent.add(put(MIN_TIMEOUT, MIN_TIMEOUT));
+        }
+        // A completed request is not timed out
+        assertSame(old.get(5), tracker.remove(6L));
+
+        List<CompletionValue> timedOut = removeTimedOut(MIN_TIMEOUT);
+        assertEquals(9, timedOut.size());
+        assertTrue(timedOut.containsAll(old.subList(0, 5)));
+        assertTrue(timedOut.containsAll(old.subList(6, 10)));
+        assertEquals(10, tracker.size());
+        // The sweep stopped at the first recent request
+        assertEquals(11L, tracker.getSweepCursor());
+
+        assertTrue(removeTimedOut(MIN_TIMEOUT + 1).isEmpty());
+        timedOut = removeTimedOut(2 * MIN_TIMEOUT);
+        assertEquals(recent, timedOut);
+        assertEquals(0, tracker.size());
+        assertEquals(21L, tracker.getSweepCursor());
+    }
+
+    @Test
+    public void sweepMovesPastTheRequestsWithALongerTimeout() {
+        // A long poll waits longer than the other requests
+        CompletionValue longPoll = put(0L, 10 * MIN_TIMEOUT);
+        for (int i = 0; i < 100; i++) {
+            put(0L, MIN_TIMEOUT);
+        }
+
+        assertEquals(100, removeTimedOut(MIN_TIMEOUT).size());
+        // The next sweeps start after the long poll, instead of walking again all the ids after it
+        assertEquals(102L, tracker.getSweepCursor());
+        assertSame(longPoll, tracker.get(1L));
+        assertEquals(1, tracker.size());
+
+        // The requests reusing the slot of the long poll are still tracked
+        List<CompletionValue> completions = new ArrayList<>();
+        for (int i = 0; i < RING_CAPACITY; i++) {
+            completions.add(put(2 * MIN_TIMEOUT, MIN_TIMEOUT));
+        }
+        for (int i = 0; i < completions.size(); i++) {
+            assertSame(completions.get(i), tracker.get(102L + i));
+        }
+
+        assertTrue(removeTimedOut(2 * MIN_TIMEOUT).isEmpty());
+        assertEquals(102L, tracker.getSweepCursor());
+        List<CompletionValue> timedOut = removeTimedOut(3 * MIN_TIMEOUT);
+        assertEquals(completions.size(), timedOut.size());
+        assertTrue(timedOut.containsAll(completions));
+        assertSame(longPoll, tracker.get(1L));
+
+        assertEquals(Collections.singletonList(longPoll), removeTimedOut(10 * MIN_TIMEOUT));
+        assertNull(tracker.get(1L));
+        assertEquals(0, tracker.size());
+    }
+
+    @Test
+    public void requestTrackedAfterTheSweepPassedItsId() {
+        // The id is taken, but the request is tracked after a sweep
+        long txnId = txnIdGenerator.incrementAndGet();
+        removeTimedOut(0L);
+        assertEquals(txnId + 1, tracker.getSweepCursor());
+
+        CompletionValue completion = completion(0L, MIN_TIMEOUT);
+        tracker.put(txnId, OperationType.ADD_ENTRY, completion);
+        assertTrue(removeTimedOut(MIN_TIMEOUT - 1).isEmpty());
+        assertEquals(Collections.singletonList(completion), removeTimedOut(MIN_TIMEOUT));
+        assertEquals(0, tracker.size());
+    }
+
+    @Test
+    public void minTimeoutIgnoresTheDisabledTimeouts() {
+        assertEquals(3L, CompletionTracker.getMinTimeoutNanos(3L, 5L));
+        assertEquals(5L, CompletionTracker.getMinTimeoutNanos(0L, 5L));
+        assertEquals(5L, CompletionTracker.getMinTimeoutNanos(5L, 0L));
+        assertEquals(0L, CompletionTracker.getMinTimeoutNanos(0L, 0L));
+    }
+
+    @Test
+    public void sweepWithADisabledTimeout() {
+        // The adds time out, while the reads, whose timeout is disabled, never do
+        CompletionTracker partialTracker = new CompletionTracker(txnIdGenerator::get,
+                CompletionTracker.getMinTimeoutNanos(MIN_TIMEOUT, 0L));
+        List<CompletionValue> adds = new ArrayList<>();
+        List<CompletionValue> reads = new ArrayList<>();
+        for (int i = 0; i < 100; i++) {
+            CompletionValue add = completion(0L, MIN_TIMEOUT);
+            partialTracker.put(txnIdGenerator.incrementAndGet(), OperationType.ADD_ENTRY, add);
+            adds.add(add);
+            CompletionValue read = completion(0L, Long.MAX_VALUE);
+            partialTracker.put(txnIdGenerator.incrementAndGet(), OperationType.READ_ENTRY, read);
+            reads.add(read);
+        }
+        CompletionValue recent = completion(MIN_TIMEOUT, MIN_TIMEOUT);
+        partialTracker.put(txnIdGenerator.incrementAndGet(), OperationType.ADD_ENTRY, recent);
+
+        List<CompletionValue> timedOut = new ArrayList<>();
+        assertEquals(100, partialTracker.removeTimedOut(MIN_TIMEOUT, timedOut::add));
+        assertEquals(adds, timedOut);
+        // The sweep still stops at the requests too recent to have timed out
+        assertEquals(201L, partialTracker.getSweepCursor());
+        for (int i = 0; i < reads.size(); i++) {
+            assertSame(reads.get(i), partialTracker.get(2L * i + 2));
+        }
+
+        assertEquals(0, partialTracker.removeTimedOut(MIN_TIMEOUT + 1, timedOut::add));
+        assertEquals(101, partialTracker.size());
+    }
+
+    @Test
+    public void timeoutsDisabled() {
+        CompletionTracker disabledTracker = new CompletionTracker(txnIdGenerator::get, 0L);
+        List<CompletionValue> completions = new ArrayList<>();
+        for (int i = 0; i < 100; i++) {
+            CompletionValue completion = completion(0L, Long.MAX_VALUE);
+            disabledTracker.put(txnIdGenerator.incrementAndGet(), OperationType.READ_ENTRY, completion);
+            completions.add(completion);
+        }
+
+        // The requests are not swept, and stay in the ring
+        assertEquals(0, disabledTracker.removeTimedOut(Long.MAX_VALUE / 2, completion -> fail()));
+        assertEquals(1L, disabledTracker.getSweepCursor());
+        for (int i = 0; i < completions.size(); i++) {
+            assertSame(completions.get(i), disabledTracker.remove(i + 1));
+        }
+        assertEquals(0, disabledTracker.size());
+    }
+
+    @Test
+    public void removeAll() {
+        Set<CompletionValue> completions = new HashSet<>();
+        for (int i = 0; i < RING_CAPACITY + 100; i++) {
+            completions.add(put(0L, MIN_TIMEOUT));
+        }
+        for (int i = 0; i < 100; i++) {
+            completions.add(putV2(1L, i));
+        }
+
+        List<CompletionValue> removed = new ArrayList<>();
+        tracker.removeAll(removed::add);
+        assertEquals(completions.size(), removed.size());
+        assertEquals(completions, new HashSet<>(removed));
+        assertEquals(0, tracker.size());
+        assertNull(tracker.removeV2(1L, 0L, OperationType.READ_ENTRY));
+        assertTrue(removeTimedOut(10 * MIN_TIMEOUT).isEmpty());
+    }
+}
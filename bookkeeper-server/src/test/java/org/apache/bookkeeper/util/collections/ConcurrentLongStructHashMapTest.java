@@ -0,0 +1,395 @@
+/**
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *
+ */
+package org.apache.bookkeeper.util.collections;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import io.netty.buffer.UnpooledByteBufAllocator;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Unit test for {@link ConcurrentLongStructHashMap}.
+ */
+public class ConcurrentLongStructHashMapTest {
+
+    private static final int STRUCT_SIZE = 12;
+
+    private final List<ConcurrentLongStructHashMap> maps = new ArrayList<>();
+    private ByteBuf dst;
+
+    @Before
+    public void setup() {
+        dst = Unpooled.buffer(STRUCT_SIZE);
+    }
+
+    @After
+    public void teardown() {
+        maps.forEach(ConcurrentLongStructHashMap::close);
+    }
+
+    private ConcurrentLongStructHashMap newMap(int expectedItems, int concurrencyLevel) {
+        ConcurrentLongStructHashMap map = new ConcurrentLongStructHashMap(STRUCT_SIZE, expectedItems,
+                concurrencyLevel, UnpooledByteBufAllocator.DEFAULT);
+        maps.add(map);
+        return map;
+    }
+
+    private static ByteBuf struct(long value) {
+        ByteBuf struct = Unpooled.buffer(STRUCT_SIZE);
+        struct.writeLong(value);
+        struct.writeInt((int) ~value);
+        return struct;
+    }
+
+    private void assertStruct(ConcurrentLongStructHashMap map, long key, long value) {
+        dst.clear();
+        assertTrue("key " + key + " should be present", map.get(key, dst));
+        assertEquals(STRUCT_SIZE, dst.readableBytes());
+        assertEquals(value, dst.getLong(0));
+        assertEquals((int) ~value, dst.getInt(8));
+    }
+
+    @Test
+    public void constructor() {
+        try {
+            new ConcurrentLongStructHashMap(0);
+            fail("should have thrown exception");
+        } catch (IllegalArgumentException e) {
+            // ok
+        }
+
+        try {
+            newMap(0, 1);
+            fail("should have thrown exception");
+        } catch (IllegalArgumentException e) {
+            // ok
+        }
+
+        try {
+            newMap(16, 0);
+            fail("should have thrown exception");
+        } catch (IllegalArgumentException e) {
+            // ok
+        }
+
+        try {
+            newMap(4, 8);
+            fail("should have thrown exception");
+        } catch (IllegalArgumentException e) {
+            // ok
+        }
+    }
+
+    @Test
+    public void simpleInsertions() {
+        ConcurrentLongStructHashMap map = newMap(16, 1);
+
+        assertTrue(map.isEmpty());
+        assertTrue(map.put(1, struct(11)));
+        assertFalse(map.isEmpty());
+        assertTrue(map.put(2, struct(22)));
+        assertTrue(map.put(3, struct(33)));
+        assertEquals(3, map.size());
+
+        assertStruct(map, 1, 11);
+        assertStruct(map, 2, 22);
+        assertStruct(map, 3, 33);
+        assertTrue(map.containsKey(1));
+        assertFalse(map.containsKey(4));
+        assertFalse(map.get(4, dst.clear()));
+        assertEquals(0, dst.readableBytes());
+
+        // Overwrite
+        assertFalse(map.put(1, struct(111)));
+        assertStruct(map, 1, 111);
+        assertEquals(3, map.size());
+
+        // Only if absent
+        assertFalse(map.putIfAbsent(1, struct(1111)));
+        assertStruct(map, 1, 111);
+        assertTrue(map.putIfAbsent(4, struct(44)));
+        assertStruct(map, 4, 44);
+        assertEquals(4, map.size());
+    }
+
+    @Test
+    public void readerIndexIsNotModified() {
+        ConcurrentLongStructHashMap map = newMap(16, 1);
+
+        ByteBuf struct = Unpooled.buffer(STRUCT_SIZE + 4);
+        struct.writeInt(-1);
+        struct.writeBytes(struct(7));
+        struct.readerIndex(4);
+
+        map.put(1, struct);
+        assertEquals(4, struct.readerIndex());
+        assertStruct(map, 1, 7);
+
+        try {
+            map.put(2, Unpooled.buffer(STRUCT_SIZE - 1).writeZero(STRUCT_SIZE - 1));
+            fail("should have thrown exception");
+        } catch (IllegalArgumentException e) {
+            // ok
+        }
+    }
+
+    @Test
+    public void anyLongIsAValidKey() {
+        ConcurrentLongStructHashMap map = newMap(16, 1);
+        long[] keys = { 0, -1, Long.MIN_VALUE, Long.MAX_VALUE };
+
+        for (int i = 0; i < keys.length; i++) {
+            assertTrue(map.put(keys[i], struct(i)));
+        }
+        for (int i = 0; i < keys.length; i++) {
+            assertStruct(map, keys[i], i);
+        }
+        assertEquals(keys.length, map.size());
+    }
+
+    @Test
+    public void removeLeavesTombstones() {
+        // A single section of 32 buckets
+        ConcurrentLongStructHashMap map = newMap(16, 1);
+        long capacity = map.capacity();
+        assertEquals(32, capacity);
+
+        // Keys that share the same bucket, so that they are stored in consecutive buckets
+        List<Long> keys = new ArrayList<>();
+        int bucket = ConcurrentLongStructHashMap.signSafeMod(ConcurrentLongStructHashMap.hash(0), 32);
+        for (long key = 0; keys.size() < 4; key++) {
+            if (ConcurrentLongStructHashMap.signSafeMod(ConcurrentLongStructHashMap.hash(key), 32) == bucket) {
+                keys.add(key);
+            }
+        }
+        for (long key : keys) {
+            assertTrue(map.put(key, struct(key)));
+        }
+
+        // Removing a key in the middle of the run must not hide the following ones
+        assertTrue(map.remove(keys.get(1)));
+        assertFalse(map.remove(keys.get(1)));
+        assertFalse(map.containsKey(keys.get(1)));
+        assertStruct(map, keys.get(2), keys.get(2));
+        assertStruct(map, keys.get(3), keys.get(3));
+        assertEquals(3, map.size());
+
+        // The deleted bucket is reused
+        assertTrue(map.put(keys.get(1), struct(-keys.get(1))));
+        assertStruct(map, keys.get(1), -keys.get(1));
+        assertEquals(4, map.size());
+
+        // Removing the whole run
+        for (long key : keys) {
+            assertTrue(map.remove(key));
+        }
+        assertTrue(map.isEmpty());
+        for (long key : keys) {
+            assertFalse(map.containsKey(key));
+        }
+        assertEquals(capacity, map.capacity());
+
+        // Inserting and removing many more keys than the capacity, without ever holding more than a few, must not
+        // fill the table with tombstones
+        for (long key = 0; key < 10_000; key++) {
+            assertTrue(map.put(key, struct(key)));
+            assertStruct(map, key, key);
+            assertTrue(map.remove(key));
+        }
+        assertTrue(map.isEmpty());
+    }
+
+    @Test
+    public void expandSection() {
+        ConcurrentLongStructHashMap map = newMap(16, 1);
+        assertEquals(32, map.capacity());
+        long initialMemorySize = map.getMemorySize();
+
+        int n = 10_000;
+        for (long key = 0; key < n; key++) {
+            assertTrue(map.put(key, struct(key * 3)));
+        }
+
+        assertEquals(n, map.size());
+        assertTrue(map.capacity() > n);
+        assertTrue(map.getMemorySize() > initialMemorySize);
+        for (long key = 0; key < n; key++) {
+            assertStruct(map, key, key * 3);
+        }
+
+        // Removing after the expansion
+        for (long key = 0; key < n; key += 2) {
+            assertTrue(map.remove(key));
+        }
+        assertEquals(n / 2, map.size());
+        for (long key = 0; key < n; key++) {
+            if (key % 2 == 0) {
+                assertFalse(map.containsKey(key));
+            } else {
+                assertStruct(map, key, key * 3);
+            }
+        }
+    }
+
+    @Test
+    public void forEachAndKeys() {
+        ConcurrentLongStructHashMap map = newMap(16, 4);
+        Map<Long, Long> expected = new HashMap<>();
+        for (long key = -50; key < 50; key++) {
+            map.put(key, struct(key * 7));
+            expected.put(key, key * 7);
+        }
+
+        Map<Long, Long> found = new HashMap<>();
+        map.forEach((key, struct) -> {
+            assertEquals(STRUCT_SIZE, struct.readableBytes());
+            assertEquals((int) ~struct.getLong(struct.readerIndex()), struct.getInt(struct.readerIndex() + 8));
+            found.put(key, struct.getLong(struct.readerIndex()));
+        });
+        assertEquals(expected, found);
+
+        List<Long> keys = map.keys();
+        Collections.sort(keys);
+        List<Long> expectedKeys = new ArrayList<>(expected.keySet());
+        Collections.sort(expectedKeys);
+        assertEquals(expectedKeys, keys);
+    }
+
+    @Test
+    public void clear() {
+        ConcurrentLongStructHashMap map = newMap(16, 4);
+        for (long key = 0; key < 100; key++) {
+            map.put(key, struct(key));
+        }
+        long capacity = map.capacity();
+
+        map.clear();
+        assertTrue(map.isEmpty());
+        assertEquals(0, map.size());
+        assertEquals(capacity, map.capacity());
+        assertFalse(map.containsKey(1));
+
+        assertTrue(map.put(1, struct(2)));
+        assertStruct(map, 1, 2);
+    }
+
+    @Test
+    public void concurrentInsertionsAndReads() throws Exception {
+        ConcurrentLongStructHashMap map = newMap(16, 16);
+        int numThreads = 8;
+        int n = 20_000;
+        ExecutorService executor = Executors.newFixedThreadPool(numThreads * 2);
+
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for (int t = 0; t < numThreads; t++) {
+                final long firstKey = (long) t * n;
+                // Writer of its own keys, expanding the sections concurrently with the readers
+                futures.add(executor.submit(() -> {
+                    for (long key = firstKey; key < firstKey + n; key++) {
+                        assertTrue(map.put(key, struct(key)));
+                    }
+                }));
+                // Reader of the keys of the writer, which must either be missing or hold the expected struct
+                futures.add(executor.submit(() -> {
+                    ByteBuf struct = Unpooled.buffer(STRUCT_SIZE);
+                    for (long key = firstKey; key < firstKey + n; key++) {
+                        if (map.get(key, struct.clear())) {
+                            assertEquals(key, struct.getLong(0));
+                            assertEquals((int) ~key, struct.getInt(8));
+                        }
+                    }
+                }));
+            }
+
+            for (Future<?> future : futures) {
+                future.get(1, TimeUnit.MINUTES);
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+
+        assertEquals(numThreads * n, map.size());
+        for (long key = 0; key < numThreads * n; key++) {
+            assertStruct(map, key, key);
+        }
+    }
+
+    @Test
+    public void concurrentRemovals() throws Exception {
+        ConcurrentLongStructHashMap map = newMap(16, 4);
+        int numThreads = 4;
+        int n = 10_000;
+        for (long key = 0; key < numThreads * n; key++) {
+            map.put(key, struct(key));
+        }
+
+        ExecutorService executor = Executors.newFixedThreadPool(numThreads);
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for (int t = 0; t < numThreads; t++) {
+                final int thread = t;
+                // Each thread removes the keys of its own residue, and re-inserts half of them
+                futures.add(executor.submit(() -> {
+                    for (long key = thread; key < numThreads * n; key += numThreads) {
+                        assertTrue(map.remove(key));
+                        if (key % 2 == 0) {
+                            assertTrue(map.put(key, struct(-key)));
+                        }
+                    }
+                }));
+            }
+
+            for (Future<?> future : futures) {
+                future.get(1, TimeUnit.MINUTES);
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+
+        assertEquals(numThreads * n / 2, map.size());
+        for (long key = 0; key < numThreads * n; key++) {
+            if (key % 2 == 0) {
+                assertStruct(map, key, -key);
+            } else {
+                assertFalse(map.containsKey(key));
+            }
+        }
+    }
+}
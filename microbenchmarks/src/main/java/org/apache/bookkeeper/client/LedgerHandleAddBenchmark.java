@@ -0,0 +1,275 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.bookkeeper.client;
+
+import com.google.common.collect.Lists;
+import io.netty.buffer.ByteBufAllocator;
+import io.netty.buffer.Unpooled;
+
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.bookkeeper.client.api.WriteFlag;
+import org.apache.bookkeeper.common.util.OrderedExecutor;
+import org.apache.bookkeeper.common.util.OrderedScheduler;
+import org.apache.bookkeeper.meta.LedgerManager;
+import org.apache.bookkeeper.net.BookieSocketAddress;
+import org.apache.bookkeeper.proto.BookieClient;
+import org.apache.bookkeeper.proto.BookkeeperInternalCallbacks.ForceLedgerCallback;
+import org.apache.bookkeeper.proto.BookkeeperInternalCallbacks.GetBookieInfoCallback;
+import org.apache.bookkeeper.proto.BookkeeperInternalCallbacks.ReadEntryCallback;
+import org.apache.bookkeeper.proto.BookkeeperInternalCallbacks.ReadLacCallback;
+import org.apache.bookkeeper.proto.BookkeeperInternalCallbacks.WriteCallback;
+import org.apache.bookkeeper.proto.BookkeeperInternalCallbacks.WriteLacCallback;
+import org.apache.bookkeeper.stats.NullStatsLogger;
+import org.apache.bookkeeper.util.AvailabilityOfEntriesOfLedger;
+import org.apache.bookkeeper.util.ByteBufList;
+import org.apache.bookkeeper.versioning.LongVersion;
+import org.apache.bookkeeper.versioning.Versioned;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Microbenchmark of the entries added concurrently to a single ledger handle.
+ *
+ * <p>The bookie client acknowledges the writes right away, so that the benchmark measures the
+ * sequencing of the adds by the ledger handle rather than the network.
+ */
+@BenchmarkMode({ Mode.Throughput })
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Threads(16)
+@Fork(1)
+@Warmup(iterations = 1, time = 10, timeUnit = TimeUnit.SECONDS)
+@Measurement(iterations = 3, time = 10, timeUnit = TimeUnit.SECONDS)
+public class LedgerHandleAddBenchmark {
+
+    private static final int MAX_OUTSTANDING_ADDS = 10000;
+
+    @State(Scope.Benchmark)
+    public static class TestState {
+        @Param({ "10", "1000" })
+        private int entrySize;
+
+        private OrderedExecutor mainWorkerPool;
+        private OrderedScheduler scheduler;
+        private LedgerHandle lh;
+        private byte[] entry;
+        private final Semaphore outstandingAdds = new Semaphore(MAX_OUTSTANDING_ADDS);
+        private final AsyncCallback.AddCallback callback = (rc, lh, entryId, ctx) -> outstandingAdds.release();
+
+        @Setup(Level.Trial)
+        public void setup() throws Exception {
+            mainWorkerPool = OrderedExecutor.newBuilder().name("benchmark-worker").numThreads(1).build();
+            scheduler = OrderedScheduler.newSchedulerBuilder().name("benchmark-scheduler").numThreads(1).build();
+            ClientContext clientCtx = new MockClientContext(mainWorkerPool, scheduler);
+
+            List<BookieSocketAddress> ensemble = Lists.newArrayList(
+                    new BookieSocketAddress("127.0.0.1", 3181),
+                    new BookieSocketAddress("127.0.0.2", 3181),
+                    new BookieSocketAddress("127.0.0.3", 3181));
+            LedgerMetadata metadata = LedgerMetadataBuilder.create()
+                    .withEnsembleSize(3).withWriteQuorumSize(3).withAckQuorumSize(2)
+                    .withPassword(new byte[0]).withDigestType(BookKeeper.DigestType.CRC32C.toApiDigestType())
+                    .newEnsembleEntry(0L, ensemble).build();
+            lh = new LedgerHandle(clientCtx, 1L, new Versioned<>(metadata, new LongVersion(0L)),
+                                  BookKeeper.DigestType.CRC32C, new byte[0], EnumSet.noneOf(WriteFlag.class));
+            entry = new byte[entrySize];
+        }
+
+        @TearDown(Level.Trial)
+        public void teardown() throws Exception {
+            outstandingAdds.acquire(MAX_OUTSTANDING_ADDS);
+            mainWorkerPool.shutdown();
+            scheduler.shutdown();
+        }
+    }
+
+    @Benchmark
+    public void asyncAddEntry(TestState s) throws Exception {
+        s.outstandingAdds.acquire();
+        s.lh.asyncAddEntry(Unpooled.wrappedBuffer(s.entry), s.callback, null);
+    }
+
+    private static class MockClientContext implements ClientContext {
+        private final ClientInternalConf conf = ClientInternalConf.defaultValues();
+        private final BookKeeperClientStats clientStats = BookKeeperClientStats.newInstance(NullStatsLogger.INSTANCE);
+        private final BookieReadLatencyTracker readLatencyTracker =
+                new BookieReadLatencyTracker(10, TimeUnit.SECONDS);
+        private final EnsemblePlacementPolicy placementPolicy = new DefaultEnsemblePlacementPolicy();
+        private final BookieClient bookieClient = new MockBookieClient();
+        private final OrderedExecutor mainWorkerPool;
+        private final OrderedScheduler scheduler;
+
+        MockClientContext(OrderedExecutor mainWorkerPool, OrderedScheduler scheduler) {
+            this.mainWorkerPool = mainWorkerPool;
+            this.scheduler = scheduler;
+        }
+
+        @Override
+        public ClientInternalConf getConf() {
+            return conf;
+        }
+
+        @Override
+        public LedgerManager getLedgerManager() {
+            return null;
+        }
+
+        @Override
+        public BookieWatcher getBookieWatcher() {
+            return null;
+        }
+
+        @Override
+        public EnsemblePlacementPolicy getPlacementPolicy() {
+            return placementPolicy;
+        }
+
+        @Override
+        public BookieClient getBookieClient() {
+            return bookieClient;
+        }
+
+        @Override
+        public ByteBufAllocator getByteBufAllocator() {
+            return ByteBufAllocator.DEFAULT;
+        }
+
+        @Override
+        public OrderedExecutor getMainWorkerPool() {
+            return mainWorkerPool;
+        }
+
+        @Override
+        public OrderedScheduler getScheduler() {
+            return scheduler;
+        }
+
+        @Override
+        public BookKeeperClientStats getClientStats() {
+            return clientStats;
+        }
+
+        @Override
+        public BookieReadLatencyTracker getBookieReadLatencyTracker() {
+            return readLatencyTracker;
+        }
+
+        @Override
+        public boolean isClientClosed() {
+            return false;
+        }
+    }
+
+    /**
+     * Bookie client acknowledging the writes right away.
+     */
+    private static class MockBookieClient implements BookieClient {
+
+        @Override
+        public List<BookieSocketAddress> getFaultyBookies() {
+            return Collections.emptyList();
+        }
+
+        @Override
+        public boolean isWritable(BookieSocketAddress address, long ledgerId) {
+            return true;
+        }
+
+        @Override
+        public long getNumPendingRequests(BookieSocketAddress address, long ledgerId) {
+            return 0;
+        }
+
+        @Override
+        public void forceLedger(BookieSocketAddress address, long ledgerId, ForceLedgerCallback cb, Object ctx) {
+            cb.forceLedgerComplete(BKException.Code.OK, ledgerId, address, ctx);
+        }
+
+        @Override
+        public void readLac(BookieSocketAddress address, long ledgerId, ReadLacCallback cb, Object ctx) {
+            cb.readLacComplete(BKException.Code.IllegalOpException, ledgerId, null, null, ctx);
+        }
+
+        @Override
+        public void writeLac(BookieSocketAddress address, long ledgerId, byte[] masterKey, long lac,
+                             ByteBufList toSend, WriteLacCallback cb, Object ctx) {
+            cb.writeLacComplete(BKException.Code.OK, ledgerId, address, ctx);
+        }
+
+        @Override
+        public void addEntry(BookieSocketAddress address, long ledgerId, byte[] masterKey, long entryId,
+                             ByteBufList toSend, WriteCallback cb, Object ctx, int options,
+                             boolean allowFastFail, EnumSet<WriteFlag> writeFlags) {
+            cb.writeComplete(BKException.Code.OK, ledgerId, entryId, address, ctx);
+        }
+
+        @Override
+        public void readEntry(BookieSocketAddress address, long ledgerId, long entryId, ReadEntryCallback cb,
+                              Object ctx, int flags, byte[] masterKey, boolean allowFastFail) {
+            cb.readEntryComplete(BKException.Code.IllegalOpException, ledgerId, entryId, null, ctx);
+        }
+
+        @Override
+        public void readEntryWaitForLACUpdate(BookieSocketAddress address, long ledgerId, long entryId,
+                                              long previousLAC, long timeOutInMillis, boolean piggyBackEntry,
+                                              ReadEntryCallback cb, Object ctx) {
+            cb.readEntryComplete(BKException.Code.IllegalOpException, ledgerId, entryId, null, ctx);
+        }
+
+        @Override
+        public void getBookieInfo(BookieSocketAddress address, long requested, GetBookieInfoCallback cb,
+                                  Object ctx) {
+            cb.getBookieInfoComplete(BKException.Code.IllegalOpException, null, ctx);
+        }
+
+        @Override
+        public CompletableFuture<AvailabilityOfEntriesOfLedger> getListOfEntriesOfLedger(
+                BookieSocketAddress address, long ledgerId) {
+            CompletableFuture<AvailabilityOfEntriesOfLedger> future = new CompletableFuture<>();
+            future.completeExceptionally(new BKException.BKIllegalOpException());
+            return future;
+        }
+
+        @Override
+        public boolean isClosed() {
+            return false;
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+}
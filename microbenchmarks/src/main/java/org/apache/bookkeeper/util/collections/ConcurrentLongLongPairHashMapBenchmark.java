@@ -0,0 +1,136 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.bookkeeper.util.collections;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.bookkeeper.util.collections.ConcurrentLongLongPairHashMap.LongPair;
+import org.apache.bookkeeper.util.collections.ConcurrentLongLongPairHashMap.LongPairHolder;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Group;
+import org.openjdk.jmh.annotations.GroupThreads;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Microbenchmarks comparing the allocating accessors of {@link ConcurrentLongLongPairHashMap} with the
+ * allocation-free ones, alone and with a concurrent writer.
+ */
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Fork(1)
+@Warmup(iterations = 1, time = 10, timeUnit = TimeUnit.SECONDS)
+@Measurement(iterations = 3, time = 10, timeUnit = TimeUnit.SECONDS)
+public class ConcurrentLongLongPairHashMapBenchmark {
+
+    @State(Scope.Benchmark)
+    public static class MapState {
+        @Param({ "100000", "1000000" })
+        private int numKeys;
+
+        private ConcurrentLongLongPairHashMap map;
+
+        @Setup(Level.Trial)
+        public void setup() {
+            map = new ConcurrentLongLongPairHashMap(numKeys, 2 * Runtime.getRuntime().availableProcessors());
+            for (int i = 0; i < numKeys; i++) {
+                map.put(i / 100, i % 100, i, i);
+            }
+        }
+    }
+
+    @State(Scope.Thread)
+    public static class ThreadState {
+        private final LongPairHolder holder = new LongPairHolder();
+    }
+
+    private static long randomKey(MapState s) {
+        return ThreadLocalRandom.current().nextInt(s.numKeys);
+    }
+
+    @Benchmark
+    @Threads(16)
+    public void get(MapState s, Blackhole bh) {
+        long key = randomKey(s);
+        LongPair value = s.map.get(key / 100, key % 100);
+        bh.consume(value.first + value.second);
+    }
+
+    @Benchmark
+    @Threads(16)
+    public void getWithHolder(MapState s, ThreadState t, Blackhole bh) {
+        long key = randomKey(s);
+        s.map.get(key / 100, key % 100, t.holder);
+        bh.consume(t.holder.first + t.holder.second);
+    }
+
+    @Benchmark
+    @Group("contendedGet")
+    @GroupThreads(15)
+    public void contendedGetReader(MapState s, Blackhole bh) {
+        get(s, bh);
+    }
+
+    @Benchmark
+    @Group("contendedGet")
+    @GroupThreads(1)
+    public void contendedGetWriter(MapState s) {
+        long key = randomKey(s);
+        s.map.put(key / 100, key % 100, key, key);
+    }
+
+    @Benchmark
+    @Group("contendedGetWithHolder")
+    @GroupThreads(15)
+    public void contendedGetWithHolderReader(MapState s, ThreadState t, Blackhole bh) {
+        getWithHolder(s, t, bh);
+    }
+
+    @Benchmark
+    @Group("contendedGetWithHolder")
+    @GroupThreads(1)
+    public void contendedGetWithHolderWriter(MapState s) {
+        contendedGetWriter(s);
+    }
+
+    @Benchmark
+    public void keys(MapState s, Blackhole bh) {
+        long sum = 0;
+        for (LongPair key : s.map.keys()) {
+            sum += key.first + key.second;
+        }
+        bh.consume(sum);
+    }
+
+    @Benchmark
+    public void forEachKey(MapState s, Blackhole bh) {
+        long[] sum = new long[1];
+        s.map.forEachKey((key1, key2) -> sum[0] += key1 + key2);
+        bh.consume(sum[0]);
+    }
+}
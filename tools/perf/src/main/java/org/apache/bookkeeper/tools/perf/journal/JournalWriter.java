@@ -176,6 +176,22 @@ public class JournalWriter implements Runnable {
         )
         public int numJournalCallbackThreads = 8;
 
+        @Parameter(
+            names = {
+                "-dio", "--direct-io"
+            },
+            description = "Write the journal files with direct I/O instead of buffered writes"
+        )
+        public boolean journalDirectIOEnabled = false;
+
+        @Parameter(
+            names = {
+                "-ja", "--journal-alignment-size"
+            },
+            description = "Journal alignment size in bytes"
+        )
+        public int journalAlignmentSize = 512;
+
     }
 
 
@@ -475,6 +491,8 @@ public class JournalWriter implements Runnable {
         conf.setNumJournalCallbackThreads(flags.numJournalCallbackThreads);
         conf.setJournalQueueSize(flags.journalQueueSize);
         conf.setJournalSyncData(flags.journalSyncEnabled);
+        conf.setJournalDirectIOEnabled(flags.journalDirectIOEnabled);
+        conf.setJournalAlignmentSize(flags.journalAlignmentSize);
         conf.setLedgerDirNames(flags.journalDirs.toArray(new String[0]));
         conf.setStatsProviderClass(PrometheusMetricsProvider.class);
         File[] currentDirs = Bookie.getCurrentDirectories(conf.getLedgerDirs());